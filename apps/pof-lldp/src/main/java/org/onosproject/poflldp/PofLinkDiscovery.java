@@ -51,6 +51,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * An auxiliary application to send default pof flow tables for lldp
@@ -135,8 +136,13 @@ public class PofLinkDiscovery {
         }
     }
 
-    public int sendPofFlowTables(DeviceId deviceId) {
-        int tableId = (byte) tableStore.getNewGlobalFlowTableId(deviceId, OFTableType.OF_MM_TABLE);
+    public CompletableFuture<Integer> sendPofFlowTables(DeviceId deviceId) {
+        // called on the switch channel thread, which must not wait on the table store
+        return tableStore.getNewGlobalFlowTableIdAsync(deviceId, OFTableType.OF_MM_TABLE)
+                .thenApply(globalTableId -> sendPofFlowTable(deviceId, (byte) globalTableId.intValue()));
+    }
+
+    private int sendPofFlowTable(DeviceId deviceId, int tableId) {
         log.info("globalTableId: {}", tableId);
 
         byte smallTableId = tableStore.parseToSmallTableId(deviceId, tableId);
@@ -158,7 +158,7 @@ public final class MQUtil {
         jo.addProperty(PAD, pkt.parsed().isPad());
         jo.addProperty(PRIORITY_CODE, pkt.parsed().getPriorityCode());
         // parse bytebuffer
-        jo.addProperty(DATA_LEN, pkt.unparsed().array().length);
+        jo.addProperty(DATA_LEN, pkt.unparsed().remaining());
         jo.addProperty(PAYLOAD, pkt.unparsed().asCharBuffer().toString());
         return jo;
     }
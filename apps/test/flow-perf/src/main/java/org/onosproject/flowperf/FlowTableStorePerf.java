@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.flowperf;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.apache.felix.scr.annotations.ReferenceCardinality.MANDATORY_UNARY;
+import static org.onlab.util.Tools.get;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.Lists;
+
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.core.ApplicationId;
+import org.onosproject.core.CoreService;
+import org.onosproject.floodlightpof.protocol.table.OFFlowTable;
+import org.onosproject.floodlightpof.protocol.table.OFTableType;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.table.DefaultFlowTable;
+import org.onosproject.net.table.FlowTable;
+import org.onosproject.net.table.FlowTableId;
+import org.onosproject.net.table.FlowTableStore;
+import org.osgi.service.component.ComponentContext;
+import org.slf4j.Logger;
+
+/**
+ * Benchmark of POF flow table metadata updates in the flow table store.
+ * <p>
+ * Grows a scratch flow table in steps of {@code stepEntries} entries and,
+ * at each step, measures the cost of allocating an entry id and of the
+ * corresponding count and free id updates. With per table delta replication
+ * the per-op cost should stay flat as the table grows. Each step also
+ * measures the same number of allocations issued asynchronously from the
+ * single benchmark thread.
+ */
+@Component(immediate = true)
+public class FlowTableStorePerf {
+    private final Logger log = getLogger(getClass());
+
+    private static final boolean DEFAULT_ENABLED = false;
+    private static final int DEFAULT_STEPS = 10;
+    private static final int DEFAULT_STEP_ENTRIES = 10000;
+
+    @Reference(cardinality = MANDATORY_UNARY)
+    protected CoreService coreService;
+
+    @Reference(cardinality = MANDATORY_UNARY)
+    protected DeviceService deviceService;
+
+    @Reference(cardinality = MANDATORY_UNARY)
+    protected FlowTableStore flowTableStore;
+
+    @Reference(cardinality = MANDATORY_UNARY)
+    protected ComponentConfigService configService;
+
+    @Property(name = "tableStoreBenchmarkEnabled", boolValue = DEFAULT_ENABLED,
+            label = "Runs the flow table store benchmark when set to true")
+    protected boolean enabled = DEFAULT_ENABLED;
+
+    @Property(name = "tableStoreBenchmarkSteps", intValue = DEFAULT_STEPS,
+            label = "Number of table size steps to measure")
+    protected int steps = DEFAULT_STEPS;
+
+    @Property(name = "tableStoreBenchmarkStepEntries", intValue = DEFAULT_STEP_ENTRIES,
+            label = "Number of entries added to the table in each step")
+    protected int stepEntries = DEFAULT_STEP_ENTRIES;
+
+    private final ExecutorService runner =
+            Executors.newSingleThreadExecutor(Tools.groupedThreads("app/flow-perf-table-store", ""));
+
+    private ApplicationId appId;
+
+    @Activate
+    public void activate(ComponentContext context) {
+        appId = coreService.registerApplication("org.onosproject.flowperf");
+        configService.registerProperties(getClass());
+        modified(context);
+        log.info("Started");
+    }
+
+    @Deactivate
+    public void deactivate(ComponentContext context) {
+        runner.shutdownNow();
+        configService.unregisterProperties(getClass(), false);
+        log.info("Stopped");
+    }
+
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+        Dictionary properties = context.getProperties();
+        try {
+            String s = get(properties, "tableStoreBenchmarkEnabled");
+            enabled = isNullOrEmpty(s) ? enabled : Boolean.parseBoolean(s.trim());
+
+            s = get(properties, "tableStoreBenchmarkSteps");
+            steps = isNullOrEmpty(s) ? steps : Integer.parseInt(s.trim());
+
+            s = get(properties, "tableStoreBenchmarkStepEntries");
+            stepEntries = isNullOrEmpty(s) ? stepEntries : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            return;
+        }
+
+        if (enabled) {
+            runner.submit(this::runBenchmark);
+        }
+    }
+
+    private void runBenchmark() {
+        Device device = null;
+        for (Device d : deviceService.getAvailableDevices()) {
+            device = d;
+            break;
+        }
+        if (device == null) {
+            log.warn("No available device to run the flow table store benchmark on");
+            return;
+        }
+        DeviceId deviceId = device.id();
+        int tableId = flowTableStore.getNewGlobalFlowTableId(deviceId, OFTableType.OF_MM_TABLE);
+        if (tableId < 0) {
+            log.warn("Unable to allocate a scratch flow table on {}", deviceId);
+            return;
+        }
+        FlowTableId flowTableId = FlowTableId.valueOf(tableId);
+        // the scratch table is only recorded in the store, never sent to the device,
+        // so that removing it releases its table id, counters and id watermark
+        FlowTable scratch = scratchTable(deviceId, tableId);
+        flowTableStore.addOrUpdateFlowTable(scratch);
+        log.info("Starting flow table store benchmark on {} table {}: steps = {}, stepEntries = {}",
+                 deviceId, tableId, steps, stepEntries);
+
+        Deque<Integer> allocated = new ArrayDeque<>();
+        try {
+            for (int step = 1; step <= steps; step++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < stepEntries; i++) {
+                    allocated.addLast(flowTableStore.getNewFlowEntryId(deviceId, tableId));
+                }
+                long addNanos = System.nanoTime() - start;
+
+                // churn: delete the oldest entries and re-add the same number at this size
+                start = System.nanoTime();
+                for (int i = 0; i < stepEntries; i++) {
+                    flowTableStore.deleteFlowEntryCount(deviceId, flowTableId);
+                    flowTableStore.addFreeFlowEntryIds(deviceId, flowTableId, allocated.removeFirst());
+                    allocated.addLast(flowTableStore.getNewFlowEntryId(deviceId, tableId));
+                }
+                long churnNanos = System.nanoTime() - start;
+
+                // pipelined: issue all allocations before waiting for any of them
+                start = System.nanoTime();
+                List<CompletableFuture<Integer>> pending = Lists.newArrayListWithCapacity(stepEntries);
+                for (int i = 0; i < stepEntries; i++) {
+                    pending.add(flowTableStore.getNewFlowEntryIdAsync(deviceId, tableId));
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture[pending.size()])).join();
+                long asyncNanos = System.nanoTime() - start;
+                pending.forEach(f -> allocated.addLast(f.join()));
+
+                log.info("Table size {}: add {} us/op, churn {} us/op, async add {} us/op",
+                         step * stepEntries,
+                         addNanos / 1000.0 / stepEntries,
+                         churnNanos / 1000.0 / stepEntries,
+                         asyncNanos / 1000.0 / stepEntries);
+            }
+        } finally {
+            flowTableStore.removeFlowTable(scratch);
+        }
+        log.info("Flow table store benchmark completed");
+    }
+
+    private FlowTable scratchTable(DeviceId deviceId, int tableId) {
+        OFFlowTable ofFlowTable = new OFFlowTable();
+        ofFlowTable.setTableId(flowTableStore.parseToSmallTableId(deviceId, tableId));
+        ofFlowTable.setTableName("FlowTableStorePerf");
+        ofFlowTable.setTableType(OFTableType.OF_MM_TABLE);
+        return DefaultFlowTable.builder()
+                .withFlowTable(ofFlowTable)
+                .forTable(tableId)
+                .forDevice(deviceId)
+                .fromApp(appId)
+                .build();
+    }
+}
@@ -104,6 +104,8 @@ public class IntentPerfInstaller {
     private static final String STOP = "stop";
     private static final MessageSubject CONTROL = new MessageSubject("intent-perf-ctl");
 
+    private static final String INTENT_MANAGER = "org.onosproject.net.intent.impl.IntentManager";
+
     //FIXME add path length
 
     @Property(name = "numKeys", intValue = DEFAULT_NUM_KEYS,
@@ -256,6 +258,42 @@ public class IntentPerfInstaller {
         }
     }
 
+    /**
+     * Runs the test once per worker count and measures the local intent
+     * throughput of each run. For every run the intent manager is configured
+     * with as many worker threads and batch partitions as there are workers;
+     * both are restored to their defaults afterwards.
+     *
+     * @param workerCounts worker counts to measure
+     * @param stepSeconds  measurement duration of each run, after a warm-up
+     * @return local throughput in intent operations per second by worker count
+     * @throws InterruptedException if interrupted while a run is in progress
+     */
+    public Map<Integer, Double> scale(List<Integer> workerCounts, int stepSeconds)
+            throws InterruptedException {
+        checkState(stopped, "Test run already in progress");
+        Map<Integer, Double> throughputs = Maps.newLinkedHashMap();
+        try {
+            for (int workerCount : workerCounts) {
+                configService.setProperty(INTENT_MANAGER, "numThreads", String.valueOf(workerCount));
+                configService.setProperty(INTENT_MANAGER, "numBatchPartitions", String.valueOf(workerCount));
+                start();
+                Thread.sleep(START_DELAY);
+                listener.resetStep();
+                Thread.sleep(TimeUnit.SECONDS.toMillis(stepSeconds));
+                throughputs.put(workerCount, listener.stepThroughput());
+                log.info("Throughput with {} workers: {}", workerCount,
+                         format("%.2f", throughputs.get(workerCount)));
+                stop();
+            }
+        } finally {
+            stop();
+            configService.unsetProperty(INTENT_MANAGER, "numThreads");
+            configService.unsetProperty(INTENT_MANAGER, "numBatchPartitions");
+        }
+        return throughputs;
+    }
+
     private void logConfig(String prefix) {
         log.info("{} with appId {}; numKeys = {}; cyclePeriod = {} ms; numNeighbors={}",
                  prefix, appId.id(), numKeys, cyclePeriod, numNeighbors);
@@ -505,6 +543,8 @@ public class IntentPerfInstaller {
     final class Listener implements IntentListener {
 
         private final Counter runningTotal = new Counter();
+        // processed operations since the start of the current scaling step
+        private final Counter stepTotal = new Counter();
         private volatile Map<IntentEvent.Type, Counter> counters;
 
         private volatile double processedThroughput = 0;
@@ -530,14 +570,24 @@ public class IntentPerfInstaller {
             return requestThroughput;
         }
 
+        public void resetStep() {
+            stepTotal.reset();
+        }
+
+        public double stepThroughput() {
+            return stepTotal.throughput();
+        }
+
         @Override
         public void event(IntentEvent event) {
             if (event.subject().appId().equals(appId)) {
                 if (event.type() == INSTALLED) {
                     submitted.add(event.subject());
+                    stepTotal.add(1);
                 }
                 if (event.type() == WITHDRAWN) {
                     withdrawn.add(event.subject());
+                    stepTotal.add(1);
                 }
                 counters.get(event.type()).add(1);
             }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.intentperf;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.karaf.shell.commands.Argument;
+import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
+import org.onosproject.cli.AbstractShellCommand;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Measures intent throughput across a range of worker counts.
+ */
+@Command(scope = "onos", name = "intent-perf-scale",
+        description = "Measures intent throughput across a range of worker counts")
+public class IntentPerfScaleCommand extends AbstractShellCommand {
+
+    private static final List<Integer> DEFAULT_WORKER_COUNTS = ImmutableList.of(1, 2, 4, 8);
+
+    @Argument(index = 0, name = "workerCounts", description = "Worker counts to measure",
+            required = false, multiValued = true)
+    private List<String> workerCounts = null;
+
+    @Option(name = "-d", aliases = "--duration", description = "Measurement duration per worker count (seconds)",
+            required = false, multiValued = false)
+    private int duration = 30;
+
+    @Override
+    protected void execute() {
+        List<Integer> counts = workerCounts == null ? DEFAULT_WORKER_COUNTS :
+                workerCounts.stream().map(Integer::valueOf).distinct().sorted().collect(Collectors.toList());
+        Map<Integer, Double> throughputs;
+        try {
+            throughputs = get(IntentPerfInstaller.class).scale(counts, duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            print("Interrupted");
+            return;
+        }
+
+        print("%8s  %14s  %8s", "Workers", "Rate", "Speedup");
+        double base = throughputs.values().stream().findFirst().orElse(0.0);
+        throughputs.forEach((workers, rate) ->
+                print("%8d  %14.2f  %8.2f", workers, rate, base > 0 ? rate / base : 0));
+    }
+
+}
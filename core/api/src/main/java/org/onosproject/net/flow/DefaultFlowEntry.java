@@ -184,6 +184,15 @@ public class DefaultFlowEntry extends DefaultFlowRule
         this.lastSeen = System.currentTimeMillis();
     }
 
+    /**
+     * Sets the time this flow entry was last seen.
+     *
+     * @param lastSeen wall clock time in milliseconds
+     */
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
     @Override
     public void setState(FlowEntryState newState) {
         this.state = newState;
@@ -15,6 +15,7 @@
  */
 package org.onosproject.net.flow.criteria;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Objects;
@@ -24,6 +25,12 @@ import org.onlab.util.HexString;
  * Implementation of pof criterion.
  */
 public final class PofCriterion implements Criterion {
+    /**
+     * Length of a single encoded POF match field (ofp_matchx) on the wire.
+     */
+    public static final int MATCH_WIRE_LENGTH = 40;
+    private static final int MATCH_VALUE_WIRE_LENGTH = 16;
+
     private final ArrayList<Criterion> list;
     private final String fieldName;
     private final short fieldId;
@@ -32,6 +39,9 @@ public final class PofCriterion implements Criterion {
 
     private final byte[] value;
     private final byte[] mask;
+    // wire form, derived from the fields above; kept out of the serialized
+    // form so that stored and replicated flow rules do not carry it
+    private transient volatile byte[] encoded;
     private final Type type = Type.POF;
 
     /**
@@ -143,6 +153,45 @@ public final class PofCriterion implements Criterion {
         return this.list;
     }
 
+    /**
+     * Returns the wire form of this match field, encoded on first use.
+     *
+     * @return read-only buffer of {@link #MATCH_WIRE_LENGTH} bytes, or null
+     * for a criterion holding a list of match fields
+     */
+    public ByteBuffer encodedMatch() {
+        if (list != null) {
+            return null;
+        }
+        byte[] bytes = encoded;
+        if (bytes == null) {
+            // racing threads encode the same bytes
+            bytes = encode();
+            encoded = bytes;
+        }
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    // mirrors OFMatchX.writeTo(): id, offset, length, pad, value[16], mask[16]
+    private byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(MATCH_WIRE_LENGTH);
+        buffer.putShort(fieldId);
+        buffer.putShort(offset);
+        buffer.putShort(length);
+        buffer.putShort((short) 0);
+        putPadded(buffer, value);
+        putPadded(buffer, mask);
+        return buffer.array();
+    }
+
+    private static void putPadded(ByteBuffer buffer, byte[] bytes) {
+        int length = bytes == null ? 0 : Math.min(bytes.length, MATCH_VALUE_WIRE_LENGTH);
+        if (length > 0) {
+            buffer.put(bytes, 0, length);
+        }
+        buffer.position(buffer.position() + MATCH_VALUE_WIRE_LENGTH - length);
+    }
+
 
 
     @Override
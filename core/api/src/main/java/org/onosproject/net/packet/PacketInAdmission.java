@@ -0,0 +1,360 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet;
+
+import com.codahale.metrics.Meter;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onlab.packet.Ethernet;
+import org.onlab.util.TokenBucket;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Per-source admission control for packet-in frames.
+ * <p>
+ * Each source (typically a switch) gets two token buckets: one for control
+ * traffic (LLDP, BDDP and ARP), which topology discovery and host location
+ * depend on, and one for everything else. A data flood therefore cannot
+ * use up the budget of control traffic. When a bucket is empty the frame
+ * is dropped, except for one in every {@code sampleEvery} drops which is
+ * let through so that applications still see a sample of the flood.
+ * A rate of 0 disables limiting for that class. Admitted control frames
+ * are then dispatched ahead of data by a {@link PacketInDispatchQueue}.
+ * </p>
+ * <p>
+ * The admitted, dropped and sampled counts of each source can be published
+ * as meters through the {@link MetricsService}, see
+ * {@link #registerMetrics(MetricsService, String, Function)}.
+ * </p>
+ *
+ * @param <K> type of the source key
+ */
+public final class PacketInAdmission<K> {
+
+    /**
+     * Priority class of a packet-in frame.
+     */
+    public enum Priority {
+        /** Discovery and address resolution traffic. */
+        CONTROL,
+        /** All other traffic. */
+        DATA
+    }
+
+    private static final int ETH_TYPE_OFFSET = 12;
+    private static final int VLAN_TAG_LENGTH = 4;
+
+    private static final String ADMITTED = "packetInAdmitted";
+    private static final String DROPPED = "packetInDropped";
+    private static final String SAMPLED = "packetInSampled";
+
+    private final Map<K, Source> sources = Maps.newConcurrentMap();
+
+    private volatile Limits limits;
+
+    private volatile SourceMetrics metrics;
+
+    /**
+     * Creates an admission stage.
+     *
+     * @param controlRate per-source control packets per second; 0 for no limit
+     * @param dataRate    per-source data packets per second; 0 for no limit
+     * @param sampleEvery let one in this many dropped packets through; 0 to never sample
+     */
+    public PacketInAdmission(int controlRate, int dataRate, int sampleEvery) {
+        configure(controlRate, dataRate, sampleEvery);
+    }
+
+    /**
+     * Changes the limits. Buckets of existing sources are recreated lazily;
+     * their counters are kept.
+     *
+     * @param controlRate per-source control packets per second; 0 for no limit
+     * @param dataRate    per-source data packets per second; 0 for no limit
+     * @param sampleEvery let one in this many dropped packets through; 0 to never sample
+     */
+    public void configure(int controlRate, int dataRate, int sampleEvery) {
+        limits = new Limits(Math.max(0, controlRate), Math.max(0, dataRate), Math.max(0, sampleEvery));
+    }
+
+    /**
+     * Returns whether any limit is in place.
+     *
+     * @return true if packet-ins may be dropped
+     */
+    public boolean isEnabled() {
+        Limits current = limits;
+        return current.controlRate > 0 || current.dataRate > 0;
+    }
+
+    /**
+     * Publishes the counters of every source as meters of the given metrics
+     * component, under one feature per source. Sources seen before are
+     * registered with the counts they have so far on their next frame.
+     *
+     * @param metricsService metrics service
+     * @param componentName  name of the metrics component
+     * @param featureName    names the metrics feature of a source
+     */
+    public void registerMetrics(MetricsService metricsService, String componentName,
+                                Function<? super K, String> featureName) {
+        metrics = new SourceMetrics(metricsService, metricsService.registerComponent(componentName),
+                                    featureName);
+    }
+
+    /**
+     * Removes the meters published by
+     * {@link #registerMetrics(MetricsService, String, Function)}. The
+     * counters themselves are kept.
+     */
+    public void unregisterMetrics() {
+        metrics = null;
+        sources.values().forEach(s -> s.register(null));
+    }
+
+    /**
+     * Decides whether a packet-in frame from the given source is admitted.
+     *
+     * @param source source of the frame
+     * @param frame  raw ethernet frame; may be null
+     * @return true if the frame should be processed
+     */
+    public boolean admit(K source, byte[] frame) {
+        return admit(source, classify(frame));
+    }
+
+    /**
+     * Decides whether a packet-in frame of the given priority class from
+     * the given source is admitted.
+     *
+     * @param source   source of the frame
+     * @param priority priority class of the frame, as returned by {@link #classify(byte[])}
+     * @return true if the frame should be processed
+     */
+    public boolean admit(K source, Priority priority) {
+        Limits current = limits;
+        if (current.controlRate == 0 && current.dataRate == 0) {
+            return true;
+        }
+        Source s = sources.get(source);
+        if (s == null) {
+            s = sources.computeIfAbsent(source, k -> new Source(k, current));
+        }
+        SourceMetrics published = metrics;
+        if (s.metrics != published) {
+            s.register(published);
+        }
+        Buckets buckets = s.buckets;
+        if (buckets.limits != current) {
+            buckets = new Buckets(current);
+            s.buckets = buckets;
+        }
+        TokenBucket bucket = priority == Priority.CONTROL ? buckets.control : buckets.data;
+        if (bucket == null || bucket.tryAcquire()) {
+            s.admitted.mark();
+            return true;
+        }
+        s.dropped.mark();
+        int sample = current.sampleEvery;
+        if (sample > 0 && s.dropped.getCount() % sample == 0) {
+            s.sampled.mark();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the buckets and counters of a source.
+     *
+     * @param source source to forget
+     */
+    public void remove(K source) {
+        Source s = sources.remove(source);
+        if (s != null) {
+            s.register(null);
+        }
+    }
+
+    /**
+     * Returns the counters of a source.
+     *
+     * @param source source
+     * @return admission counters; all zero if the source is unknown
+     */
+    public Stats stats(K source) {
+        Source s = sources.get(source);
+        return s == null ? new Stats(0, 0, 0) :
+                new Stats(s.admitted.getCount(), s.dropped.getCount(), s.sampled.getCount());
+    }
+
+    /**
+     * Returns the priority class of a raw ethernet frame, looking past any
+     * VLAN or QinQ tags.
+     *
+     * @param frame raw ethernet frame; may be null
+     * @return priority class
+     */
+    public static Priority classify(byte[] frame) {
+        if (frame == null) {
+            return Priority.DATA;
+        }
+        int offset = ETH_TYPE_OFFSET;
+        while (offset + 2 <= frame.length) {
+            short ethType = (short) (((frame[offset] & 0xff) << 8) | (frame[offset + 1] & 0xff));
+            if (ethType == Ethernet.TYPE_VLAN || ethType == Ethernet.TYPE_QINQ) {
+                offset += VLAN_TAG_LENGTH;
+                continue;
+            }
+            return ethType == Ethernet.TYPE_LLDP || ethType == Ethernet.TYPE_BSN
+                    || ethType == Ethernet.TYPE_ARP ? Priority.CONTROL : Priority.DATA;
+        }
+        return Priority.DATA;
+    }
+
+    private static final class Limits {
+        private final int controlRate;
+        private final int dataRate;
+        private final int sampleEvery;
+
+        private Limits(int controlRate, int dataRate, int sampleEvery) {
+            this.controlRate = controlRate;
+            this.dataRate = dataRate;
+            this.sampleEvery = sampleEvery;
+        }
+    }
+
+    private static final class Buckets {
+        private final Limits limits;
+        private final TokenBucket control;
+        private final TokenBucket data;
+
+        private Buckets(Limits limits) {
+            this.limits = limits;
+            // one second worth of burst
+            this.control = limits.controlRate > 0
+                    ? new TokenBucket(limits.controlRate, limits.controlRate) : null;
+            this.data = limits.dataRate > 0 ? new TokenBucket(limits.dataRate, limits.dataRate) : null;
+        }
+    }
+
+    private final class SourceMetrics {
+        private final MetricsService metricsService;
+        private final MetricsComponent component;
+        private final Function<? super K, String> featureName;
+
+        private SourceMetrics(MetricsService metricsService, MetricsComponent component,
+                              Function<? super K, String> featureName) {
+            this.metricsService = metricsService;
+            this.component = component;
+            this.featureName = featureName;
+        }
+    }
+
+    private final class Source {
+        private final K key;
+        private volatile Buckets buckets;
+        private final Meter admitted = new Meter();
+        private final Meter dropped = new Meter();
+        private final Meter sampled = new Meter();
+        // metrics the meters are currently registered with
+        private volatile SourceMetrics metrics;
+
+        private Source(K key, Limits limits) {
+            this.key = key;
+            this.buckets = new Buckets(limits);
+        }
+
+        /**
+         * Moves the meters of this source over to the given metrics.
+         *
+         * @param target metrics to register with; null to only unregister
+         */
+        private synchronized void register(SourceMetrics target) {
+            if (metrics == target) {
+                return;
+            }
+            if (metrics != null) {
+                MetricsFeature feature = metrics.component.registerFeature(metrics.featureName.apply(key));
+                metrics.metricsService.removeMetric(metrics.component, feature, ADMITTED);
+                metrics.metricsService.removeMetric(metrics.component, feature, DROPPED);
+                metrics.metricsService.removeMetric(metrics.component, feature, SAMPLED);
+            }
+            if (target != null) {
+                MetricsFeature feature = target.component.registerFeature(target.featureName.apply(key));
+                target.metricsService.registerMetric(target.component, feature, ADMITTED, admitted);
+                target.metricsService.registerMetric(target.component, feature, DROPPED, dropped);
+                target.metricsService.registerMetric(target.component, feature, SAMPLED, sampled);
+            }
+            metrics = target;
+        }
+    }
+
+    /**
+     * Admission counters of one source.
+     */
+    public static final class Stats {
+        private final long admitted;
+        private final long dropped;
+        private final long sampled;
+
+        private Stats(long admitted, long dropped, long sampled) {
+            this.admitted = admitted;
+            this.dropped = dropped;
+            this.sampled = sampled;
+        }
+
+        /**
+         * Returns the number of frames admitted within the rate limits.
+         *
+         * @return admitted frames
+         */
+        public long admitted() {
+            return admitted;
+        }
+
+        /**
+         * Returns the number of frames over the rate limits, including sampled ones.
+         *
+         * @return frames over the limits
+         */
+        public long dropped() {
+            return dropped;
+        }
+
+        /**
+         * Returns the number of frames over the rate limits that were let through.
+         *
+         * @return sampled frames
+         */
+        public long sampled() {
+            return sampled;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("admitted", admitted)
+                    .add("dropped", dropped)
+                    .add("sampled", sampled)
+                    .toString();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet;
+
+import org.onosproject.net.packet.PacketInAdmission.Priority;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bounded queue of switch messages awaiting dispatch, in which control
+ * packet-ins overtake everything else.
+ * <p>
+ * Messages offered as {@link Priority#CONTROL} are taken before any message
+ * offered as {@link Priority#DATA}; within a class order is preserved. Both
+ * classes share one capacity, so a data flood that fills the queue still
+ * throttles reads from the switch, but the discovery traffic that gets in
+ * is not stuck behind it.
+ * </p>
+ *
+ * @param <E> type of the queued messages
+ */
+public final class PacketInDispatchQueue<E> {
+
+    private final int capacity;
+    private final Deque<E> control = new ArrayDeque<>();
+    private final Deque<E> data = new ArrayDeque<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Creates a dispatch queue.
+     *
+     * @param capacity maximum number of queued messages
+     */
+    public PacketInDispatchQueue(int capacity) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a message behind all other messages.
+     *
+     * @param message message to queue
+     * @return true if queued; false if the queue is full
+     */
+    public boolean offer(E message) {
+        return offer(message, Priority.DATA);
+    }
+
+    /**
+     * Queues a message behind the other messages of its priority class.
+     *
+     * @param message  message to queue
+     * @param priority priority class of the message
+     * @return true if queued; false if the queue is full
+     */
+    public boolean offer(E message, Priority priority) {
+        lock.lock();
+        try {
+            if (control.size() + data.size() >= capacity) {
+                return false;
+            }
+            (priority == Priority.CONTROL ? control : data).addLast(message);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the next message, waiting for one if the queue is empty.
+     *
+     * @return next message
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (control.isEmpty() && data.isEmpty()) {
+                notEmpty.await();
+            }
+            return control.isEmpty() ? data.pollFirst() : control.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to the given number of messages, control messages first,
+     * and adds them to the given collection.
+     *
+     * @param messages    collection to add the messages to
+     * @param maxMessages maximum number of messages to remove
+     * @return number of messages removed
+     */
+    public int drainTo(Collection<? super E> messages, int maxMessages) {
+        lock.lock();
+        try {
+            int count = 0;
+            E message;
+            while (count < maxMessages && (message = control.pollFirst()) != null) {
+                messages.add(message);
+                count++;
+            }
+            while (count < maxMessages && (message = data.pollFirst()) != null) {
+                messages.add(message);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of queued messages.
+     *
+     * @return queued messages
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return control.size() + data.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether no messages are queued.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Discards all queued messages.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            control.clear();
+            data.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -42,7 +42,24 @@ public interface PacketService {
      */
     void addProcessor(PacketProcessor processor, int priority);
 
-    // TODO allow processors to register for particular types of packets
+    /**
+     * Adds the specified processor to the list of packet processors,
+     * declaring interest only in packets matching the given selector.
+     * Packets that do not match are not dispatched to the processor.
+     * Criteria which cannot be evaluated against an inbound packet are
+     * treated as matching, so the processor may still see packets outside
+     * of its interest and should check them as it did before.
+     *
+     * @param processor processor to be added
+     * @param priority  priority in the reverse natural order
+     * @param selector  selector of the packets of interest
+     * @throws java.lang.IllegalArgumentException if a processor with the
+     *                                            given priority already exists
+     */
+    default void addProcessor(PacketProcessor processor, int priority,
+                              TrafficSelector selector) {
+        addProcessor(processor, priority);
+    }
 
     /**
      * Removes the specified processor from the processing pipeline.
@@ -1,7 +1,10 @@
 package org.onosproject.net.table;
 
+import com.google.common.base.MoreObjects;
 import org.onosproject.net.DeviceId;
 
+import java.util.Objects;
+
 /**
  * TableId of the given DeviceId
  */
@@ -19,4 +22,29 @@ public class DeviceTableId {
         return this.deviceId;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(deviceId, tableId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof DeviceTableId) {
+            DeviceTableId that = (DeviceTableId) obj;
+            return this.tableId == that.tableId
+                    && Objects.equals(this.deviceId, that.deviceId);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("deviceId", deviceId)
+                .add("tableId", tableId)
+                .toString();
+    }
 }
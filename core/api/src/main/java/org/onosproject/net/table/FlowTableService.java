@@ -21,6 +21,8 @@ import org.onosproject.floodlightpof.protocol.table.OFFlowTable;
 import org.onosproject.floodlightpof.protocol.table.OFTableType;
 import org.onosproject.net.DeviceId;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service for injecting flow tables into the environment and for obtaining
  * information about flow tables already in the environment. This implements
@@ -46,6 +48,18 @@ public interface FlowTableService
      */
     int getNewGlobalFlowTableId(DeviceId deviceId, OFTableType type);
 
+    /**
+     * Returns the table id of a new flow table of the given type without
+     * blocking the caller.
+     *
+     * @param deviceId  the device id
+     * @param type the flow table type
+     * @return future completing with the flow table id
+     */
+    default CompletableFuture<Integer> getNewGlobalFlowTableIdAsync(DeviceId deviceId, OFTableType type) {
+        return CompletableFuture.completedFuture(getNewGlobalFlowTableId(deviceId, type));
+    }
+
     /**
      * Returns the flow entry id in the specified flow table.
      *
@@ -55,6 +69,18 @@ public interface FlowTableService
      */
     int getNewFlowEntryId(DeviceId deviceId, int tableId);
 
+    /**
+     * Returns a new flow entry id in the specified flow table without
+     * blocking the caller.
+     *
+     * @param deviceId the device id
+     * @param tableId the table id
+     * @return future completing with the flow entry id
+     */
+    default CompletableFuture<Integer> getNewFlowEntryIdAsync(DeviceId deviceId, int tableId) {
+        return CompletableFuture.completedFuture(getNewFlowEntryId(deviceId, tableId));
+    }
+
     /**
      * Returns the number of flow tables in the system.
      *
@@ -72,6 +98,17 @@ public interface FlowTableService
      */
     Iterable<FlowTable> getFlowTables(DeviceId deviceId);
 
+    /**
+     * Returns the collection of flow tables of the specified device without
+     * blocking the caller.
+     *
+     * @param deviceId device identifier
+     * @return future completing with the collection of flow tables
+     */
+    default CompletableFuture<Iterable<FlowTable>> getFlowTablesAsync(DeviceId deviceId) {
+        return CompletableFuture.completedFuture(getFlowTables(deviceId));
+    }
+
     // TODO: add createFlowTable factory method and execute operations method
 
     /**
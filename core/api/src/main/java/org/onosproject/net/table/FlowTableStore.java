@@ -23,6 +23,7 @@ import org.onosproject.store.Store;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages inventory of flow tables; not intended for direct use.
@@ -61,6 +62,17 @@ public interface FlowTableStore extends Store<FlowTableBatchEvent, FlowTableStor
      */
     Iterable<FlowTable> getFlowTables(DeviceId deviceId);
 
+    /**
+     * Returns the flow tables associated with a device without blocking
+     * the caller while they are fetched from the device master.
+     *
+     * @param deviceId the device ID
+     * @return future completing with the flow tables
+     */
+    default CompletableFuture<Iterable<FlowTable>> getFlowTablesAsync(DeviceId deviceId) {
+        return CompletableFuture.completedFuture(getFlowTables(deviceId));
+    }
+
     /**
      * // TODO: Better description of method behavior.
      * Stores a new flow table without generating events.
@@ -160,6 +172,18 @@ public interface FlowTableStore extends Store<FlowTableBatchEvent, FlowTableStor
      */
     int getNewGlobalFlowTableId(DeviceId deviceId, OFTableType type);
 
+    /**
+     * Allocates a new global table id for a flow table of the given type
+     * without blocking the caller while the device master is consulted.
+     *
+     * @param deviceId  the device id
+     * @param type the flow table type
+     * @return future completing with the flow table id
+     */
+    default CompletableFuture<Integer> getNewGlobalFlowTableIdAsync(DeviceId deviceId, OFTableType type) {
+        return CompletableFuture.completedFuture(getNewGlobalFlowTableId(deviceId, type));
+    }
+
     /**
      * Returns the flow entry id in the specified flow table.
      *
@@ -169,6 +193,18 @@ public interface FlowTableStore extends Store<FlowTableBatchEvent, FlowTableStor
      */
     int getNewFlowEntryId(DeviceId deviceId, int tableId);
 
+    /**
+     * Allocates a new flow entry id in the specified flow table without
+     * blocking the caller while a block of ids is leased from the device master.
+     *
+     * @param deviceId the device id
+     * @param tableId the table id
+     * @return future completing with the flow entry id, or -1 if none could be allocated
+     */
+    default CompletableFuture<Integer> getNewFlowEntryIdAsync(DeviceId deviceId, int tableId) {
+        return CompletableFuture.completedFuture(getNewFlowEntryId(deviceId, tableId));
+    }
+
     Map<OFTableType, Byte> getFlowTableNoMap(DeviceId deviceId);
 
     Map<OFTableType, List<Byte>> getFreeFlowTableIDListMap(DeviceId deviceId);
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.topology;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.onlab.graph.Weight;
+import org.onosproject.net.DefaultPath;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Link;
+import org.onosproject.net.Path;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.onosproject.core.CoreService.CORE_PROVIDER_ID;
+
+/**
+ * Immutable set of shortest-path trees rooted at every device of a topology.
+ * Each tree retains, for every reachable destination, the cost of the
+ * shortest paths and the set of equal-cost ingress links through which the
+ * destination is reached, from which the paths themselves can be built on
+ * demand.
+ * <p>
+ * The trees are bound to the topology for which they were computed and
+ * become stale once that topology is superseded.
+ */
+public final class ShortestPathTrees {
+
+    private final Topology topology;
+    private final long computeNanos;
+    private final ImmutableMap<DeviceId, Integer> indexes;
+
+    // Indexed by source device index; null for a device that is not a source.
+    private final Tree[] trees;
+
+    private ShortestPathTrees(Builder builder) {
+        this.topology = builder.topology;
+        this.computeNanos = builder.computeNanos;
+        this.indexes = builder.indexes;
+        this.trees = builder.trees;
+    }
+
+    /**
+     * Returns the topology for which the trees were computed.
+     *
+     * @return topology
+     */
+    public Topology topology() {
+        return topology;
+    }
+
+    /**
+     * Returns the time it took to compute the trees.
+     *
+     * @param unit time unit of the result
+     * @return compute time
+     */
+    public long computeTime(TimeUnit unit) {
+        return unit.convert(computeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the devices at which the trees are rooted.
+     *
+     * @return set of source devices
+     */
+    public Set<DeviceId> sources() {
+        ImmutableSet.Builder<DeviceId> builder = ImmutableSet.builder();
+        indexes.forEach((id, index) -> {
+            if (trees[index] != null) {
+                builder.add(id);
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Returns the cost of the shortest paths between the given devices.
+     *
+     * @param src source device
+     * @param dst destination device
+     * @return path cost; null if the destination is not reachable
+     */
+    public Weight cost(DeviceId src, DeviceId dst) {
+        Tree tree = tree(src);
+        Integer d = indexes.get(dst);
+        return tree != null && d != null ? tree.costs[d] : null;
+    }
+
+    /**
+     * Returns the links through which the destination device is entered on
+     * the shortest paths from the source device; more than one link denotes
+     * equal-cost alternatives.
+     *
+     * @param src source device
+     * @param dst destination device
+     * @return set of ingress links; empty if the destination is the source
+     * or is not reachable
+     */
+    public Set<Link> parents(DeviceId src, DeviceId dst) {
+        Tree tree = tree(src);
+        Integer d = indexes.get(dst);
+        if (tree == null || d == null) {
+            return ImmutableSet.of();
+        }
+        ImmutableSet.Builder<Link> builder = ImmutableSet.builder();
+        for (int i = tree.offsets[d]; i < tree.offsets[d + 1]; i++) {
+            builder.add(tree.parents[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds all shortest paths between the given devices.
+     *
+     * @param src source device
+     * @param dst destination device
+     * @return set of shortest paths; empty if the destination is the source
+     * or is not reachable
+     */
+    public Set<Path> paths(DeviceId src, DeviceId dst) {
+        Weight cost = cost(src, dst);
+        if (cost == null || src.equals(dst)) {
+            return ImmutableSet.of();
+        }
+        Tree tree = tree(src);
+        ImmutableSet.Builder<Path> builder = ImmutableSet.builder();
+        buildPaths(tree, src, dst, new ArrayList<>(), new HashSet<>(), cost, builder);
+        return builder.build();
+    }
+
+    // Walks the ingress links back from the given device towards the source,
+    // emitting a path each time the source is reached. Devices already on
+    // the partial path are skipped, which guards against zero-cost cycles.
+    private void buildPaths(Tree tree, DeviceId src, DeviceId device,
+                            List<Link> suffix, Set<DeviceId> visited, Weight cost,
+                            ImmutableSet.Builder<Path> builder) {
+        if (device.equals(src)) {
+            List<Link> links = new ArrayList<>(suffix);
+            Collections.reverse(links);
+            builder.add(new DefaultPath(CORE_PROVIDER_ID, links, cost));
+            return;
+        }
+        visited.add(device);
+        int d = indexes.get(device);
+        for (int i = tree.offsets[d]; i < tree.offsets[d + 1]; i++) {
+            Link link = tree.parents[i];
+            DeviceId previous = link.src().deviceId();
+            if (!visited.contains(previous)) {
+                suffix.add(link);
+                buildPaths(tree, src, previous, suffix, visited, cost, builder);
+                suffix.remove(suffix.size() - 1);
+            }
+        }
+        visited.remove(device);
+    }
+
+    private Tree tree(DeviceId src) {
+        Integer s = indexes.get(src);
+        return s != null ? trees[s] : null;
+    }
+
+    // Shortest-path tree of a single source. The ingress links of the
+    // destination with index d are parents[offsets[d]] to
+    // parents[offsets[d + 1] - 1], so that a tree holds one array of
+    // predecessor links rather than one array per destination.
+    private static final class Tree {
+        private final Weight[] costs;
+        private final int[] offsets;
+        private final Link[] parents;
+
+        private Tree(Weight[] costs, int[] offsets, Link[] parents) {
+            this.costs = costs;
+            this.offsets = offsets;
+            this.parents = parents;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("topology", topology)
+                .add("devices", indexes.size())
+                .add("computeNanos", computeNanos)
+                .toString();
+    }
+
+    /**
+     * Assembles the shortest-path trees of a topology from the shortest paths
+     * between every pair of its devices. This is meant for services which
+     * can only compute paths; it is considerably costlier than a search per
+     * source device.
+     *
+     * @param topology topology for which the trees are computed
+     * @param devices  devices of the topology
+     * @param initial  cost of reaching a source from itself
+     * @param paths    function yielding the shortest paths between two devices
+     * @return shortest-path trees from all devices
+     */
+    public static ShortestPathTrees fromPaths(Topology topology, Collection<DeviceId> devices,
+                                              Weight initial,
+                                              BiFunction<DeviceId, DeviceId, Set<Path>> paths) {
+        long start = System.nanoTime();
+        Builder builder = builder(topology, devices);
+        for (DeviceId src : devices) {
+            Map<DeviceId, Weight> costs = new HashMap<>();
+            Map<DeviceId, Set<Link>> parents = new HashMap<>();
+            costs.put(src, initial);
+            for (DeviceId dst : devices) {
+                Set<Path> found = src.equals(dst) ? ImmutableSet.of() : paths.apply(src, dst);
+                if (!found.isEmpty()) {
+                    costs.put(dst, found.iterator().next().weight());
+                    found.forEach(path -> parents.computeIfAbsent(dst, d -> new HashSet<>())
+                            .add(path.links().get(path.links().size() - 1)));
+                }
+            }
+            builder.addTree(src, costs, parents);
+        }
+        return builder.computeNanos(System.nanoTime() - start).build();
+    }
+
+    /**
+     * Returns a new builder of shortest-path trees.
+     *
+     * @param topology topology for which the trees are computed
+     * @param devices  devices of the topology
+     * @return new builder
+     */
+    public static Builder builder(Topology topology, Collection<DeviceId> devices) {
+        return new Builder(topology, devices);
+    }
+
+    /**
+     * Builder of shortest-path trees.
+     */
+    public static final class Builder {
+
+        private final Topology topology;
+        private final ImmutableMap<DeviceId, Integer> indexes;
+        private final Tree[] trees;
+        private long computeNanos;
+        private boolean built = false;
+
+        private Builder(Topology topology, Collection<DeviceId> devices) {
+            this.topology = checkNotNull(topology, "Topology cannot be null");
+            ImmutableMap.Builder<DeviceId, Integer> builder = ImmutableMap.builder();
+            int i = 0;
+            for (DeviceId device : devices) {
+                builder.put(device, i++);
+            }
+            this.indexes = builder.build();
+            this.trees = new Tree[i];
+        }
+
+        /**
+         * Adds the shortest-path tree rooted at the given source device.
+         *
+         * @param src     source device
+         * @param costs   costs of the shortest paths, keyed by destination
+         * @param parents ingress links on the shortest paths, keyed by
+         *                destination
+         * @return self
+         */
+        public Builder addTree(DeviceId src, Map<DeviceId, Weight> costs,
+                               Map<DeviceId, ? extends Collection<Link>> parents) {
+            checkState(!built, "Trees already built");
+            Integer s = indexes.get(src);
+            checkArgument(s != null, "Device %s is not in the topology", src);
+
+            int n = indexes.size();
+            Weight[] treeCosts = new Weight[n];
+            costs.forEach((dst, cost) -> {
+                Integer d = indexes.get(dst);
+                if (d != null) {
+                    treeCosts[d] = cost;
+                }
+            });
+
+            @SuppressWarnings("unchecked")
+            Collection<Link>[] byDst = new Collection[n];
+            int count = 0;
+            for (Map.Entry<DeviceId, ? extends Collection<Link>> entry : parents.entrySet()) {
+                Integer d = indexes.get(entry.getKey());
+                if (d != null) {
+                    byDst[d] = entry.getValue();
+                    count += entry.getValue().size();
+                }
+            }
+            int[] offsets = new int[n + 1];
+            Link[] treeParents = new Link[count];
+            int next = 0;
+            for (int d = 0; d < n; d++) {
+                offsets[d] = next;
+                if (byDst[d] != null) {
+                    for (Link link : byDst[d]) {
+                        treeParents[next++] = link;
+                    }
+                }
+            }
+            offsets[n] = next;
+            this.trees[s] = new Tree(treeCosts, offsets, treeParents);
+            return this;
+        }
+
+        /**
+         * Sets the time it took to compute the trees.
+         *
+         * @param nanos compute time in nanoseconds
+         * @return self
+         */
+        public Builder computeNanos(long nanos) {
+            this.computeNanos = nanos;
+            return this;
+        }
+
+        /**
+         * Builds the immutable shortest-path trees.
+         *
+         * @return shortest-path trees
+         */
+        public ShortestPathTrees build() {
+            checkState(!built, "Trees already built");
+            built = true;
+            return new ShortestPathTrees(this);
+        }
+    }
+}
@@ -25,8 +25,10 @@ import org.onosproject.net.Path;
 
 import static org.onosproject.net.topology.HopCountLinkWeigher.DEFAULT_HOP_COUNT_WEIGHER;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -186,6 +188,26 @@ public interface TopologyService
          return getPaths(topology, src, dst, weigher).stream();
      }
 
+    /**
+     * Computes the shortest-path trees rooted at every device of the
+     * topology. The trees are computed concurrently, one per source device,
+     * and are bound to the given topology. The default implementation
+     * assembles the trees from the shortest paths between every pair of
+     * devices.
+     *
+     * @param topology topology descriptor
+     * @param weigher  edge-weight entity
+     * @return shortest-path trees from all devices
+     */
+    default ShortestPathTrees getShortestPathTrees(Topology topology,
+                                                   LinkWeigher weigher) {
+        List<DeviceId> devices = getGraph(topology).getVertexes().stream()
+                .map(TopologyVertex::deviceId)
+                .collect(Collectors.toList());
+        return ShortestPathTrees.fromPaths(topology, devices, weigher.getInitialWeight(),
+                                           (src, dst) -> getPaths(topology, src, dst, weigher));
+    }
+
     /**
      * Returns the set of all disjoint shortest path pairs, precomputed in terms of hop-count,
      * between the specified source and destination devices.
@@ -27,6 +27,7 @@ import org.onosproject.store.Store;
 
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.Map;
 
@@ -169,6 +170,26 @@ public interface TopologyStore extends Store<TopologyEvent, TopologyStoreDelegat
         return getPaths(topology, src, dst, weigher).stream();
     }
 
+    /**
+     * Computes the shortest-path trees rooted at every device of the
+     * topology. The trees are computed concurrently, one per source device,
+     * and are bound to the given topology. The default implementation
+     * assembles the trees from the shortest paths between every pair of
+     * devices.
+     *
+     * @param topology topology descriptor
+     * @param weigher  edge-weight entity
+     * @return shortest-path trees from all devices
+     */
+    default ShortestPathTrees getShortestPathTrees(Topology topology,
+                                                   LinkWeigher weigher) {
+        List<DeviceId> devices = getGraph(topology).getVertexes().stream()
+                .map(TopologyVertex::deviceId)
+                .collect(Collectors.toList());
+        return ShortestPathTrees.fromPaths(topology, devices, weigher.getInitialWeight(),
+                                           (src, dst) -> getPaths(topology, src, dst, weigher));
+    }
+
     /**
      * Computes and returns the set of disjoint shortest path pairs
      * between src and dst.
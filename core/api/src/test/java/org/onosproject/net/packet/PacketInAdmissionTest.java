@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet;
+
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.Ethernet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for packet-in admission control.
+ */
+public class PacketInAdmissionTest {
+
+    private static byte[] frame(short... ethTypes) {
+        byte[] frame = new byte[64];
+        int offset = 12;
+        for (short ethType : ethTypes) {
+            frame[offset] = (byte) (ethType >> 8);
+            frame[offset + 1] = (byte) ethType;
+            offset += 4;
+        }
+        return frame;
+    }
+
+    /**
+     * Tests classification of control and data frames.
+     */
+    @Test
+    public void testClassify() {
+        assertEquals(PacketInAdmission.Priority.CONTROL,
+                     PacketInAdmission.classify(frame(Ethernet.TYPE_LLDP)));
+        assertEquals(PacketInAdmission.Priority.CONTROL,
+                     PacketInAdmission.classify(frame(Ethernet.TYPE_BSN)));
+        assertEquals(PacketInAdmission.Priority.CONTROL,
+                     PacketInAdmission.classify(frame(Ethernet.TYPE_VLAN, Ethernet.TYPE_ARP)));
+        assertEquals(PacketInAdmission.Priority.DATA,
+                     PacketInAdmission.classify(frame(Ethernet.TYPE_IPV4)));
+        assertEquals(PacketInAdmission.Priority.DATA, PacketInAdmission.classify(new byte[4]));
+        assertEquals(PacketInAdmission.Priority.DATA, PacketInAdmission.classify(null));
+    }
+
+    /**
+     * Tests that a data flood is limited without affecting control traffic.
+     */
+    @Test
+    public void testDataFloodSparesControl() {
+        PacketInAdmission<Long> admission = new PacketInAdmission<>(0, 5, 0);
+        byte[] data = frame(Ethernet.TYPE_IPV4);
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            admitted += admission.admit(1L, data) ? 1 : 0;
+        }
+        assertTrue(admitted >= 5 && admitted < 100);
+        assertTrue(admission.admit(1L, frame(Ethernet.TYPE_LLDP)));
+        assertTrue(admission.admit(2L, data));
+        assertEquals(100 - admitted, admission.stats(1L).dropped());
+    }
+
+    /**
+     * Tests that one in every N dropped frames is sampled through.
+     */
+    @Test
+    public void testSampling() {
+        PacketInAdmission<Long> admission = new PacketInAdmission<>(0, 1, 10);
+        byte[] data = frame(Ethernet.TYPE_IPV4);
+        for (int i = 0; i < 101; i++) {
+            admission.admit(1L, data);
+        }
+        PacketInAdmission.Stats stats = admission.stats(1L);
+        assertEquals(stats.dropped() / 10, stats.sampled());
+        assertTrue(stats.sampled() > 0);
+    }
+
+    /**
+     * Tests that all frames are admitted when no limit is configured.
+     */
+    @Test
+    public void testDisabled() {
+        PacketInAdmission<Long> admission = new PacketInAdmission<>(0, 0, 0);
+        assertFalse(admission.isEnabled());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(admission.admit(1L, frame(Ethernet.TYPE_IPV4)));
+        }
+    }
+
+    /**
+     * Tests that reconfiguring the limits keeps the counters of known sources.
+     */
+    @Test
+    public void testCountersSurviveConfigure() {
+        PacketInAdmission<Long> admission = new PacketInAdmission<>(0, 1, 0);
+        byte[] data = frame(Ethernet.TYPE_IPV4);
+        for (int i = 0; i < 10; i++) {
+            admission.admit(1L, data);
+        }
+        PacketInAdmission.Stats before = admission.stats(1L);
+        assertTrue(before.dropped() > 0);
+
+        admission.configure(0, 1000, 0);
+        assertTrue(admission.admit(1L, data));
+        PacketInAdmission.Stats after = admission.stats(1L);
+        assertEquals(before.admitted() + 1, after.admitted());
+        assertEquals(before.dropped(), after.dropped());
+    }
+
+    /**
+     * Tests that the counters are published as meters, including those of
+     * sources seen before the metrics were registered.
+     */
+    @Test
+    public void testMetrics() {
+        MetricsManager metricsService = new MetricsManager();
+        PacketInAdmission<Long> admission = new PacketInAdmission<>(0, 1, 0);
+        byte[] data = frame(Ethernet.TYPE_IPV4);
+        admission.admit(1L, data);
+        admission.admit(1L, data);
+
+        admission.registerMetrics(metricsService, "PacketIn", source -> "src" + source);
+        admission.admit(1L, data);
+        admission.admit(2L, data);
+        assertEquals(admission.stats(1L).admitted(),
+                     metricsService.getMeters((name, metric) -> true)
+                             .get("PacketIn.src1.packetInAdmitted").getCount());
+        assertEquals(admission.stats(1L).dropped(),
+                     metricsService.getMeters((name, metric) -> true)
+                             .get("PacketIn.src1.packetInDropped").getCount());
+        assertNotNull(metricsService.getMeters((name, metric) -> true).get("PacketIn.src2.packetInSampled"));
+
+        admission.unregisterMetrics();
+        assertTrue(metricsService.getMeters((name, metric) -> true).isEmpty());
+        assertEquals(3, admission.stats(1L).admitted() + admission.stats(1L).dropped());
+        assertNull(metricsService.getMeters((name, metric) -> true).get("PacketIn.src1.packetInAdmitted"));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.packet.PacketInAdmission.Priority.CONTROL;
+
+/**
+ * Tests for the packet-in priority dispatch queue.
+ */
+public class PacketInDispatchQueueTest {
+
+    /**
+     * Tests that control messages overtake data messages, keeping order
+     * within each class.
+     */
+    @Test
+    public void testControlFirst() throws InterruptedException {
+        PacketInDispatchQueue<String> queue = new PacketInDispatchQueue<>(10);
+        queue.offer("d1");
+        queue.offer("d2");
+        queue.offer("c1", CONTROL);
+        queue.offer("d3");
+        queue.offer("c2", CONTROL);
+
+        assertEquals("c1", queue.take());
+        List<String> rest = new ArrayList<>();
+        assertEquals(4, queue.drainTo(rest, 10));
+        assertEquals(ImmutableList.of("c2", "d1", "d2", "d3"), rest);
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * Tests that both classes share the capacity.
+     */
+    @Test
+    public void testCapacity() {
+        PacketInDispatchQueue<String> queue = new PacketInDispatchQueue<>(2);
+        assertTrue(queue.offer("d1"));
+        assertTrue(queue.offer("c1", CONTROL));
+        assertFalse(queue.offer("d2"));
+        assertFalse(queue.offer("c2", CONTROL));
+        assertEquals(2, queue.size());
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(1, queue.drainTo(drained, 1));
+        assertEquals(ImmutableList.of("c1"), drained);
+        queue.clear();
+        assertEquals(0, queue.size());
+    }
+}
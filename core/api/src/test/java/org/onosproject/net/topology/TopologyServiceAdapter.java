@@ -82,6 +82,12 @@ public class TopologyServiceAdapter implements TopologyService {
         return null;
     }
 
+    @Override
+    public ShortestPathTrees getShortestPathTrees(Topology topology,
+                                                  LinkWeigher weigher) {
+        return null;
+    }
+
     @Override
     public boolean isInfrastructure(Topology topology,
                                     ConnectPoint connectPoint) {
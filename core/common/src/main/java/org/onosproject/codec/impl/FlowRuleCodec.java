@@ -31,9 +31,12 @@ import org.onosproject.rest.AbstractWebResource;
 import org.onosproject.net.table.FlowTableStore;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.util.Tools.futureGetOrElse;
 import static org.onlab.util.Tools.nullIsIllegal;
 
 /**
@@ -54,6 +57,7 @@ public final class FlowRuleCodec extends JsonCodec<FlowRule> {
     private static final String MISSING_MEMBER_MESSAGE =
             " member is required in FlowRule";
     public static final String REST_APP_ID = "org.onosproject.rest";
+    private static final long NEW_FLOW_ENTRY_ID_TIMEOUT_MILLIS = 10000;
 
     public static class TableStoreResource extends AbstractWebResource {
         public FlowTableStore getTableStore() {
@@ -112,10 +116,11 @@ public final class FlowRuleCodec extends JsonCodec<FlowRule> {
                     .registerApplication(REST_APP_ID));
         }
 
+        // the id may have to be leased from the device master; decode the rest meanwhile
+        CompletableFuture<Integer> newFlowEntryId = null;
         if (json.get(DEVICE_ID).asText().substring(0, 3).equals("pof")) {
-            long newFlowEntryId = tableStore.getTableStore()
-                    .getNewFlowEntryId(deviceid, json.get(TABLE_ID).asInt());
-            resultBuilder.withCookie(newFlowEntryId);
+            newFlowEntryId = tableStore.getTableStore()
+                    .getNewFlowEntryIdAsync(deviceid, json.get(TABLE_ID).asInt());
         }
 
         int priority = nullIsIllegal(json.get(PRIORITY),
@@ -163,6 +168,11 @@ public final class FlowRuleCodec extends JsonCodec<FlowRule> {
                 resultBuilder.withSelector(selectorCodec.decode(selectorJson, context));
             }
         }
+
+        if (newFlowEntryId != null) {
+            resultBuilder.withCookie(futureGetOrElse(newFlowEntryId, NEW_FLOW_ENTRY_ID_TIMEOUT_MILLIS,
+                                                     TimeUnit.MILLISECONDS, -1));
+        }
         return resultBuilder.build();
     }
 
@@ -31,7 +31,11 @@ import org.onosproject.rest.AbstractWebResource;
 import org.onosproject.net.table.FlowTableStore;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
+
+import static org.onlab.util.Tools.futureGetOrElse;
 import static org.onlab.util.Tools.nullIsIllegal;
 
 /**
@@ -53,6 +57,7 @@ public final class FlowTableCodec extends JsonCodec<FlowTable> {
     private static final String MISSING_MEMBER_MESSAGE =
             " member is required in FlowRule";
     public static final String REST_APP_ID = "org.onosproject.rest";
+    private static final long NEW_GLOBAL_TABLE_ID_TIMEOUT_MILLIS = 5000;
 
     public static class TableStoreResource extends AbstractWebResource {
         public FlowTableStore getTableStore() {
@@ -78,8 +83,9 @@ public final class FlowTableCodec extends JsonCodec<FlowTable> {
         FlowTableTypeCodec tableTypeCodec = new FlowTableTypeCodec(json
                 .get(TABLE_TYPE).asText());
         OFTableType tableType = tableTypeCodec.getFlowTbleType();
-        byte tableId = (byte) tableStore.getTableStore()
-                .getNewGlobalFlowTableId(deviceId, tableType);
+        // the id may have to come from the device master; decode the rest meanwhile
+        CompletableFuture<Integer> newTableId = tableStore.getTableStore()
+                .getNewGlobalFlowTableIdAsync(deviceId, tableType);
 
         ObjectNode selectorJson = get(json, SELECTOR);
         JsonNode criteriaJson = selectorJson.get(CRITERIA);
@@ -99,6 +105,8 @@ public final class FlowTableCodec extends JsonCodec<FlowTable> {
         ofFlowTable.setTableName(json.get(TABLE_NAME).asText());
         ofFlowTable.setTableSize(json.get(TABLE_SIZE).asInt());
         ofFlowTable.setTableType(tableType);
+        byte tableId = futureGetOrElse(newTableId, NEW_GLOBAL_TABLE_ID_TIMEOUT_MILLIS,
+                                       TimeUnit.MILLISECONDS, -1).byteValue();
         resultBuilder.withFlowTable(ofFlowTable)
                 .forTable(tableId)
                 .forDevice(deviceId);
@@ -18,6 +18,10 @@ package org.onosproject.common;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
@@ -50,7 +54,9 @@ import org.onosproject.net.topology.DefaultTopologyCluster;
 import org.onosproject.net.topology.DefaultTopologyVertex;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.HopCountLinkWeight;
+import org.onosproject.net.topology.HopCountLinkWeigher;
 import org.onosproject.net.topology.LinkWeigher;
+import org.onosproject.net.topology.ShortestPathTrees;
 import org.onosproject.net.topology.Topology;
 import org.onosproject.net.topology.TopologyCluster;
 import org.onosproject.net.topology.TopologyEdge;
@@ -59,10 +65,18 @@ import org.onosproject.net.topology.TopologyVertex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -95,8 +109,18 @@ public class DefaultTopology extends AbstractModel implements Topology {
             new LazyKShortestPathsSearch<>();
 
 
+    // Maximum number of viable edge changes patched into the previous
+    // topology before falling back to a full recomputation.
+    private static final int MAX_INCREMENTAL_CHANGES = 8;
+
+    /**
+     * Default number of shortest-path trees cached per topology.
+     */
+    public static final int DEFAULT_PATH_CACHE_SIZE = 64;
+
     private static LinkWeigher defaultLinkWeigher = null;
     private static GraphPathSearch<TopologyVertex, TopologyEdge> defaultGraphPathSearch = null;
+    private static int pathCacheSize = DEFAULT_PATH_CACHE_SIZE;
 
     private final long time;
     private final long creationTime;
@@ -105,12 +129,20 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     private final LinkWeigher hopCountWeigher;
 
-    private final Supplier<SccResult<TopologyVertex, TopologyEdge>> clusterResults;
+    private final Supplier<ClusterSets> clusterSets;
     private final Supplier<ImmutableMap<ClusterId, TopologyCluster>> clusters;
+    private final Supplier<ImmutableSet<TopologyEdge>> nonViableEdges;
     private final Supplier<ImmutableSet<ConnectPoint>> infrastructurePoints;
     private final Supplier<ImmutableSetMultimap<ClusterId, ConnectPoint>> broadcastSets;
     private final Function<ConnectPoint, Boolean> broadcastFunction;
     private final Supplier<ClusterIndexes> clusterIndexes;
+    private final boolean incremental;
+    private volatile boolean clustersComputed = false;
+
+    // Shortest-path trees keyed by source and weigher, along with the keys
+    // requested once, which become eligible for caching when requested again.
+    private final Cache<PathTreeKey, Result<TopologyVertex, TopologyEdge>> pathTrees;
+    private final Cache<PathTreeKey, Boolean> pathTreeCandidates;
 
     /**
      * Sets the default link-weight to be used when computing paths. If null is
@@ -136,6 +168,18 @@ public class DefaultTopology extends AbstractModel implements Topology {
         defaultGraphPathSearch = graphPathSearch;
     }
 
+    /**
+     * Sets the maximum number of shortest-path trees cached by each
+     * subsequently created topology. Zero disables caching.
+     *
+     * @param size maximum number of cached shortest-path trees
+     */
+    public static void setPathCacheSize(int size) {
+        checkArgument(size >= 0, "Path cache size must not be negative");
+        log.info("Setting path cache size to {}", size);
+        pathCacheSize = size;
+    }
+
 
     /**
      * Creates a topology descriptor attributed to the specified provider.
@@ -146,6 +190,24 @@ public class DefaultTopology extends AbstractModel implements Topology {
      */
     public DefaultTopology(ProviderId providerId, GraphDescription description,
                            Function<ConnectPoint, Boolean> broadcastFunction) {
+        this(providerId, description, broadcastFunction, null);
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * deriving the clusters and broadcast sets from the given previous
+     * topology whenever the graph differs from it by only a few edges.
+     * If the changes can merge or split clusters, or if the previous topology
+     * is null, everything is recomputed from scratch.
+     *
+     * @param providerId        identity of the provider
+     * @param description       data describing the new topology
+     * @param broadcastFunction broadcast point function
+     * @param previous          previous topology; may be null
+     */
+    public DefaultTopology(ProviderId providerId, GraphDescription description,
+                           Function<ConnectPoint, Boolean> broadcastFunction,
+                           DefaultTopology previous) {
         super(providerId);
         this.broadcastFunction = broadcastFunction;
         this.time = description.timestamp();
@@ -155,14 +217,37 @@ public class DefaultTopology extends AbstractModel implements Topology {
         this.graph = new DefaultTopologyGraph(description.vertexes(),
                 description.edges());
 
-        this.clusterResults = Suppliers.memoize(this::searchForClusters);
-        this.clusters = Suppliers.memoize(this::buildTopologyClusters);
+        this.hopCountWeigher = adapt(new HopCountLinkWeight(graph.getVertexes().size()));
+        this.nonViableEdges = Suppliers.memoize(this::findNonViableEdges);
+
+        Derivation derivation = previous != null ? derive(previous) : null;
+        if (derivation != null) {
+            this.incremental = true;
+            this.clustersComputed = true;
+            this.clusterSets = Suppliers.ofInstance(derivation.clusterSets);
+            this.clusters = Suppliers.ofInstance(derivation.clusters);
+            this.broadcastSets = Suppliers.memoize(() -> patchBroadcastSets(
+                    derivation.broadcastSets, derivation.touchedClusters));
+        } else {
+            this.incremental = false;
+            this.clusterSets = Suppliers.memoize(this::searchForClusters);
+            this.clusters = Suppliers.memoize(this::buildTopologyClusters);
+            this.broadcastSets = Suppliers.memoize(this::buildBroadcastSets);
+        }
 
         this.clusterIndexes = Suppliers.memoize(this::buildIndexes);
-
-        this.hopCountWeigher = adapt(new HopCountLinkWeight(graph.getVertexes().size()));
-        this.broadcastSets = Suppliers.memoize(this::buildBroadcastSets);
         this.infrastructurePoints = Suppliers.memoize(this::findInfrastructurePoints);
+
+        int cacheSize = pathCacheSize;
+        if (cacheSize > 0) {
+            this.pathTrees = CacheBuilder.newBuilder()
+                    .maximumSize(cacheSize).recordStats().build();
+            this.pathTreeCandidates = CacheBuilder.newBuilder()
+                    .maximumSize(cacheSize * 4L).build();
+        } else {
+            this.pathTrees = null;
+            this.pathTreeCandidates = null;
+        }
         this.computeCost = Math.max(0, System.nanoTime() - time);
     }
 
@@ -206,6 +291,16 @@ public class DefaultTopology extends AbstractModel implements Topology {
         return graph.getEdges().size();
     }
 
+    /**
+     * Indicates whether the clusters of this topology were derived from the
+     * previous topology rather than computed from scratch.
+     *
+     * @return true if derived incrementally
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
     private ImmutableMap<DeviceId, TopologyCluster> clustersByDevice() {
         return clusterIndexes.get().clustersByDevice;
     }
@@ -385,15 +480,103 @@ public class DefaultTopology extends AbstractModel implements Topology {
             return ImmutableSet.of();
         }
 
-        GraphPathSearch.Result<TopologyVertex, TopologyEdge> result =
-                graphPathSearch().search(graph, srcV, dstV, weigher, maxPaths);
+        Set<org.onlab.graph.Path<TopologyVertex, TopologyEdge>> paths;
+        Result<TopologyVertex, TopologyEdge> tree = pathTree(srcV, weigher);
+        if (tree != null) {
+            paths = DIJKSTRA.treePaths(tree, dstV, maxPaths);
+        } else {
+            paths = graphPathSearch().search(graph, srcV, dstV, weigher, maxPaths).paths();
+        }
+
         ImmutableSet.Builder<Path> builder = ImmutableSet.builder();
-        for (org.onlab.graph.Path<TopologyVertex, TopologyEdge> path : result.paths()) {
+        for (org.onlab.graph.Path<TopologyVertex, TopologyEdge> path : paths) {
             builder.add(networkPath(path));
         }
         return builder.build();
     }
 
+    /**
+     * Returns the statistics of the shortest-path tree cache of this topology.
+     *
+     * @return cache statistics; all zero if caching is disabled
+     */
+    public CacheStats pathCacheStats() {
+        return pathTrees != null ? pathTrees.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Computes the shortest-path trees rooted at every device of this
+     * topology on the common fork-join pool.
+     *
+     * @param weigher link weight function
+     * @return shortest-path trees from all devices
+     */
+    public ShortestPathTrees getShortestPathTrees(LinkWeigher weigher) {
+        return getShortestPathTrees(weigher, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the shortest-path trees rooted at every device of this
+     * topology, one search per source device, in parallel on the given
+     * fork-join pool.
+     *
+     * @param weigher link weight function
+     * @param pool    pool on which the searches are run
+     * @return shortest-path trees from all devices
+     */
+    public ShortestPathTrees getShortestPathTrees(LinkWeigher weigher, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        List<TopologyVertex> sources = ImmutableList.copyOf(graph.getVertexes());
+        List<DeviceId> devices = sources.stream()
+                .map(TopologyVertex::deviceId)
+                .collect(Collectors.toList());
+        GraphPathSearch<TopologyVertex, TopologyEdge> search = graphPathSearch();
+
+        List<Result<TopologyVertex, TopologyEdge>> trees = pool.submit(() -> sources
+                .parallelStream()
+                .map(src -> search == DIJKSTRA ?
+                        DIJKSTRA.searchTree(graph, src, weigher) :
+                        search.search(graph, src, null, weigher, ALL_PATHS))
+                .collect(Collectors.toList())).join();
+
+        ShortestPathTrees.Builder builder = ShortestPathTrees.builder(this, devices);
+        for (int i = 0; i < trees.size(); i++) {
+            Result<TopologyVertex, TopologyEdge> tree = trees.get(i);
+            Map<DeviceId, Weight> costs = new HashMap<>();
+            tree.costs().forEach((v, cost) -> costs.put(v.deviceId(), cost));
+            Map<DeviceId, List<Link>> parents = new HashMap<>();
+            tree.parents().forEach((v, edges) -> parents.put(v.deviceId(),
+                    edges.stream().map(TopologyEdge::link).collect(Collectors.toList())));
+            builder.addTree(devices.get(i), costs, parents);
+        }
+        return builder.computeNanos(System.nanoTime() - start).build();
+    }
+
+    // Returns the cached shortest-path tree rooted at the given source for
+    // the given weigher, or null if the tree is not, or not yet, cached.
+    // Trees are only cached for the default Dijkstra search and only once
+    // requested twice, so that one-off weighers do not churn the cache.
+    private Result<TopologyVertex, TopologyEdge> pathTree(TopologyVertex src,
+                                                          LinkWeigher weigher) {
+        if (pathTrees == null || graphPathSearch() != DIJKSTRA || !isStateless(weigher)) {
+            return null;
+        }
+
+        PathTreeKey key = new PathTreeKey(src, weigher);
+        Result<TopologyVertex, TopologyEdge> tree = pathTrees.getIfPresent(key);
+        if (tree != null ||
+                pathTreeCandidates.asMap().putIfAbsent(key, Boolean.TRUE) == null) {
+            return tree;
+        }
+
+        try {
+            return pathTrees.get(key, () -> DIJKSTRA.searchTree(graph, src, weigher));
+        } catch (ExecutionException e) {
+            log.warn("Unable to compute shortest-path tree from {}", src, e.getCause());
+            return null;
+        }
+    }
+
     /**
      * Computes on-demand the k-shortest paths between source and
      * destination devices.
@@ -630,25 +813,24 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     // Searches for SCC clusters in the network topology graph using Tarjan
     // algorithm.
-    private SccResult<TopologyVertex, TopologyEdge> searchForClusters() {
-        return TARJAN.search(graph, new NoIndirectLinksWeigher());
+    private ClusterSets searchForClusters() {
+        SccResult<TopologyVertex, TopologyEdge> results =
+                TARJAN.search(graph, new NoIndirectLinksWeigher());
+        clustersComputed = true;
+        return new ClusterSets(results.clusterVertexes(), results.clusterEdges());
     }
 
     // Builds the topology clusters and returns the id-cluster bindings.
     private ImmutableMap<ClusterId, TopologyCluster> buildTopologyClusters() {
         ImmutableMap.Builder<ClusterId, TopologyCluster> clusterBuilder =
                 ImmutableMap.builder();
-        SccResult<TopologyVertex, TopologyEdge> results = clusterResults.get();
-
-        // Extract both vertexes and edges from the results; the lists form
-        // pairs along the same index.
-        List<Set<TopologyVertex>> clusterVertexes = results.clusterVertexes();
-        List<Set<TopologyEdge>> clusterEdges = results.clusterEdges();
+        ClusterSets sets = clusterSets.get();
 
-        // Scan over the lists and create a cluster from the results.
-        for (int i = 0, n = results.clusterCount(); i < n; i++) {
-            Set<TopologyVertex> vertexSet = clusterVertexes.get(i);
-            Set<TopologyEdge> edgeSet = clusterEdges.get(i);
+        // Scan over the lists and create a cluster from the results; the
+        // vertex and edge lists form pairs along the same index.
+        for (int i = 0, n = sets.vertexes.size(); i < n; i++) {
+            Set<TopologyVertex> vertexSet = sets.vertexes.get(i);
+            Set<TopologyEdge> edgeSet = sets.edges.get(i);
 
             ClusterId cid = ClusterId.clusterId(i);
             DefaultTopologyCluster cluster = new DefaultTopologyCluster(cid,
@@ -660,6 +842,158 @@ public class DefaultTopology extends AbstractModel implements Topology {
         return clusterBuilder.build();
     }
 
+    // Attempts to derive the clusters of this topology from those of the
+    // previous one. Returns null if a full recomputation is required, i.e.
+    // if the device set changed, if there are too many edge changes, or if
+    // any of the changes may merge or split clusters.
+    private Derivation derive(DefaultTopology previous) {
+        // Only patch topologies whose clusters have already been computed;
+        // otherwise we would just be moving the full search elsewhere.
+        if (!previous.clustersComputed ||
+                !graph.getVertexes().equals(previous.graph.getVertexes())) {
+            return null;
+        }
+
+        // Link state is not part of link equality, so viability flips are
+        // detected through the non-viable edge sets of both topologies.
+        Set<TopologyEdge> edges = graph.getEdges();
+        Set<TopologyEdge> prevEdges = previous.graph.getEdges();
+        Set<TopologyEdge> nonViable = nonViableEdges.get();
+        Set<TopologyEdge> prevNonViable = previous.nonViableEdges.get();
+
+        List<TopologyEdge> added = new ArrayList<>();
+        for (TopologyEdge edge : edges) {
+            if (isViable(edge) &&
+                    (!prevEdges.contains(edge) || prevNonViable.contains(edge))) {
+                added.add(edge);
+                if (added.size() > MAX_INCREMENTAL_CHANGES) {
+                    return null;
+                }
+            }
+        }
+
+        List<TopologyEdge> removed = new ArrayList<>();
+        for (TopologyEdge edge : prevEdges) {
+            if (isViable(edge) &&
+                    (!edges.contains(edge) || nonViable.contains(edge))) {
+                removed.add(edge);
+                if (added.size() + removed.size() > MAX_INCREMENTAL_CHANGES) {
+                    return null;
+                }
+            }
+        }
+
+        ClusterSets prevSets = previous.clusterSets.get();
+        ImmutableMap<ClusterId, TopologyCluster> prevClusters = previous.clusters.get();
+        ImmutableMap<DeviceId, TopologyCluster> prevByDevice = previous.clustersByDevice();
+        ImmutableSetMultimap<ClusterId, ConnectPoint> prevBroadcastSets =
+                previous.broadcastSets.get();
+        Set<ClusterId> touched = new HashSet<>();
+
+        // A new viable edge between two clusters may merge them.
+        for (TopologyEdge edge : added) {
+            TopologyCluster cluster = prevByDevice.get(edge.src().deviceId());
+            if (cluster != prevByDevice.get(edge.dst().deviceId())) {
+                return null;
+            }
+            touched.add(cluster.id());
+        }
+
+        // Removing an edge between two clusters can neither merge nor split
+        // them; removing one within a cluster splits it unless its
+        // destination remains reachable from its source.
+        for (TopologyEdge edge : removed) {
+            TopologyCluster cluster = prevByDevice.get(edge.src().deviceId());
+            if (cluster != prevByDevice.get(edge.dst().deviceId())) {
+                continue;
+            }
+            Set<TopologyVertex> vertexes = prevSets.vertexes.get(cluster.id().index());
+            if (!isReachable(edge.src(), edge.dst(), vertexes)) {
+                return null;
+            }
+
+            // The broadcast tree only needs rebuilding if it used the edge.
+            Set<ConnectPoint> points = prevBroadcastSets.get(cluster.id());
+            if (points.contains(edge.link().src()) &&
+                    points.contains(edge.link().dst())) {
+                touched.add(cluster.id());
+            }
+        }
+
+        // Cluster membership is unchanged; rebuild the edge sets from the new
+        // graph so that they carry the current links.
+        List<Set<TopologyEdge>> clusterEdges = new ArrayList<>(prevSets.vertexes.size());
+        ImmutableMap.Builder<ClusterId, TopologyCluster> clusterBuilder =
+                ImmutableMap.builder();
+        for (TopologyCluster prevCluster : prevClusters.values()) {
+            Set<TopologyEdge> edgeSet = findClusterEdges(
+                    prevSets.vertexes.get(prevCluster.id().index()));
+            clusterEdges.add(edgeSet);
+            clusterBuilder.put(prevCluster.id(),
+                    new DefaultTopologyCluster(prevCluster.id(),
+                            prevCluster.deviceCount(),
+                            edgeSet.size(),
+                            prevCluster.root()));
+        }
+
+        log.debug("Derived topology clusters from {} added and {} removed edges",
+                  added.size(), removed.size());
+        return new Derivation(
+                new ClusterSets(prevSets.vertexes, Collections.unmodifiableList(clusterEdges)),
+                clusterBuilder.build(), prevBroadcastSets, touched);
+    }
+
+    // Indicates whether the destination vertex can be reached from the source
+    // vertex over viable edges without leaving the given vertex set.
+    private boolean isReachable(TopologyVertex src, TopologyVertex dst,
+                                Set<TopologyVertex> vertexes) {
+        Set<TopologyVertex> seen = new HashSet<>();
+        Queue<TopologyVertex> queue = new ArrayDeque<>();
+        seen.add(src);
+        queue.add(src);
+        while (!queue.isEmpty()) {
+            for (TopologyEdge edge : graph.getEdgesFrom(queue.remove())) {
+                TopologyVertex next = edge.dst();
+                if (isViable(edge) && vertexes.contains(next) && seen.add(next)) {
+                    if (next.equals(dst)) {
+                        return true;
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    // Finds all edges of the graph linking vertexes of the given set.
+    private Set<TopologyEdge> findClusterEdges(Set<TopologyVertex> vertexes) {
+        Set<TopologyEdge> edges = new HashSet<>();
+        for (TopologyVertex vertex : vertexes) {
+            for (TopologyEdge edge : graph.getEdgesFrom(vertex)) {
+                if (vertexes.contains(edge.dst())) {
+                    edges.add(edge);
+                }
+            }
+        }
+        return Collections.unmodifiableSet(edges);
+    }
+
+    // Collects the edges which are not viable for cluster computation.
+    private ImmutableSet<TopologyEdge> findNonViableEdges() {
+        ImmutableSet.Builder<TopologyEdge> builder = ImmutableSet.builder();
+        for (TopologyEdge edge : graph.getEdges()) {
+            if (!isViable(edge)) {
+                builder.add(edge);
+            }
+        }
+        return builder.build();
+    }
+
+    // Indicates whether the edge may be traversed when computing clusters.
+    private static boolean isViable(TopologyEdge edge) {
+        return edge.link().state() != INACTIVE && edge.link().type() != INDIRECT;
+    }
+
     // Finds the vertex whose device id is the lexicographical minimum in the
     // specified set.
     private TopologyVertex findRoot(Set<TopologyVertex> vertexSet) {
@@ -682,6 +1016,22 @@ public class DefaultTopology extends AbstractModel implements Topology {
         return builder.build();
     }
 
+    // Rebuilds the broadcast sets of the touched clusters only, reusing the
+    // previous broadcast sets for all other clusters.
+    private ImmutableSetMultimap<ClusterId, ConnectPoint> patchBroadcastSets(
+            ImmutableSetMultimap<ClusterId, ConnectPoint> previous,
+            Set<ClusterId> touchedClusters) {
+        Builder<ClusterId, ConnectPoint> builder = ImmutableSetMultimap.builder();
+        for (TopologyCluster cluster : clusters.get().values()) {
+            if (touchedClusters.contains(cluster.id())) {
+                addClusterBroadcastSet(cluster, builder);
+            } else {
+                builder.putAll(cluster.id(), previous.get(cluster.id()));
+            }
+        }
+        return builder.build();
+    }
+
     // Finds all broadcast points for the cluster. These are those connection
     // points which lie along the shortest paths between the cluster root and
     // all other devices within the cluster.
@@ -744,13 +1094,13 @@ public class DefaultTopology extends AbstractModel implements Topology {
             int i = cluster.id().index();
 
             // Scan through all the cluster vertexes.
-            for (TopologyVertex vertex : clusterResults.get().clusterVertexes().get(i)) {
+            for (TopologyVertex vertex : clusterSets.get().vertexes.get(i)) {
                 devicesBuilder.put(cluster, vertex.deviceId());
                 clusterBuilder.put(vertex.deviceId(), cluster);
             }
 
             // Scan through all the cluster edges.
-            for (TopologyEdge edge : clusterResults.get().clusterEdges().get(i)) {
+            for (TopologyEdge edge : clusterSets.get().edges.get(i)) {
                 linksBuilder.put(cluster, edge.link());
             }
         }
@@ -775,12 +1125,82 @@ public class DefaultTopology extends AbstractModel implements Topology {
             implements LinkWeigher {
         @Override
         public Weight weight(TopologyEdge edge) {
-            return (edge.link().state() == INACTIVE) ||
-                    (edge.link().type() == INDIRECT) ?
+            return !isViable(edge) ?
                     getNonViableWeight() : new ScalarWeight(HOP_WEIGHT_VALUE);
         }
     }
 
+    // Returns true if the weights of the given weigher depend only on the
+    // edges of this topology, so that a tree computed with it stays valid for
+    // the lifetime of the topology. Other weighers may consult external state,
+    // such as resources or annotations, and a weigher equal to a previous one
+    // may yield different weights, so their trees are not cached.
+    private boolean isStateless(LinkWeigher weigher) {
+        return weigher == hopCountWeigher ||
+                weigher.getClass() == HopCountLinkWeigher.class ||
+                weigher.getClass() == NoIndirectLinksWeigher.class;
+    }
+
+    // Key of a cached shortest-path tree.
+    private static final class PathTreeKey {
+        private final TopologyVertex src;
+        private final LinkWeigher weigher;
+
+        PathTreeKey(TopologyVertex src, LinkWeigher weigher) {
+            this.src = src;
+            this.weigher = weigher;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(src, weigher);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof PathTreeKey) {
+                PathTreeKey that = (PathTreeKey) obj;
+                return Objects.equals(this.src, that.src) &&
+                        Objects.equals(this.weigher, that.weigher);
+            }
+            return false;
+        }
+    }
+
+    // Cluster vertex and edge sets; the lists form pairs along the same index.
+    private static final class ClusterSets {
+        final List<Set<TopologyVertex>> vertexes;
+        final List<Set<TopologyEdge>> edges;
+
+        ClusterSets(List<Set<TopologyVertex>> vertexes,
+                    List<Set<TopologyEdge>> edges) {
+            this.vertexes = vertexes;
+            this.edges = edges;
+        }
+    }
+
+    // Clusters derived from the previous topology along with the previous
+    // broadcast sets and the clusters whose broadcast sets need rebuilding.
+    private static final class Derivation {
+        final ClusterSets clusterSets;
+        final ImmutableMap<ClusterId, TopologyCluster> clusters;
+        final ImmutableSetMultimap<ClusterId, ConnectPoint> broadcastSets;
+        final Set<ClusterId> touchedClusters;
+
+        Derivation(ClusterSets clusterSets,
+                   ImmutableMap<ClusterId, TopologyCluster> clusters,
+                   ImmutableSetMultimap<ClusterId, ConnectPoint> broadcastSets,
+                   Set<ClusterId> touchedClusters) {
+            this.clusterSets = clusterSets;
+            this.clusters = clusters;
+            this.broadcastSets = broadcastSets;
+            this.touchedClusters = touchedClusters;
+        }
+    }
+
     static final class ClusterIndexes {
         final ImmutableMap<DeviceId, TopologyCluster> clustersByDevice;
         final ImmutableSetMultimap<TopologyCluster, DeviceId> devicesByCluster;
@@ -35,15 +35,21 @@ import org.onosproject.net.topology.DefaultGraphDescription;
 import org.onosproject.net.topology.DefaultTopologyVertex;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.LinkWeigher;
+import org.onosproject.net.topology.ShortestPathTrees;
 import org.onosproject.net.topology.TopologyCluster;
 import org.onosproject.net.topology.TopologyEdge;
 import org.onosproject.net.topology.TopologyVertex;
 
 import java.util.Set;
+
+import static com.google.common.collect.ImmutableSet.copyOf;
 import static com.google.common.collect.ImmutableSet.of;
 import static org.junit.Assert.*;
+import static org.onosproject.net.Link.State.ACTIVE;
+import static org.onosproject.net.Link.State.INACTIVE;
 import static org.onosproject.net.DeviceId.deviceId;
 import static org.onosproject.net.PortNumber.portNumber;
+import static org.onosproject.net.topology.HopCountLinkWeigher.DEFAULT_HOP_COUNT_WEIGHER;
 
 /**
  * Test of the default topology implementation.
@@ -79,6 +85,7 @@ public class DefaultTopologyTest {
 
 
     private DefaultTopology dt;
+    private Set<Device> devices;
 
     public static final ClusterId C0 = ClusterId.clusterId(0);
     public static final ClusterId C1 = ClusterId.clusterId(1);
@@ -86,7 +93,7 @@ public class DefaultTopologyTest {
     @Before
     public void setUp() {
         long now = System.currentTimeMillis();
-        Set<Device> devices = of(device("1"), device("2"),
+        devices = of(device("1"), device("2"),
                                  device("3"), device("4"),
                                  device("5"));
         Set<Link> links = of(link("1", 1, "2", 1), link("2", 1, "1", 1),
@@ -128,6 +135,74 @@ public class DefaultTopologyTest {
 
     }
 
+    @Test
+    public void cachedPaths() {
+        Set<Path> paths = dt.getPaths(D1, D3);
+        assertEquals("incorrect miss count", 1, dt.pathCacheStats().missCount());
+
+        // The second request admits the tree, after which requests hit.
+        assertEquals("incorrect paths", paths, dt.getPaths(D1, D3));
+        assertEquals("incorrect paths", paths, dt.getPaths(D1, D3));
+        assertEquals("incorrect hit count", 1, dt.pathCacheStats().hitCount());
+
+        assertEquals("incorrect path count", 1, dt.getPaths(D1, D2).size());
+        assertTrue("no paths expected", dt.getPaths(D1, D5).isEmpty());
+        assertEquals("incorrect hit count", 3, dt.pathCacheStats().hitCount());
+
+        // Hop-count weighers are cached separately.
+        assertEquals("incorrect path count", 2, dt.getPaths(D1, D3, DEFAULT_HOP_COUNT_WEIGHER).size());
+        assertEquals("incorrect path count", 2, dt.getPaths(D1, D3, DEFAULT_HOP_COUNT_WEIGHER).size());
+        assertEquals("incorrect path count", 2, dt.getPaths(D1, D3, DEFAULT_HOP_COUNT_WEIGHER).size());
+        assertEquals("incorrect hit count", 4, dt.pathCacheStats().hitCount());
+
+        // Weighers not known to be stateless are never cached.
+        long misses = dt.pathCacheStats().missCount();
+        assertEquals("incorrect path count", 1, dt.getPaths(D1, D3, WEIGHER).size());
+        assertEquals("incorrect path count", 1, dt.getPaths(D1, D3, WEIGHER).size());
+        assertEquals("incorrect path count", 1, dt.getPaths(D1, D3, WEIGHER).size());
+        assertEquals("incorrect hit count", 4, dt.pathCacheStats().hitCount());
+        assertEquals("incorrect miss count", misses, dt.pathCacheStats().missCount());
+    }
+
+    @Test
+    public void shortestPathTrees() {
+        ShortestPathTrees trees = dt.getShortestPathTrees(DEFAULT_HOP_COUNT_WEIGHER);
+        assertSame("incorrect topology", dt, trees.topology());
+        assertEquals("incorrect sources", of(D1, D2, D3, D4, D5), trees.sources());
+
+        for (DeviceId src : trees.sources()) {
+            for (DeviceId dst : trees.sources()) {
+                if (!src.equals(dst)) {
+                    assertEquals("incorrect paths", dt.getPaths(src, dst, DEFAULT_HOP_COUNT_WEIGHER),
+                                 trees.paths(src, dst));
+                }
+            }
+        }
+
+        assertEquals("incorrect cost", ScalarWeight.toWeight(2), trees.cost(D1, D3));
+        assertEquals("incorrect parent count", 2, trees.parents(D1, D3).size());
+        assertTrue("no parents expected", trees.parents(D1, D1).isEmpty());
+        assertNull("no cost expected", trees.cost(D1, D5));
+        assertTrue("no paths expected", trees.paths(D1, D5).isEmpty());
+    }
+
+    @Test
+    public void shortestPathTreesFromPaths() {
+        ShortestPathTrees searched = dt.getShortestPathTrees(DEFAULT_HOP_COUNT_WEIGHER);
+        ShortestPathTrees assembled = ShortestPathTrees.fromPaths(
+                dt, searched.sources(), DEFAULT_HOP_COUNT_WEIGHER.getInitialWeight(),
+                (src, dst) -> dt.getPaths(src, dst, DEFAULT_HOP_COUNT_WEIGHER));
+        assertEquals("incorrect sources", searched.sources(), assembled.sources());
+
+        for (DeviceId src : searched.sources()) {
+            for (DeviceId dst : searched.sources()) {
+                assertEquals("incorrect cost", searched.cost(src, dst), assembled.cost(src, dst));
+                assertEquals("incorrect parents", searched.parents(src, dst), assembled.parents(src, dst));
+                assertEquals("incorrect paths", searched.paths(src, dst), assembled.paths(src, dst));
+            }
+        }
+    }
+
     @Test
     public void pointRelated() {
         assertTrue("should be infrastructure point",
@@ -148,12 +223,108 @@ public class DefaultTopologyTest {
         assertFalse("cluster should not contain D5", devs.contains(D5));
     }
 
+    @Test
+    public void incrementalLinkRemoval() {
+        // D2 remains reachable from D1 via D4 and D3, so no split occurs.
+        DefaultTopology next = topology(dt, link("2", 1, "1", 1),
+                                        link("3", 2, "2", 2), link("2", 2, "3", 2),
+                                        link("1", 3, "4", 3), link("4", 3, "1", 3),
+                                        link("3", 4, "4", 4), link("4", 4, "3", 4));
+        assertTrue("topology should be derived", next.isIncremental());
+        assertEquals("incorrect cluster count", 2, next.clusterCount());
+        assertEquals("incorrect cluster link count", 7,
+                     next.getClusterLinks(next.getCluster(D1)).size());
+        assertSameClusters(next, topology(null, next));
+
+        // Broadcast set of the cluster untouched by the change is reused.
+        assertEquals("incorrect broadcast points", dt.broadcastPoints(C1),
+                     next.broadcastPoints(next.getCluster(D5).id()));
+    }
+
+    @Test
+    public void incrementalLinkStateChange() {
+        DefaultTopology down = topology(dt, link("1", 1, "2", 1, INACTIVE), link("2", 1, "1", 1),
+                                        link("3", 2, "2", 2), link("2", 2, "3", 2),
+                                        link("1", 3, "4", 3), link("4", 3, "1", 3),
+                                        link("3", 4, "4", 4), link("4", 4, "3", 4));
+        assertTrue("topology should be derived", down.isIncremental());
+        assertSameClusters(down, topology(null, down));
+
+        DefaultTopology up = topology(down, link("1", 1, "2", 1, ACTIVE), link("2", 1, "1", 1),
+                                      link("3", 2, "2", 2), link("2", 2, "3", 2),
+                                      link("1", 3, "4", 3), link("4", 3, "1", 3),
+                                      link("3", 4, "4", 4), link("4", 4, "3", 4));
+        assertTrue("topology should be derived", up.isIncremental());
+        assertSameClusters(up, topology(null, up));
+        assertEquals("incorrect broadcast set size", 6,
+                     up.broadcastSetSize(up.getCluster(D1).id()));
+    }
+
+    @Test
+    public void clusterSplitFallsBack() {
+        // Removing all links of D4 isolates it into a cluster of its own.
+        DefaultTopology next = topology(dt, link("1", 1, "2", 1), link("2", 1, "1", 1),
+                                        link("3", 2, "2", 2), link("2", 2, "3", 2));
+        assertFalse("topology should be recomputed", next.isIncremental());
+        assertEquals("incorrect cluster count", 3, next.clusterCount());
+    }
+
+    @Test
+    public void clusterMergeFallsBack() {
+        DefaultTopology next = topology(dt, link("1", 1, "2", 1), link("2", 1, "1", 1),
+                                        link("3", 2, "2", 2), link("2", 2, "3", 2),
+                                        link("1", 3, "4", 3), link("4", 3, "1", 3),
+                                        link("3", 4, "4", 4), link("4", 4, "3", 4),
+                                        link("4", 5, "5", 5), link("5", 5, "4", 5));
+        assertFalse("topology should be recomputed", next.isIncremental());
+        assertEquals("incorrect cluster count", 1, next.clusterCount());
+    }
+
+    // Creates a topology over the test devices with the given links.
+    private DefaultTopology topology(DefaultTopology previous, Link... links) {
+        GraphDescription description =
+                new DefaultGraphDescription(System.nanoTime(), System.currentTimeMillis(),
+                                            devices, copyOf(links));
+        DefaultTopology topology = new DefaultTopology(PID, description, null, previous);
+        topology.getClusters();
+        return topology;
+    }
+
+    // Creates a topology over the test devices with the links of the given one.
+    private DefaultTopology topology(DefaultTopology previous, DefaultTopology source) {
+        return topology(previous, source.getGraph().getEdges().stream()
+                .map(TopologyEdge::link).toArray(Link[]::new));
+    }
+
+    // Asserts that both topologies partition the devices and links alike.
+    private static void assertSameClusters(DefaultTopology actual,
+                                           DefaultTopology expected) {
+        assertEquals("incorrect cluster count",
+                     expected.clusterCount(), actual.clusterCount());
+        for (TopologyCluster cluster : expected.getClusters()) {
+            TopologyCluster other = actual.getCluster(cluster.root().deviceId());
+            assertEquals("incorrect root node", cluster.root(), other.root());
+            assertEquals("incorrect cluster devices",
+                         expected.getClusterDevices(cluster),
+                         actual.getClusterDevices(other));
+            assertEquals("incorrect cluster links",
+                         expected.getClusterLinks(cluster),
+                         actual.getClusterLinks(other));
+        }
+    }
+
     // Short-hand for creating a link.
     public static Link link(String src, int sp, String dst, int dp) {
+        return link(src, sp, dst, dp, ACTIVE);
+    }
+
+    // Short-hand for creating a link in the given state.
+    public static Link link(String src, int sp, String dst, int dp, Link.State state) {
         return DefaultLink.builder().providerId(PID)
                 .src(new ConnectPoint(did(src), portNumber(sp)))
                 .dst(new ConnectPoint(did(dst), portNumber(dp)))
                 .type(Link.Type.DIRECT)
+                .state(state)
                 .build();
     }
 
@@ -64,7 +64,6 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.onosproject.net.flow.FlowRuleEvent.Type.RULE_REMOVED;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -89,14 +88,12 @@ public class SimpleFlowRuleStore
     private final ConcurrentMap<DeviceId, List<TableStatisticsEntry>>
             deviceTableStats = new ConcurrentHashMap<>();
 
-    private final AtomicInteger localBatchIdGen = new AtomicInteger();
-
     private static final int DEFAULT_PENDING_FUTURE_TIMEOUT_MINUTES = 5;
     @Property(name = "pendingFutureTimeoutMinutes", intValue = DEFAULT_PENDING_FUTURE_TIMEOUT_MINUTES,
             label = "Expiration time after an entry is created that it should be automatically removed")
     private int pendingFutureTimeoutMinutes = DEFAULT_PENDING_FUTURE_TIMEOUT_MINUTES;
 
-    private Cache<Integer, SettableFuture<CompletedBatchOperation>> pendingFutures =
+    private Cache<Long, SettableFuture<CompletedBatchOperation>> pendingFutures =
             CacheBuilder.newBuilder()
                 .expireAfterWrite(pendingFutureTimeoutMinutes, TimeUnit.MINUTES)
                 .removalListener(new TimeoutFuture())
@@ -120,7 +117,7 @@ public class SimpleFlowRuleStore
         readComponentConfiguration(context);
 
         // Reset Cache and copy all.
-        Cache<Integer, SettableFuture<CompletedBatchOperation>> prevFutures = pendingFutures;
+        Cache<Long, SettableFuture<CompletedBatchOperation>> prevFutures = pendingFutures;
         pendingFutures = CacheBuilder.newBuilder()
                 .expireAfterWrite(pendingFutureTimeoutMinutes, TimeUnit.MINUTES)
                 .removalListener(new TimeoutFuture())
@@ -141,6 +138,15 @@ public class SimpleFlowRuleStore
         return sum;
     }
 
+    @Override
+    public int getFlowRuleCount(DeviceId deviceId) {
+        int sum = 0;
+        for (List<StoredFlowEntry> fes : getFlowTable(deviceId).values()) {
+            sum += fes.size();
+        }
+        return sum;
+    }
+
     /**
      * Extracts properties from the component configuration context.
      *
@@ -261,6 +267,7 @@ public class SimpleFlowRuleStore
                         stored.setBytes(rule.bytes());
                         stored.setLife(rule.life());
                         stored.setPackets(rule.packets());
+                        stored.setLastSeen();
                         if (stored.state() == FlowEntryState.PENDING_ADD) {
                             stored.setState(FlowEntryState.ADDED);
                             // TODO: Do we need to change `rule` state?
@@ -353,7 +360,7 @@ public class SimpleFlowRuleStore
         }
 
         SettableFuture<CompletedBatchOperation> r = SettableFuture.create();
-        final int batchId = localBatchIdGen.incrementAndGet();
+        final long batchId = operation.id();
 
         pendingFutures.put(batchId, r);
 
@@ -399,9 +406,9 @@ public class SimpleFlowRuleStore
     }
 
     private static final class TimeoutFuture
-            implements RemovalListener<Integer, SettableFuture<CompletedBatchOperation>> {
+            implements RemovalListener<Long, SettableFuture<CompletedBatchOperation>> {
         @Override
-        public void onRemoval(RemovalNotification<Integer, SettableFuture<CompletedBatchOperation>> notification) {
+        public void onRemoval(RemovalNotification<Long, SettableFuture<CompletedBatchOperation>> notification) {
             // wrapping in ExecutionException to support Future.get
             if (notification.wasEvicted()) {
                 notification.getValue()
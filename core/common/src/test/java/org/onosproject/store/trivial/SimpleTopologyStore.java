@@ -31,6 +31,7 @@ import org.onosproject.net.topology.ClusterId;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.LinkWeigher;
 import org.onosproject.net.topology.LinkWeight;
+import org.onosproject.net.topology.ShortestPathTrees;
 import org.onosproject.net.topology.Topology;
 import org.onosproject.net.topology.TopologyCluster;
 import org.onosproject.net.topology.TopologyEvent;
@@ -123,6 +124,11 @@ public class SimpleTopologyStore
         return defaultTopology(topology).getPaths(src, dst, weigher);
     }
 
+    @Override
+    public ShortestPathTrees getShortestPathTrees(Topology topology, LinkWeigher weigher) {
+        return defaultTopology(topology).getShortestPathTrees(weigher);
+    }
+
     @Override
     public Set<DisjointPath> getDisjointPaths(Topology topology, DeviceId src, DeviceId dst) {
         return defaultTopology(topology).getDisjointPaths(src, dst);
@@ -15,6 +15,8 @@
  */
 package org.onosproject.net.flow.impl;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -29,6 +31,9 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
@@ -67,7 +72,9 @@ import org.onosproject.net.provider.ProviderId;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Dictionary;
 import java.util.HashSet;
 import java.util.List;
@@ -77,6 +84,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -119,6 +129,19 @@ public class FlowRuleManager
             label = "Frequency (in seconds) for polling flow statistics via fallback provider")
     private int fallbackFlowPollFrequency = DEFAULT_POLL_FREQUENCY;
 
+    private static final boolean DEFAULT_PIPELINE_FLOW_OPERATIONS = false;
+    @Property(name = "pipelineFlowOperations", boolValue = DEFAULT_PIPELINE_FLOW_OPERATIONS,
+            label = "Advance the stages of flow rule operations per device instead of across all devices")
+    private boolean pipelineFlowOperations = DEFAULT_PIPELINE_FLOW_OPERATIONS;
+
+    private static final int DEFAULT_DEVICE_BATCH_TIMEOUT = 15000;
+    @Property(name = "deviceBatchTimeout", intValue = DEFAULT_DEVICE_BATCH_TIMEOUT,
+            label = "Delay in ms after which a pipelined device batch is considered failed; 0 to disable")
+    private int deviceBatchTimeout = DEFAULT_DEVICE_BATCH_TIMEOUT;
+
+    private static final String METRICS_COMPONENT = "FlowRuleManager";
+    private static final String INSTALL_LATENCY_FEATURE = "batchInstallLatency";
+
     private final FlowRuleStoreDelegate delegate = new InternalStoreDelegate();
     private final DeviceListener deviceListener = new InternalDeviceListener();
 
@@ -130,9 +153,15 @@ public class FlowRuleManager
     protected ExecutorService operationsService =
             Executors.newFixedThreadPool(32, groupedThreads("onos/flowservice", "operations-%d", log));
 
+    private final ScheduledExecutorService batchTimer =
+            Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/flowservice", "batch-timer", log));
+
     private IdGenerator idGenerator;
 
-    private final Map<Long, FlowOperationsProcessor> pendingFlowOperations = new ConcurrentHashMap<>();
+    private final Map<Long, BatchCompletionListener> pendingFlowOperations = new ConcurrentHashMap<>();
+
+    // device batch install latency in microseconds
+    private final Map<DeviceId, Histogram> installLatencies = new ConcurrentHashMap<>();
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected FlowRuleStore store;
@@ -152,6 +181,9 @@ public class FlowRuleManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DriverService driverService;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY)
+    protected MetricsService metricsService;
+
     @Activate
     public void activate(ComponentContext context) {
         modified(context);
@@ -169,6 +201,7 @@ public class FlowRuleManager
         cfgService.unregisterProperties(getClass(), false);
         deviceInstallers.shutdownNow();
         operationsService.shutdownNow();
+        batchTimer.shutdownNow();
         store.unsetDelegate(delegate);
         eventDispatcher.removeSink(FlowRuleEvent.class);
         log.info("Stopped");
@@ -217,12 +250,29 @@ public class FlowRuleManager
                     purgeOnDisconnection ? "enabled" : "disabled");
         }
 
+        flag = Tools.isPropertyEnabled(properties, "pipelineFlowOperations");
+        if (flag == null) {
+            log.info("PipelineFlowOperations is not configured, " +
+                    "using current value of {}", pipelineFlowOperations);
+        } else {
+            pipelineFlowOperations = flag;
+            log.info("Configured. PipelineFlowOperations is {}",
+                    pipelineFlowOperations ? "enabled" : "disabled");
+        }
+
         String s = get(properties, "fallbackFlowPollFrequency");
         try {
             fallbackFlowPollFrequency = isNullOrEmpty(s) ? DEFAULT_POLL_FREQUENCY : Integer.parseInt(s);
         } catch (NumberFormatException e) {
             fallbackFlowPollFrequency = DEFAULT_POLL_FREQUENCY;
         }
+
+        s = get(properties, "deviceBatchTimeout");
+        try {
+            deviceBatchTimeout = isNullOrEmpty(s) ? DEFAULT_DEVICE_BATCH_TIMEOUT : Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            deviceBatchTimeout = DEFAULT_DEVICE_BATCH_TIMEOUT;
+        }
     }
 
     @Override
@@ -321,7 +371,46 @@ public class FlowRuleManager
     @Override
     public void apply(FlowRuleOperations ops) {
         checkPermission(FLOWRULE_WRITE);
-        operationsService.execute(new FlowOperationsProcessor(ops));
+        operationsService.execute(pipelineFlowOperations ?
+                                          new PipelinedFlowOperationsProcessor(ops) :
+                                          new FlowOperationsProcessor(ops));
+    }
+
+    /**
+     * Returns the histogram of batch install latencies of a device, in
+     * microseconds.
+     *
+     * @param deviceId device identifier
+     * @return install latency histogram
+     */
+    public Histogram getInstallLatency(DeviceId deviceId) {
+        checkPermission(FLOWRULE_READ);
+        return installLatency(deviceId);
+    }
+
+    private Histogram installLatency(DeviceId deviceId) {
+        return installLatencies.computeIfAbsent(deviceId, id -> {
+            MetricsService metrics = metricsService;
+            if (metrics == null) {
+                return new Histogram(new UniformReservoir());
+            }
+            MetricsComponent component = metrics.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(INSTALL_LATENCY_FEATURE);
+            return metrics.createHistogram(component, feature, id.toString());
+        });
+    }
+
+    private void removeInstallLatency(DeviceId deviceId) {
+        MetricsService metrics = metricsService;
+        if (installLatencies.remove(deviceId) != null && metrics != null) {
+            MetricsComponent component = metrics.registerComponent(METRICS_COMPONENT);
+            MetricsFeature feature = component.registerFeature(INSTALL_LATENCY_FEATURE);
+            metrics.removeMetric(component, feature, deviceId.toString());
+        }
+    }
+
+    private void recordInstallLatency(DeviceId deviceId, long startNanos) {
+        installLatency(deviceId).update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
     }
 
     @Override
@@ -441,10 +530,23 @@ public class FlowRuleManager
         }
 
         private void flowAdded(FlowEntry flowEntry) {
+            checkNotNull(flowEntry, FLOW_RULE_NULL);
+            flowAdded(flowEntry, store.getFlowEntry(flowEntry));
+        }
+
+        /**
+         * Updates the stored rule from the one reported by the device, or
+         * removes it when it has expired.
+         *
+         * @param flowEntry  rule reported by the device
+         * @param storedRule matching stored rule, or null if there is none
+         * @return true if the stored rule was updated, false if it was removed
+         */
+        private boolean flowAdded(FlowEntry flowEntry, FlowEntry storedRule) {
             checkNotNull(flowEntry, FLOW_RULE_NULL);
             checkValidity();
 
-            if (checkRuleLiveness(flowEntry, store.getFlowEntry(flowEntry))) {
+            if (checkRuleLiveness(flowEntry, storedRule)) {
                 FlowRuleEvent event = store.addOrUpdateFlowRule(flowEntry);
                 if (event == null) {
                     log.debug("No flow store event generated.");
@@ -452,9 +554,11 @@ public class FlowRuleManager
                     log.trace("Flow {} {}", flowEntry, event.type());
                     post(event);
                 }
+                return true;
             } else {
                 log.debug("Removing flow rules....");
                 removeFlowRules(flowEntry);
+                return false;
             }
         }
 
@@ -511,6 +615,12 @@ public class FlowRuleManager
 
         private void pushFlowMetricsInternal(DeviceId deviceId, Iterable<FlowEntry> flowEntries,
                                              boolean useMissingFlow) {
+            if (mastershipService.isLocalMaster(deviceId)) {
+                reconcileInPlace(deviceId, flowEntries, useMissingFlow);
+                return;
+            }
+
+            // the store is remote; fetch the device's entries once rather than per rule
             Map<FlowEntry, FlowEntry> storedRules = Maps.newHashMap();
             store.getFlowEntries(deviceId).forEach(f -> storedRules.put(f, f));
 
@@ -552,6 +662,92 @@ public class FlowRuleManager
             }
         }
 
+        /**
+         * Reconciles the rules reported by a device against the local store
+         * index without copying the stored entries. Rules the store updates
+         * are marked by their last-seen time; the stored entries are only
+         * swept for unmarked rules when fewer distinct stored rules were
+         * reported than the store holds.
+         *
+         * @param deviceId       device identifier
+         * @param flowEntries    rules reported by the device
+         * @param useMissingFlow whether stored rules missing on the device are reinstalled
+         */
+        private void reconcileInPlace(DeviceId deviceId, Iterable<FlowEntry> flowEntries,
+                                      boolean useMissingFlow) {
+            // rules the store updates from here on are stamped no earlier than pollStart
+            long pollStart = useMissingFlow ? nextMillis() : Long.MAX_VALUE;
+            int storedCount = useMissingFlow ? store.getFlowRuleCount(deviceId) : 0;
+            int matched = 0;
+            // matched rules the store did not mark; expected to be rare
+            List<FlowEntry> unmarked = Lists.newArrayList();
+
+            for (FlowEntry rule : flowEntries) {
+                try {
+                    FlowEntry storedRule = store.getFlowEntry(rule);
+                    if (storedRule != null) {
+                        if (storedRule.lastSeen() >= pollStart || unmarked.contains(storedRule)) {
+                            // reported more than once; already reconciled in this poll
+                            continue;
+                        }
+                        matched++;
+                        if (storedRule.exactMatch(rule)) {
+                            // we both have the rule, let's update some info then.
+                            if (!flowAdded(rule, storedRule)) {
+                                unmarked.add(storedRule);
+                            }
+                        } else {
+                            // the two rules are not an exact match - remove the
+                            // switch's rule and install our rule
+                            extraneousFlow(rule);
+                            flowMissing(storedRule);
+                            unmarked.add(storedRule);
+                        }
+                    } else {
+                        // the device has a rule the store does not have
+                        if (!allowExtraneousRules) {
+                            extraneousFlow(rule);
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warn("Can't process added or extra rule {}", e);
+                }
+            }
+
+            // DO NOT reinstall
+            if (!useMissingFlow || matched == storedCount) {
+                return;
+            }
+            for (FlowEntry rule : store.getFlowEntries(deviceId)) {
+                if (rule.lastSeen() >= pollStart || unmarked.contains(rule)) {
+                    continue;
+                }
+                try {
+                    // there are rules in the store that aren't on the switch
+                    log.debug("Adding rule in store, but not on switch {}", rule);
+                    flowMissing(rule);
+                } catch (Exception e) {
+                    log.warn("Can't add missing flow rule:", e);
+                }
+            }
+        }
+
+        /**
+         * Waits for the wall clock to move past the current millisecond, so
+         * that last-seen stamps taken afterwards are all later than the ones
+         * taken before.
+         *
+         * @return the new current time in milliseconds
+         */
+        private long nextMillis() {
+            long now = System.currentTimeMillis();
+            long next;
+            while ((next = System.currentTimeMillis()) == now) {
+                Thread.yield();
+            }
+            return next;
+        }
+
         @Override
         public void batchOperationCompleted(long batchId, CompletedBatchOperation operation) {
             store.batchOperationComplete(FlowRuleBatchEvent.completed(
@@ -609,12 +805,14 @@ public class FlowRuleManager
 
             case BATCH_OPERATION_COMPLETED:
 
-                FlowOperationsProcessor fops = pendingFlowOperations.remove(
+                BatchCompletionListener fops = pendingFlowOperations.remove(
                         event.subject().batchId());
+                if (fops == null) {
+                    // not ours, or completed after the batch timed out
+                    break;
+                }
                 if (event.result().isSuccess()) {
-                    if (fops != null) {
-                        fops.satisfy(event.deviceId());
-                    }
+                    fops.satisfy(event.deviceId());
                 } else {
                     fops.fail(event.deviceId(), event.result().failedItems());
                 }
@@ -640,13 +838,33 @@ public class FlowRuleManager
         }
     }
 
-    private class FlowOperationsProcessor implements Runnable {
+    private static Multimap<DeviceId, FlowRuleBatchEntry> perDeviceBatches(Set<FlowRuleOperation> ops) {
+        Multimap<DeviceId, FlowRuleBatchEntry> perDeviceBatches = ArrayListMultimap.create();
+        for (FlowRuleOperation op : ops) {
+            perDeviceBatches.put(op.rule().deviceId(),
+                    new FlowRuleBatchEntry(mapOperationType(op.type()), op.rule()));
+        }
+        return perDeviceBatches;
+    }
+
+    /**
+     * Receives the outcome of the device batches of a flow rule operations request.
+     */
+    private interface BatchCompletionListener {
+
+        void satisfy(DeviceId devId);
+
+        void fail(DeviceId devId, Set<? extends FlowRule> failures);
+    }
+
+    private class FlowOperationsProcessor implements Runnable, BatchCompletionListener {
         // Immutable
         private final FlowRuleOperations fops;
 
         // Mutable
         private final List<Set<FlowRuleOperation>> stages;
         private final Set<DeviceId> pendingDevices = new HashSet<>();
+        private final Map<DeviceId, Long> startTimes = Maps.newHashMap();
         private boolean hasFailed = false;
 
         FlowOperationsProcessor(FlowRuleOperations ops) {
@@ -664,12 +882,7 @@ public class FlowRuleManager
         }
 
         private void process(Set<FlowRuleOperation> ops) {
-            Multimap<DeviceId, FlowRuleBatchEntry> perDeviceBatches = ArrayListMultimap.create();
-
-            for (FlowRuleOperation op : ops) {
-                perDeviceBatches.put(op.rule().deviceId(),
-                        new FlowRuleBatchEntry(mapOperationType(op.type()), op.rule()));
-            }
+            Multimap<DeviceId, FlowRuleBatchEntry> perDeviceBatches = perDeviceBatches(ops);
             pendingDevices.addAll(perDeviceBatches.keySet());
 
             for (DeviceId deviceId : perDeviceBatches.keySet()) {
@@ -677,20 +890,31 @@ public class FlowRuleManager
                 final FlowRuleBatchOperation b = new FlowRuleBatchOperation(perDeviceBatches.get(deviceId),
                                                deviceId, id);
                 pendingFlowOperations.put(id, this);
+                startTimes.put(deviceId, System.nanoTime());
                 deviceInstallers.execute(() -> store.storeBatch(b));
             }
         }
 
-        synchronized void satisfy(DeviceId devId) {
+        private void completed(DeviceId devId) {
             pendingDevices.remove(devId);
+            Long start = startTimes.remove(devId);
+            if (start != null) {
+                recordInstallLatency(devId, start);
+            }
+        }
+
+        @Override
+        public synchronized void satisfy(DeviceId devId) {
+            completed(devId);
             if (pendingDevices.isEmpty()) {
                 operationsService.execute(this);
             }
         }
 
-        synchronized void fail(DeviceId devId, Set<? extends FlowRule> failures) {
+        @Override
+        public synchronized void fail(DeviceId devId, Set<? extends FlowRule> failures) {
             hasFailed = true;
-            pendingDevices.remove(devId);
+            completed(devId);
             if (pendingDevices.isEmpty()) {
                 operationsService.execute(this);
             }
@@ -702,6 +926,143 @@ public class FlowRuleManager
         }
     }
 
+    /**
+     * Processes flow rule operations with a stage barrier per device rather
+     * than across all devices: a device starts its next stage as soon as its
+     * own batch of the previous stage completes, so a slow device only holds
+     * back its own rules.
+     */
+    private class PipelinedFlowOperationsProcessor implements Runnable, BatchCompletionListener {
+        // Immutable
+        private final FlowRuleOperations fops;
+
+        // Mutable
+        private final Map<DeviceId, Deque<List<FlowRuleBatchEntry>>> deviceStages = Maps.newHashMap();
+        private final Map<DeviceId, InFlightBatch> inFlight = Maps.newHashMap();
+        private boolean hasFailed = false;
+        private boolean done = false;
+
+        PipelinedFlowOperationsProcessor(FlowRuleOperations ops) {
+            this.fops = ops;
+            for (Set<FlowRuleOperation> stage : ops.stages()) {
+                perDeviceBatches(stage).asMap().forEach(
+                        (deviceId, entries) -> deviceStages.computeIfAbsent(deviceId, id -> new ArrayDeque<>())
+                                .add(Lists.newArrayList(entries)));
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            if (deviceStages.isEmpty()) {
+                complete();
+                return;
+            }
+            Lists.newArrayList(deviceStages.keySet()).forEach(this::submitNext);
+        }
+
+        private void submitNext(DeviceId deviceId) {
+            Deque<List<FlowRuleBatchEntry>> stages = deviceStages.get(deviceId);
+            List<FlowRuleBatchEntry> next = stages == null ? null : stages.poll();
+            if (next == null) {
+                deviceStages.remove(deviceId);
+                if (deviceStages.isEmpty()) {
+                    complete();
+                }
+                return;
+            }
+
+            long id = idGenerator.getNewId();
+            final FlowRuleBatchOperation b = new FlowRuleBatchOperation(next, deviceId, id);
+            ScheduledFuture<?> timeout = deviceBatchTimeout <= 0 ? null :
+                    batchTimer.schedule(() -> timeout(b), deviceBatchTimeout, TimeUnit.MILLISECONDS);
+            inFlight.put(deviceId, new InFlightBatch(System.nanoTime(), timeout));
+            pendingFlowOperations.put(id, this);
+            deviceInstallers.execute(() -> store.storeBatch(b));
+        }
+
+        private synchronized void advance(DeviceId deviceId) {
+            submitNext(deviceId);
+        }
+
+        private void timeout(FlowRuleBatchOperation batch) {
+            // whoever removes the pending batch first owns its outcome
+            if (pendingFlowOperations.remove(batch.id(), this)) {
+                log.warn("Flow rule batch {} timed out on {}", batch.id(), batch.deviceId());
+                abandon(batch);
+            }
+        }
+
+        /*
+         * The timed-out batch may still be applied by the device, so its later
+         * stages cannot be ordered after it; they are failed along with it.
+         */
+        private synchronized void abandon(FlowRuleBatchOperation batch) {
+            DeviceId devId = batch.deviceId();
+            hasFailed = true;
+            completed(devId);
+
+            FlowRuleOperations.Builder failedOpsBuilder = FlowRuleOperations.builder();
+            batch.getOperations().forEach(e -> failedOpsBuilder.add(e.target()));
+            Deque<List<FlowRuleBatchEntry>> remaining = deviceStages.remove(devId);
+            if (remaining != null) {
+                remaining.forEach(stage -> stage.forEach(e -> failedOpsBuilder.add(e.target())));
+            }
+            fops.callback().onError(failedOpsBuilder.build());
+
+            if (deviceStages.isEmpty()) {
+                complete();
+            }
+        }
+
+        private void completed(DeviceId devId) {
+            InFlightBatch batch = inFlight.remove(devId);
+            if (batch != null) {
+                if (batch.timeout != null) {
+                    batch.timeout.cancel(false);
+                }
+                recordInstallLatency(devId, batch.startNanos);
+            }
+        }
+
+        private void complete() {
+            if (!done) {
+                done = true;
+                if (!hasFailed) {
+                    fops.callback().onSuccess(fops);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void satisfy(DeviceId devId) {
+            completed(devId);
+            operationsService.execute(() -> advance(devId));
+        }
+
+        @Override
+        public synchronized void fail(DeviceId devId, Set<? extends FlowRule> failures) {
+            hasFailed = true;
+            completed(devId);
+
+            FlowRuleOperations.Builder failedOpsBuilder = FlowRuleOperations.builder();
+            failures.forEach(failedOpsBuilder::add);
+            fops.callback().onError(failedOpsBuilder.build());
+
+            // as with the global barrier, later stages still run after a failure
+            operationsService.execute(() -> advance(devId));
+        }
+    }
+
+    private static final class InFlightBatch {
+        private final long startNanos;
+        private final ScheduledFuture<?> timeout;
+
+        private InFlightBatch(long startNanos, ScheduledFuture<?> timeout) {
+            this.startNanos = startNanos;
+            this.timeout = timeout;
+        }
+    }
+
     @Override
     public Iterable<TableStatisticsEntry> getFlowTableStatistics(DeviceId deviceId) {
         checkPermission(FLOWRULE_READ);
@@ -725,6 +1086,9 @@ public class FlowRuleManager
                             store.purgeFlowRule(deviceId);
                         }
                     }
+                    if (event.type() == DeviceEvent.Type.DEVICE_REMOVED) {
+                        removeInstallLatency(deviceId);
+                    }
                     break;
                 default:
                     break;
@@ -15,6 +15,8 @@
  */
 package org.onosproject.net.intent.impl;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -68,9 +70,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -116,6 +122,12 @@ public class IntentManager
             label = "Number of worker threads")
     private int numThreads = DEFAULT_NUM_THREADS;
 
+    private static final int DEFAULT_NUM_BATCH_PARTITIONS = 1;
+    @Property(name = "numBatchPartitions",
+            intValue = DEFAULT_NUM_BATCH_PARTITIONS,
+            label = "Number of intent batches processed concurrently, partitioned by intent key")
+    private int numBatchPartitions = DEFAULT_NUM_BATCH_PARTITIONS;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
@@ -146,7 +158,6 @@ public class IntentManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private NetworkConfigService networkConfigService;
 
-    private ExecutorService batchExecutor;
     private ExecutorService workerExecutor;
 
     private final CompilerRegistry compilerRegistry = new CompilerRegistry();
@@ -155,15 +166,18 @@ public class IntentManager
     private final IntentStoreDelegate delegate = new InternalStoreDelegate();
     private final IntentStoreDelegate testOnlyDelegate = new TestOnlyIntentStoreDelegate();
     private final TopologyChangeDelegate topoDelegate = new InternalTopoChangeDelegate();
-    private final IntentBatchDelegate batchDelegate = new InternalBatchDelegate();
     private InstallCoordinator installCoordinator;
     private IdGenerator idGenerator;
 
-    private final IntentAccumulator accumulator = new IntentAccumulator(batchDelegate);
+    // pending operations of a key always go to the same partition
+    private volatile List<BatchPartition> batchPartitions = ImmutableList.of();
+    // retired partitions still finishing the operations they accumulated
+    private final Set<BatchPartition> drainingPartitions = Sets.newConcurrentHashSet();
 
     @Activate
     public void activate() {
         configService.registerProperties(getClass());
+        batchPartitions = createBatchPartitions(numBatchPartitions, CompletableFuture.completedFuture(null));
         if (skipReleaseResourcesOnWithdrawal) {
             store.setDelegate(testOnlyDelegate);
         } else {
@@ -171,7 +185,6 @@ public class IntentManager
         }
         trackerService.setDelegate(topoDelegate);
         eventDispatcher.addSink(IntentEvent.class, listenerRegistry);
-        batchExecutor = newSingleThreadExecutor(groupedThreads("onos/intent", "batch", log));
         workerExecutor = newFixedThreadPool(numThreads, groupedThreads("onos/intent", "worker-%d", log));
         idGenerator = coreService.getIdGenerator("intent-ids");
         Intent.unbindIdGenerator(idGenerator);
@@ -190,7 +203,11 @@ public class IntentManager
         configService.unregisterProperties(getClass(), false);
         trackerService.unsetDelegate(topoDelegate);
         eventDispatcher.removeSink(IntentEvent.class);
-        batchExecutor.shutdown();
+        List<BatchPartition> partitions = batchPartitions;
+        batchPartitions = ImmutableList.of();
+        partitions.forEach(BatchPartition::stop);
+        drainingPartitions.forEach(BatchPartition::stop);
+        drainingPartitions.clear();
         workerExecutor.shutdown();
         Intent.unbindIdGenerator(idGenerator);
         log.info("Stopped");
@@ -229,10 +246,41 @@ public class IntentManager
             }
             logConfig("Reconfigured number of worker threads");
         }
+
+        s = Tools.get(context.getProperties(), "numBatchPartitions");
+        int newNumBatchPartitions = isNullOrEmpty(s) ? numBatchPartitions : Integer.parseInt(s);
+        if (newNumBatchPartitions != numBatchPartitions && newNumBatchPartitions > 0) {
+            numBatchPartitions = newNumBatchPartitions;
+            List<BatchPartition> oldPartitions = batchPartitions;
+            drainingPartitions.addAll(oldPartitions);
+            // the new partitions hold their batches until the old ones have
+            // finished theirs, so the operations of a key stay in order
+            CompletableFuture<Void> drained = CompletableFuture.allOf(oldPartitions.stream()
+                    .map(BatchPartition::retire)
+                    .toArray(CompletableFuture[]::new));
+            batchPartitions = createBatchPartitions(numBatchPartitions, drained);
+            logConfig("Reconfigured number of batch partitions");
+        }
+    }
+
+    private List<BatchPartition> createBatchPartitions(int count, CompletableFuture<Void> predecessors) {
+        return IntStream.range(0, count)
+                .mapToObj(index -> new BatchPartition(index, predecessors))
+                .collect(Collectors.collectingAndThen(Collectors.toList(), ImmutableList::copyOf));
+    }
+
+    private void accumulate(IntentData data) {
+        List<BatchPartition> partitions = batchPartitions;
+        if (partitions.isEmpty()) {
+            log.debug("Dropping {} of {}; intent manager is stopped", data.request(), data.key());
+            return;
+        }
+        partitions.get(Math.floorMod(data.key().hashCode(), partitions.size())).add(data);
     }
 
     private void logConfig(String prefix) {
-        log.info("{} with skipReleaseResourcesOnWithdrawal = {}", prefix, skipReleaseResourcesOnWithdrawal);
+        log.info("{} with skipReleaseResourcesOnWithdrawal = {}; numThreads = {}; numBatchPartitions = {}",
+                 prefix, skipReleaseResourcesOnWithdrawal, numThreads, numBatchPartitions);
     }
 
     @Override
@@ -393,7 +441,7 @@ public class IntentManager
 
         @Override
         public void process(IntentData data) {
-            accumulator.add(data);
+            accumulate(data);
         }
 
         @Override
@@ -444,7 +492,7 @@ public class IntentManager
     private class TestOnlyIntentStoreDelegate implements IntentStoreDelegate {
         @Override
         public void process(IntentData data) {
-            accumulator.add(data);
+            accumulate(data);
         }
 
         @Override
@@ -501,13 +549,96 @@ public class IntentManager
         }
     }
 
-    private class InternalBatchDelegate implements IntentBatchDelegate {
+    /**
+     * Accumulates and processes the operations of a subset of the intent keys.
+     * Each partition runs at most one batch at a time, which keeps the
+     * operations of a key in order while batches of different partitions
+     * are compiled and installed concurrently.
+     */
+    private class BatchPartition implements IntentBatchDelegate {
+        private final ExecutorService batchExecutor;
+        private final IntentAccumulator accumulator;
+        private final CompletableFuture<Void> predecessors;
+        private final CompletableFuture<Void> drained = new CompletableFuture<>();
+        // operations added but not yet handed to a batch
+        private final AtomicInteger queued = new AtomicInteger();
+        private volatile boolean retired;
+        private volatile boolean stopped;
+
+        BatchPartition(int index, CompletableFuture<Void> predecessors) {
+            this.predecessors = predecessors;
+            batchExecutor = newSingleThreadExecutor(groupedThreads("onos/intent", "batch-" + index, log));
+            accumulator = new IntentAccumulator(this) {
+                @Override
+                public void processItems(List<IntentData> items) {
+                    queued.addAndGet(-items.size());
+                    super.processItems(items);
+                }
+            };
+        }
+
+        void add(IntentData data) {
+            queued.incrementAndGet();
+            accumulator.add(data);
+        }
+
+        /**
+         * Stops taking new operations from the manager and lets the ones
+         * already accumulated run to completion.
+         *
+         * @return future completed once the partition has drained
+         */
+        CompletableFuture<Void> retire() {
+            retired = true;
+            checkDrained();
+            return drained;
+        }
+
+        /**
+         * Stops the partition at once, dropping its pending operations.
+         */
+        void stop() {
+            stopped = true;
+            batchExecutor.shutdownNow();
+            drained.complete(null);
+        }
+
+        private void checkDrained() {
+            if (retired && queued.get() == 0 && accumulator.isReady() && !drained.isDone()) {
+                batchExecutor.shutdown();
+                drainingPartitions.remove(this);
+                drained.complete(null);
+            }
+        }
+
         @Override
         public void execute(Collection<IntentData> operations) {
+            if (stopped) {
+                log.debug("Dropping {} operation(s); intent manager is stopped", operations.size());
+                return;
+            }
+            if (!predecessors.isDone()) {
+                predecessors.thenRun(() -> execute(operations));
+                return;
+            }
+            try {
+                process(operations);
+            } catch (RejectedExecutionException e) {
+                // added after the partition drained
+                handOver(operations);
+            }
+        }
+
+        private void handOver(Collection<IntentData> operations) {
+            operations.forEach(IntentManager.this::accumulate);
+            accumulator.ready();
+        }
+
+        private void process(Collection<IntentData> operations) {
             log.debug("Execute {} operation(s).", operations.size());
             log.trace("Execute operations: {}", operations);
 
-            // batchExecutor is single-threaded, so only one batch is in flight at a time
+            // batchExecutor is single-threaded, so only one batch per partition is in flight at a time
             CompletableFuture.runAsync(() -> {
                 // process intent until the phase reaches one of the final phases
                 List<CompletableFuture<IntentData>> futures = operations.stream()
@@ -553,7 +684,10 @@ public class IntentManager
                 // TODO: maybe we should do more?
                 log.error("Walk the plank, matey...");
                 return null;
-            }).thenRun(accumulator::ready);
+            }).thenRun(() -> {
+                accumulator.ready();
+                checkDrained();
+            });
 
         }
     }
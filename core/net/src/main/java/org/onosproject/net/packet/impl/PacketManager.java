@@ -21,9 +21,18 @@ import com.google.common.collect.Lists;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.IPv6;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onlab.util.Tools;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.core.ApplicationId;
@@ -33,9 +42,16 @@ import org.onosproject.net.DeviceId;
 import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
+import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.flow.criteria.EthCriterion;
+import org.onosproject.net.flow.criteria.EthTypeCriterion;
+import org.onosproject.net.flow.criteria.IPProtocolCriterion;
+import org.onosproject.net.flow.criteria.PortCriterion;
+import org.onosproject.net.flow.criteria.VlanIdCriterion;
 import org.onosproject.net.flowobjective.DefaultForwardingObjective;
 import org.onosproject.net.flowobjective.FlowObjectiveService;
 import org.onosproject.net.flowobjective.ForwardingObjective;
@@ -43,6 +59,7 @@ import org.onosproject.net.flowobjective.Objective;
 import org.onosproject.net.flowobjective.ObjectiveContext;
 import org.onosproject.net.flowobjective.ObjectiveError;
 import org.onosproject.net.packet.DefaultPacketRequest;
+import org.onosproject.net.packet.InboundPacket;
 import org.onosproject.net.packet.OutboundPacket;
 import org.onosproject.net.packet.PacketContext;
 import org.onosproject.net.packet.PacketEvent;
@@ -58,15 +75,24 @@ import org.onosproject.net.packet.PacketStore;
 import org.onosproject.net.packet.PacketStoreDelegate;
 import org.onosproject.net.provider.AbstractProviderRegistry;
 import org.onosproject.net.provider.AbstractProviderService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.Arrays;
+import java.util.Dictionary;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.security.AppGuard.checkPermission;
 import static org.onosproject.security.AppPermission.Type.PACKET_EVENT;
@@ -107,8 +133,35 @@ public class PacketManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected FlowObjectiveService objectiveService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    private static final int DEFAULT_DISPATCH_WORKERS = 0;
+    @Property(name = "dispatchWorkers", intValue = DEFAULT_DISPATCH_WORKERS,
+            label = "Number of threads dispatching inbound packets to processors, " +
+                    "partitioned by flow; 0 dispatches on the provider thread")
+    private int dispatchWorkers = DEFAULT_DISPATCH_WORKERS;
+
+    private static final int DEFAULT_DISPATCH_QUEUE_SIZE = 10000;
+    @Property(name = "dispatchQueueSize", intValue = DEFAULT_DISPATCH_QUEUE_SIZE,
+            label = "Number of inbound packets each dispatch worker can queue; " +
+                    "packets arriving at a full queue are dropped")
+    private int dispatchQueueSize = DEFAULT_DISPATCH_QUEUE_SIZE;
+
+    // Bound on how long new dispatch workers wait for the previous ones to
+    // process the packets they had queued.
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
     private ExecutorService eventHandlingExecutor;
 
+    // Single-threaded executors, one per dispatch partition; empty when
+    // packets are dispatched on the provider thread.
+    private volatile List<ExecutorService> dispatchExecutors = ImmutableList.of();
+    // Executors replaced by the last reconfiguration, possibly still draining.
+    private volatile List<ExecutorService> drainingExecutors = ImmutableList.of();
+
+    private final AtomicLong droppedPackets = new AtomicLong();
+
     private final DeviceListener deviceListener = new InternalDeviceListener();
 
     private final List<ProcessorEntry> processors = Lists.newCopyOnWriteArrayList();
@@ -119,7 +172,9 @@ public class PacketManager
     private NodeId localNodeId;
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        modified(context);
         eventHandlingExecutor = Executors.newSingleThreadExecutor(
                 groupedThreads("onos/net/packet", "event-handler", log));
         localNodeId = clusterService.getLocalNode().id();
@@ -133,12 +188,104 @@ public class PacketManager
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
         store.unsetDelegate(delegate);
         deviceService.removeListener(deviceListener);
         eventHandlingExecutor.shutdown();
+        dispatchExecutors.forEach(ExecutorService::shutdown);
+        dispatchExecutors = ImmutableList.of();
+        drainingExecutors = ImmutableList.of();
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary<?, ?> properties = context.getProperties();
+        int newDispatchWorkers;
+        int newDispatchQueueSize;
+        try {
+            String s = Tools.get(properties, "dispatchWorkers");
+            newDispatchWorkers = isNullOrEmpty(s) ? dispatchWorkers : Integer.parseInt(s.trim());
+            s = Tools.get(properties, "dispatchQueueSize");
+            newDispatchQueueSize = isNullOrEmpty(s) ? dispatchQueueSize : Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid dispatch configuration; keeping {} workers with queues of {}",
+                     dispatchWorkers, dispatchQueueSize, e);
+            return;
+        }
+        if (newDispatchWorkers < 0 || newDispatchQueueSize <= 0) {
+            log.warn("Invalid dispatch configuration: {} workers with queues of {}",
+                     newDispatchWorkers, newDispatchQueueSize);
+            return;
+        }
+
+        if (newDispatchWorkers != dispatchWorkers || newDispatchQueueSize != dispatchQueueSize) {
+            dispatchWorkers = newDispatchWorkers;
+            dispatchQueueSize = newDispatchQueueSize;
+            List<ExecutorService> oldExecutors = dispatchExecutors;
+            // the new workers hold off until the old ones have processed the
+            // packets they had queued, which keeps the packets of a flow in order
+            drainingExecutors = oldExecutors;
+            dispatchExecutors = createDispatchExecutors(dispatchWorkers, dispatchQueueSize, oldExecutors);
+            oldExecutors.forEach(ExecutorService::shutdown);
+            log.info("Reconfigured dispatch to {} workers with queues of {}",
+                     dispatchWorkers, dispatchQueueSize);
+        }
+    }
+
+    private List<ExecutorService> createDispatchExecutors(int count, int queueSize,
+                                                          List<ExecutorService> previous) {
+        ImmutableList.Builder<ExecutorService> builder = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            ExecutorService executor = new ThreadPoolExecutor(
+                    1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                    groupedThreads("onos/net/packet", "dispatch-" + i, log),
+                    (task, pool) -> dropped());
+            if (!previous.isEmpty()) {
+                executor.execute(() -> awaitDrained(previous));
+            }
+            builder.add(executor);
+        }
+        return builder.build();
+    }
+
+    // Waits, up to a bound, for the given executors to run their queued tasks.
+    private void awaitDrained(List<ExecutorService> executors) {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        try {
+            for (ExecutorService executor : executors) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                    log.warn("Timed out waiting for previous packet dispatch workers to drain");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dropped() {
+        long count = droppedPackets.incrementAndGet();
+        if (count == 1 || count % DEFAULT_DISPATCH_QUEUE_SIZE == 0) {
+            log.warn("Dropped {} inbound packets so far; packet dispatch queues are full", count);
+        }
+    }
+
+    /**
+     * Returns the number of inbound packets dropped because the queue of
+     * their dispatch worker was full.
+     *
+     * @return number of dropped packets
+     */
+    long droppedPackets() {
+        return droppedPackets.get();
+    }
+
     @Override
     protected PacketProvider defaultProvider() {
         return defaultProvider;
@@ -146,9 +293,16 @@ public class PacketManager
 
     @Override
     public void addProcessor(PacketProcessor processor, int priority) {
+        addProcessor(processor, priority, DefaultTrafficSelector.emptySelector());
+    }
+
+    @Override
+    public void addProcessor(PacketProcessor processor, int priority,
+                             TrafficSelector selector) {
         checkPermission(PACKET_EVENT);
         checkNotNull(processor, ERROR_NULL_PROCESSOR);
-        ProcessorEntry entry = new ProcessorEntry(processor, priority);
+        checkNotNull(selector, ERROR_NULL_SELECTOR);
+        ProcessorEntry entry = new ProcessorEntry(processor, priority, selector);
 
         // Insert the new processor according to its priority.
         int i = 0;
@@ -382,20 +536,98 @@ public class PacketManager
 
         @Override
         public void processPacket(PacketContext context) {
-            // TODO filter packets sent to processors based on registrations
-            for (ProcessorEntry entry : processors) {
-                try {
-                    long start = System.nanoTime();
-                    entry.processor().process(context);
-                    entry.addNanos(System.nanoTime() - start);
-                } catch (Exception e) {
-                    log.warn("Packet processor {} threw an exception", entry.processor(), e);
+            List<ExecutorService> executors = dispatchExecutors;
+            if (executors.isEmpty()) {
+                List<ExecutorService> draining = drainingExecutors;
+                if (!draining.isEmpty()) {
+                    awaitDrained(draining);
+                    drainingExecutors = ImmutableList.of();
                 }
+                dispatch(context);
+            } else {
+                // Packets of the same flow land on the same worker, which
+                // preserves their relative order.
+                int index = Math.floorMod(flowHash(context.inPacket()), executors.size());
+                executors.get(index).execute(() -> dispatch(context));
             }
         }
 
     }
 
+    // Passes the packet through the processors interested in it.
+    private void dispatch(PacketContext context) {
+        for (ProcessorEntry entry : processors) {
+            if (!entry.accepts(context.inPacket())) {
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                entry.processor().process(context);
+                entry.addNanos(System.nanoTime() - start);
+            } catch (Exception e) {
+                log.warn("Packet processor {} threw an exception", entry.processor(), e);
+            }
+        }
+    }
+
+    // Hashes the inbound packet on its device and Ethernet addresses and,
+    // for IP packets, its protocol and addresses.
+    private static int flowHash(InboundPacket packet) {
+        int hash = packet.receivedFrom().deviceId().hashCode();
+        Ethernet eth = packet.parsed();
+        if (eth == null) {
+            return hash;
+        }
+        hash = 31 * hash + Objects.hash(eth.getSourceMAC(), eth.getDestinationMAC(), eth.getEtherType());
+        if (eth.getPayload() instanceof IPv4) {
+            IPv4 ip = (IPv4) eth.getPayload();
+            hash = 31 * hash + Objects.hash(ip.getProtocol(), ip.getSourceAddress(), ip.getDestinationAddress());
+        } else if (eth.getPayload() instanceof IPv6) {
+            IPv6 ip = (IPv6) eth.getPayload();
+            hash = 31 * hash + Objects.hash(ip.getNextHeader(),
+                                            Arrays.hashCode(ip.getSourceAddress()),
+                                            Arrays.hashCode(ip.getDestinationAddress()));
+        }
+        return hash;
+    }
+
+    // Indicates whether the inbound packet may match the given criterion.
+    // Criteria that cannot be evaluated against the packet headers are
+    // deemed to match.
+    private static boolean matches(Criterion criterion, InboundPacket packet, Ethernet eth) {
+        switch (criterion.type()) {
+            case IN_PORT:
+                return ((PortCriterion) criterion).port().equals(packet.receivedFrom().port());
+            case ETH_TYPE:
+                return ((EthTypeCriterion) criterion).ethType().toShort() == eth.getEtherType();
+            case ETH_SRC:
+                return matches((EthCriterion) criterion, eth.getSourceMAC());
+            case ETH_DST:
+                return matches((EthCriterion) criterion, eth.getDestinationMAC());
+            case VLAN_VID:
+                VlanId vlanId = ((VlanIdCriterion) criterion).vlanId();
+                if (vlanId.equals(VlanId.ANY)) {
+                    return eth.getVlanID() != Ethernet.VLAN_UNTAGGED;
+                }
+                return vlanId.toShort() == eth.getVlanID();
+            case IP_PROTO:
+                short protocol = ((IPProtocolCriterion) criterion).protocol();
+                if (eth.getPayload() instanceof IPv4) {
+                    return protocol == (((IPv4) eth.getPayload()).getProtocol() & 0xff);
+                } else if (eth.getPayload() instanceof IPv6) {
+                    return protocol == (((IPv6) eth.getPayload()).getNextHeader() & 0xff);
+                }
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean matches(EthCriterion criterion, MacAddress mac) {
+        long mask = criterion.mask() != null ? criterion.mask().toLong() : MacAddress.BROADCAST.toLong();
+        return (criterion.mac().toLong() & mask) == (mac.toLong() & mask);
+    }
+
 
     /**
      * Internal callback from the packet store.
@@ -469,12 +701,15 @@ public class PacketManager
     private class ProcessorEntry implements PacketProcessorEntry {
         private final PacketProcessor processor;
         private final int priority;
+        private final TrafficSelector selector;
         private long invocations = 0;
         private long nanos = 0;
 
-        public ProcessorEntry(PacketProcessor processor, int priority) {
+        public ProcessorEntry(PacketProcessor processor, int priority,
+                              TrafficSelector selector) {
             this.processor = processor;
             this.priority = priority;
+            this.selector = selector;
         }
 
         @Override
@@ -488,23 +723,45 @@ public class PacketManager
         }
 
         @Override
-        public long invocations() {
+        public TrafficSelector selector() {
+            return selector;
+        }
+
+        @Override
+        public synchronized long invocations() {
             return invocations;
         }
 
         @Override
-        public long totalNanos() {
+        public synchronized long totalNanos() {
             return nanos;
         }
 
         @Override
-        public long averageNanos() {
+        public synchronized long averageNanos() {
             return invocations > 0 ? nanos / invocations : 0;
         }
 
-        void addNanos(long nanos) {
+        // Stats are updated concurrently when dispatching on several workers.
+        synchronized void addNanos(long nanos) {
             this.nanos += nanos;
             this.invocations++;
         }
+
+        boolean accepts(InboundPacket packet) {
+            if (selector.criteria().isEmpty()) {
+                return true;
+            }
+            Ethernet eth = packet.parsed();
+            if (eth == null) {
+                return true;
+            }
+            for (Criterion criterion : selector.criteria()) {
+                if (!matches(criterion, packet, eth)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
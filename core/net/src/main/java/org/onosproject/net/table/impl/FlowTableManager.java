@@ -75,6 +75,7 @@ import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -228,11 +229,21 @@ public class FlowTableManager
         return store.getNewGlobalFlowTableId(deviceId, type);
     }
 
+    @Override
+    public CompletableFuture<Integer> getNewGlobalFlowTableIdAsync(DeviceId deviceId, OFTableType type) {
+        return store.getNewGlobalFlowTableIdAsync(deviceId, type);
+    }
+
     @Override
     public int getNewFlowEntryId(DeviceId deviceId, int tableId) {
         return store.getNewFlowEntryId(deviceId, tableId);
     }
 
+    @Override
+    public CompletableFuture<Integer> getNewFlowEntryIdAsync(DeviceId deviceId, int tableId) {
+        return store.getNewFlowEntryIdAsync(deviceId, tableId);
+    }
+
     @Override
     public int getFlowTableCount() {
         return store.getFlowTableCount();
@@ -243,6 +254,11 @@ public class FlowTableManager
         return store.getFlowTables(deviceId);
     }
 
+    @Override
+    public CompletableFuture<Iterable<FlowTable>> getFlowTablesAsync(DeviceId deviceId) {
+        return store.getFlowTablesAsync(deviceId);
+    }
+
     @Override
     public void applyFlowTables(FlowTable... flowTables) {
         FlowTableOperations.Builder builder = FlowTableOperations.builder();
@@ -317,9 +333,14 @@ public class FlowTableManager
     @Override
     public Iterable<FlowTable> getFlowTablesById(ApplicationId id) {
 
-        Set<FlowTable> flowTables = Sets.newHashSet();
+        // query all devices concurrently rather than one master round trip at a time
+        List<CompletableFuture<Iterable<FlowTable>>> futures = Lists.newArrayList();
         for (Device d : deviceService.getDevices()) {
-            for (FlowTable flowTable : store.getFlowTables(d.id())) {
+            futures.add(store.getFlowTablesAsync(d.id()));
+        }
+        Set<FlowTable> flowTables = Sets.newHashSet();
+        for (CompletableFuture<Iterable<FlowTable>> future : futures) {
+            for (FlowTable flowTable : future.join()) {
                 if (flowTable.appId() == id.id()) {
                     flowTables.add(flowTable);
                 }
@@ -21,6 +21,8 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.core.MetricsHelper;
 import org.onosproject.net.DisjointPath;
 import org.onosproject.net.provider.AbstractListenerProviderRegistry;
 import org.onosproject.event.Event;
@@ -33,6 +35,7 @@ import org.onosproject.net.topology.ClusterId;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.LinkWeigher;
 import org.onosproject.net.topology.LinkWeight;
+import org.onosproject.net.topology.ShortestPathTrees;
 import org.onosproject.net.topology.Topology;
 import org.onosproject.net.topology.TopologyCluster;
 import org.onosproject.net.topology.TopologyEvent;
@@ -46,12 +49,17 @@ import org.onosproject.net.topology.TopologyStore;
 import org.onosproject.net.topology.TopologyStoreDelegate;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.metrics.MetricsUtil.startTimer;
+import static org.onlab.metrics.MetricsUtil.stopTimer;
 import static org.onosproject.net.topology.AdapterLinkWeigher.adapt;
 import static org.onosproject.security.AppGuard.checkPermission;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -66,7 +74,7 @@ import static org.onosproject.security.AppPermission.Type.*;
 public class TopologyManager
         extends AbstractListenerProviderRegistry<TopologyEvent, TopologyListener,
         TopologyProvider, TopologyProviderService>
-        implements TopologyService, TopologyProviderRegistry {
+        implements TopologyService, TopologyProviderRegistry, MetricsHelper {
 
     private static final String TOPOLOGY_NULL = "Topology cannot be null";
     private static final String DEVICE_ID_NULL = "Device ID cannot be null";
@@ -82,8 +90,14 @@ public class TopologyManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected TopologyStore store;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private Timer pathTreesTimer;
+
     @Activate
     public void activate() {
+        pathTreesTimer = createTimer("Topology", "shortestPathTrees", "computeTime");
         store.setDelegate(delegate);
         eventDispatcher.addSink(TopologyEvent.class, listenerRegistry);
         log.info("Started");
@@ -201,6 +215,20 @@ public class TopologyManager
         return store.getKShortestPaths(topology, src, dst, weigher);
     }
 
+    @Override
+    public ShortestPathTrees getShortestPathTrees(Topology topology, LinkWeigher weigher) {
+        checkPermission(TOPOLOGY_READ);
+
+        checkNotNull(topology, TOPOLOGY_NULL);
+        checkNotNull(weigher, LINK_WEIGHT_NULL);
+        final Context timer = startTimer(pathTreesTimer);
+        try {
+            return store.getShortestPathTrees(topology, weigher);
+        } finally {
+            stopTimer(timer);
+        }
+    }
+
     @Override
     public Set<DisjointPath> getDisjointPaths(Topology topology, DeviceId src,
                                               DeviceId dst) {
@@ -277,6 +305,11 @@ public class TopologyManager
         return store.isBroadcastPoint(topology, connectPoint);
     }
 
+    @Override
+    public MetricsService metricsService() {
+        return metricsService;
+    }
+
     // Personalized host provider service issued to the supplied provider.
     @Override
     protected TopologyProviderService createProviderService(TopologyProvider provider) {
@@ -25,6 +25,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.onlab.junit.TestTools;
+import org.onlab.osgi.ComponentContextAdapter;
 import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.common.event.impl.TestEventDispatcher;
 import org.onosproject.core.ApplicationId;
@@ -39,6 +40,8 @@ import org.onosproject.net.Device;
 import org.onosproject.net.Device.Type;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.MastershipRole;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceServiceAdapter;
 import org.onosproject.net.driver.AbstractHandlerBehaviour;
 import org.onosproject.net.driver.DefaultDriver;
@@ -54,6 +57,8 @@ import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchOperation;
 import org.onosproject.net.flow.FlowRuleEvent;
 import org.onosproject.net.flow.FlowRuleListener;
+import org.onosproject.net.flow.FlowRuleOperations;
+import org.onosproject.net.flow.FlowRuleOperationsContext;
 import org.onosproject.net.flow.FlowRuleProgrammable;
 import org.onosproject.net.flow.FlowRuleProvider;
 import org.onosproject.net.flow.FlowRuleProviderRegistry;
@@ -73,8 +78,10 @@ import org.onosproject.store.trivial.SimpleFlowRuleStore;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -82,6 +89,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
@@ -109,6 +117,16 @@ public class FlowRuleManagerTest {
     private static final Device FOO_DEV =
             new DefaultDevice(FOO_PID, FOO_DID, Type.SWITCH, "", "", "", "", null, ANNOTATIONS);
 
+    private static final ComponentContextAdapter PIPELINED = new ComponentContextAdapter() {
+        @Override
+        public Dictionary getProperties() {
+            Hashtable<String, String> props = new Hashtable<>();
+            props.put("pipelineFlowOperations", "true");
+            props.put("deviceBatchTimeout", "100");
+            return props;
+        }
+    };
+
     private FlowRuleManager mgr;
 
     protected FlowRuleService service;
@@ -119,11 +137,12 @@ public class FlowRuleManagerTest {
     private ApplicationId appId;
 
     private TestDriverManager driverService;
+    private final CountingFlowRuleStore store = new CountingFlowRuleStore();
 
     @Before
     public void setUp() {
         mgr = new FlowRuleManager();
-        mgr.store = new SimpleFlowRuleStore();
+        mgr.store = store;
         injectEventDispatcher(mgr, new TestEventDispatcher());
         mgr.deviceService = new TestDeviceService();
         mgr.mastershipService = new TestMastershipService();
@@ -305,6 +324,42 @@ public class FlowRuleManagerTest {
         assertEquals("3 rule should still exist", 3, flowCount());
     }
 
+    @Test
+    public void flowMetricsReconciledInPlace() {
+        FlowRule f1 = addFlowRule(1);
+        FlowRule f2 = addFlowRule(2);
+        FlowEntry fe1 = new DefaultFlowEntry(f1);
+        FlowEntry fe2 = new DefaultFlowEntry(f2);
+
+        int fetches = store.deviceFetches;
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1, fe2));
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADDED, RULE_ADDED);
+        assertEquals("stored entries should not be copied when none are missing",
+                     fetches, store.deviceFetches);
+
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1));
+        assertEquals("stored entries should be scanned once for missing rules",
+                     fetches + 1, store.deviceFetches);
+    }
+
+    @Test
+    public void duplicateReportsDoNotHideMissingRules() {
+        FlowRule f1 = addFlowRule(1);
+        FlowRule f2 = addFlowRule(2);
+        FlowEntry fe1 = new DefaultFlowEntry(f1);
+        FlowEntry fe2 = new DefaultFlowEntry(f2);
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1, fe2));
+        validateEvents(RULE_ADD_REQUESTED, RULE_ADD_REQUESTED, RULE_ADDED, RULE_ADDED);
+
+        // as many reported rules as stored ones, but f2 is not among them
+        int fetches = store.deviceFetches;
+        providerService.pushFlowMetrics(DID, ImmutableList.of(fe1, fe1));
+        assertEquals("stored entries should be scanned for the missing rule",
+                     fetches + 1, store.deviceFetches);
+        assertEquals("missing rule should be reinstalled",
+                     FlowEntryState.PENDING_ADD, store.getFlowEntry(f2).state());
+    }
+
     @Test
     public void flowRemoved() {
         FlowRule f1 = addFlowRule(1);
@@ -480,6 +535,87 @@ public class FlowRuleManagerTest {
         });
     }
 
+    @Test
+    public void stagesWaitForAllDevices() {
+        // the test provider never completes batches for DID
+        FlowRule slow = flowRule(DID, 1, 1);
+        FlowRule fast1 = flowRule(FOO_DID, 2, 2);
+        FlowRule fast2 = flowRule(FOO_DID, 3, 3);
+        flowRules.clear();
+        mgr.apply(FlowRuleOperations.builder().add(slow).add(fast1).newStage().add(fast2).build());
+
+        assertTrue("first stage not applied", flowRules.contains(fast1));
+        assertFalse("second stage should wait for the slow device", flowRules.contains(fast2));
+    }
+
+    @Test
+    public void pipelinedStagesAdvancePerDevice() {
+        mgr.modified(PIPELINED);
+        FlowRule slow = flowRule(DID, 1, 1);
+        FlowRule fast1 = flowRule(FOO_DID, 2, 2);
+        FlowRule fast2 = flowRule(FOO_DID, 3, 3);
+        flowRules.clear();
+        mgr.apply(FlowRuleOperations.builder().add(slow).add(fast1).newStage().add(fast2).build());
+
+        assertTrue("second stage held back by the slow device", flowRules.contains(fast2));
+        assertEquals("incorrect latency samples", 2, mgr.getInstallLatency(FOO_DID).getCount());
+        assertEquals("incorrect latency samples", 0, mgr.getInstallLatency(DID).getCount());
+    }
+
+    @Test
+    public void pipelinedBatchTimeout() {
+        mgr.modified(PIPELINED);
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicBoolean succeeded = new AtomicBoolean();
+        mgr.apply(FlowRuleOperations.builder().add(flowRule(DID, 1, 1)).build(new FlowRuleOperationsContext() {
+            @Override
+            public void onSuccess(FlowRuleOperations ops) {
+                succeeded.set(true);
+            }
+
+            @Override
+            public void onError(FlowRuleOperations ops) {
+                failed.set(true);
+            }
+        }));
+
+        TestTools.assertAfter(2000, () -> assertTrue("batch should time out", failed.get()));
+        assertFalse("operations should not succeed", succeeded.get());
+        assertEquals("incorrect latency samples", 1, mgr.getInstallLatency(DID).getCount());
+    }
+
+    @Test
+    public void pipelinedTimeoutFailsLaterStages() {
+        mgr.modified(PIPELINED);
+        FlowRule slow1 = flowRule(DID, 1, 1);
+        FlowRule slow2 = flowRule(DID, 2, 2);
+        List<FlowRuleOperations> errors = Collections.synchronizedList(new ArrayList<>());
+        mgr.apply(FlowRuleOperations.builder().add(slow1).newStage().add(slow2).build(
+                new FlowRuleOperationsContext() {
+                    @Override
+                    public void onError(FlowRuleOperations ops) {
+                        errors.add(ops);
+                    }
+                }));
+
+        TestTools.assertAfter(2000, () -> assertEquals("batch should time out", 1, errors.size()));
+        Set<FlowRule> failed = Sets.newHashSet();
+        errors.get(0).stages().forEach(stage -> stage.forEach(op -> failed.add(op.rule())));
+        assertEquals("later stage should fail with the timed out one", Sets.newHashSet(slow1, slow2), failed);
+        assertFalse("later stage should not be submitted",
+                    Sets.newHashSet(store.getFlowEntries(DID)).contains(slow2));
+    }
+
+    @Test
+    public void removedDeviceDropsInstallLatency() {
+        mgr.modified(PIPELINED);
+        mgr.apply(FlowRuleOperations.builder().add(flowRule(FOO_DID, 1, 1)).build());
+        assertEquals("incorrect latency samples", 1, mgr.getInstallLatency(FOO_DID).getCount());
+
+        DeviceEvent removed = new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, FOO_DEV);
+        ((TestDeviceService) mgr.deviceService).listeners.forEach(l -> l.event(removed));
+        assertEquals("latency should be reset", 0, mgr.getInstallLatency(FOO_DID).getCount());
+    }
 
     private static class TestListener implements FlowRuleListener {
         final List<FlowRuleEvent> events = new ArrayList<>();
@@ -491,6 +627,13 @@ public class FlowRuleManagerTest {
     }
 
     private static class TestDeviceService extends DeviceServiceAdapter {
+        final List<DeviceListener> listeners = new ArrayList<>();
+
+        @Override
+        public void addListener(DeviceListener listener) {
+            listeners.add(listener);
+        }
+
         @Override
         public int getDeviceCount() {
             return 2;
@@ -691,6 +834,16 @@ public class FlowRuleManagerTest {
         }
     }
 
+    private static class CountingFlowRuleStore extends SimpleFlowRuleStore {
+        int deviceFetches;
+
+        @Override
+        public Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
+            deviceFetches++;
+            return super.getFlowEntries(deviceId);
+        }
+    }
+
     private class TestMastershipService extends MastershipServiceAdapter {
         @Override
         public MastershipRole getLocalRole(DeviceId deviceId) {
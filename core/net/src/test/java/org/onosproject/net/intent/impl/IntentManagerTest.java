@@ -26,6 +26,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.onlab.osgi.ComponentContextAdapter;
 import org.onosproject.TestApplicationId;
 import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.cfg.ComponentConfigService;
@@ -58,6 +59,8 @@ import org.onosproject.store.trivial.SimpleIntentStore;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -343,6 +346,75 @@ public class IntentManagerTest {
         // TODO null the other refs?
     }
 
+    /**
+     * Tests that intents are installed and withdrawn when batches are
+     * processed by several partitions.
+     */
+    @Test
+    public void partitionedBatches() {
+        manager.modified(partitions(4));
+        flowRuleService.setFuture(true);
+
+        int count = 100;
+        List<Intent> intents = Lists.newArrayList();
+        listener.setLatch(count, Type.INSTALLED);
+        for (int i = 0; i < count; i++) {
+            Intent intent = new MockIntent(MockIntent.nextId());
+            intents.add(intent);
+            service.submit(intent);
+        }
+        listener.await(Type.INSTALLED);
+        assertEquals(count, flowRuleService.getFlowRuleCount());
+
+        listener.setLatch(count, Type.WITHDRAWN);
+        intents.forEach(service::withdraw);
+        listener.await(Type.WITHDRAWN);
+        assertEquals(0L, flowRuleService.getFlowRuleCount());
+        verifyState();
+    }
+
+    /**
+     * Tests that operations submitted around a change of the number of
+     * partitions are all processed, and a later withdrawal is not overtaken
+     * by the submission of the same intent.
+     */
+    @Test
+    public void repartitionWhileProcessing() {
+        flowRuleService.setFuture(true);
+
+        int count = 100;
+        List<Intent> intents = Lists.newArrayList();
+        listener.setLatch(count, Type.INSTALLED);
+        for (int i = 0; i < count; i++) {
+            Intent intent = new MockIntent(MockIntent.nextId());
+            intents.add(intent);
+            service.submit(intent);
+            if (i == count / 2) {
+                manager.modified(partitions(4));
+            }
+        }
+        listener.await(Type.INSTALLED);
+        assertEquals(count, flowRuleService.getFlowRuleCount());
+
+        listener.setLatch(count, Type.WITHDRAWN);
+        manager.modified(partitions(2));
+        intents.forEach(service::withdraw);
+        listener.await(Type.WITHDRAWN);
+        assertEquals(0L, flowRuleService.getFlowRuleCount());
+        verifyState();
+    }
+
+    private static ComponentContextAdapter partitions(int count) {
+        return new ComponentContextAdapter() {
+            @Override
+            public Dictionary getProperties() {
+                Hashtable<String, String> props = new Hashtable<>();
+                props.put("numBatchPartitions", String.valueOf(count));
+                return props;
+            }
+        };
+    }
+
     @Test
     public void submitIntent() {
         flowRuleService.setFuture(true);
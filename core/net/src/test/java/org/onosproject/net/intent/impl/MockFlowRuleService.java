@@ -31,7 +31,7 @@ import java.util.stream.Collectors;
 
 public class MockFlowRuleService extends FlowRuleServiceAdapter {
 
-    final Set<FlowRule> flows = Sets.newHashSet();
+    final Set<FlowRule> flows = Sets.newConcurrentHashSet();
     boolean success;
 
     int errorFlow = -1;
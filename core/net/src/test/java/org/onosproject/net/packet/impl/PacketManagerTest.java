@@ -18,37 +18,64 @@ package org.onosproject.net.packet.impl;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.junit.TestTools;
+import org.onlab.osgi.ComponentContextAdapter;
+import org.onlab.packet.ARP;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.cfg.ComponentConfigAdapter;
 import org.onosproject.cluster.ClusterServiceAdapter;
 import org.onosproject.common.event.impl.TestEventDispatcher;
 import org.onosproject.core.CoreServiceAdapter;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.event.TestListener;
 import org.onosproject.net.AnnotationKeys;
+import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DefaultAnnotations;
 import org.onosproject.net.DefaultDevice;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
 import org.onosproject.net.device.DeviceServiceAdapter;
 import org.onosproject.net.driver.AbstractHandlerBehaviour;
 import org.onosproject.net.driver.DefaultDriver;
 import org.onosproject.net.driver.DriverRegistry;
 import org.onosproject.net.driver.impl.DriverManager;
 import org.onosproject.net.driver.impl.DriverRegistryManager;
+import org.onosproject.net.flow.DefaultTrafficSelector;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.packet.DefaultInboundPacket;
 import org.onosproject.net.packet.DefaultOutboundPacket;
+import org.onosproject.net.packet.DefaultPacketContext;
+import org.onosproject.net.packet.InboundPacket;
 import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.packet.PacketContext;
 import org.onosproject.net.packet.PacketProgrammable;
+import org.onosproject.net.packet.PacketProvider;
 import org.onosproject.net.packet.PacketProviderRegistry;
+import org.onosproject.net.packet.PacketProviderService;
+import org.onosproject.net.provider.AbstractProvider;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.net.provider.TestProvider;
 import org.onosproject.store.trivial.SimplePacketStore;
 
 import java.nio.ByteBuffer;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.onosproject.net.NetTestTools.injectEventDispatcher;
 
 /**
@@ -84,8 +111,9 @@ public class PacketManagerTest {
         mgr.deviceService = new TestDeviceService();
         mgr.deviceService = new TestDeviceService();
         mgr.coreService = new TestCoreService();
+        mgr.cfgService = new ComponentConfigAdapter();
         providerRegistry = mgr;
-        mgr.activate();
+        mgr.activate(null);
 
         DriverRegistryManager driverRegistry = new DriverRegistryManager();
         driverService = new TestDriverManager(driverRegistry);
@@ -106,6 +134,183 @@ public class PacketManagerTest {
         assertEquals("Packet not emitted correctly", packet, emittedPacket);
     }
 
+    /**
+     * Tests that processors only see the packets matching their selectors.
+     */
+    @Test
+    public void filteredDispatch() {
+        List<PacketContext> arps = Lists.newArrayList();
+        List<PacketContext> udps = Lists.newArrayList();
+        List<PacketContext> all = Lists.newArrayList();
+        mgr.addProcessor(arps::add, 1,
+                         DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_ARP).build());
+        mgr.addProcessor(udps::add, 2,
+                         DefaultTrafficSelector.builder().matchEthType(Ethernet.TYPE_IPV4)
+                                 .matchIPProtocol(IPv4.PROTOCOL_UDP).build());
+        mgr.addProcessor(all::add, 3);
+
+        PacketProviderService providerService = providerRegistry.register(new TestPacketProvider());
+        providerService.processPacket(context(arp()));
+        providerService.processPacket(context(ipv4(SRC, IPv4.PROTOCOL_UDP, (short) 0)));
+        providerService.processPacket(context(ipv4(SRC, IPv4.PROTOCOL_TCP, (short) 0)));
+
+        assertEquals("incorrect ARP packet count", 1, arps.size());
+        assertEquals("incorrect UDP packet count", 1, udps.size());
+        assertEquals("incorrect packet count", 3, all.size());
+        assertEquals("incorrect invocations", 1, mgr.getProcessors().get(0).invocations());
+    }
+
+    /**
+     * Tests that packets dispatched on several workers retain their order
+     * within each flow.
+     */
+    @Test
+    public void partitionedDispatch() throws InterruptedException {
+        mgr.modified(config("dispatchWorkers", "4"));
+
+        int flows = 8;
+        int count = 100;
+        CountDownLatch latch = new CountDownLatch(flows * count);
+        Map<MacAddress, List<Short>> received = Maps.newConcurrentMap();
+        mgr.addProcessor(context -> {
+            Ethernet eth = context.inPacket().parsed();
+            received.computeIfAbsent(eth.getSourceMAC(), mac -> Lists.newArrayList())
+                    .add(((IPv4) eth.getPayload()).getIdentification());
+            latch.countDown();
+        }, 1);
+
+        PacketProviderService providerService = providerRegistry.register(new TestPacketProvider());
+        for (short i = 0; i < count; i++) {
+            if (i == count / 2) {
+                // the new workers must not overtake the packets queued on the old ones
+                mgr.modified(config("dispatchWorkers", "3"));
+            }
+            for (int f = 0; f < flows; f++) {
+                providerService.processPacket(context(ipv4(MacAddress.valueOf(f + 1), IPv4.PROTOCOL_UDP, i)));
+            }
+        }
+
+        assertTrue("packets not dispatched", latch.await(5, TimeUnit.SECONDS));
+        assertEquals("incorrect flow count", flows, received.size());
+        for (List<Short> ids : received.values()) {
+            assertEquals("incorrect packet count", count, ids.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("packets out of order", i, (int) ids.get(i));
+            }
+        }
+        mgr.deactivate();
+    }
+
+    /**
+     * Tests that packets arriving at a full dispatch queue are dropped.
+     */
+    @Test
+    public void boundedDispatchQueue() throws InterruptedException {
+        mgr.modified(config("dispatchWorkers", "1", "dispatchQueueSize", "2"));
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<PacketContext> received = Lists.newCopyOnWriteArrayList();
+        mgr.addProcessor(context -> {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(context);
+        }, 1);
+
+        PacketProviderService providerService = providerRegistry.register(new TestPacketProvider());
+        providerService.processPacket(context(arp()));
+        assertTrue("worker not busy", blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            providerService.processPacket(context(arp()));
+        }
+        assertEquals("incorrect dropped count", 3, mgr.droppedPackets());
+
+        release.countDown();
+        mgr.deactivate();
+        TestTools.assertAfter(2000, () -> assertEquals("incorrect packet count", 3, received.size()));
+    }
+
+    /**
+     * Tests that a VLAN selector for any VLAN only matches tagged packets.
+     */
+    @Test
+    public void anyVlanDispatch() {
+        List<PacketContext> tagged = Lists.newArrayList();
+        mgr.addProcessor(tagged::add, 1, DefaultTrafficSelector.builder().matchVlanId(VlanId.ANY).build());
+
+        PacketProviderService providerService = providerRegistry.register(new TestPacketProvider());
+        providerService.processPacket(context(arp()));
+        Ethernet eth = arp();
+        eth.setVlanID((short) 10);
+        providerService.processPacket(context(eth));
+
+        assertEquals("incorrect tagged packet count", 1, tagged.size());
+        assertEquals("incorrect VLAN", 10, tagged.get(0).inPacket().parsed().getVlanID());
+    }
+
+    private static ComponentContextAdapter config(String... properties) {
+        return new ComponentContextAdapter() {
+            @Override
+            public Dictionary getProperties() {
+                Hashtable<String, String> props = new Hashtable<>();
+                for (int i = 0; i < properties.length; i += 2) {
+                    props.put(properties[i], properties[i + 1]);
+                }
+                return props;
+            }
+        };
+    }
+
+    private static final MacAddress SRC = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress DST = MacAddress.valueOf("00:00:00:00:00:02");
+
+    private static Ethernet arp() {
+        Ethernet eth = new Ethernet();
+        eth.setEtherType(Ethernet.TYPE_ARP)
+                .setSourceMACAddress(SRC)
+                .setDestinationMACAddress(MacAddress.BROADCAST)
+                .setPayload(new ARP());
+        return eth;
+    }
+
+    private static Ethernet ipv4(MacAddress src, byte protocol, short id) {
+        IPv4 ip = new IPv4();
+        ip.setProtocol(protocol);
+        ip.setIdentification(id);
+        ip.setSourceAddress("10.0.0.1");
+        ip.setDestinationAddress("10.0.0.2");
+        Ethernet eth = new Ethernet();
+        eth.setEtherType(Ethernet.TYPE_IPV4)
+                .setSourceMACAddress(src)
+                .setDestinationMACAddress(DST)
+                .setPayload(ip);
+        return eth;
+    }
+
+    private static PacketContext context(Ethernet eth) {
+        InboundPacket packet = new DefaultInboundPacket(new ConnectPoint(FOO_DID, PortNumber.portNumber(1)),
+                                                        eth, ByteBuffer.allocate(0));
+        return new DefaultPacketContext(0, packet, null, false) {
+            @Override
+            public void send() {
+            }
+        };
+    }
+
+    private static class TestPacketProvider extends AbstractProvider implements PacketProvider {
+        TestPacketProvider() {
+            super(FOO_PID);
+        }
+
+        @Override
+        public void emit(OutboundPacket packet) {
+        }
+    }
+
     private static class TestDeviceService extends DeviceServiceAdapter {
         @Override
         public int getDeviceCount() {
@@ -18,8 +18,10 @@ package org.onosproject.store.cluster.messaging.impl;
 import com.google.common.base.Charsets;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ReplayingDecoder;
+import io.netty.handler.codec.compression.Snappy;
 
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpAddress.Version;
@@ -29,27 +31,42 @@ import org.onosproject.store.cluster.messaging.impl.InternalMessage.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Decoder for inbound messages.
+ * <p>
+ * Keeps the table of subjects interned by the peer's {@link MessageEncoder}
+ * as well as the last sender seen, so that steady-state messages are decoded
+ * without allocating subject strings or sender endpoints.
  */
 public class MessageDecoder extends ReplayingDecoder<DecoderState> {
 
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    private final byte[] inetOctets = new byte[IpAddress.INET_BYTE_LENGTH];
+    private final byte[] inet6Octets = new byte[IpAddress.INET6_BYTE_LENGTH];
+    private final Snappy snappy = new Snappy();
+
     private long logicalTime;
     private long logicalCounter;
     private long messageId;
     private int preamble;
     private Version ipVersion;
     private IpAddress senderIp;
-    private int senderPort;
+    private byte[] senderIpOctets;
+    private Endpoint sender;
+    private short messageTypeId;
     private int messageTypeLength;
+    private String[] subjects = new String[16];
     private String messageType;
     private Status status;
+    private byte compression;
     private int contentLength;
 
     public MessageDecoder() {
@@ -80,20 +97,27 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
             ipVersion = buffer.readByte() == 0x0 ? Version.INET : Version.INET6;
             checkpoint(DecoderState.READ_SENDER_IP);
         case READ_SENDER_IP:
-            byte[] octets = new byte[IpAddress.byteLength(ipVersion)];
+            byte[] octets = ipVersion == Version.INET ? inetOctets : inet6Octets;
             buffer.readBytes(octets);
-            senderIp = IpAddress.valueOf(ipVersion, octets);
+            if (!Arrays.equals(octets, senderIpOctets)) {
+                senderIp = IpAddress.valueOf(ipVersion, octets);
+                senderIpOctets = senderIp.toOctets();
+            }
             checkpoint(DecoderState.READ_SENDER_PORT);
         case READ_SENDER_PORT:
-            senderPort = buffer.readInt();
+            int senderPort = buffer.readInt();
+            if (sender == null || sender.host() != senderIp || sender.port() != senderPort) {
+                sender = new Endpoint(senderIp, senderPort);
+            }
+            checkpoint(DecoderState.READ_MESSAGE_TYPE_ID);
+        case READ_MESSAGE_TYPE_ID:
+            messageTypeId = buffer.readShort();
             checkpoint(DecoderState.READ_MESSAGE_TYPE_LENGTH);
         case READ_MESSAGE_TYPE_LENGTH:
-            messageTypeLength = buffer.readShort();
+            messageTypeLength = hasInlineSubject() ? buffer.readShort() : 0;
             checkpoint(DecoderState.READ_MESSAGE_TYPE);
         case READ_MESSAGE_TYPE:
-            byte[] messageTypeBytes = new byte[messageTypeLength];
-            buffer.readBytes(messageTypeBytes);
-            messageType = new String(messageTypeBytes, Charsets.UTF_8);
+            messageType = readSubject(buffer);
             checkpoint(DecoderState.READ_MESSAGE_STATUS);
         case READ_MESSAGE_STATUS:
             int statusId = buffer.readByte();
@@ -102,6 +126,9 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
             } else {
                 status = Status.forId(statusId);
             }
+            checkpoint(DecoderState.READ_CONTENT_COMPRESSION);
+        case READ_CONTENT_COMPRESSION:
+            compression = buffer.readByte();
             checkpoint(DecoderState.READ_CONTENT_LENGTH);
         case READ_CONTENT_LENGTH:
             contentLength = buffer.readInt();
@@ -110,15 +137,19 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
             byte[] payload;
             if (contentLength > 0) {
                 //TODO Perform a sanity check on the size before allocating
-                payload = new byte[contentLength];
-                buffer.readBytes(payload);
+                if (compression == MessageEncoder.COMPRESSION_SNAPPY) {
+                    payload = decompress(buffer.readSlice(contentLength));
+                } else {
+                    payload = new byte[contentLength];
+                    buffer.readBytes(payload);
+                }
             } else {
-                payload = new byte[0];
+                payload = EMPTY_PAYLOAD;
             }
             InternalMessage message = new InternalMessage(preamble,
                                                           new HybridLogicalTime(logicalTime, logicalCounter),
                                                           messageId,
-                                                          new Endpoint(senderIp, senderPort),
+                                                          sender,
                                                           messageType,
                                                           payload,
                                                           status);
@@ -130,6 +161,68 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
         }
     }
 
+    /**
+     * Returns whether the subject of the message being decoded follows its
+     * identifier inline, either as a definition or as a literal.
+     *
+     * @return true if the subject is inline
+     */
+    private boolean hasInlineSubject() {
+        return messageTypeId < MessageEncoder.EMPTY_SUBJECT_ID
+                || messageTypeId == MessageEncoder.LITERAL_SUBJECT_ID;
+    }
+
+    /**
+     * Reads the subject of the message being decoded, recording subject
+     * definitions and resolving interned subject identifiers.
+     *
+     * @param buffer buffer to read from
+     * @return message subject
+     */
+    private String readSubject(ByteBuf buffer) {
+        if (messageTypeId == MessageEncoder.EMPTY_SUBJECT_ID) {
+            return "";
+        }
+        if (!hasInlineSubject()) {
+            String subject = messageTypeId < subjects.length ? subjects[messageTypeId] : null;
+            checkState(subject != null, "Unknown subject id %s", messageTypeId);
+            return subject;
+        }
+        byte[] messageTypeBytes = new byte[messageTypeLength];
+        buffer.readBytes(messageTypeBytes);
+        String subject = new String(messageTypeBytes, Charsets.UTF_8);
+        if (messageTypeId < MessageEncoder.EMPTY_SUBJECT_ID) {
+            int id = -messageTypeId;
+            if (id >= subjects.length) {
+                subjects = Arrays.copyOf(subjects, Math.max(subjects.length * 2, id + 1));
+            }
+            subjects[id] = subject;
+        }
+        return subject;
+    }
+
+    /**
+     * Decompresses a Snappy compressed payload written by the encoder as its
+     * uncompressed length followed by length-prefixed compressed chunks.
+     *
+     * @param content compressed payload
+     * @return uncompressed payload
+     */
+    private byte[] decompress(ByteBuf content) {
+        int length = content.readInt();
+        checkState(length > 0, "Invalid uncompressed payload length %s", length);
+        byte[] payload = new byte[length];
+        ByteBuf out = Unpooled.wrappedBuffer(payload);
+        out.clear();
+        while (content.isReadable()) {
+            int chunkLength = content.readInt();
+            snappy.reset();
+            snappy.decode(content.readSlice(chunkLength), out);
+        }
+        checkState(out.writerIndex() == length, "Corrupt compressed payload");
+        return payload;
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
         log.error("Exception inside channel handling pipeline.", cause);
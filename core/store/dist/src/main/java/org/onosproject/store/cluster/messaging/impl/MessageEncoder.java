@@ -16,10 +16,12 @@
 package org.onosproject.store.cluster.messaging.impl;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.compression.Snappy;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpAddress.Version;
 import org.onosproject.store.cluster.messaging.Endpoint;
@@ -27,24 +29,95 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 
 /**
  * Encode InternalMessage out into a byte buffer.
+ * <p>
+ * Message subjects are interned per connection: the first message sent with
+ * a given subject carries a definition binding the subject to a small
+ * numeric identifier, and subsequent messages carry only the identifier.
+ * Encoders therefore hold connection state and must not be shared between
+ * channels.
+ * <p>
+ * Payloads at least as large as the compression threshold of their subject
+ * are Snappy compressed, unless compression does not make them smaller.
  */
-@Sharable
 public class MessageEncoder extends MessageToByteEncoder<Object> {
 // Effectively MessageToByteEncoder<InternalMessage>,
 // had to specify <Object> to avoid Class Loader not being able to find some classes.
 
+    /**
+     * Subject identifier reserved for the empty subject carried by replies.
+     */
+    static final short EMPTY_SUBJECT_ID = 0;
+
+    /**
+     * Subject identifier signifying that the subject follows inline and is
+     * not interned; used once a connection runs out of identifiers.
+     */
+    static final short LITERAL_SUBJECT_ID = Short.MAX_VALUE;
+
+    /**
+     * Payload compression identifiers.
+     */
+    static final byte COMPRESSION_NONE = 0;
+    static final byte COMPRESSION_SNAPPY = 1;
+
+    // preamble, logical time and counter, message id, IP version, sender
+    // port, subject id, status, compression and payload length
+    private static final int FIXED_HEADER_LENGTH = 4 + 8 + 8 + 8 + 1 + 4 + 2 + 1 + 1 + 4;
+
+    // payloads are compressed in chunks, as Snappy copy offsets are limited
+    private static final int MAX_COMPRESSED_CHUNK_LENGTH = Short.MAX_VALUE;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final int preamble;
+    private final ToIntFunction<String> compressionThresholds;
+    private final MessagingMetrics metrics;
+    private final Snappy snappy = new Snappy();
+    private final Map<String, Short> subjectIds = Maps.newHashMap();
+    private short nextSubjectId = EMPTY_SUBJECT_ID + 1;
+
+    private IpAddress senderIp;
+    private byte[] senderIpOctets;
 
     public MessageEncoder(int preamble) {
+        this(preamble, subject -> 0, null);
+    }
+
+    /**
+     * Creates an encoder that compresses payloads and records outbound traffic.
+     *
+     * @param preamble              cluster preamble
+     * @param compressionThresholds function returning the minimum payload
+     *                              length to compress for a subject; zero or
+     *                              less disables compression
+     * @param metrics               outbound traffic counters; may be null
+     */
+    MessageEncoder(int preamble, ToIntFunction<String> compressionThresholds, MessagingMetrics metrics) {
         super();
         this.preamble = preamble;
+        this.compressionThresholds = compressionThresholds;
+        this.metrics = metrics;
     }
 
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext context, Object rawMessage,
+                                     boolean preferDirect) throws Exception {
+        // size the pooled buffer up front so that large payloads are not
+        // copied again while the buffer grows
+        InternalMessage message = (InternalMessage) rawMessage;
+        int length = FIXED_HEADER_LENGTH
+                + IpAddress.byteLength(message.sender().host().version())
+                + message.payload().length;
+        if (!message.type().isEmpty() && !subjectIds.containsKey(message.type())) {
+            length += 2 + message.type().length() * 3;
+        }
+        return preferDirect ? context.alloc().ioBuffer(length) : context.alloc().heapBuffer(length);
+    }
 
     @Override
     protected void encode(
@@ -53,6 +126,7 @@ public class MessageEncoder extends MessageToByteEncoder<Object> {
             ByteBuf out) throws Exception {
 
         InternalMessage message = (InternalMessage) rawMessage;
+        int start = out.writerIndex();
 
         out.writeInt(this.preamble);
 
@@ -65,24 +139,19 @@ public class MessageEncoder extends MessageToByteEncoder<Object> {
 
         Endpoint sender = message.sender();
 
-        IpAddress senderIp = sender.host();
-        if (senderIp.version() == Version.INET) {
+        IpAddress ip = sender.host();
+        if (ip.version() == Version.INET) {
             out.writeByte(0);
         } else {
             out.writeByte(1);
         }
-        out.writeBytes(senderIp.toOctets());
+        out.writeBytes(senderIpOctets(ip));
 
         // write sender port
         out.writeInt(sender.port());
 
-        byte[] messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
-
-        // write length of message type
-        out.writeShort(messageTypeBytes.length);
-
-        // write message type bytes
-        out.writeBytes(messageTypeBytes);
+        // write message type
+        writeSubject(message.type(), out);
 
         // write message status value
         InternalMessage.Status status = message.status();
@@ -94,11 +163,104 @@ public class MessageEncoder extends MessageToByteEncoder<Object> {
 
         byte[] payload = message.payload();
 
-        // write payload length
+        // write compressed payload if worthwhile
+        int encodedLength = -1;
+        int threshold = compressionThresholds.applyAsInt(message.type());
+        if (threshold > 0 && payload.length >= threshold) {
+            encodedLength = writeCompressedPayload(payload, out);
+        }
+
+        if (encodedLength < 0) {
+            out.writeByte(COMPRESSION_NONE);
+
+            // write payload length
+            out.writeInt(payload.length);
+
+            // write payload.
+            out.writeBytes(payload);
+        }
+
+        if (metrics != null) {
+            metrics.recordOutbound(message.type(), payload.length, out.writerIndex() - start);
+        }
+    }
+
+    /**
+     * Writes the payload Snappy compressed, as its uncompressed length
+     * followed by length-prefixed compressed chunks. Nothing is written if
+     * compression does not reduce the size of the payload.
+     *
+     * @param payload payload to compress
+     * @param out     buffer to write to
+     * @return length of the compressed payload, or -1 if nothing was written
+     */
+    private int writeCompressedPayload(byte[] payload, ByteBuf out) {
+        int start = out.writerIndex();
+        out.writeByte(COMPRESSION_SNAPPY);
+        out.writeInt(0);
         out.writeInt(payload.length);
 
-        // write payload.
-        out.writeBytes(payload);
+        ByteBuf in = Unpooled.wrappedBuffer(payload);
+        while (in.isReadable()) {
+            int chunkLength = Math.min(in.readableBytes(), MAX_COMPRESSED_CHUNK_LENGTH);
+            int chunkStart = out.writerIndex();
+            out.writeInt(0);
+            snappy.encode(in.readSlice(chunkLength), out, chunkLength);
+            out.setInt(chunkStart, out.writerIndex() - chunkStart - 4);
+        }
+
+        int contentLength = out.writerIndex() - start - 5;
+        if (contentLength >= payload.length) {
+            out.writerIndex(start);
+            return -1;
+        }
+        out.setInt(start + 1, contentLength);
+        return contentLength;
+    }
+
+    /**
+     * Returns the octets of the given sender address, reusing those of the
+     * previous message since the sender rarely changes on a connection.
+     *
+     * @param ip sender address
+     * @return address octets
+     */
+    private byte[] senderIpOctets(IpAddress ip) {
+        if (!ip.equals(senderIp)) {
+            senderIp = ip;
+            senderIpOctets = ip.toOctets();
+        }
+        return senderIpOctets;
+    }
+
+    /**
+     * Writes the subject identifier, preceded on first use of the subject by
+     * a definition binding the subject to its identifier. Definitions are
+     * encoded as the negated identifier followed by the UTF-8 subject.
+     *
+     * @param subject message subject
+     * @param out     buffer to write to
+     */
+    private void writeSubject(String subject, ByteBuf out) {
+        if (subject.isEmpty()) {
+            out.writeShort(EMPTY_SUBJECT_ID);
+            return;
+        }
+        Short id = subjectIds.get(subject);
+        if (id != null) {
+            out.writeShort(id);
+            return;
+        }
+        byte[] subjectBytes = subject.getBytes(Charsets.UTF_8);
+        if (nextSubjectId < LITERAL_SUBJECT_ID) {
+            id = nextSubjectId++;
+            subjectIds.put(subject, id);
+            out.writeShort(-id);
+        } else {
+            out.writeShort(LITERAL_SUBJECT_ID);
+        }
+        out.writeShort(subjectBytes.length);
+        out.writeBytes(subjectBytes);
     }
 
     @Override
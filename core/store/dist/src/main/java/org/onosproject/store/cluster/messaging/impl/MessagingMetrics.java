@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import com.codahale.metrics.Meter;
+import com.google.common.collect.Maps;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+
+import java.util.Map;
+
+/**
+ * Per-subject counters of outbound cluster messaging traffic.
+ */
+final class MessagingMetrics {
+
+    private static final String COMPONENT_NAME = "NettyMessaging";
+    private static final String REPLY_FEATURE_NAME = "replies";
+    private static final String MESSAGES_NAME = "messages";
+    private static final String BYTES_NAME = "bytes";
+    private static final String UNCOMPRESSED_BYTES_NAME = "uncompressedBytes";
+
+    private final MetricsService metricsService;
+    private final MetricsComponent component;
+    private final Map<String, SubjectMeters> subjectMeters = Maps.newConcurrentMap();
+
+    /**
+     * Creates per-subject counters backed by the given metrics service.
+     *
+     * @param metricsService metrics service
+     */
+    MessagingMetrics(MetricsService metricsService) {
+        this.metricsService = metricsService;
+        this.component = metricsService.registerComponent(COMPONENT_NAME);
+    }
+
+    /**
+     * Records a message sent on the wire.
+     *
+     * @param subject       message subject; empty for replies
+     * @param payloadLength length of the payload as handed to messaging
+     * @param frameLength   length of the whole message as written on the
+     *                      wire, header and possibly compressed payload
+     */
+    void recordOutbound(String subject, int payloadLength, int frameLength) {
+        SubjectMeters meters = subjectMeters.get(subject);
+        if (meters == null) {
+            meters = subjectMeters.computeIfAbsent(subject, SubjectMeters::new);
+        }
+        meters.messages.mark();
+        meters.bytes.mark(frameLength);
+        meters.uncompressedBytes.mark(payloadLength);
+    }
+
+    private final class SubjectMeters {
+        private final Meter messages;
+        private final Meter bytes;
+        private final Meter uncompressedBytes;
+
+        private SubjectMeters(String subject) {
+            MetricsFeature feature = component.registerFeature(subject.isEmpty() ? REPLY_FEATURE_NAME : subject);
+            messages = metricsService.createMeter(component, feature, MESSAGES_NAME);
+            bytes = metricsService.createMeter(component, feature, BYTES_NAME);
+            uncompressedBytes = metricsService.createMeter(component, feature, UNCOMPRESSED_BYTES_NAME);
+        }
+    }
+}
@@ -29,11 +29,15 @@ import java.security.MessageDigest;
 import java.security.cert.Certificate;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
 import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.StringJoiner;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -81,9 +85,15 @@ import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatisti
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
+import org.onosproject.cfg.ConfigProperty;
 import org.onosproject.cluster.ClusterMetadataService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.core.HybridLogicalClockService;
@@ -91,9 +101,12 @@ import org.onosproject.store.cluster.messaging.Endpoint;
 import org.onosproject.store.cluster.messaging.MessagingException;
 import org.onosproject.store.cluster.messaging.MessagingService;
 import org.onosproject.store.cluster.messaging.impl.InternalMessage.Status;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.security.AppGuard.checkPermission;
 import static org.onosproject.security.AppPermission.Type.CLUSTER_WRITE;
@@ -113,6 +126,10 @@ public class NettyMessagingManager implements MessagingService {
     private static final double TIMEOUT_MULTIPLIER = 2.5;
     private static final int CHANNEL_POOL_SIZE = 8;
 
+    private static final int DEFAULT_COMPRESSION_THRESHOLD = 0;
+    private static final String DEFAULT_SUBJECT_COMPRESSION_THRESHOLDS = "";
+    private static final boolean DEFAULT_WRITE_BATCHING_ENABLED = false;
+
     private static final byte[] EMPTY_PAYLOAD = new byte[0];
 
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -157,8 +174,58 @@ public class NettyMessagingManager implements MessagingService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterMetadataService clusterMetadataService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    // This must be optional to avoid a cyclic dependency
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+               bind = "bindComponentConfigService",
+               unbind = "unbindComponentConfigService",
+               policy = ReferencePolicy.DYNAMIC)
+    protected ComponentConfigService cfgService;
+
+    @Property(name = "compressionThreshold", intValue = DEFAULT_COMPRESSION_THRESHOLD,
+            label = "Minimum payload size in bytes of messages to compress; 0 disables compression")
+    private volatile int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    @Property(name = "subjectCompressionThresholds", value = DEFAULT_SUBJECT_COMPRESSION_THRESHOLDS,
+            label = "Comma separated subject=bytes pairs overriding the compression threshold per subject")
+    private volatile Map<String, Integer> subjectCompressionThresholds = Collections.emptyMap();
+
+    @Property(name = "writeBatchingEnabled", boolValue = DEFAULT_WRITE_BATCHING_ENABLED,
+            label = "Indicates whether messages written to the same connection are flushed in batches")
+    private volatile boolean writeBatchingEnabled = DEFAULT_WRITE_BATCHING_ENABLED;
+
+    private MessagingMetrics messagingMetrics;
+
+    /**
+     * Hook for wiring up optional reference to a service.
+     *
+     * @param service service being announced
+     */
+    protected void bindComponentConfigService(ComponentConfigService service) {
+        if (cfgService == null) {
+            cfgService = service;
+            cfgService.registerProperties(getClass());
+            readComponentConfiguration();
+        }
+    }
+
+    /**
+     * Hook for unwiring optional reference to a service.
+     *
+     * @param service service being withdrawn
+     */
+    protected void unbindComponentConfigService(ComponentConfigService service) {
+        if (cfgService == service) {
+            cfgService.unregisterProperties(getClass(), false);
+            cfgService = null;
+        }
+    }
+
     @Activate
-    public void activate() throws Exception {
+    public void activate(ComponentContext context) throws Exception {
+        modified(context);
         ControllerNode localNode = clusterMetadataService.getLocalNode();
         getTlsParameters();
 
@@ -168,6 +235,7 @@ public class NettyMessagingManager implements MessagingService {
         }
         this.preamble = clusterMetadataService.getClusterMetadata().getName().hashCode();
         this.localEndpoint = new Endpoint(localNode.ip(), localNode.tcpPort());
+        this.messagingMetrics = new MessagingMetrics(metricsService);
         initEventLoopGroup();
         startAcceptingConnections();
         timeoutExecutor = Executors.newSingleThreadScheduledExecutor(
@@ -190,6 +258,114 @@ public class NettyMessagingManager implements MessagingService {
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+        configure(context.getProperties());
+    }
+
+    /**
+     * Extracts properties from the component configuration.
+     */
+    private void readComponentConfiguration() {
+        Set<ConfigProperty> configProperties = cfgService.getProperties(getClass().getName());
+        if (configProperties == null) {
+            return;
+        }
+        Dictionary<String, String> properties = new Hashtable<>();
+        configProperties.stream()
+                .filter(property -> property.value() != null)
+                .forEach(property -> properties.put(property.name(), property.value()));
+        configure(properties);
+    }
+
+    /**
+     * Applies the given configuration. Nothing is changed unless all the
+     * given values are valid.
+     *
+     * @param properties configuration properties
+     */
+    private void configure(Dictionary<?, ?> properties) {
+        int newCompressionThreshold;
+        Map<String, Integer> newSubjectCompressionThresholds;
+        boolean newWriteBatchingEnabled;
+        try {
+            String s = get(properties, "compressionThreshold");
+            newCompressionThreshold = isNullOrEmpty(s) ? compressionThreshold : Integer.parseInt(s.trim());
+
+            s = get(properties, "subjectCompressionThresholds");
+            newSubjectCompressionThresholds = s == null ? subjectCompressionThresholds
+                    : parseCompressionThresholds(s);
+
+            s = get(properties, "writeBatchingEnabled");
+            newWriteBatchingEnabled = isNullOrEmpty(s) ? writeBatchingEnabled : Boolean.parseBoolean(s.trim());
+        } catch (IllegalArgumentException | ClassCastException e) {
+            log.warn("Invalid messaging configuration; keeping the current one", e);
+            return;
+        }
+        compressionThreshold = newCompressionThreshold;
+        subjectCompressionThresholds = newSubjectCompressionThresholds;
+        writeBatchingEnabled = newWriteBatchingEnabled;
+        log.info("Configured. Compression threshold is {}, subject compression thresholds are {}, "
+                         + "write batching is {}",
+                 compressionThreshold, subjectCompressionThresholds,
+                 writeBatchingEnabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * Parses per-subject compression thresholds given as comma separated
+     * subject=bytes pairs.
+     *
+     * @param thresholds thresholds to parse
+     * @return compression thresholds keyed by subject
+     */
+    private static Map<String, Integer> parseCompressionThresholds(String thresholds) {
+        Map<String, Integer> parsed = Maps.newHashMap();
+        for (String entry : thresholds.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] pair = entry.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid subject compression threshold " + entry);
+            }
+            parsed.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return Collections.unmodifiableMap(parsed);
+    }
+
+    /**
+     * Returns the minimum payload length of messages to compress for the
+     * given subject.
+     *
+     * @param subject message subject
+     * @return compression threshold; zero or less if compression is disabled
+     */
+    int compressionThreshold(String subject) {
+        Integer threshold = subjectCompressionThresholds.get(subject);
+        return threshold != null ? threshold : compressionThreshold;
+    }
+
+    /**
+     * Creates the encoder for a new channel.
+     *
+     * @return message encoder
+     */
+    private MessageEncoder newEncoder() {
+        return new MessageEncoder(preamble, this::compressionThreshold, messagingMetrics);
+    }
+
+    /**
+     * Creates the write batching stage for a new channel.
+     *
+     * @return write batching handler
+     */
+    private WriteBatchingHandler newWriteBatcher() {
+        return new WriteBatchingHandler(() -> writeBatchingEnabled);
+    }
+
     private void getTlsParameters() {
         // default is TLS enabled unless key stores cannot be loaded
         enableNettyTls = Boolean.parseBoolean(System.getProperty("enableNettyTLS", Boolean.toString(TLS_ENABLED)));
@@ -549,7 +725,6 @@ public class NettyMessagingManager implements MessagingService {
      */
     private class SslServerCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder(preamble);
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
@@ -565,7 +740,8 @@ public class NettyMessagingManager implements MessagingService {
             serverSslEngine.setEnableSessionCreation(true);
 
             channel.pipeline().addLast("ssl", new io.netty.handler.ssl.SslHandler(serverSslEngine))
-                    .addLast("encoder", encoder)
+                    .addLast("batcher", newWriteBatcher())
+                    .addLast("encoder", newEncoder())
                     .addLast("decoder", new MessageDecoder())
                     .addLast("handler", dispatcher);
         }
@@ -576,7 +752,6 @@ public class NettyMessagingManager implements MessagingService {
      */
     private class SslClientCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder(preamble);
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
@@ -591,7 +766,8 @@ public class NettyMessagingManager implements MessagingService {
             clientSslEngine.setEnableSessionCreation(true);
 
             channel.pipeline().addLast("ssl", new io.netty.handler.ssl.SslHandler(clientSslEngine))
-                    .addLast("encoder", encoder)
+                    .addLast("batcher", newWriteBatcher())
+                    .addLast("encoder", newEncoder())
                     .addLast("decoder", new MessageDecoder())
                     .addLast("handler", dispatcher);
         }
@@ -602,12 +778,12 @@ public class NettyMessagingManager implements MessagingService {
      */
     private class BasicChannelInitializer extends ChannelInitializer<SocketChannel> {
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder(preamble);
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
             channel.pipeline()
-                    .addLast("encoder", encoder)
+                    .addLast("batcher", newWriteBatcher())
+                    .addLast("encoder", newEncoder())
                     .addLast("decoder", new MessageDecoder())
                     .addLast("handler", dispatcher);
         }
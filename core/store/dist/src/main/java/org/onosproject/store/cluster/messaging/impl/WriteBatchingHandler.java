@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Outbound handler that opportunistically batches writes by deferring
+ * flushes to the end of the pending event loop tasks.
+ * <p>
+ * Messages sent from outside the event loop are each written and flushed by
+ * a separate task. While batching is enabled, the first flush schedules a
+ * single flush behind the tasks already queued, so that messages written in
+ * the meantime go out together rather than one system call each.
+ */
+public class WriteBatchingHandler extends ChannelOutboundHandlerAdapter {
+
+    private final BooleanSupplier enabled;
+    private boolean flushPending;
+
+    /**
+     * Creates a handler batching writes while the given condition holds.
+     *
+     * @param enabled whether write batching is enabled
+     */
+    public WriteBatchingHandler(BooleanSupplier enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext context) throws Exception {
+        if (!enabled.getAsBoolean()) {
+            context.flush();
+        } else if (!flushPending) {
+            flushPending = true;
+            context.executor().execute(() -> {
+                flushPending = false;
+                context.flush();
+            });
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext context, ChannelPromise promise) throws Exception {
+        // do not hold back messages written before the channel is closed
+        if (flushPending) {
+            flushPending = false;
+            context.flush();
+        }
+        context.close(promise);
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowEntry.FlowLiveType;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.StoredFlowEntry;
+import org.onosproject.store.service.Serializer;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Flow table of a single device that keeps each flow entry as a serialized
+ * rule body plus statistics held in primitive arrays.
+ * <p>
+ * Lookups only decode the stored bodies whose hash, priority and table match
+ * the rule, which in practice is the matching entry alone.
+ * </p>
+ * <p>
+ * Entries are decoded on access, so the returned entries are copies; changes
+ * to their state or statistics must be written back with
+ * {@link #update(StoredFlowEntry)}.
+ * </p>
+ */
+final class CompactFlowTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte NO_LIVE_TYPE = -1;
+    private static final FlowEntryState[] STATES = FlowEntryState.values();
+    private static final FlowLiveType[] LIVE_TYPES = FlowLiveType.values();
+    private static final int[] NO_SLOTS = new int[0];
+
+    private final Serializer serializer;
+    // slots holding the entries of each flow id
+    private final Map<FlowId, int[]> index = Maps.newHashMap();
+
+    private byte[][] bodies;
+    private int[] hashes;
+    private int[] priorities;
+    private int[] tableIds;
+    private long[] created;
+    private long[] lives;
+    private long[] packets;
+    private long[] bytes;
+    private long[] lastSeen;
+    private byte[] states;
+    private byte[] liveTypes;
+
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int nextSlot;
+    private int size;
+    private long bodyBytes;
+
+    // the most recently decoded entry, so that a write back does not decode again
+    private StoredFlowEntry lastDecoded;
+    private int lastDecodedSlot = -1;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param serializer serializer for the rule bodies
+     */
+    CompactFlowTable(Serializer serializer) {
+        this.serializer = checkNotNull(serializer);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the stored entry equal to the given rule.
+     *
+     * @param rule flow rule
+     * @return decoded flow entry, or null if there is none
+     */
+    synchronized StoredFlowEntry get(FlowRule rule) {
+        // find() leaves the matching entry decoded
+        return find(rule) < 0 ? null : lastDecoded;
+    }
+
+    /**
+     * Stores the given entry, replacing an equal entry if present.
+     *
+     * @param entry flow entry
+     */
+    synchronized void put(StoredFlowEntry entry) {
+        int slot = find(entry);
+        if (slot < 0) {
+            slot = allocateSlot();
+            int[] slots = index.getOrDefault(entry.id(), NO_SLOTS);
+            int[] grown = Arrays.copyOf(slots, slots.length + 1);
+            grown[slots.length] = slot;
+            index.put(entry.id(), grown);
+            size++;
+        } else {
+            bodyBytes -= bodies[slot].length;
+        }
+        byte[] body = serializer.encode(entry);
+        bodies[slot] = body;
+        bodyBytes += body.length;
+        hashes[slot] = entry.hashCode();
+        priorities[slot] = entry.priority();
+        tableIds[slot] = entry.tableId();
+        created[slot] = entry instanceof DefaultFlowRule ? ((DefaultFlowRule) entry).created() : Long.MIN_VALUE;
+        writeStats(slot, entry);
+        invalidate();
+    }
+
+    /**
+     * Writes the state and statistics of a previously returned entry back
+     * into the table.
+     *
+     * @param entry flow entry
+     * @return true if the entry is still stored
+     */
+    synchronized boolean update(StoredFlowEntry entry) {
+        int slot = entry == lastDecoded ? lastDecodedSlot : find(entry);
+        if (slot < 0) {
+            return false;
+        }
+        writeStats(slot, entry);
+        return true;
+    }
+
+    /**
+     * Removes the stored entry equal to the given one, unless the stored
+     * entry was created after it.
+     *
+     * @param entry flow entry to remove
+     * @return removed entry, or null if nothing was removed
+     */
+    synchronized StoredFlowEntry remove(FlowEntry entry) {
+        int slot = find(entry);
+        if (slot < 0) {
+            return null;
+        }
+        if (entry instanceof DefaultFlowEntry && ((DefaultFlowEntry) entry).created() < created[slot]) {
+            return null;
+        }
+        StoredFlowEntry removed = lastDecoded;
+        release(entry.id(), slot);
+        return removed;
+    }
+
+    /**
+     * Returns all entries of the table.
+     *
+     * @return decoded flow entries
+     */
+    synchronized Set<FlowEntry> entries() {
+        Set<FlowEntry> entries = Sets.newHashSetWithExpectedSize(size);
+        index.values().forEach(slots -> {
+            for (int slot : slots) {
+                entries.add(decode(slot));
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Returns the entries of a flow id.
+     *
+     * @param flowId flow identifier
+     * @return decoded entries keyed by themselves; empty if there are none
+     */
+    synchronized Map<StoredFlowEntry, StoredFlowEntry> bucket(FlowId flowId) {
+        Map<StoredFlowEntry, StoredFlowEntry> bucket = Maps.newHashMap();
+        for (int slot : index.getOrDefault(flowId, NO_SLOTS)) {
+            StoredFlowEntry entry = decode(slot);
+            bucket.put(entry, entry);
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns a copy of the table in the on-heap bucket layout.
+     *
+     * @return decoded entries keyed by flow id
+     */
+    synchronized Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> copy() {
+        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> copy = Maps.newHashMap();
+        index.keySet().forEach(flowId -> copy.put(flowId, bucket(flowId)));
+        return copy;
+    }
+
+    /**
+     * Replaces the entries of a flow id.
+     *
+     * @param flowId flow identifier
+     * @param bucket new entries; an empty bucket removes the flow id
+     */
+    synchronized void putBucket(FlowId flowId, Map<StoredFlowEntry, StoredFlowEntry> bucket) {
+        for (int slot : index.getOrDefault(flowId, NO_SLOTS)) {
+            release(flowId, slot);
+        }
+        bucket.values().forEach(this::put);
+    }
+
+    /**
+     * Removes all entries.
+     */
+    synchronized void clear() {
+        index.clear();
+        freeCount = 0;
+        nextSlot = 0;
+        size = 0;
+        bodyBytes = 0;
+        allocate(INITIAL_CAPACITY);
+        invalidate();
+    }
+
+    /**
+     * Returns the number of stored entries.
+     *
+     * @return entry count
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes taken by the serialized rule bodies.
+     *
+     * @return body byte count
+     */
+    synchronized long bodyBytes() {
+        return bodyBytes;
+    }
+
+    /**
+     * Returns the slot of the entry equal to the given rule. The stored body
+     * of the matching slot is left decoded in {@code lastDecoded}.
+     *
+     * @param rule flow rule
+     * @return slot, or -1 if there is no equal entry
+     */
+    private int find(FlowRule rule) {
+        int[] slots = index.get(rule.id());
+        if (slots == null) {
+            return -1;
+        }
+        int hash = rule.hashCode();
+        for (int slot : slots) {
+            if (hashes[slot] == hash && priorities[slot] == rule.priority() && tableIds[slot] == rule.tableId()
+                    && rule.equals(decode(slot))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private StoredFlowEntry decode(int slot) {
+        StoredFlowEntry entry = serializer.decode(bodies[slot]);
+        entry.setLife(lives[slot], TimeUnit.NANOSECONDS);
+        entry.setPackets(packets[slot]);
+        entry.setBytes(bytes[slot]);
+        entry.setState(STATES[states[slot]]);
+        entry.setLiveType(liveTypes[slot] == NO_LIVE_TYPE ? null : LIVE_TYPES[liveTypes[slot]]);
+        if (entry instanceof DefaultFlowEntry) {
+            ((DefaultFlowEntry) entry).setLastSeen(lastSeen[slot]);
+        }
+        lastDecoded = entry;
+        lastDecodedSlot = slot;
+        return entry;
+    }
+
+    private void writeStats(int slot, StoredFlowEntry entry) {
+        lives[slot] = entry.life(TimeUnit.NANOSECONDS);
+        packets[slot] = entry.packets();
+        bytes[slot] = entry.bytes();
+        lastSeen[slot] = entry.lastSeen();
+        states[slot] = (byte) entry.state().ordinal();
+        liveTypes[slot] = entry.liveType() == null ? NO_LIVE_TYPE : (byte) entry.liveType().ordinal();
+    }
+
+    private void invalidate() {
+        lastDecoded = null;
+        lastDecodedSlot = -1;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == bodies.length) {
+            grow(bodies.length * 2);
+        }
+        return nextSlot++;
+    }
+
+    private void release(FlowId flowId, int slot) {
+        int[] slots = index.get(flowId);
+        if (slots.length == 1) {
+            index.remove(flowId);
+        } else {
+            int[] shrunk = new int[slots.length - 1];
+            int i = 0;
+            for (int s : slots) {
+                if (s != slot) {
+                    shrunk[i++] = s;
+                }
+            }
+            index.put(flowId, shrunk);
+        }
+        bodyBytes -= bodies[slot].length;
+        bodies[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        invalidate();
+    }
+
+    private void allocate(int capacity) {
+        bodies = new byte[capacity][];
+        hashes = new int[capacity];
+        priorities = new int[capacity];
+        tableIds = new int[capacity];
+        created = new long[capacity];
+        lives = new long[capacity];
+        packets = new long[capacity];
+        bytes = new long[capacity];
+        lastSeen = new long[capacity];
+        states = new byte[capacity];
+        liveTypes = new byte[capacity];
+    }
+
+    private void grow(int capacity) {
+        bodies = Arrays.copyOf(bodies, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        tableIds = Arrays.copyOf(tableIds, capacity);
+        created = Arrays.copyOf(created, capacity);
+        lives = Arrays.copyOf(lives, capacity);
+        packets = Arrays.copyOf(packets, capacity);
+        bytes = Arrays.copyOf(bytes, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        states = Arrays.copyOf(states, capacity);
+        liveTypes = Arrays.copyOf(liveTypes, capacity);
+    }
+}
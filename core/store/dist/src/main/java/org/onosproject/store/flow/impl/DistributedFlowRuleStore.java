@@ -23,14 +23,18 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.codahale.metrics.Counter;
 import com.google.common.collect.Streams;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -40,6 +44,9 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
@@ -93,6 +100,7 @@ import org.slf4j.Logger;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
@@ -101,6 +109,7 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.onosproject.net.flow.FlowRuleEvent.Type.RULE_REMOVED;
+import static org.onosproject.store.flow.ReplicaInfoEvent.Type.BACKUPS_CHANGED;
 import static org.onosproject.store.flow.ReplicaInfoEvent.Type.MASTER_CHANGED;
 import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.APPLY_BATCH_FLOWS;
 import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.FLOW_TABLE_BACKUP;
@@ -125,10 +134,18 @@ public class DistributedFlowRuleStore
     private static final int DEFAULT_MAX_BACKUP_COUNT = 0;
     private static final boolean DEFAULT_PERSISTENCE_ENABLED = false;
     private static final int DEFAULT_BACKUP_PERIOD_MILLIS = 2000;
+    private static final boolean DEFAULT_COMPACT_STORAGE_ENABLED = false;
     private static final long FLOW_RULE_STORE_TIMEOUT_MILLIS = 5000;
     // number of devices whose flow entries will be backed up in one communication round
     private static final int FLOW_TABLE_BACKUP_BATCH_SIZE = 1;
 
+    private static final String METRICS_COMPONENT = "FlowRuleStore";
+    private static final String BACKUP_FEATURE = "backup";
+    private static final String FULL_BACKUPS = "fullBackups";
+    private static final String INCREMENTAL_BACKUPS = "incrementalBackups";
+    private static final String BACKUP_RECORDS = "records";
+    private static final String BACKUP_BYTES = "bytes";
+
     @Property(name = "msgHandlerPoolSize", intValue = MESSAGE_HANDLER_THREAD_POOL_SIZE,
             label = "Number of threads in the message handler pool")
     private int msgHandlerPoolSize = MESSAGE_HANDLER_THREAD_POOL_SIZE;
@@ -144,6 +161,10 @@ public class DistributedFlowRuleStore
             label = "Max number of backup copies for each device")
     private volatile int backupCount = DEFAULT_MAX_BACKUP_COUNT;
 
+    @Property(name = "compactStorageEnabled", boolValue = DEFAULT_COMPACT_STORAGE_ENABLED,
+            label = "Indicates whether or not flow entries are kept serialized to reduce heap usage")
+    private boolean compactStorageEnabled = DEFAULT_COMPACT_STORAGE_ENABLED;
+
     private InternalFlowTable flowTable = new InternalFlowTable();
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -181,6 +202,17 @@ public class DistributedFlowRuleStore
     private final ScheduledExecutorService backupSenderExecutor =
             Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/flow", "backup-sender", log));
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private MetricsComponent metricsComponent;
+    private MetricsFeature backupFeature;
+    // backups sent to backup nodes: full and incremental tables, flow entries and bytes
+    private Counter fullBackups;
+    private Counter incrementalBackups;
+    private Counter backupRecords;
+    private Counter backupBytes;
+
     private EventuallyConsistentMap<DeviceId, List<TableStatisticsEntry>> deviceTableStats;
     private final EventuallyConsistentMapListener<DeviceId, List<TableStatisticsEntry>> tableStatsListener =
             new InternalTableStatsListener();
@@ -188,7 +220,11 @@ public class DistributedFlowRuleStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected StorageService storageService;
 
-    protected final Serializer serializer = Serializer.using(KryoNamespaces.POF);
+    protected final Serializer serializer = Serializer.using(KryoNamespace.newBuilder()
+            .register(KryoNamespaces.POF)
+            .nextId(KryoNamespaces.POF_MAX_SIZE + 1)
+            .register(FlowTableBackup.class)
+            .build("DistributedFlowRuleStore"));
 
     protected final KryoNamespace.Builder serializerBuilder = KryoNamespace.newBuilder()
             .register(KryoNamespaces.POF)
@@ -211,6 +247,13 @@ public class DistributedFlowRuleStore
         messageHandlingExecutor = Executors.newFixedThreadPool(
                 msgHandlerPoolSize, groupedThreads("onos/store/flow", "message-handlers", log));
 
+        metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+        backupFeature = metricsComponent.registerFeature(BACKUP_FEATURE);
+        fullBackups = metricsService.createCounter(metricsComponent, backupFeature, FULL_BACKUPS);
+        incrementalBackups = metricsService.createCounter(metricsComponent, backupFeature, INCREMENTAL_BACKUPS);
+        backupRecords = metricsService.createCounter(metricsComponent, backupFeature, BACKUP_RECORDS);
+        backupBytes = metricsService.createCounter(metricsComponent, backupFeature, BACKUP_BYTES);
+
         registerMessageHandlers(messageHandlingExecutor);
 
         replicaInfoManager.addListener(flowTable);
@@ -243,6 +286,10 @@ public class DistributedFlowRuleStore
         eventHandler.shutdownNow();
         messageHandlingExecutor.shutdownNow();
         backupSenderExecutor.shutdownNow();
+        metricsService.removeMetric(metricsComponent, backupFeature, FULL_BACKUPS);
+        metricsService.removeMetric(metricsComponent, backupFeature, INCREMENTAL_BACKUPS);
+        metricsService.removeMetric(metricsComponent, backupFeature, BACKUP_RECORDS);
+        metricsService.removeMetric(metricsComponent, backupFeature, BACKUP_BYTES);
         log.info("Stopped");
     }
 
@@ -258,6 +305,7 @@ public class DistributedFlowRuleStore
         int newPoolSize;
         int newBackupPeriod;
         int newBackupCount;
+        boolean newCompactStorageEnabled;
         try {
             String s = get(properties, "msgHandlerPoolSize");
             newPoolSize = isNullOrEmpty(s) ? msgHandlerPoolSize : Integer.parseInt(s.trim());
@@ -267,10 +315,14 @@ public class DistributedFlowRuleStore
 
             s = get(properties, "backupCount");
             newBackupCount = isNullOrEmpty(s) ? backupCount : Integer.parseInt(s.trim());
+
+            s = get(properties, "compactStorageEnabled");
+            newCompactStorageEnabled = isNullOrEmpty(s) ? compactStorageEnabled : Boolean.parseBoolean(s.trim());
         } catch (NumberFormatException | ClassCastException e) {
             newPoolSize = MESSAGE_HANDLER_THREAD_POOL_SIZE;
             newBackupPeriod = DEFAULT_BACKUP_PERIOD_MILLIS;
             newBackupCount = DEFAULT_MAX_BACKUP_COUNT;
+            newCompactStorageEnabled = DEFAULT_COMPACT_STORAGE_ENABLED;
         }
 
         boolean restartBackupTask = false;
@@ -303,6 +355,10 @@ public class DistributedFlowRuleStore
         if (backupCount != newBackupCount) {
             backupCount = newBackupCount;
         }
+        if (compactStorageEnabled != newCompactStorageEnabled) {
+            compactStorageEnabled = newCompactStorageEnabled;
+            flowTable.setCompact(compactStorageEnabled && !persistenceEnabled);
+        }
         logConfig("Reconfigured");
     }
 
@@ -331,8 +387,8 @@ public class DistributedFlowRuleStore
     }
 
     private void logConfig(String prefix) {
-        log.info("{} with msgHandlerPoolSize = {}; backupPeriod = {}, backupCount = {}",
-                 prefix, msgHandlerPoolSize, backupPeriod, backupCount);
+        log.info("{} with msgHandlerPoolSize = {}; backupPeriod = {}, backupCount = {}, compactStorageEnabled = {}",
+                 prefix, msgHandlerPoolSize, backupPeriod, backupCount, compactStorageEnabled);
     }
 
     // This is not a efficient operation on a distributed sharded
@@ -345,6 +401,14 @@ public class DistributedFlowRuleStore
                         .sum();
     }
 
+    @Override
+    public int getFlowRuleCount(DeviceId deviceId) {
+        if (Objects.equals(local, mastershipService.getMasterFor(deviceId))) {
+            return flowTable.getFlowRuleCount(deviceId);
+        }
+        return Iterables.size(getFlowEntries(deviceId));
+    }
+
     @Override
     public FlowEntry getFlowEntry(FlowRule rule) {
         NodeId master = mastershipService.getMasterFor(rule.deviceId());
@@ -504,6 +568,7 @@ public class DistributedFlowRuleStore
                             if (entry != null) {
                                 //FIXME modification of "stored" flow entry outside of flow table
                                 entry.setState(FlowEntryState.PENDING_REMOVE);
+                                flowTable.update(entry);
                                 log.debug("Setting state of rule to pending remove: {}", entry);
                                 return op;
                             }
@@ -536,6 +601,7 @@ public class DistributedFlowRuleStore
             if (stored != null &&
                     stored.state() != FlowEntryState.PENDING_ADD) {
                 stored.setState(FlowEntryState.PENDING_ADD);
+                flowTable.update(stored);
                 return new FlowRuleEvent(Type.RULE_UPDATED, rule);
             }
         }
@@ -566,8 +632,10 @@ public class DistributedFlowRuleStore
             stored.setLastSeen();
             if (stored.state() == FlowEntryState.PENDING_ADD) {
                 stored.setState(FlowEntryState.ADDED);
+                flowTable.update(stored);
                 return new FlowRuleEvent(Type.RULE_ADDED, rule);
             }
+            flowTable.update(stored);
             return new FlowRuleEvent(Type.RULE_UPDATED, rule);
         }
 
@@ -689,14 +757,69 @@ public class DistributedFlowRuleStore
         }
     }
 
+    // visible for testing
+    long changeLogVersion(DeviceId deviceId) {
+        return flowTable.changeLog(deviceId).version();
+    }
+
+    /**
+     * Versioned log of the flow ids changed on a device, so that backups
+     * only need to carry the buckets changed since the version a backup
+     * node already holds.
+     */
+    static final class DeviceChangeLog {
+        private long version;
+        // changes up to this version have been pruned
+        private long floor;
+        private final Map<FlowId, Long> changes = Maps.newHashMap();
+
+        synchronized void record(FlowId flowId) {
+            changes.put(flowId, ++version);
+        }
+
+        // forces every backup node to catch up without changing any bucket
+        synchronized void touch() {
+            ++version;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized long changedSince(long since, Set<FlowId> changed) {
+            changes.forEach((flowId, v) -> {
+                if (v > since) {
+                    changed.add(flowId);
+                }
+            });
+            return version;
+        }
+
+        synchronized long floor() {
+            return floor;
+        }
+
+        synchronized void prune(long upTo) {
+            changes.values().removeIf(v -> v <= upTo);
+            floor = Math.max(floor, upTo);
+        }
+    }
+
     private class InternalFlowTable implements ReplicaInfoEventListener {
 
         //TODO replace the Map<V,V> with ExtendedSet
         private final Map<DeviceId, Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>>
                 flowEntries = Maps.newConcurrentMap();
+        // serialized tables used instead of flowEntries in compact storage mode
+        private final Map<DeviceId, CompactFlowTable> compactTables = Maps.newConcurrentMap();
+        private volatile boolean compact;
 
-        private final Map<BackupOperation, Long> lastBackupTimes = Maps.newConcurrentMap();
-        private final Map<DeviceId, Long> lastUpdateTimes = Maps.newConcurrentMap();
+        private final Map<DeviceId, DeviceChangeLog> changeLogs = Maps.newConcurrentMap();
+        // flow table version each backup node is known to hold
+        private final Map<BackupOperation, Long> backedUpVersions = Maps.newConcurrentMap();
+        private final Set<BackupOperation> inFlightBackups = Sets.newConcurrentHashSet();
+        // version of the local backup copy of devices mastered elsewhere
+        private final Map<DeviceId, Long> backupCopyVersions = Maps.newConcurrentMap();
 
         @Override
         public void event(ReplicaInfoEvent event) {
@@ -709,48 +832,151 @@ public class DistributedFlowRuleStore
                 return;
             }
             if (event.type() == MASTER_CHANGED) {
-                lastUpdateTimes.put(deviceId, System.currentTimeMillis());
+                // what the backup nodes hold was replicated by another master
+                backedUpVersions.keySet().removeIf(op -> op.deviceId.equals(deviceId));
+                changeLog(deviceId).touch();
+            } else if (event.type() == BACKUPS_CHANGED) {
+                List<NodeId> backupNodes = getBackupNodes(deviceId);
+                backedUpVersions.keySet().removeIf(op -> op.deviceId.equals(deviceId)
+                        && !backupNodes.contains(op.nodeId));
             }
             backupSenderExecutor.schedule(this::backup, 0, TimeUnit.SECONDS);
         }
 
+        /**
+         * Switches between on-heap and compact storage, moving the stored
+         * flow entries over to the new representation. Meant to be toggled
+         * on a quiet store; updates racing with the switch may be lost until
+         * the device reports its flows again.
+         *
+         * @param enabled true to keep flow entries serialized
+         */
+        private synchronized void setCompact(boolean enabled) {
+            if (compact == enabled) {
+                return;
+            }
+            if (enabled) {
+                flowEntries.forEach((deviceId, table) -> {
+                    CompactFlowTable compactTable = compactTable(deviceId);
+                    table.forEach(compactTable::putBucket);
+                });
+                compact = true;
+                flowEntries.clear();
+            } else {
+                compactTables.forEach((deviceId, compactTable) ->
+                        getFlowTable(deviceId).putAll(compactTable.copy()));
+                compact = false;
+                compactTables.clear();
+            }
+        }
+
+        private CompactFlowTable compactTable(DeviceId deviceId) {
+            return compactTables.computeIfAbsent(deviceId, id -> new CompactFlowTable(serializer));
+        }
+
+        private Set<DeviceId> deviceIds() {
+            return compact ? compactTables.keySet() : flowEntries.keySet();
+        }
+
+        private DeviceChangeLog changeLog(DeviceId deviceId) {
+            return changeLogs.computeIfAbsent(deviceId, id -> new DeviceChangeLog());
+        }
+
         private void sendBackups(NodeId nodeId, Set<DeviceId> deviceIds) {
             // split up the devices into smaller batches and send them separately.
             Iterables.partition(deviceIds, FLOW_TABLE_BACKUP_BATCH_SIZE)
                      .forEach(ids -> backupFlowEntries(nodeId, Sets.newHashSet(ids)));
         }
 
+        /**
+         * Prepares the backup of a device for a node holding the given version.
+         *
+         * @param deviceId        device identifier
+         * @param backedUpVersion version held by the backup node, or null if unknown
+         * @return full backup if the version is unknown, incremental backup otherwise
+         */
+        private FlowTableBackup prepareBackup(DeviceId deviceId, Long backedUpVersion) {
+            DeviceChangeLog changeLog = changeLog(deviceId);
+            if (backedUpVersion == null || backedUpVersion < changeLog.floor()) {
+                // unknown copy, or one older than the retained changes
+                long version = changeLog.version();
+                return new FlowTableBackup(deviceId, -1, version, true, getFlowTableCopy(deviceId));
+            }
+            Set<FlowId> changed = Sets.newHashSet();
+            long version = changeLog.changedSince(backedUpVersion, changed);
+            Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets = Maps.newHashMap();
+            if (compact) {
+                CompactFlowTable compactTable = compactTable(deviceId);
+                changed.forEach(flowId -> buckets.put(flowId, compactTable.bucket(flowId)));
+                return new FlowTableBackup(deviceId, backedUpVersion, version, false, buckets);
+            }
+            Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> table = getFlowTable(deviceId);
+            changed.forEach(flowId -> {
+                Map<StoredFlowEntry, StoredFlowEntry> bucket = table.get(flowId);
+                buckets.put(flowId, bucket == null ? Maps.newHashMap() : Maps.newHashMap(bucket));
+            });
+            return new FlowTableBackup(deviceId, backedUpVersion, version, false, buckets);
+        }
+
         private void backupFlowEntries(NodeId nodeId, Set<DeviceId> deviceIds) {
             if (deviceIds.isEmpty()) {
                 return;
             }
-            log.debug("Sending flowEntries for devices {} to {} for backup.", deviceIds, nodeId);
-            Map<DeviceId, Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>>
-                    deviceFlowEntries = Maps.newConcurrentMap();
-            deviceIds.forEach(id -> deviceFlowEntries.put(id, getFlowTableCopy(id)));
-            clusterCommunicator.<Map<DeviceId,
-                                 Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>>,
-                                 Set<DeviceId>>
-                    sendAndReceive(deviceFlowEntries,
-                                   FLOW_TABLE_BACKUP,
-                                   serializer::encode,
-                                   serializer::decode,
-                                   nodeId)
-                    .whenComplete((backedupDevices, error) -> {
-                        Set<DeviceId> devicesNotBackedup = error != null ?
-                            deviceFlowEntries.keySet() :
-                            Sets.difference(deviceFlowEntries.keySet(), backedupDevices);
-                        if (devicesNotBackedup.size() > 0) {
-                            log.warn("Failed to backup devices: {}. Reason: {}, Node: {}",
-                                     devicesNotBackedup, error != null ? error.getMessage() : "none",
-                                     nodeId);
-                        }
-                        if (backedupDevices != null) {
-                            backedupDevices.forEach(id -> {
-                                lastBackupTimes.put(new BackupOperation(nodeId, id), System.currentTimeMillis());
-                            });
-                        }
-                    });
+            List<BackupOperation> reserved = Lists.newArrayList();
+            List<FlowTableBackup> backups = Lists.newArrayList();
+            CompletableFuture<Set<DeviceId>> reply;
+            try {
+                deviceIds.forEach(id -> {
+                    BackupOperation op = new BackupOperation(nodeId, id);
+                    if (inFlightBackups.add(op)) {
+                        reserved.add(op);
+                        backups.add(prepareBackup(id, backedUpVersions.get(op)));
+                    }
+                });
+                if (backups.isEmpty()) {
+                    return;
+                }
+                log.debug("Sending flowEntries for devices {} to {} for backup.", deviceIds, nodeId);
+
+                byte[] payload = serializer.encode(backups);
+                backups.forEach(backup -> {
+                    (backup.isFull() ? fullBackups : incrementalBackups).inc();
+                    backupRecords.inc(backup.size());
+                });
+                backupBytes.inc(payload.length);
+
+                reply = clusterCommunicator.sendAndReceive(payload,
+                                                           FLOW_TABLE_BACKUP,
+                                                           Function.identity(),
+                                                           serializer::decode,
+                                                           nodeId);
+            } catch (RuntimeException e) {
+                // nothing was sent; release the devices so the next round retries them in full
+                reserved.forEach(op -> {
+                    backedUpVersions.remove(op);
+                    inFlightBackups.remove(op);
+                });
+                throw e;
+            }
+            reply.whenComplete((backedupDevices, error) -> {
+                Set<DeviceId> devicesNotBackedup = Sets.newHashSet();
+                backups.forEach(backup -> {
+                    BackupOperation op = new BackupOperation(nodeId, backup.deviceId());
+                    if (error == null && backedupDevices.contains(backup.deviceId())) {
+                        backedUpVersions.put(op, backup.version());
+                    } else {
+                        // the node's copy is unknown now; the next round sends it in full
+                        backedUpVersions.remove(op);
+                        devicesNotBackedup.add(backup.deviceId());
+                    }
+                    inFlightBackups.remove(op);
+                });
+                if (devicesNotBackedup.size() > 0) {
+                    log.warn("Failed to backup devices: {}. Reason: {}, Node: {}",
+                             devicesNotBackedup, error != null ? error.getMessage() : "none",
+                             nodeId);
+                }
+            });
         }
 
         /**
@@ -782,6 +1008,9 @@ public class DistributedFlowRuleStore
         }
 
         private Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> getFlowTableCopy(DeviceId deviceId) {
+            if (compact) {
+                return compactTable(deviceId).copy();
+            }
             Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> copy = Maps.newHashMap();
             if (persistenceEnabled) {
                 return flowEntries.computeIfAbsent(deviceId, id -> persistenceService
@@ -812,10 +1041,29 @@ public class DistributedFlowRuleStore
         }
 
         private StoredFlowEntry getFlowEntryInternal(FlowRule rule) {
-            return getFlowEntriesInternal(rule.deviceId(), rule.id()).get(rule);
+            if (compact) {
+                return compactTable(rule.deviceId()).get(rule);
+            }
+            // plain lookup; do not leave an empty bucket behind for unknown rules
+            Map<StoredFlowEntry, StoredFlowEntry> entries = getFlowTable(rule.deviceId()).get(rule.id());
+            return entries == null ? null : entries.get(rule);
+        }
+
+        private int getFlowRuleCount(DeviceId deviceId) {
+            if (compact) {
+                return compactTable(deviceId).size();
+            }
+            int count = 0;
+            for (Map<StoredFlowEntry, StoredFlowEntry> entries : getFlowTable(deviceId).values()) {
+                count += entries.size();
+            }
+            return count;
         }
 
         private Set<FlowEntry> getFlowEntriesInternal(DeviceId deviceId) {
+            if (compact) {
+                return compactTable(deviceId).entries();
+            }
             return getFlowTable(deviceId).values().stream()
                         .flatMap(m -> m.values().stream())
                         .collect(Collectors.toSet());
@@ -829,18 +1077,52 @@ public class DistributedFlowRuleStore
             return getFlowEntriesInternal(deviceId);
         }
 
+        /**
+         * Writes back changes made to an entry returned by this table and
+         * records them for the next incremental backup.
+         *
+         * @param entry flow entry
+         */
+        public void update(StoredFlowEntry entry) {
+            if (compact) {
+                // entries are decoded copies in compact mode
+                compactTable(entry.deviceId()).update(entry);
+            }
+            changeLog(entry.deviceId()).record(entry.id());
+        }
+
         public void add(FlowEntry rule) {
+            if (compact) {
+                compactTable(rule.deviceId()).put((StoredFlowEntry) rule);
+                changeLog(rule.deviceId()).record(rule.id());
+                return;
+            }
             getFlowEntriesInternal(rule.deviceId(), rule.id())
                     .compute((StoredFlowEntry) rule, (k, stored) -> {
                         //TODO compare stored and rule timestamps
                         //TODO the key is not updated
                         return (StoredFlowEntry) rule;
                     });
-            lastUpdateTimes.put(rule.deviceId(), System.currentTimeMillis());
+            changeLog(rule.deviceId()).record(rule.id());
         }
 
         public FlowEntry remove(DeviceId deviceId, FlowEntry rule) {
             final AtomicReference<FlowEntry> removedRule = new AtomicReference<>();
+            if (compact) {
+                removedRule.set(compactTable(rule.deviceId()).remove(rule));
+            } else {
+                removeInternal(rule, removedRule);
+            }
+
+            if (removedRule.get() != null) {
+                changeLog(deviceId).record(rule.id());
+                return removedRule.get();
+            } else {
+                return null;
+            }
+        }
+
+        private void removeInternal(FlowEntry rule, AtomicReference<FlowEntry> removedRule) {
             getFlowEntriesInternal(rule.deviceId(), rule.id())
                 .computeIfPresent((StoredFlowEntry) rule, (k, stored) -> {
                     if (rule instanceof DefaultFlowEntry) {
@@ -858,21 +1140,22 @@ public class DistributedFlowRuleStore
                     removedRule.set(stored);
                     return null;
                 });
-
-            if (removedRule.get() != null) {
-                lastUpdateTimes.put(deviceId, System.currentTimeMillis());
-                return removedRule.get();
-            } else {
-                return null;
-            }
         }
 
         public void purgeFlowRule(DeviceId deviceId) {
             flowEntries.remove(deviceId);
+            compactTables.remove(deviceId);
+            changeLogs.remove(deviceId);
+            backupCopyVersions.remove(deviceId);
+            backedUpVersions.keySet().removeIf(op -> op.deviceId.equals(deviceId));
         }
 
         public void purgeFlowRules() {
             flowEntries.clear();
+            compactTables.clear();
+            changeLogs.clear();
+            backupCopyVersions.clear();
+            backedUpVersions.clear();
         }
 
         private List<NodeId> getBackupNodes(DeviceId deviceId) {
@@ -886,43 +1169,103 @@ public class DistributedFlowRuleStore
             try {
                 // compute a mapping from node to the set of devices whose flow entries it should backup
                 Map<NodeId, Set<DeviceId>> devicesToBackupByNode = Maps.newHashMap();
-                flowEntries.keySet().forEach(deviceId -> {
-                    List<NodeId> backupNodes = getBackupNodes(deviceId);
-                    backupNodes.forEach(backupNode -> {
-                            if (lastBackupTimes.getOrDefault(new BackupOperation(backupNode, deviceId), 0L)
-                                    < lastUpdateTimes.getOrDefault(deviceId, 0L)) {
-                                devicesToBackupByNode.computeIfAbsent(backupNode,
-                                                                      nodeId -> Sets.newHashSet()).add(deviceId);
-                            }
-                    });
+                Map<DeviceId, List<NodeId>> backupNodesByDevice = Maps.newHashMap();
+                deviceIds().forEach(deviceId -> {
+                    if (mastershipService.isLocalMaster(deviceId)) {
+                        backupNodesByDevice.put(deviceId, getBackupNodes(deviceId));
+                    }
+                });
+                // nodes that left the backup set are not considered when pruning below, so
+                // forget what they hold; should they come back they get a full backup
+                backedUpVersions.keySet().removeIf(op -> {
+                    List<NodeId> backupNodes = backupNodesByDevice.get(op.deviceId);
+                    return backupNodes != null && !backupNodes.contains(op.nodeId);
                 });
+                backupNodesByDevice.forEach((deviceId, backupNodes) -> {
+                    // only the master replicates; other devices hold a backup copy
+                    DeviceChangeLog changeLog = changeLog(deviceId);
+                    long version = changeLog.version();
+                    long oldest = version;
+                    for (NodeId backupNode : backupNodes) {
+                        long backedUp = backedUpVersions.getOrDefault(new BackupOperation(backupNode, deviceId), 0L);
+                        oldest = Math.min(oldest, backedUp);
+                        if (backedUp < version) {
+                            devicesToBackupByNode.computeIfAbsent(backupNode,
+                                                                  nodeId -> Sets.newHashSet()).add(deviceId);
+                        }
+                    }
+                    // changes every backup node has seen are no longer needed
+                    changeLog.prune(oldest);
+                });
+                long records = backupRecords.getCount();
+                long bytes = backupBytes.getCount();
                 // send the device flow entries to their respective backup nodes
                 devicesToBackupByNode.forEach(this::sendBackups);
+                if (!devicesToBackupByNode.isEmpty()) {
+                    log.debug("Backup round replicated {} flow entries in {} bytes",
+                              backupRecords.getCount() - records, backupBytes.getCount() - bytes);
+                }
             } catch (Exception e) {
                 log.error("Backup failed.", e);
             }
         }
 
-        private Set<DeviceId> onBackupReceipt(Map<DeviceId,
-                Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>>> flowTables) {
-            log.debug("Received flowEntries for {} to backup", flowTables.keySet());
+        private Set<DeviceId> onBackupReceipt(List<FlowTableBackup> backups) {
+            log.debug("Received flowEntries for {} to backup", backups);
             Set<DeviceId> backedupDevices = Sets.newHashSet();
             try {
-                flowTables.forEach((deviceId, deviceFlowTable) -> {
+                backups.forEach(backup -> {
+                    DeviceId deviceId = backup.deviceId();
                     // Only process those devices are that not managed by the local node.
-                    if (!Objects.equals(local, mastershipService.getMasterFor(deviceId))) {
-                        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> backupFlowTable =
-                                getFlowTable(deviceId);
-                        backupFlowTable.clear();
-                        backupFlowTable.putAll(deviceFlowTable);
+                    if (Objects.equals(local, mastershipService.getMasterFor(deviceId))) {
+                        return;
+                    }
+                    if (compact) {
+                        if (!applyCompactBackup(backup)) {
+                            return;
+                        }
+                        backupCopyVersions.put(deviceId, backup.version());
                         backedupDevices.add(deviceId);
+                        return;
                     }
+                    Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> backupFlowTable = getFlowTable(deviceId);
+                    if (backup.isFull()) {
+                        backupFlowTable.clear();
+                        backupFlowTable.putAll(backup.buckets());
+                    } else if (Objects.equals(backupCopyVersions.get(deviceId), backup.baseVersion())) {
+                        backup.buckets().forEach((flowId, bucket) -> {
+                            if (bucket.isEmpty()) {
+                                backupFlowTable.remove(flowId);
+                            } else {
+                                backupFlowTable.put(flowId, new ConcurrentHashMap<>(bucket));
+                            }
+                        });
+                    } else {
+                        // not acknowledged, so the master falls back to a full backup
+                        log.debug("Backup copy of {} is not at version {}", deviceId, backup.baseVersion());
+                        return;
+                    }
+                    backupCopyVersions.put(deviceId, backup.version());
+                    backedupDevices.add(deviceId);
                 });
             } catch (Exception e) {
                 log.warn("Failure processing backup request", e);
             }
             return backedupDevices;
         }
+
+        private boolean applyCompactBackup(FlowTableBackup backup) {
+            DeviceId deviceId = backup.deviceId();
+            CompactFlowTable backupFlowTable = compactTable(deviceId);
+            if (backup.isFull()) {
+                backupFlowTable.clear();
+            } else if (!Objects.equals(backupCopyVersions.get(deviceId), backup.baseVersion())) {
+                log.debug("Backup copy of {} is not at version {}", deviceId, backup.baseVersion());
+                return false;
+            }
+            backup.buckets().forEach(backupFlowTable::putBucket);
+            return true;
+        }
     }
 
     @Override
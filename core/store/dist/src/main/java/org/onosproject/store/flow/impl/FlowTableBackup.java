@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.Map;
+
+/**
+ * Flow table backup of a single device sent from the device master to a
+ * backup node.
+ * <p>
+ * A full backup replaces the backup copy of the device; an incremental one
+ * carries only the flow id buckets changed since {@code baseVersion}, an
+ * empty bucket meaning that all entries under that flow id were removed.
+ * An incremental backup applies only if the backup copy is at
+ * {@code baseVersion}.
+ * </p>
+ */
+public final class FlowTableBackup {
+
+    private final DeviceId deviceId;
+    private final long baseVersion;
+    private final long version;
+    private final boolean full;
+    private final Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets;
+
+    /**
+     * Creates a new flow table backup.
+     *
+     * @param deviceId    device identifier
+     * @param baseVersion version of the backup copy the changes apply to
+     * @param version     version of the device flow table after applying the changes
+     * @param full        true if the buckets are a complete copy of the flow table
+     * @param buckets     flow entries grouped by flow id
+     */
+    public FlowTableBackup(DeviceId deviceId, long baseVersion, long version, boolean full,
+                           Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets) {
+        this.deviceId = deviceId;
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.full = full;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Returns the device identifier.
+     *
+     * @return device identifier
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Returns the version of the backup copy the changes apply to.
+     *
+     * @return base version
+     */
+    public long baseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * Returns the version of the device flow table this backup brings the copy to.
+     *
+     * @return version
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns whether this backup is a complete copy of the flow table.
+     *
+     * @return true for a full backup
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Returns the flow entries, grouped by flow id.
+     *
+     * @return flow id buckets
+     */
+    public Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets() {
+        return buckets;
+    }
+
+    /**
+     * Returns the number of flow entries carried by this backup.
+     *
+     * @return number of flow entries
+     */
+    public int size() {
+        return buckets.values().stream().mapToInt(Map::size).sum();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("deviceId", deviceId)
+                .add("baseVersion", baseVersion)
+                .add("version", version)
+                .add("full", full)
+                .add("buckets", buckets.size())
+                .toString();
+    }
+}
@@ -48,10 +48,10 @@ import org.onosproject.store.service.MapEvent;
 import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
+import org.onosproject.store.service.Versioned;
 import org.onosproject.store.service.DistributedPrimitive.Status;
 import org.slf4j.Logger;
 
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -60,7 +60,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
-import java.util.function.Predicate;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -82,6 +82,8 @@ public class DistributedHostStore
 
     private final Logger log = getLogger(getClass());
 
+    private static final long UNKNOWN_VERSION = -1;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected StorageService storageService;
 
@@ -89,6 +91,21 @@ public class DistributedHostStore
     private Map<HostId, DefaultHost> hosts;
     private Map<IpAddress, Set<Host>> hostsByIp;
 
+    // Secondary indexes, updated by the writes of this instance as well as
+    // from map events by the location tracker
+    private final Map<ConnectPoint, Map<HostId, Host>> hostsByLocation =
+            new ConcurrentHashMap<>();
+    private final Map<DeviceId, Map<HostId, Host>> hostsByDevice =
+            new ConcurrentHashMap<>();
+    private final Map<MacAddress, Map<HostId, Host>> hostsByMac =
+            new ConcurrentHashMap<>();
+    private final Map<VlanId, Map<HostId, Host>> hostsByVlan =
+            new ConcurrentHashMap<>();
+    // Version of the host last applied to the secondary indexes, so that map
+    // events older than a local write do not roll the indexes back. Hosts
+    // removed locally stay as a null host until their removal event arrives.
+    private final Map<HostId, IndexedHost> indexedHosts = new ConcurrentHashMap<>();
+
     private MapEventListener<HostId, DefaultHost> hostLocationTracker =
             new HostLocationTracker();
 
@@ -115,21 +132,38 @@ public class DistributedHostStore
         executor = newSingleThreadScheduledExecutor(groupedThreads("onos/hosts", "store", log));
         statusChangeListener = status -> {
             if (status == Status.ACTIVE) {
-                executor.execute(this::loadHostsByIp);
+                executor.execute(this::loadHostIndexes);
             }
         };
         hostsConsistentMap.addStatusChangeListener(statusChangeListener);
-        loadHostsByIp();
+        loadHostIndexes();
         log.info("Started");
     }
 
     @Deactivate
     public void deactivate() {
         hostsConsistentMap.removeListener(hostLocationTracker);
+        hostsConsistentMap.removeStatusChangeListener(statusChangeListener);
+        executor.shutdown();
+        clearHostIndexes();
 
         log.info("Stopped");
     }
 
+    private synchronized void loadHostIndexes() {
+        loadHostsByIp();
+        clearHostIndexes();
+        hostsConsistentMap.entrySet().forEach(entry -> indexHost(entry.getKey(), entry.getValue()));
+    }
+
+    private void clearHostIndexes() {
+        indexedHosts.clear();
+        hostsByLocation.clear();
+        hostsByDevice.clear();
+        hostsByMac.clear();
+        hostsByVlan.clear();
+    }
+
     private void loadHostsByIp() {
         hostsByIp = new ConcurrentHashMap<IpAddress, Set<Host>>();
         hostsConsistentMap.asJavaMap().values().forEach(host -> {
@@ -190,7 +224,7 @@ public class DistributedHostStore
                                         HostId hostId,
                                         HostDescription hostDescription,
                                         boolean replaceIPs) {
-        hostsConsistentMap.computeIf(hostId,
+        Versioned<DefaultHost> host = hostsConsistentMap.computeIf(hostId,
                        existingHost -> shouldUpdate(existingHost, providerId,
                                                     hostDescription, replaceIPs),
                        (id, existingHost) -> {
@@ -220,20 +254,24 @@ public class DistributedHostStore
                                                   hostDescription.configured(),
                                                   annotations);
                        });
+        indexHost(hostId, host);
         return null;
     }
 
     // TODO No longer need to return HostEvent
     @Override
     public HostEvent removeHost(HostId hostId) {
-        hosts.remove(hostId);
+        Versioned<DefaultHost> removed = hostsConsistentMap.remove(hostId);
+        if (removed != null) {
+            unindexHost(hostId, removed.version(), false);
+        }
         return null;
     }
 
     // TODO No longer need to return HostEvent
     @Override
     public HostEvent removeIp(HostId hostId, IpAddress ipAddress) {
-        hosts.compute(hostId, (id, existingHost) -> {
+        Versioned<DefaultHost> host = hostsConsistentMap.compute(hostId, (id, existingHost) -> {
             if (existingHost != null) {
                 checkState(Objects.equals(hostId.mac(), existingHost.mac()),
                         "Existing and new MAC addresses differ.");
@@ -259,12 +297,13 @@ public class DistributedHostStore
             }
             return null;
         });
+        indexHost(hostId, host);
         return null;
     }
 
     @Override
     public void removeLocation(HostId hostId, HostLocation location) {
-        hosts.compute(hostId, (id, existingHost) -> {
+        Versioned<DefaultHost> host = hostsConsistentMap.compute(hostId, (id, existingHost) -> {
             if (existingHost != null) {
                 checkState(Objects.equals(hostId.mac(), existingHost.mac()),
                         "Existing and new MAC addresses differ.");
@@ -283,6 +322,12 @@ public class DistributedHostStore
             }
             return null;
         });
+        if (host != null) {
+            indexHost(hostId, host);
+        } else {
+            // the version of the removed host is not known here
+            unindexHost(hostId, UNKNOWN_VERSION, false);
+        }
     }
 
     @Override
@@ -302,12 +347,12 @@ public class DistributedHostStore
 
     @Override
     public Set<Host> getHosts(VlanId vlanId) {
-        return filter(hosts.values(), host -> Objects.equals(host.vlan(), vlanId));
+        return lookup(hostsByVlan, vlanId);
     }
 
     @Override
     public Set<Host> getHosts(MacAddress mac) {
-        return filter(hosts.values(), host -> Objects.equals(host.mac(), mac));
+        return lookup(hostsByMac, mac);
     }
 
     @Override
@@ -318,25 +363,112 @@ public class DistributedHostStore
 
     @Override
     public Set<Host> getConnectedHosts(ConnectPoint connectPoint) {
-        Set<Host> filtered = hosts.entrySet().stream()
-                .filter(entry -> entry.getValue().locations().contains(connectPoint))
-                .map(Map.Entry::getValue)
-                .collect(Collectors.toSet());
-        return ImmutableSet.copyOf(filtered);
+        return lookup(hostsByLocation, connectPoint(connectPoint));
     }
 
     @Override
     public Set<Host> getConnectedHosts(DeviceId deviceId) {
-        Set<Host> filtered = hosts.entrySet().stream()
-                .filter(entry -> entry.getValue().locations().stream()
-                        .map(HostLocation::deviceId).anyMatch(dpid -> dpid.equals(deviceId)))
-                .map(Map.Entry::getValue)
-                .collect(Collectors.toSet());
-        return ImmutableSet.copyOf(filtered);
+        return lookup(hostsByDevice, deviceId);
+    }
+
+    private static <K> Set<Host> lookup(Map<K, Map<HostId, Host>> index, K key) {
+        Map<HostId, Host> hosts = index.get(key);
+        return hosts != null ? ImmutableSet.copyOf(hosts.values()) : ImmutableSet.of();
+    }
+
+    // Strips the timestamp so that locations are indexed by the connect point only
+    private static ConnectPoint connectPoint(ConnectPoint location) {
+        return new ConnectPoint(location.elementId(), location.port());
     }
 
-    private Set<Host> filter(Collection<DefaultHost> collection, Predicate<DefaultHost> predicate) {
-        return collection.stream().filter(predicate).collect(Collectors.toSet());
+    private static Set<ConnectPoint> locations(Host host) {
+        return host == null ? ImmutableSet.of() :
+                host.locations().stream().map(DistributedHostStore::connectPoint)
+                        .collect(Collectors.toSet());
+    }
+
+    private static Set<DeviceId> devices(Host host) {
+        return host == null ? ImmutableSet.of() :
+                host.locations().stream().map(HostLocation::deviceId)
+                        .collect(Collectors.toSet());
+    }
+
+    private static <T> Set<T> single(Host host, Function<Host, T> extractor) {
+        return host == null ? ImmutableSet.of() : ImmutableSet.of(extractor.apply(host));
+    }
+
+    /**
+     * Applies a version of a host to the secondary indexes unless a newer
+     * version was applied already.
+     *
+     * @param hostId host identifier
+     * @param host   versioned host; null if there is none
+     */
+    private void indexHost(HostId hostId, Versioned<DefaultHost> host) {
+        if (host == null) {
+            return;
+        }
+        indexedHosts.compute(hostId, (id, indexed) -> {
+            if (indexed != null && indexed.version >= host.version()) {
+                return indexed;
+            }
+            updateHostIndexes(indexed != null ? indexed.host : null, host.value());
+            return new IndexedHost(host.value(), host.version());
+        });
+    }
+
+    /**
+     * Removes a host from the secondary indexes unless a newer version of
+     * it was applied already.
+     *
+     * @param hostId       host identifier
+     * @param version      version of the removed host, or {@link #UNKNOWN_VERSION}
+     *                     to remove whatever version is indexed
+     * @param removalEvent true if called for the map event of the removal
+     */
+    private void unindexHost(HostId hostId, long version, boolean removalEvent) {
+        indexedHosts.computeIfPresent(hostId, (id, indexed) -> {
+            long removedVersion = version == UNKNOWN_VERSION ? indexed.version : version;
+            if (indexed.version > removedVersion) {
+                return indexed;
+            }
+            if (indexed.host != null) {
+                updateHostIndexes(indexed.host, null);
+            }
+            // events are delivered in order, nothing older follows the removal event
+            return removalEvent ? null : new IndexedHost(null, removedVersion);
+        });
+    }
+
+    /**
+     * Moves a host between the secondary indexes. Either host may be null
+     * when the host is being added or removed.
+     *
+     * @param prevHost previous version of the host
+     * @param host     current version of the host
+     */
+    private void updateHostIndexes(Host prevHost, Host host) {
+        HostId hostId = host != null ? host.id() : prevHost.id();
+        updateIndex(hostsByLocation, locations(prevHost), locations(host), hostId, host);
+        updateIndex(hostsByDevice, devices(prevHost), devices(host), hostId, host);
+        updateIndex(hostsByMac, single(prevHost, Host::mac), single(host, Host::mac), hostId, host);
+        updateIndex(hostsByVlan, single(prevHost, Host::vlan), single(host, Host::vlan), hostId, host);
+    }
+
+    private static <K> void updateIndex(Map<K, Map<HostId, Host>> index,
+                                        Set<K> prevKeys, Set<K> keys,
+                                        HostId hostId, Host host) {
+        prevKeys.stream().filter(key -> !keys.contains(key)).forEach(key ->
+            index.computeIfPresent(key, (k, hosts) -> {
+                hosts.remove(hostId);
+                return hosts.isEmpty() ? null : hosts;
+            }));
+        keys.forEach(key ->
+            index.compute(key, (k, hosts) -> {
+                Map<HostId, Host> updated = hosts != null ? hosts : new ConcurrentHashMap<>();
+                updated.put(hostId, host);
+                return updated;
+            }));
     }
 
     private Set<Host> addHosts(Host host) {
@@ -391,6 +523,16 @@ public class DistributedHostStore
         hostsByIp.computeIfPresent(ip, (k, v) -> removeHosts(v, host));
     }
 
+    private static final class IndexedHost {
+        private final Host host;
+        private final long version;
+
+        private IndexedHost(Host host, long version) {
+            this.host = host;
+            this.version = version;
+        }
+    }
+
     private class HostLocationTracker implements MapEventListener<HostId, DefaultHost> {
         @Override
         public void event(MapEvent<HostId, DefaultHost> event) {
@@ -398,11 +540,15 @@ public class DistributedHostStore
             switch (event.type()) {
                 case INSERT:
                     updateHostsByIp(host);
+                    indexHost(event.key(), event.newValue());
                     notifyDelegate(new HostEvent(HOST_ADDED, host));
                     break;
                 case UPDATE:
-                    updateHostsByIp(host);
                     DefaultHost prevHost = checkNotNull(event.oldValue().value());
+                    Sets.difference(prevHost.ipAddresses(), host.ipAddresses())
+                            .forEach(ip -> removeIpFromHostsByIp(prevHost, ip));
+                    updateHostsByIp(host);
+                    indexHost(event.key(), event.newValue());
                     if (!Objects.equals(prevHost.locations(), host.locations())) {
                         notifyDelegate(new HostEvent(HOST_MOVED, host, prevHost));
                     } else if (!Objects.equals(prevHost, host)) {
@@ -411,6 +557,7 @@ public class DistributedHostStore
                     break;
                 case REMOVE:
                     removeHostsByIp(host);
+                    unindexHost(event.key(), event.oldValue().version(), true);
                     notifyDelegate(new HostEvent(HOST_REMOVED, host));
                     break;
                 default:
@@ -15,13 +15,10 @@
  */
 package org.onosproject.store.link.impl;
 
-import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -69,6 +66,7 @@ import org.onosproject.store.service.EventuallyConsistentMapListener;
 import org.onosproject.store.service.StorageService;
 import org.slf4j.Logger;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -117,6 +115,13 @@ public class ECLinkStore
 
     private final Map<LinkKey, Link> links = Maps.newConcurrentMap();
     private final Map<LinkKey, Set<ProviderId>> linkProviders = Maps.newConcurrentMap();
+
+    // Secondary indexes of the keys in links; they are updated within the
+    // atomic updates of links, so that they never miss a cached link.
+    private final Map<DeviceId, Set<LinkKey>> srcLinks = Maps.newConcurrentMap();
+    private final Map<DeviceId, Set<LinkKey>> dstLinks = Maps.newConcurrentMap();
+    private final Map<ConnectPoint, Set<LinkKey>> srcPointLinks = Maps.newConcurrentMap();
+    private final Map<ConnectPoint, Set<LinkKey>> dstPointLinks = Maps.newConcurrentMap();
     private EventuallyConsistentMap<Provided<LinkKey>, LinkDescription> linkDescriptions;
 
 
@@ -200,7 +205,7 @@ public class ECLinkStore
         linkDescriptions.removeListener(linkTracker);
         linkDescriptions.destroy();
         linkProviders.clear();
-        links.clear();
+        clearLinks();
         clusterCommunicator.removeSubscriber(LINK_INJECT_MESSAGE);
         netCfgService.removeListener(cfgListener);
         netCfgService.unregisterConfigFactory(factory);
@@ -220,12 +225,12 @@ public class ECLinkStore
 
     @Override
     public Set<Link> getDeviceEgressLinks(DeviceId deviceId) {
-        return filter(links.values(), link -> deviceId.equals(link.src().deviceId()));
+        return lookup(srcLinks, deviceId);
     }
 
     @Override
     public Set<Link> getDeviceIngressLinks(DeviceId deviceId) {
-        return filter(links.values(), link -> deviceId.equals(link.dst().deviceId()));
+        return lookup(dstLinks, deviceId);
     }
 
     @Override
@@ -235,12 +240,12 @@ public class ECLinkStore
 
     @Override
     public Set<Link> getEgressLinks(ConnectPoint src) {
-        return filter(links.values(), link -> src.equals(link.src()));
+        return lookup(srcPointLinks, src);
     }
 
     @Override
     public Set<Link> getIngressLinks(ConnectPoint dst) {
-        return filter(links.values(), link -> dst.equals(link.dst()));
+        return lookup(dstPointLinks, dst);
     }
 
     @Override
@@ -322,10 +327,14 @@ public class ECLinkStore
         Link link = links.compute(linkKey, (key, existingLink) -> {
             Link newLink = composeLink(linkKey);
             if (newLink == null) {
+                if (existingLink != null) {
+                    unindex(key);
+                }
                 return null;
             }
             if (existingLink == null) {
                 eventType.set(LINK_ADDED);
+                index(key);
                 return newLink;
             } else if (existingLink.state() != newLink.state() ||
                     existingLink.isExpected() != newLink.isExpected() ||
@@ -417,7 +426,10 @@ public class ECLinkStore
                 (oldLink.type() == INDIRECT && newLink.type() == DIRECT) ||
                 !AnnotationsUtil.isEqual(oldLink.annotations(), newLink.annotations())) {
 
-            links.put(key, newLink);
+            links.compute(key, (k, v) -> {
+                index(k);
+                return newLink;
+            });
             return new LinkEvent(LINK_UPDATED, newLink);
         }
         return null;
@@ -464,7 +476,13 @@ public class ECLinkStore
     }
 
     private LinkEvent purgeLinkCache(LinkKey linkKey) {
-        Link removedLink = links.remove(linkKey);
+        AtomicReference<Link> removed = new AtomicReference<>();
+        links.computeIfPresent(linkKey, (k, v) -> {
+            unindex(k);
+            removed.set(v);
+            return null;
+        });
+        Link removedLink = removed.get();
         if (removedLink != null) {
             getAllProviders(linkKey).forEach(p -> linkDescriptions.remove(new Provided<>(linkKey, p)));
             linkProviders.remove(linkKey);
@@ -473,8 +491,58 @@ public class ECLinkStore
         return null;
     }
 
-    private Set<Link> filter(Collection<Link> links, Predicate<Link> predicate) {
-        return links.stream().filter(predicate).collect(Collectors.toSet());
+    // Adds the key to the secondary indexes; invoked while updating links.
+    private void index(LinkKey key) {
+        addToIndex(srcLinks, key.src().deviceId(), key);
+        addToIndex(dstLinks, key.dst().deviceId(), key);
+        addToIndex(srcPointLinks, key.src(), key);
+        addToIndex(dstPointLinks, key.dst(), key);
+    }
+
+    // Removes the key from the secondary indexes; invoked while updating links.
+    private void unindex(LinkKey key) {
+        removeFromIndex(srcLinks, key.src().deviceId(), key);
+        removeFromIndex(dstLinks, key.dst().deviceId(), key);
+        removeFromIndex(srcPointLinks, key.src(), key);
+        removeFromIndex(dstPointLinks, key.dst(), key);
+    }
+
+    private void clearLinks() {
+        links.clear();
+        srcLinks.clear();
+        dstLinks.clear();
+        srcPointLinks.clear();
+        dstPointLinks.clear();
+    }
+
+    private static <K> void addToIndex(Map<K, Set<LinkKey>> index, K k, LinkKey key) {
+        index.compute(k, (x, keys) -> {
+            Set<LinkKey> updated = keys != null ? keys : Sets.newConcurrentHashSet();
+            updated.add(key);
+            return updated;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<LinkKey>> index, K k, LinkKey key) {
+        index.computeIfPresent(k, (x, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private <K> Set<Link> lookup(Map<K, Set<LinkKey>> index, K k) {
+        Set<LinkKey> keys = index.get(k);
+        if (keys == null) {
+            return ImmutableSet.of();
+        }
+        ImmutableSet.Builder<Link> builder = ImmutableSet.builder();
+        for (LinkKey key : keys) {
+            Link link = links.get(key);
+            if (link != null) {
+                builder.add(link);
+            }
+        }
+        return builder.build();
     }
 
     private LinkEvent injectLink(Provided<LinkDescription> linkInjectRequest) {
@@ -521,7 +589,7 @@ public class ECLinkStore
                     linkDescriptions.clear();
                 }
                 if (links != null) {
-                    links.clear();
+                    clearLinks();
                 }
             }
             log.debug("config set link discovery mode to {}",
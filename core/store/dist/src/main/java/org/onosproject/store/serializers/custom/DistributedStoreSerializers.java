@@ -43,6 +43,7 @@ import org.onosproject.store.impl.MastershipBasedTimestamp;
 import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.primitives.ConsistentMapBackedJavaMap;
 import org.onosproject.store.service.WallClockTimestamp;
+import org.onosproject.store.table.flow.impl.FlowEntryIdBlock;
 import org.onosproject.store.serializers.KryoNamespaces;
 import org.onlab.util.KryoNamespace;
 
@@ -74,6 +75,7 @@ public final class DistributedStoreSerializers {
             .register(DeviceTableId.class)
             .register(FlowTableEntry.FlowTableState.class)
             .register(ConsistentMapBackedJavaMap.class)
+            .register(FlowEntryIdBlock.class)
             .build();
 
     // avoid instantiation
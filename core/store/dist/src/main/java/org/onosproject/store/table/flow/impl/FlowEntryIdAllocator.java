@@ -0,0 +1,289 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.table.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Allocator of flow entry identifiers for a single device table.
+ * <p>
+ * Identifiers are handed out from a locally held block leased from the
+ * master of the device; the fast path is a single compare-and-set on a
+ * packed cursor/limit word, and released identifiers are recycled from a
+ * bit set indexed by identifier, so that releasing, reserving and reusing an
+ * identifier take constant time. Only when the current block is exhausted is a new block
+ * requested from the supplied lease source. Concurrent asynchronous
+ * allocations that exhaust the block share a single outstanding lease.
+ * </p>
+ */
+final class FlowEntryIdAllocator {
+
+    static final int NO_ID = -1;
+
+    private final AsyncLeaseSource leaseSource;
+
+    // high 32 bits: next identifier to hand out, low 32 bits: end of the leased block
+    private final AtomicLong window = new AtomicLong(pack(0, 0));
+    // recycled identifiers; guarded by itself, with the count readable without locking
+    private final BitSet freeIds = new BitSet();
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private int lowestFreeId;
+    private final AtomicReference<CompletableFuture<Boolean>> pendingLease = new AtomicReference<>();
+
+    /**
+     * Creates an allocator that leases blocks from the given source.
+     *
+     * @param leaseSource supplier of new identifier blocks; may return null
+     *                    when no block can be leased
+     */
+    FlowEntryIdAllocator(Supplier<FlowEntryIdBlock> leaseSource) {
+        checkNotNull(leaseSource);
+        this.leaseSource = () -> CompletableFuture.completedFuture(leaseSource.get());
+    }
+
+    private FlowEntryIdAllocator(AsyncLeaseSource leaseSource) {
+        this.leaseSource = checkNotNull(leaseSource);
+    }
+
+    /**
+     * Creates an allocator that leases blocks asynchronously from the given source.
+     *
+     * @param leaseSource supplier of futures completing with new identifier
+     *                    blocks, or with null when no block can be leased
+     * @return new allocator
+     */
+    static FlowEntryIdAllocator async(Supplier<CompletableFuture<FlowEntryIdBlock>> leaseSource) {
+        checkNotNull(leaseSource);
+        return new FlowEntryIdAllocator((AsyncLeaseSource) leaseSource::get);
+    }
+
+    /**
+     * Allocates a new flow entry identifier, waiting for a new block to be
+     * leased if the current one is exhausted.
+     *
+     * @return new identifier, or {@link #NO_ID} if no block could be leased
+     */
+    int allocate() {
+        try {
+            return allocateAsync().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return NO_ID;
+        } catch (ExecutionException e) {
+            return NO_ID;
+        }
+    }
+
+    /**
+     * Allocates a new flow entry identifier without blocking the caller.
+     *
+     * @return future completing with the new identifier, or with
+     * {@link #NO_ID} if no block could be leased
+     */
+    CompletableFuture<Integer> allocateAsync() {
+        int recycled = takeFreeId();
+        if (recycled != NO_ID) {
+            return CompletableFuture.completedFuture(recycled);
+        }
+        int id = allocateFromWindow();
+        if (id != NO_ID) {
+            return CompletableFuture.completedFuture(id);
+        }
+        return refill().thenCompose(leased -> leased
+                ? allocateAsync() : CompletableFuture.completedFuture(NO_ID));
+    }
+
+    /**
+     * Returns an identifier to the allocator so that it may be reused.
+     *
+     * @param id flow entry identifier no longer in use
+     */
+    void release(int id) {
+        if (id < 0) {
+            return;
+        }
+        synchronized (freeIds) {
+            if (!freeIds.get(id)) {
+                freeIds.set(id);
+                freeCount.incrementAndGet();
+                lowestFreeId = Math.min(lowestFreeId, id);
+            }
+        }
+    }
+
+    /**
+     * Removes the given identifier from the set of recycled identifiers.
+     *
+     * @param id flow entry identifier
+     * @return true if the identifier was awaiting reuse
+     */
+    boolean reserve(int id) {
+        if (id < 0) {
+            return false;
+        }
+        synchronized (freeIds) {
+            if (!freeIds.get(id)) {
+                return false;
+            }
+            freeIds.clear(id);
+            freeCount.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Takes the lowest recycled identifier, without leasing a new block.
+     *
+     * @return recycled identifier, or {@link #NO_ID} if there is none
+     */
+    int takeFreeId() {
+        if (freeCount.get() == 0) {
+            return NO_ID;
+        }
+        synchronized (freeIds) {
+            int id = freeIds.nextSetBit(lowestFreeId);
+            if (id < 0) {
+                return NO_ID;
+            }
+            freeIds.clear(id);
+            freeCount.decrementAndGet();
+            // all identifiers below the one taken are in use
+            lowestFreeId = id + 1;
+            return id;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the recycled identifiers awaiting reuse.
+     *
+     * @return list of free identifiers
+     */
+    List<Integer> freeIds() {
+        synchronized (freeIds) {
+            return freeIds.stream().boxed().collect(ImmutableList.toImmutableList());
+        }
+    }
+
+    /**
+     * Removes and returns all identifiers held by this allocator, that is the
+     * unused part of the leased block and the recycled identifiers, so that
+     * they can be handed back to the master of the device.
+     *
+     * @return identifiers no longer held by this allocator
+     */
+    List<Integer> drain() {
+        List<Integer> unused = Lists.newArrayList();
+        long w;
+        do {
+            w = window.get();
+        } while (!window.compareAndSet(w, pack(limit(w), limit(w))));
+        for (int id = cursor(w); id < limit(w); id++) {
+            unused.add(id);
+        }
+        synchronized (freeIds) {
+            freeIds.stream().forEach(unused::add);
+            freeIds.clear();
+            freeCount.set(0);
+            lowestFreeId = 0;
+        }
+        return unused;
+    }
+
+    /**
+     * Returns the number of identifiers left in the currently leased block.
+     *
+     * @return remaining identifiers in the block
+     */
+    int remaining() {
+        long w = window.get();
+        return Math.max(0, limit(w) - cursor(w));
+    }
+
+    private int allocateFromWindow() {
+        while (true) {
+            long w = window.get();
+            int cursor = cursor(w);
+            int limit = limit(w);
+            if (cursor >= limit) {
+                return NO_ID;
+            }
+            if (window.compareAndSet(w, pack(cursor + 1, limit))) {
+                return cursor;
+            }
+        }
+    }
+
+    // slow path; callers arriving while a lease is outstanding share it
+    private CompletableFuture<Boolean> refill() {
+        CompletableFuture<Boolean> lease = new CompletableFuture<>();
+        while (!pendingLease.compareAndSet(null, lease)) {
+            CompletableFuture<Boolean> pending = pendingLease.get();
+            if (pending != null) {
+                return pending;
+            }
+        }
+        if (remaining() > 0) {
+            pendingLease.set(null);
+            lease.complete(true);
+            return lease;
+        }
+        CompletableFuture<FlowEntryIdBlock> block;
+        try {
+            block = leaseSource.lease();
+        } catch (RuntimeException e) {
+            block = new CompletableFuture<>();
+            block.completeExceptionally(e);
+        }
+        block.whenComplete((b, error) -> {
+            boolean leased = error == null && b != null && b.size() > 0;
+            if (leased) {
+                window.set(pack(b.start(), b.end()));
+            }
+            pendingLease.set(null);
+            lease.complete(leased);
+        });
+        return lease;
+    }
+
+    // source of identifier blocks leased from the device master
+    private interface AsyncLeaseSource {
+        CompletableFuture<FlowEntryIdBlock> lease();
+    }
+
+    private static long pack(int cursor, int limit) {
+        return ((long) cursor << 32) | (limit & 0xFFFFFFFFL);
+    }
+
+    private static int cursor(long w) {
+        return (int) (w >>> 32);
+    }
+
+    private static int limit(long w) {
+        return (int) w;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.table.flow.impl;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Contiguous, half-open range [start, end) of flow entry identifiers leased
+ * from the master of a device table.
+ */
+public final class FlowEntryIdBlock {
+
+    private final int start;
+    private final int end;
+
+    /**
+     * Creates a new block of identifiers.
+     *
+     * @param start first identifier in the block
+     * @param end   identifier following the last one in the block
+     */
+    public FlowEntryIdBlock(int start, int end) {
+        checkArgument(start >= 0 && start <= end, "Invalid id block [%s, %s)", start, end);
+        this.start = start;
+        this.end = end;
+    }
+
+    // For serialization
+    private FlowEntryIdBlock() {
+        this.start = 0;
+        this.end = 0;
+    }
+
+    /**
+     * Returns the first identifier of the block.
+     *
+     * @return first identifier
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the identifier following the last one of the block.
+     *
+     * @return exclusive upper bound
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Returns the number of identifiers in the block.
+     *
+     * @return block size
+     */
+    public int size() {
+        return end - start;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj instanceof FlowEntryIdBlock) {
+            FlowEntryIdBlock that = (FlowEntryIdBlock) obj;
+            return this.start == that.start && this.end == that.end;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("start", start)
+                .add("end", end)
+                .toString();
+    }
+}
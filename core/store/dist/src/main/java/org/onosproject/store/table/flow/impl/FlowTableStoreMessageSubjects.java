@@ -43,6 +43,8 @@ public final class FlowTableStoreMessageSubjects {
 
     public static final MessageSubject GET_NEW_GLOBAL_TABLEID
         = new MessageSubject("peer-forward-get-new-global-tableid");
-    public static final MessageSubject GET_NEW_GLOBAL_ENTRYID
-        = new MessageSubject("peer-forward-get-new-global-entryid");
+    public static final MessageSubject LEASE_FLOW_ENTRY_ID_BLOCK
+        = new MessageSubject("peer-forward-lease-flow-entry-id-block");
+    public static final MessageSubject RETURN_FLOW_ENTRY_IDS
+        = new MessageSubject("peer-return-flow-entry-ids");
 }
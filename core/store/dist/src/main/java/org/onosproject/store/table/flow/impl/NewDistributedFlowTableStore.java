@@ -15,6 +15,7 @@
 */
 package org.onosproject.store.table.flow.impl;
 
+import com.codahale.metrics.Counter;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
@@ -28,6 +29,9 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.Tools;
 import org.onosproject.cfg.ComponentConfigService;
@@ -73,12 +77,17 @@ import org.onosproject.store.serializers.KryoNamespaces;
 //import org.onosproject.store.serializers.KryoSerializer;
 //import org.onosproject.store.serializers.StoreSerializer;
 import org.onosproject.store.serializers.custom.DistributedStoreSerializers;
+import org.onosproject.store.service.AsyncAtomicCounterMap;
+import org.onosproject.store.service.AtomicCounterMap;
 import org.onosproject.store.service.ConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMapEvent;
 import org.onosproject.store.service.EventuallyConsistentMapListener;
+import org.onosproject.store.service.MapEvent;
+import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.Serializer;
 import org.onosproject.store.service.StorageService;
+import org.onosproject.store.service.Versioned;
 import org.onosproject.store.service.WallClockTimestamp;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
@@ -86,12 +95,12 @@ import org.slf4j.Logger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Dictionary;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -127,9 +136,17 @@ public class NewDistributedFlowTableStore
     private static final long FLOW_TABLE_STORE_TIMEOUT_MILLIS = 5000;
     private static final long GET_NEW_GLOBALTABLEID_TIMEOUT_MILLIS = 5000;
     private static final long GET_NEW_FLOWENTRYID_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_FLOW_ENTRY_ID_BLOCK_SIZE = 1024;
+    private static final boolean DEFAULT_NEAR_CACHE_ENABLED = true;
+    private static final int DEFAULT_NEAR_CACHE_MAX_STALENESS_MILLIS = 5000;
     // number of devices whose flow entries will be backed up in one communication round
     private static final int FLOW_TABLE_BACKUP_BATCH_SIZE = 1;
 
+    private static final String METRICS_COMPONENT = "FlowTableStore";
+    private static final String NEAR_CACHE_FEATURE = "nearCache";
+    private static final String HITS_METRIC = "hits";
+    private static final String MISSES_METRIC = "misses";
+
     @Property(name = "msgHandlerPoolSize", intValue = MESSAGE_HANDLER_THREAD_POOL_SIZE,
             label = "Number of threads in the message handler pool")
     private int msgHandlerPoolSize = MESSAGE_HANDLER_THREAD_POOL_SIZE;
@@ -145,20 +162,31 @@ public class NewDistributedFlowTableStore
             label = "Indicates whether or not changes in the flow table should be persisted to disk.")
     private boolean persistenceEnabled = DEFAULT_PERSISTENCE_ENABLED;
 
+    @Property(name = "flowEntryIdBlockSize", intValue = DEFAULT_FLOW_ENTRY_ID_BLOCK_SIZE,
+            label = "Number of flow entry ids leased from the device master at a time")
+    private int flowEntryIdBlockSize = DEFAULT_FLOW_ENTRY_ID_BLOCK_SIZE;
+
+    @Property(name = "nearCacheEnabled", boolValue = DEFAULT_NEAR_CACHE_ENABLED,
+            label = "Serve flow table reads on non-master nodes from the local replica")
+    private boolean nearCacheEnabled = DEFAULT_NEAR_CACHE_ENABLED;
+
+    @Property(name = "nearCacheMaxStalenessMillis", intValue = DEFAULT_NEAR_CACHE_MAX_STALENESS_MILLIS,
+            label = "Maximum age in ms of the local replica before it is revalidated with the master")
+    private int nearCacheMaxStalenessMillis = DEFAULT_NEAR_CACHE_MAX_STALENESS_MILLIS;
+
     private InternalFlowTable flowTable = new InternalFlowTable();
 
     private Map<DeviceId, Map<FlowTableId, Map<Integer, FlowRule>>>
             flowEntries = Maps.newConcurrentMap();
 
-    private ConsistentMap<DeviceId,Map<FlowTableId, List<Integer>>>freeFlowEntryIdConsistentMap;
-    private Map<DeviceId,Map<FlowTableId, List<Integer>>>freeFlowEntryIdMap;
-
-    private Map<FlowTableId, List<Integer>>freeFlowEntryIdTmpMap = new HashMap<>();
+    // end of the highest flow entry id block leased so far for each device table
+    private ConsistentMap<DeviceTableId, Integer> flowEntryIdWatermarks;
 
-    private ConsistentMap<DeviceId,Map<FlowTableId, Integer>> flowEntryCountConsistentMap;
-    private Map<DeviceId,Map<FlowTableId, Integer>> flowEntryCountMap = Maps.newConcurrentMap();
+    private final Map<DeviceTableId, FlowEntryIdAllocator> flowEntryIdAllocators = Maps.newConcurrentMap();
 
-    private Map<FlowTableId, Integer> flowEntryCountTmpMap = new HashMap<>();
+    // per device table counters, so that each flow-mod replicates a single delta
+    private AsyncAtomicCounterMap<DeviceTableId> asyncFlowEntryCounts;
+    private AtomicCounterMap<DeviceTableId> flowEntryCounts;
 
     private ConsistentMap<DeviceId, Map<OFTableType,Byte>>flowTableNoBaseConsistentMap;
     private Map<DeviceId,Map<OFTableType, Byte>>flowTableNoBaseMap = Maps.newConcurrentMap();
@@ -169,10 +197,21 @@ public class NewDistributedFlowTableStore
     private ConsistentMap<DeviceId, Map<OFTableType, List<Byte>>> freeFlowTableIdListConsistentMap;
     private Map<DeviceId, Map<OFTableType, List<Byte>>> freeFlowTableIdListMap = Maps.newConcurrentMap();
 
-    private ConsistentMap<DeviceId, Map<FlowTableId, StoredFlowTableEntry>>flowTablesConsistMap;
+    // flow tables are replicated per table; flowTablesMap is the local per device index
+    private ConsistentMap<DeviceTableId, StoredFlowTableEntry> flowTablesConsistMap;
     private Map<DeviceId, Map<FlowTableId, StoredFlowTableEntry>> flowTablesMap = Maps.newConcurrentMap();
 
-    private Map<FlowTableId, StoredFlowTableEntry>flowTablesTmpMap = new HashMap<>();
+    private final MapEventListener<DeviceTableId, StoredFlowTableEntry> flowTablesListener =
+            new InternalFlowTablesListener();
+
+    private final ReplicaInfoEventListener flowEntryIdReclaimer = new InternalFlowEntryIdReclaimer();
+
+    // last time the local index of a device was reconciled with its master
+    private final Map<DeviceId, Long> nearCacheValidated = Maps.newConcurrentMap();
+    private MetricsComponent metricsComponent;
+    private MetricsFeature nearCacheFeature;
+    private Counter nearCacheHits;
+    private Counter nearCacheMisses;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ReplicaInfoService replicaInfoManager;
@@ -198,12 +237,17 @@ public class NewDistributedFlowTableStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected PersistenceService persistenceService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
 
     private Map<Long, NodeId> pendingResponses = Maps.newConcurrentMap();
     private ExecutorService messageHandlingExecutor;
     private ScheduledFuture<?> backupTask;
     private final ScheduledExecutorService backupSenderExecutor =
             Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/table", "backup-sender", log));
+    private final ScheduledExecutorService timeoutExecutor =
+            Executors.newSingleThreadScheduledExecutor(groupedThreads("onos/table", "request-timeout", log));
 
     private EventuallyConsistentMap<DeviceId, List<TableStatisticsEntry>> deviceTableStats;
 
@@ -236,6 +280,11 @@ public class NewDistributedFlowTableStore
 
         local = clusterService.getLocalNode().id();
 
+        metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+        nearCacheFeature = metricsComponent.registerFeature(NEAR_CACHE_FEATURE);
+        nearCacheHits = metricsService.createCounter(metricsComponent, nearCacheFeature, HITS_METRIC);
+        nearCacheMisses = metricsService.createCounter(metricsComponent, nearCacheFeature, MISSES_METRIC);
+
         messageHandlingExecutor = Executors.newFixedThreadPool(
                 msgHandlerPoolSize, groupedThreads("onos/store/table", "message-handlers", log));
 
@@ -258,19 +307,16 @@ public class NewDistributedFlowTableStore
                 .withTombstonesDisabled()
                 .build();
 
-        freeFlowEntryIdConsistentMap = storageService.<DeviceId,Map<FlowTableId,List<Integer>>>consistentMapBuilder()
-                .withName("onos-freeflow-entryids")
+        flowEntryIdWatermarks = storageService.<DeviceTableId, Integer>consistentMapBuilder()
+                .withName("onos-flowentry-id-watermarks")
                 .withSerializer(SERIALIZER)
-                .withRelaxedReadConsistency()
                 .build();
-        freeFlowEntryIdMap = freeFlowEntryIdConsistentMap.asJavaMap();
 
-        flowEntryCountConsistentMap = storageService.<DeviceId,Map<FlowTableId,Integer>>consistentMapBuilder()
-                .withName("onos-freeflow-count")
+        asyncFlowEntryCounts = storageService.<DeviceTableId>atomicCounterMapBuilder()
+                .withName("onos-flowentry-count")
                 .withSerializer(SERIALIZER)
-                .withRelaxedReadConsistency()
-                .build();
-        flowEntryCountMap=flowEntryCountConsistentMap.asJavaMap();
+                .buildAsyncMap();
+        flowEntryCounts = asyncFlowEntryCounts.asAtomicCounterMap();
 
         flowTableNoBaseConsistentMap = storageService.<DeviceId,Map<OFTableType,Byte>>consistentMapBuilder()
                 .withName("onos-flowtable-nobase")
@@ -293,14 +339,16 @@ public class NewDistributedFlowTableStore
                 .build();
         freeFlowTableIdListMap = freeFlowTableIdListConsistentMap.asJavaMap();
 
-        flowTablesConsistMap=storageService.<DeviceId,Map<FlowTableId,StoredFlowTableEntry>>consistentMapBuilder()
-                .withName("onos-flowtables-store")
+        flowTablesConsistMap = storageService.<DeviceTableId, StoredFlowTableEntry>consistentMapBuilder()
+                .withName("onos-flowtable-entries")
                 .withRelaxedReadConsistency()
                 .withSerializer(SERIALIZER)
                 .build();
-        flowTablesMap=flowTablesConsistMap.asJavaMap();
+        flowTablesConsistMap.addListener(flowTablesListener);
+        flowTablesConsistMap.entrySet().forEach(e -> flowTable.index(e.getKey(), e.getValue().value()));
 
         deviceTableStats.addListener(tableStatsListener);
+        replicaInfoManager.addListener(flowEntryIdReclaimer);
 
         logConfig("Started");
     }
@@ -311,12 +359,17 @@ public class NewDistributedFlowTableStore
             replicaInfoManager.removeListener(flowTable);
             backupTask.cancel(true);
         }
+        replicaInfoManager.removeListener(flowEntryIdReclaimer);
         configService.unregisterProperties(getClass(), false);
         unregisterMessageHandlers();
+        flowTablesConsistMap.removeListener(flowTablesListener);
         deviceTableStats.removeListener(tableStatsListener);
         deviceTableStats.destroy();
         messageHandlingExecutor.shutdownNow();
         backupSenderExecutor.shutdownNow();
+        timeoutExecutor.shutdownNow();
+        metricsService.removeMetric(metricsComponent, nearCacheFeature, HITS_METRIC);
+        metricsService.removeMetric(metricsComponent, nearCacheFeature, MISSES_METRIC);
         log.info("Stopped");
     }
 
@@ -333,6 +386,9 @@ public class NewDistributedFlowTableStore
         int newPoolSize;
         boolean newBackupEnabled;
         int newBackupPeriod;
+        int newFlowEntryIdBlockSize;
+        boolean newNearCacheEnabled;
+        int newNearCacheMaxStaleness;
         try {
             String s = get(properties, "msgHandlerPoolSize");
             newPoolSize = isNullOrEmpty(s) ? msgHandlerPoolSize : Integer.parseInt(s.trim());
@@ -343,10 +399,33 @@ public class NewDistributedFlowTableStore
             s = get(properties, "backupPeriod");
             newBackupPeriod = isNullOrEmpty(s) ? backupPeriod : Integer.parseInt(s.trim());
 
+            s = get(properties, "flowEntryIdBlockSize");
+            newFlowEntryIdBlockSize = isNullOrEmpty(s) ? flowEntryIdBlockSize : Integer.parseInt(s.trim());
+
+            s = get(properties, "nearCacheEnabled");
+            newNearCacheEnabled = isNullOrEmpty(s) ? nearCacheEnabled : Boolean.parseBoolean(s.trim());
+
+            s = get(properties, "nearCacheMaxStalenessMillis");
+            newNearCacheMaxStaleness = isNullOrEmpty(s) ? nearCacheMaxStalenessMillis : Integer.parseInt(s.trim());
+
         } catch (NumberFormatException | ClassCastException e) {
             newPoolSize = MESSAGE_HANDLER_THREAD_POOL_SIZE;
             newBackupEnabled = DEFAULT_BACKUP_ENABLED;
             newBackupPeriod = DEFAULT_BACKUP_PERIOD_MILLIS;
+            newFlowEntryIdBlockSize = DEFAULT_FLOW_ENTRY_ID_BLOCK_SIZE;
+            newNearCacheEnabled = DEFAULT_NEAR_CACHE_ENABLED;
+            newNearCacheMaxStaleness = DEFAULT_NEAR_CACHE_MAX_STALENESS_MILLIS;
+        }
+
+        if (newFlowEntryIdBlockSize > 0) {
+            flowEntryIdBlockSize = newFlowEntryIdBlockSize;
+        }
+
+        if (newNearCacheEnabled != nearCacheEnabled
+                || newNearCacheMaxStaleness != nearCacheMaxStalenessMillis) {
+            nearCacheEnabled = newNearCacheEnabled;
+            nearCacheMaxStalenessMillis = Math.max(0, newNearCacheMaxStaleness);
+            nearCacheValidated.clear();
         }
 
         boolean restartBackupTask = false;
@@ -399,7 +478,8 @@ public class NewDistributedFlowTableStore
         clusterCommunicator.addSubscriber(
                 GET_FLOW_TABLE, SERIALIZER::decode, flowTable::getFlowTable, SERIALIZER::encode, executor);
         clusterCommunicator.addSubscriber(
-                GET_DEVICE_FLOW_TABLES, SERIALIZER::decode, flowTable::getFlowTables, SERIALIZER::encode, executor);
+                GET_DEVICE_FLOW_TABLES, SERIALIZER::decode, flowTable::getFlowTableSnapshot, SERIALIZER::encode,
+                executor);
         clusterCommunicator.addSubscriber(
                 REMOVE_FLOW_TABLE, SERIALIZER::decode, this::removeFlowTableInternal, SERIALIZER::encode, executor);
         clusterCommunicator.addSubscriber(
@@ -407,7 +487,10 @@ public class NewDistributedFlowTableStore
         clusterCommunicator.addSubscriber(
                 GET_NEW_GLOBAL_TABLEID, SERIALIZER::decode, flowTable::getGlobalFlowTableId, SERIALIZER::encode, executor);
         clusterCommunicator.addSubscriber(
-                GET_NEW_GLOBAL_ENTRYID, SERIALIZER::decode, flowTable::getFlowEntryId, SERIALIZER::encode, executor);
+                LEASE_FLOW_ENTRY_ID_BLOCK, SERIALIZER::decode, this::leaseFlowEntryIdBlockInternal,
+                SERIALIZER::encode, executor);
+        clusterCommunicator.<Map<DeviceTableId, List<Integer>>>addSubscriber(
+                RETURN_FLOW_ENTRY_IDS, SERIALIZER::decode, this::reclaimFlowEntryIds, executor);
     }
 
     private void unregisterMessageHandlers() {
@@ -418,12 +501,15 @@ public class NewDistributedFlowTableStore
         clusterCommunicator.removeSubscriber(REMOTE_APPLY_COMPLETED);
         clusterCommunicator.removeSubscriber(FLOW_TABLE_BACKUP);
         clusterCommunicator.removeSubscriber(GET_NEW_GLOBAL_TABLEID);
-        clusterCommunicator.removeSubscriber(GET_NEW_GLOBAL_ENTRYID);
+        clusterCommunicator.removeSubscriber(LEASE_FLOW_ENTRY_ID_BLOCK);
+        clusterCommunicator.removeSubscriber(RETURN_FLOW_ENTRY_IDS);
     }
 
     private void logConfig(String prefix) {
-        log.info("{} with msgHandlerPoolSize = {}; backupEnabled = {}, backupPeriod = {}",
-                 prefix, msgHandlerPoolSize, backupEnabled, backupPeriod);
+        log.info("{} with msgHandlerPoolSize = {}; backupEnabled = {}, backupPeriod = {}, "
+                         + "flowEntryIdBlockSize = {}, nearCacheEnabled = {}, nearCacheMaxStalenessMillis = {}",
+                 prefix, msgHandlerPoolSize, backupEnabled, backupPeriod, flowEntryIdBlockSize,
+                 nearCacheEnabled, nearCacheMaxStalenessMillis);
     }
 
     /**
@@ -433,30 +519,17 @@ public class NewDistributedFlowTableStore
     public void initializeSwitchStore(DeviceId deviceId) {
 
         log.info("initializeSwitchStore for device: {}", deviceId);
-        if (flowEntryCountMap.containsKey(deviceId)) {
-            //TODO nothing
-        } else {
-
-            Map<FlowTableId, Integer> tcount = new ConcurrentHashMap<>();
-            tcount.put(FlowTableId.valueOf(0),0);
-            flowEntryCountMap.putIfAbsent(deviceId, tcount);
-        }
-        if (freeFlowEntryIdMap.containsKey(deviceId)) {
-            //TODO nothing
-        } else {
-
-            List<Integer> ids = new ArrayList<>();
-            Map<FlowTableId, List<Integer>> tids = new ConcurrentHashMap<>();
-            freeFlowEntryIdMap.putIfAbsent(deviceId, tids);//initialization map all is null
-        }
+        flowEntryCounts.putIfAbsent(new DeviceTableId(deviceId, 0), 0);
     }
     //if pof switch removed all the map well be cleared
     @Override
     public void removeSwitchStore(DeviceId deviceId) {
 
         log.info("removeSwitchStore for device: {}", deviceId);
-        flowEntryCountMap.remove(deviceId);
-        freeFlowEntryIdMap.remove(deviceId);
+        flowEntryCounts.remove(new DeviceTableId(deviceId, 0));
+        flowTable.getFlowTables(deviceId).keySet()
+                .forEach(id -> flowEntryCounts.remove(new DeviceTableId(deviceId, (int) id.value())));
+        removeFlowEntryIdAllocators(deviceId);
         flowEntries.remove(deviceId);
 
         freeFlowTableIdListMap.remove(deviceId);
@@ -503,7 +576,7 @@ public class NewDistributedFlowTableStore
         Map<FlowTableId, Map<Integer, FlowRule>> tfs = new ConcurrentHashMap<>();//the max size of table no is 128
         for ( byte i = 0; i< base; i++) {
 
-            Map<Integer, FlowRule>emptyTmp=new HashMap<>();
+            Map<Integer, FlowRule> emptyTmp = new ConcurrentHashMap<>();
             tfs.putIfAbsent(new FlowTableId(i),emptyTmp);
         }
         flowEntries.putIfAbsent(deviceId, tfs);
@@ -565,67 +638,190 @@ public class NewDistributedFlowTableStore
 
     @Override
     public int getFlowEntryCount(DeviceId deviceId, FlowTableId flowTableId) {
-
-        return flowEntryCountMap.get(deviceId).get(flowTableId);
+        return (int) flowEntryCounts.get(new DeviceTableId(deviceId, (int) flowTableId.value()));
     }
 
     @Override
     public void addFlowEntryCount(DeviceId deviceId, FlowTableId flowTableId) {
+        long count = flowEntryCounts.incrementAndGet(new DeviceTableId(deviceId, (int) flowTableId.value()));
+        log.trace("addFlowEntryCount for {} table {}: {}", deviceId, flowTableId.value(), count);
+    }
 
+    @Override
+    public void deleteFlowEntryCount(DeviceId deviceId, FlowTableId flowTableId) {
+        flowEntryCounts.decrementAndGet(new DeviceTableId(deviceId, (int) flowTableId.value()));
+    }
 
-        Integer tmp = flowEntryCountMap.get(deviceId).get(flowTableId);
-        for(FlowTableId flowTableIdTmp:flowEntryCountMap.get(deviceId).keySet()){
-            if(flowTableIdTmp.equals(flowTableId)){
-                flowEntryCountTmpMap.put(flowTableIdTmp, tmp + 1);
-            } else {
+    @Override
+    public List<Integer> getFreeFlowEntryIds(DeviceId deviceId, FlowTableId flowTableId) {
+        FlowEntryIdAllocator allocator =
+                flowEntryIdAllocators.get(new DeviceTableId(deviceId, (int) flowTableId.value()));
+        return allocator == null ? Collections.emptyList() : allocator.freeIds();
+    }
 
-                flowEntryCountTmpMap.put(flowTableIdTmp, flowEntryCountMap.get(deviceId).get(flowTableIdTmp));
-            }
-        }
-        flowEntryCountMap.put(deviceId, flowEntryCountTmpMap);
+    @Override
+    public void addFreeFlowEntryIds(DeviceId deviceId, FlowTableId flowTableId, Integer flowEntryId) {
+        flowEntryIdAllocator(new DeviceTableId(deviceId, (int) flowTableId.value())).release(flowEntryId);
+    }
 
+    @Override
+    public void deleteFreeFlowEntryIds(DeviceId deviceId, FlowTableId flowTableId, Integer flowEntryId) {
+        flowEntryIdAllocator(new DeviceTableId(deviceId, (int) flowTableId.value())).reserve(flowEntryId);
+    }
 
-        log.info("++++addFlowEntryCount: {}", tmp + 1);
+    private FlowEntryIdAllocator flowEntryIdAllocator(DeviceTableId deviceTableId) {
+        return flowEntryIdAllocators.computeIfAbsent(deviceTableId,
+                id -> FlowEntryIdAllocator.async(() -> leaseFlowEntryIdBlock(id)));
+    }
 
+    private void removeFlowEntryIdAllocator(DeviceTableId deviceTableId) {
+        flowEntryIdAllocators.remove(deviceTableId);
+        flowEntryIdWatermarks.remove(deviceTableId);
     }
 
-    @Override
-    public void deleteFlowEntryCount(DeviceId deviceId, FlowTableId flowTableId) {
+    private void removeFlowEntryIdAllocators(DeviceId deviceId) {
+        flowEntryIdAllocators.keySet().removeIf(id -> id.getDeviceId().equals(deviceId));
+        flowEntryIdWatermarks.keySet().stream()
+                .filter(id -> id.getDeviceId().equals(deviceId))
+                .forEach(flowEntryIdWatermarks::remove);
+    }
 
-        Integer tmp = flowEntryCountMap.get(deviceId).get(flowTableId);
-        for(FlowTableId flowTableIdTmp:flowEntryCountMap.get(deviceId).keySet()){
-            if(flowTableIdTmp.equals(flowTableId)){
-                flowEntryCountTmpMap.put(flowTableIdTmp, tmp - 1);
-            } else {
+    /**
+     * Leases a new block of flow entry ids for the given device table,
+     * forwarding the request to the device master when necessary.
+     *
+     * @param deviceTableId device table identifier
+     * @return future completing with the leased block, or with null if no
+     * block could be leased
+     */
+    private CompletableFuture<FlowEntryIdBlock> leaseFlowEntryIdBlock(DeviceTableId deviceTableId) {
+        NodeId master = mastershipService.getMasterFor(deviceTableId.getDeviceId());
+        if (master == null) {
+            log.debug("Failed to lease flow entry ids: no master for {}", deviceTableId.getDeviceId());
+            return CompletableFuture.completedFuture(null);
+        }
 
-                flowEntryCountTmpMap.put(flowTableIdTmp, flowEntryCountMap.get(deviceId).get(flowTableIdTmp));
-            }
+        if (Objects.equals(local, master)) {
+            return CompletableFuture.completedFuture(leaseFlowEntryIdBlockInternal(deviceTableId));
         }
 
-        flowEntryCountMap.put(deviceId, flowEntryCountTmpMap);
+        log.trace("Forwarding leaseFlowEntryIdBlock to {}, which is the primary(master) for device {}",
+                  master, deviceTableId.getDeviceId());
+        return withTimeout(clusterCommunicator.sendAndReceive(deviceTableId,
+                                                              LEASE_FLOW_ENTRY_ID_BLOCK,
+                                                              SERIALIZER::encode,
+                                                              SERIALIZER::decode,
+                                                              master),
+                           GET_NEW_FLOWENTRYID_TIMEOUT_MILLIS,
+                           null);
+    }
+
+    /**
+     * Returns a future that completes with the result of the given future,
+     * or with the default value if it fails or does not complete in time.
+     *
+     * @param future        future to wait for
+     * @param timeoutMillis time to wait in ms
+     * @param defaultValue  value to complete with on failure or timeout
+     * @param <T>           type of the result
+     * @return future that always completes normally
+     */
+    private <T> CompletableFuture<T> withTimeout(CompletableFuture<T> future, long timeoutMillis, T defaultValue) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = timeoutExecutor.schedule(
+                () -> result.complete(defaultValue), timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> {
+            timeout.cancel(false);
+            result.complete(error == null ? value : defaultValue);
+        });
+        return result;
+    }
 
+    private FlowEntryIdBlock leaseFlowEntryIdBlockInternal(DeviceTableId deviceTableId) {
+        int capacity = flowEntryCapacity(deviceTableId);
+        int size = flowEntryIdBlockSize;
+        AtomicInteger start = new AtomicInteger();
+        // only the new end of the leased range is replicated, once per block
+        Versioned<Integer> watermark = flowEntryIdWatermarks.compute(deviceTableId, (id, end) -> {
+            start.set(end == null ? 0 : end);
+            return (int) Math.max(start.get(), Math.min((long) start.get() + size, capacity));
+        });
+        int end = watermark.value();
+        if (end > start.get()) {
+            log.debug("Leased flow entry ids [{}, {}) for {}", start.get(), end, deviceTableId);
+            return new FlowEntryIdBlock(start.get(), end);
+        }
 
+        // the table is fully leased; hand out ids returned to this master one at a time
+        int id = flowEntryIdAllocator(deviceTableId).takeFreeId();
+        if (id == FlowEntryIdAllocator.NO_ID) {
+            log.warn("No flow entry ids left in {} of capacity {}", deviceTableId, capacity);
+            return null;
+        }
+        return new FlowEntryIdBlock(id, id + 1);
     }
 
-    @Override
-    public List<Integer> getFreeFlowEntryIds(DeviceId deviceId, FlowTableId flowTableId) {
-        return freeFlowEntryIdMap.get(deviceId).get(flowTableId);
+    /**
+     * Returns the number of flow entries the given device table can hold.
+     *
+     * @param deviceTableId device table identifier
+     * @return table size, or {@link Integer#MAX_VALUE} if unknown
+     */
+    private int flowEntryCapacity(DeviceTableId deviceTableId) {
+        FlowTable table = flowTable.getFlowTableInternal(deviceTableId.getDeviceId(),
+                                                         FlowTableId.valueOf(deviceTableId.getTableId()));
+        if (table == null || table.flowTable() == null || table.flowTable().getTableSize() <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return table.flowTable().getTableSize();
     }
 
-    @Override
-    public void addFreeFlowEntryIds(DeviceId deviceId, FlowTableId flowTableId, Integer flowEntryId) {
-        freeFlowEntryIdTmpMap.clear();
-        freeFlowEntryIdTmpMap.putAll(freeFlowEntryIdMap.get(deviceId));
-        freeFlowEntryIdTmpMap.get(flowTableId).add(flowEntryId);
-        freeFlowEntryIdMap.put(deviceId,freeFlowEntryIdTmpMap);
+    /**
+     * Hands the flow entry ids held by this node for the tables of the given
+     * device back to its new master, so that they are not lost with the
+     * blocks leased from the previous master.
+     *
+     * @param deviceId device whose master changed
+     */
+    private void returnFlowEntryIds(DeviceId deviceId) {
+        NodeId master = mastershipService.getMasterFor(deviceId);
+        if (master == null || Objects.equals(local, master)) {
+            // ids held by the master itself are already where they belong
+            return;
+        }
+        Map<DeviceTableId, List<Integer>> unused = Maps.newHashMap();
+        flowEntryIdAllocators.forEach((id, allocator) -> {
+            if (id.getDeviceId().equals(deviceId)) {
+                List<Integer> ids = allocator.drain();
+                if (!ids.isEmpty()) {
+                    unused.put(id, ids);
+                }
+            }
+        });
+        if (unused.isEmpty()) {
+            return;
+        }
+        log.debug("Returning unused flow entry ids of {} to {}", deviceId, master);
+        clusterCommunicator.unicast(unused, RETURN_FLOW_ENTRY_IDS, SERIALIZER::encode, master)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        // the ids were leased to this node alone, so it can keep using them
+                        log.warn("Failed to return flow entry ids of {} to {}", deviceId, master, error);
+                        unused.forEach((id, ids) -> ids.forEach(flowEntryIdAllocator(id)::release));
+                    }
+                });
     }
 
-    @Override
-    public void deleteFreeFlowEntryIds(DeviceId deviceId, FlowTableId flowTableId, Integer flowEntryId) {
-        freeFlowEntryIdTmpMap.clear();
-        freeFlowEntryIdTmpMap.putAll(freeFlowEntryIdMap.get(deviceId));
-        freeFlowEntryIdTmpMap.get(flowTableId).remove(flowEntryId);
-        freeFlowEntryIdMap.put(deviceId,freeFlowEntryIdTmpMap);
+    /**
+     * Adds flow entry ids returned by another node to the pool of this master.
+     *
+     * @param returned returned ids keyed by device table
+     */
+    private void reclaimFlowEntryIds(Map<DeviceTableId, List<Integer>> returned) {
+        returned.forEach((id, ids) -> {
+            FlowEntryIdAllocator allocator = flowEntryIdAllocator(id);
+            ids.forEach(allocator::release);
+        });
     }
 
     public Map<FlowTableId, Map<Integer, FlowRule>> getFlowEntries(DeviceId deviceId) {
@@ -659,12 +855,8 @@ public class NewDistributedFlowTableStore
     public void deleteFlowEntry(DeviceId deviceId, FlowTableId flowTableId, int flowEntryId) {
 
         flowEntries.get(deviceId).get(flowTableId).remove(flowEntryId);
-        log.info("before delete flow entry count");
         deleteFlowEntryCount(deviceId, flowTableId);
         addFreeFlowEntryIds(deviceId, flowTableId, flowEntryId);
-        if (flowEntries.get(deviceId).get(flowTableId) == null) {
-            log.info("+++++ flow entry map is null!!!");
-        }
     }
 
     @Override
@@ -685,6 +877,19 @@ public class NewDistributedFlowTableStore
             return flowTable.getFlowTable(table);
         }
 
+        if (isNearCacheFresh(table.deviceId())) {
+            nearCacheHits.inc();
+            return flowTable.getFlowTable(table);
+        }
+        nearCacheMisses.inc();
+
+        if (nearCacheEnabled) {
+            // refresh the whole device, so that the next reads are served locally
+            Tools.futureGetOrElse(fetchFlowTables(table.deviceId(), master),
+                                  FLOW_TABLE_STORE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, null);
+            return flowTable.getFlowTable(table);
+        }
+
         log.trace("Forwarding getFlowTableEntry to {}, which is the primary (master) for device {}",
                   master, table.deviceId());
 
@@ -700,80 +905,133 @@ public class NewDistributedFlowTableStore
 
     @Override
     public Iterable<FlowTable> getFlowTables(DeviceId deviceId) {
+        // bounded wait: the reply may have to be delivered by the very thread calling in
+        return Tools.futureGetOrElse(getFlowTablesAsync(deviceId),
+                                     FLOW_TABLE_STORE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS,
+                                     Collections.unmodifiableSet(flowTable.getFlowTableSnapshot(deviceId)));
+    }
+
+    @Override
+    public CompletableFuture<Iterable<FlowTable>> getFlowTablesAsync(DeviceId deviceId) {
         NodeId master = mastershipService.getMasterFor(deviceId);
 
         if (master == null) {
             log.debug("Failed to getFlowEntries: No master for {}", deviceId);
-            return Collections.emptyList();
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
 
-        if (Objects.equals(local, master)) {
-            Map<FlowTableId, StoredFlowTableEntry> tableMap = flowTable.getFlowTables(deviceId);
-
-            return tableMap.values().stream()
-                    .collect(Collectors.toSet());
+        if (Objects.equals(local, master) || isNearCacheFresh(deviceId)) {
+            if (!Objects.equals(local, master)) {
+                nearCacheHits.inc();
+            }
+            return CompletableFuture.completedFuture(
+                    Collections.unmodifiableSet(flowTable.getFlowTableSnapshot(deviceId)));
         }
+        nearCacheMisses.inc();
+
+        return fetchFlowTables(deviceId, master).<Iterable<FlowTable>>thenApply(tables -> {
+            if (tables == null) {
+                // master unreachable; the replicated index is the best answer we have
+                log.debug("Failed to fetch flow tables of {} from {}, serving local replica", deviceId, master);
+                return Collections.unmodifiableSet(flowTable.getFlowTableSnapshot(deviceId));
+            }
+            return Collections.unmodifiableSet(tables);
+        });
+    }
 
+    /**
+     * Fetches the flow tables of a device from its master and, with the
+     * near cache enabled, reconciles the local replica with them and
+     * restarts its staleness window.
+     *
+     * @param deviceId device identifier
+     * @param master   master of the device
+     * @return future of the tables; completes with null if the master could not be reached
+     */
+    private CompletableFuture<Set<StoredFlowTableEntry>> fetchFlowTables(DeviceId deviceId, NodeId master) {
         log.trace("Forwarding getFlowEntries to {}, which is the primary (master) for device {}",
                   master, deviceId);
 
-        return Tools.futureGetOrElse(clusterCommunicator.sendAndReceive(deviceId,
-                                                                        FlowTableStoreMessageSubjects.GET_DEVICE_FLOW_TABLES,
-                                                                        SERIALIZER::encode,
-                                                                        SERIALIZER::decode,
-                                                                        master),
-                                     FLOW_TABLE_STORE_TIMEOUT_MILLIS,
-                                     TimeUnit.MILLISECONDS,
-                                     Collections.emptyList());
+        long requested = System.currentTimeMillis();
+        CompletableFuture<Set<StoredFlowTableEntry>> reply =
+                clusterCommunicator.sendAndReceive(deviceId,
+                                                   FlowTableStoreMessageSubjects.GET_DEVICE_FLOW_TABLES,
+                                                   SERIALIZER::encode,
+                                                   SERIALIZER::decode,
+                                                   master);
+        return withTimeout(reply, FLOW_TABLE_STORE_TIMEOUT_MILLIS, null).thenApply(tables -> {
+            if (tables != null && nearCacheEnabled) {
+                flowTable.reconcile(deviceId, tables);
+                nearCacheValidated.put(deviceId, requested);
+            }
+            return tables;
+        });
+    }
+
+    private boolean isNearCacheFresh(DeviceId deviceId) {
+        if (!nearCacheEnabled) {
+            return false;
+        }
+        Long validated = nearCacheValidated.get(deviceId);
+        return validated != null
+                && System.currentTimeMillis() - validated <= nearCacheMaxStalenessMillis;
     }
     @Override
     public int getNewGlobalFlowTableId(DeviceId deviceId, OFTableType tableType) {
+        return Tools.futureGetOrElse(getNewGlobalFlowTableIdAsync(deviceId, tableType),
+                                     GET_NEW_GLOBALTABLEID_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, -1);
+    }
+
+    @Override
+    public CompletableFuture<Integer> getNewGlobalFlowTableIdAsync(DeviceId deviceId, OFTableType tableType) {
         DeviceOFTableType deviceOFTableType = new DeviceOFTableType(deviceId, tableType);
         NodeId master = mastershipService.getMasterFor(deviceOFTableType.getDeviceId());
 
         if (master == null) {
             log.debug("Failed to getGlobalTableId: No master for {}", deviceOFTableType.getDeviceId());
-            return -1;
+            return CompletableFuture.completedFuture(-1);
         }
 
         if (Objects.equals(local, master)) {
-            return flowTable.getGlobalFlowTableId(deviceOFTableType);
+            return CompletableFuture.completedFuture(flowTable.getGlobalFlowTableId(deviceOFTableType));
         }
 
         log.trace("Forwarding getGlobalTableId to {}, which is the primary(master) for device {}",
                   master, deviceOFTableType.getDeviceId());
-        return Tools.futureGetOrElse(clusterCommunicator.sendAndReceive(deviceOFTableType,
-                                                                        FlowTableStoreMessageSubjects.GET_NEW_GLOBAL_TABLEID,
-                                                                        SERIALIZER::encode,
-                                                                        SERIALIZER::decode,
-                                                                        master),
-                                     GET_NEW_GLOBALTABLEID_TIMEOUT_MILLIS,
-                                     TimeUnit.MILLISECONDS,
-                                     0);
+        return withTimeout(clusterCommunicator.sendAndReceive(deviceOFTableType,
+                                                              FlowTableStoreMessageSubjects.GET_NEW_GLOBAL_TABLEID,
+                                                              SERIALIZER::encode,
+                                                              SERIALIZER::decode,
+                                                              master),
+                           GET_NEW_GLOBALTABLEID_TIMEOUT_MILLIS,
+                           0);
     }
+
     @Override
     public int getNewFlowEntryId(DeviceId deviceId, int tableId) {
-        DeviceTableId deviceTableId = new DeviceTableId(deviceId, tableId);
-        NodeId master = mastershipService.getMasterFor(deviceTableId.getDeviceId());
-        if (master == null) {
-            log.debug("Failed to getFLowEntryID: no master for {}", deviceTableId.getDeviceId());
-            return -1;
-        }
-
-        if (Objects.equals(local, master)) {
-            return flowTable.getFlowEntryId(deviceTableId);
-        }
+        // a block lease and a count update may both go remote
+        return Tools.futureGetOrElse(getNewFlowEntryIdAsync(deviceId, tableId),
+                                     GET_NEW_FLOWENTRYID_TIMEOUT_MILLIS + FLOW_TABLE_STORE_TIMEOUT_MILLIS,
+                                     TimeUnit.MILLISECONDS, -1);
+    }
 
-        log.info("Forwarding getFlowEntryId to {}, which is the primary(master) for device {}",
-                 master, deviceTableId.getDeviceId());
-        return Tools.futureGetOrElse(clusterCommunicator.sendAndReceive(deviceTableId,
-                                                                        FlowTableStoreMessageSubjects.GET_NEW_GLOBAL_ENTRYID,
-                                                                        SERIALIZER::encode,
-                                                                        SERIALIZER::decode,
-                                                                        master),
-                                     GET_NEW_FLOWENTRYID_TIMEOUT_MILLIS,
-                                     TimeUnit.MILLISECONDS,
-                                     0);
+    @Override
+    public CompletableFuture<Integer> getNewFlowEntryIdAsync(DeviceId deviceId, int tableId) {
+        DeviceTableId deviceTableId = new DeviceTableId(deviceId, tableId);
+        return flowEntryIdAllocator(deviceTableId).allocateAsync().thenCompose(newFlowEntryId -> {
+            if (newFlowEntryId == FlowEntryIdAllocator.NO_ID) {
+                log.warn("Failed to allocate flow entry id for {}", deviceTableId);
+                return CompletableFuture.completedFuture(-1);
+            }
+            return withTimeout(asyncFlowEntryCounts.incrementAndGet(deviceTableId),
+                               FLOW_TABLE_STORE_TIMEOUT_MILLIS, null)
+                    .thenApply(count -> {
+                        if (count == null) {
+                            log.warn("Failed to update flow entry count of {}", deviceTableId);
+                        }
+                        return newFlowEntryId;
+                    });
+        });
     }
 
     @Override
@@ -785,7 +1043,7 @@ public class NewDistributedFlowTableStore
 
     @Override
     public void storeBatch(FlowTableBatchOperation operation) {
-        log.info("+++++ NewDistributedFlowTableStore.storeBatch()");
+        log.debug("storeBatch {} for {}", operation.id(), operation.deviceId());
         if (operation.getOperations().isEmpty()) {
             notifyDelegate(FlowTableBatchEvent.completed(
                     new FlowTableBatchRequest(operation.id(), Collections.emptySet()),
@@ -976,9 +1234,9 @@ public class NewDistributedFlowTableStore
     private FlowTableEvent removeFlowTableInternal(FlowTable table) {
         final DeviceId deviceId = table.deviceId();
         // This is where one could mark a rule as removed and still keep it in the store.
-        log.info("++++ before flowTable.remove() ");
+        log.trace("before flowTable.remove()");
         final FlowTableEntry removed = (FlowTableEntry) flowTable.remove(deviceId, table);
-        log.info("++++ after flowTable.remove() ");
+        log.trace("after flowTable.remove()");
         // rule may be partial rule that is missing treatment, we should use rule from store instead
         return removed != null ? new FlowTableEvent(TABLE_REMOVED, removed) : null;
     }
@@ -1031,67 +1289,55 @@ public class NewDistributedFlowTableStore
 
     private class InternalFlowTable implements ReplicaInfoEventListener {
 
-        private Map<OFTableType,Byte> flowTableNoTmpMap = new HashMap<>();
-
-        private Map<FlowTableId,List<Integer>> freeFlowTableIdListTmpMap = new HashMap<>();
-
-
         public int getGlobalFlowTableId(DeviceOFTableType deviceOFTableType) {
             OFTableType ofTableType = deviceOFTableType.getOfTableType();
             DeviceId deviceId = deviceOFTableType.getDeviceId();
-            int newFlowTableID = -1;
-            if (null == freeFlowTableIdListMap.get(deviceId)
-                    || null == freeFlowTableIdListMap.get(deviceId).get(ofTableType)
-                    || 0 == freeFlowTableIdListMap.get(deviceId).get(ofTableType).size()) {
-                newFlowTableID = flowTableNoMap.get(deviceId).get(ofTableType);
-                for(OFTableType ofTableTypeTmp: flowTableNoMap.get(deviceId).keySet()){
-                    if(ofTableTypeTmp.equals(ofTableType)){
-                        this.flowTableNoTmpMap.put(ofTableTypeTmp, Byte.valueOf((byte)(newFlowTableID + 1)));
-                    } else {
-                        this.flowTableNoTmpMap.put(ofTableTypeTmp,
-                                                   flowTableNoMap.get(deviceId).get(ofTableTypeTmp));
-                    }
-                }
-                flowTableNoMap.put(deviceId, this.flowTableNoTmpMap);
-            } else {
-                newFlowTableID = freeFlowTableIdListMap.get(deviceId).get(ofTableType).remove(0);
+            int newFlowTableID = takeFreeFlowTableId(deviceId, ofTableType);
+            if (newFlowTableID < 0) {
+                AtomicInteger allocated = new AtomicInteger(-1);
+                flowTableNoConsistentMap.computeIfPresent(deviceId, (id, noMap) -> {
+                    Map<OFTableType, Byte> updated = Maps.newHashMap(noMap);
+                    byte next = noMap.get(ofTableType);
+                    allocated.set(next);
+                    updated.put(ofTableType, (byte) (next + 1));
+                    return updated;
+                });
+                newFlowTableID = allocated.get();
             }
 
-            flowEntryCountTmpMap.putAll(flowEntryCountMap.get(deviceId));
-            flowEntryCountTmpMap.put(new FlowTableId(newFlowTableID), 0);
-            flowEntryCountMap.put(deviceId, flowEntryCountTmpMap);
-
-
-            freeFlowTableIdListTmpMap.putAll(freeFlowEntryIdMap.get(deviceId));
-            List<Integer> ids = new ArrayList<>();
-            this.freeFlowTableIdListTmpMap.put(FlowTableId.valueOf(newFlowTableID), ids);
-            freeFlowEntryIdMap.put(deviceId, this.freeFlowTableIdListTmpMap);
+            flowEntryCounts.put(new DeviceTableId(deviceId, newFlowTableID), 0);
 
             Map<Integer, FlowRule> fs = new ConcurrentHashMap<>();
             flowEntries.get(deviceId).putIfAbsent(FlowTableId.valueOf(newFlowTableID), fs);
             return newFlowTableID;
         }
 
-        public int getFlowEntryId(DeviceTableId deviceTableId) {
-            int newFlowEntryId = -1;
-
-            DeviceId deviceId = deviceTableId.getDeviceId();
-            int tableId = deviceTableId.getTableId();
-
-            if (null == freeFlowEntryIdMap.get(deviceId)
-                    || null == freeFlowEntryIdMap.get(deviceId).get(FlowTableId.valueOf(tableId))
-                    || 0 == freeFlowEntryIdMap.get(deviceId)
-                    .get(FlowTableId.valueOf(tableId)).size()) {
-                newFlowEntryId = getFlowEntryCount(deviceId, FlowTableId.valueOf(tableId));
-                addFlowEntryCount(deviceId, FlowTableId.valueOf(tableId));
-
-            } else {
-                newFlowEntryId = freeFlowEntryIdMap.get(deviceId)
-                        .get(FlowTableId.valueOf(tableId)).remove(0);
-                log.info("get new flow table id from freeFlowEntryIDListMap: {}", newFlowEntryId);
+        private int takeFreeFlowTableId(DeviceId deviceId, OFTableType ofTableType) {
+            AtomicInteger taken = new AtomicInteger(-1);
+            freeFlowTableIdListConsistentMap.computeIfPresent(deviceId, (id, freeIds) -> {
+                List<Byte> free = freeIds.get(ofTableType);
+                if (free == null || free.isEmpty()) {
+                    taken.set(-1);
+                    return freeIds;
+                }
+                List<Byte> remaining = new ArrayList<>(free);
+                taken.set(remaining.remove(0));
+                Map<OFTableType, List<Byte>> updated = Maps.newHashMap(freeIds);
+                updated.put(ofTableType, remaining);
+                return updated;
+            });
+            return taken.get();
+        }
 
-            }
-            return newFlowEntryId;
+        private void releaseFlowTableId(DeviceId deviceId, OFTableType ofTableType, byte tableId) {
+            freeFlowTableIdListConsistentMap.computeIfPresent(deviceId, (id, freeIds) -> {
+                List<Byte> free = new ArrayList<>(freeIds.getOrDefault(ofTableType, Collections.emptyList()));
+                free.add(tableId);
+                Collections.sort(free);
+                Map<OFTableType, List<Byte>> updated = Maps.newHashMap(freeIds);
+                updated.put(ofTableType, free);
+                return updated;
+            });
         }
 
         //TODO replace the Map<V,V> with ExtendedSet
@@ -1186,6 +1432,10 @@ public class NewDistributedFlowTableStore
          * @return Map representing Flow Table of given device.
          */
         public Map<FlowTableId,  StoredFlowTableEntry> getFlowTables(DeviceId deviceId) {
+            Map<FlowTableId, StoredFlowTableEntry> tables = flowTablesMap.get(deviceId);
+            if (tables != null) {
+                return tables;
+            }
             if (persistenceEnabled) {
                 return flowTablesMap.computeIfAbsent(deviceId, id -> persistenceService
                         .<FlowTableId,  StoredFlowTableEntry>persistentMapBuilder()
@@ -1225,54 +1475,90 @@ public class NewDistributedFlowTableStore
             return getFlowTableInternal(table.deviceId(), table.id());
         }
 
+        /**
+         * Returns a serializable copy of the flow tables of the specified device.
+         *
+         * @param deviceId identifier of the device
+         * @return set of flow tables
+         */
+        private Set<StoredFlowTableEntry> getFlowTableSnapshot(DeviceId deviceId) {
+            return Sets.newHashSet(getFlowTables(deviceId).values());
+        }
+
+        /**
+         * Replaces the local index of a device with the tables reported by its master.
+         *
+         * @param deviceId identifier of the device
+         * @param tables   flow tables held by the master
+         */
+        private void reconcile(DeviceId deviceId, Set<StoredFlowTableEntry> tables) {
+            Map<FlowTableId, StoredFlowTableEntry> local = getFlowTables(deviceId);
+            Set<FlowTableId> current = Sets.newHashSet();
+            tables.forEach(entry -> {
+                current.add(entry.id());
+                local.put(entry.id(), entry);
+            });
+            local.keySet().stream()
+                    .filter(id -> !current.contains(id))
+                    .collect(Collectors.toList())
+                    .forEach(local::remove);
+        }
+
         public void add(FlowTable table) {
             DeviceId deviceId = table.deviceId();
             FlowTableId flowTableId = table.id();
-            flowTablesTmpMap = getFlowTables(deviceId);
+            StoredFlowTableEntry entry = (StoredFlowTableEntry) table;
 
-            flowTablesTmpMap.putAll(flowTablesMap.get(deviceId));
-            flowTablesTmpMap.put(flowTableId,(StoredFlowTableEntry)table);
-            flowTablesMap.put(deviceId,flowTablesTmpMap);
+            getFlowTables(deviceId).put(flowTableId, entry);
+            flowTablesConsistMap.put(new DeviceTableId(deviceId, (int) flowTableId.value()), entry);
 
             lastUpdateTimes.put(deviceId, System.currentTimeMillis());
         }
 
+        /**
+         * Updates the local per device index with a replicated flow table.
+         *
+         * @param key   device table identifier
+         * @param entry flow table, or null if it was removed
+         */
+        private void index(DeviceTableId key, StoredFlowTableEntry entry) {
+            FlowTableId flowTableId = FlowTableId.valueOf(key.getTableId());
+            if (entry == null) {
+                Map<FlowTableId, StoredFlowTableEntry> tables = flowTablesMap.get(key.getDeviceId());
+                if (tables != null) {
+                    tables.remove(flowTableId);
+                }
+            } else {
+                getFlowTables(key.getDeviceId()).put(flowTableId, entry);
+            }
+        }
+
         public FlowTable remove(DeviceId deviceId, FlowTable table) {
             DeviceId tableDeviceId = table.deviceId();
             FlowTableId flowTableId = table.id();
-            log.info("++++ InternalFlowTable.remove()");
+            log.trace("InternalFlowTable.remove()");
             final AtomicReference<FlowTable> removedRule = new AtomicReference<>();
 
-            log.info("++++ before getFlowTableInternal()");
+            log.trace("before getFlowTableInternal()");
             FlowTable stored =  getFlowTableInternal(tableDeviceId, flowTableId);
-            log.info("++++ after getFlowTableInternal()");
+            log.trace("after getFlowTableInternal()");
 
             removedRule.set(stored);
 
             if (stored != null) {
-                log.info("+++++ Remove the table!");
-                flowTablesTmpMap.clear();
-                flowTablesTmpMap.putAll(flowTablesMap.get(tableDeviceId));
-                flowTablesTmpMap.remove(flowTableId);
-                flowTablesMap.put(tableDeviceId,flowTablesTmpMap);
-                freeFlowTableIdListMap.get(tableDeviceId).get(table.flowTable()
-                                                                      .getTableType()).add((byte) flowTableId.value());
-                Collections.sort(freeFlowTableIdListMap.get(tableDeviceId)
-                                         .get(table.flowTable().getTableType()));
+                log.debug("Removing table {} from {}", flowTableId, tableDeviceId);
+                DeviceTableId key = new DeviceTableId(tableDeviceId, (int) flowTableId.value());
+                getFlowTables(tableDeviceId).remove(flowTableId);
+                flowTablesConsistMap.remove(key);
+                releaseFlowTableId(tableDeviceId, table.flowTable().getTableType(), (byte) flowTableId.value());
                 if (flowEntries.get(tableDeviceId) != null ) {
                     flowEntries.get(table.deviceId()).remove(flowTableId);
-                    flowEntryCountTmpMap.clear();
-                    flowEntryCountTmpMap.putAll(flowEntryCountMap.get(tableDeviceId));
-                    flowEntryCountTmpMap.remove(flowTableId);
-                    flowEntryCountMap.put(tableDeviceId,flowEntryCountTmpMap);
-
-                    freeFlowEntryIdTmpMap.clear();
-                    freeFlowEntryIdTmpMap.putAll(freeFlowEntryIdMap.get(tableDeviceId));
-                    freeFlowEntryIdTmpMap.remove(flowTableId);
-                    freeFlowEntryIdMap.put(tableDeviceId,freeFlowEntryIdTmpMap);
+                    flowEntryCounts.remove(key);
+
+                    removeFlowEntryIdAllocator(new DeviceTableId(tableDeviceId, (int) flowTableId.value()));
                 }
             } else {
-                log.info("No table exit!");
+                log.debug("No table {} on {}", flowTableId, tableDeviceId);
             }
 
             if (removedRule.get() != null) {
@@ -1284,7 +1570,7 @@ public class NewDistributedFlowTableStore
         }
 
         public void purgeFlowTable(DeviceId deviceId) {
-            flowTablesMap.remove(deviceId);
+            removeDevice(deviceId);
         }
 
         private NodeId getBackupNode(DeviceId deviceId) {
@@ -1352,7 +1638,37 @@ public class NewDistributedFlowTableStore
 
         public void removeDevice(DeviceId deviceId) {
             log.info("++++ removeDevice");
-            flowTablesMap.remove(deviceId);
+            Map<FlowTableId, StoredFlowTableEntry> tables = flowTablesMap.remove(deviceId);
+            nearCacheValidated.remove(deviceId);
+            if (tables != null) {
+                tables.keySet().forEach(id -> flowTablesConsistMap.remove(
+                        new DeviceTableId(deviceId, (int) id.value())));
+            }
+        }
+    }
+
+    private class InternalFlowEntryIdReclaimer implements ReplicaInfoEventListener {
+
+        @Override
+        public void event(ReplicaInfoEvent event) {
+            if (event.type() == ReplicaInfoEvent.Type.MASTER_CHANGED) {
+                messageHandlingExecutor.execute(() -> returnFlowEntryIds(event.subject()));
+            }
+        }
+    }
+
+    private class InternalFlowTablesListener implements MapEventListener<DeviceTableId, StoredFlowTableEntry> {
+        @Override
+        public void event(MapEvent<DeviceTableId, StoredFlowTableEntry> event) {
+            // the master keeps its own index up to date when writing
+            if (mastershipService.isLocalMaster(event.key().getDeviceId())) {
+                return;
+            }
+            if (event.type() == MapEvent.Type.REMOVE) {
+                flowTable.index(event.key(), null);
+            } else {
+                flowTable.index(event.key(), event.newValue().value());
+            }
         }
     }
     private class InternalTableStatsListener
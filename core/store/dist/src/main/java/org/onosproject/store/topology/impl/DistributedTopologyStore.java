@@ -15,6 +15,9 @@
  */
 package org.onosproject.store.topology.impl;
 
+import com.codahale.metrics.Gauge;
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheStats;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -24,6 +27,9 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onlab.graph.GraphPathSearch;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.common.DefaultTopology;
@@ -44,6 +50,7 @@ import org.onosproject.net.topology.LinkWeigher;
 import org.onosproject.net.topology.LinkWeight;
 import org.onosproject.net.topology.MetricLinkWeight;
 import org.onosproject.net.topology.PathAdminService;
+import org.onosproject.net.topology.ShortestPathTrees;
 import org.onosproject.net.topology.Topology;
 import org.onosproject.net.topology.TopologyCluster;
 import org.onosproject.net.topology.TopologyEdge;
@@ -68,6 +75,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -93,7 +101,15 @@ public class DistributedTopologyStore
 
     private final Logger log = getLogger(getClass());
 
-    private static final String FORMAT = "Settings: linkWeightFunction={}";
+    private static final String FORMAT =
+            "Settings: linkWeightFunction={}, pathCacheSize={}, pathTreeParallelism={}";
+
+    private static final String METRICS_COMPONENT = "TopologyStore";
+    private static final String PATH_CACHE_FEATURE = "pathCache";
+    private static final String HITS = "hits";
+    private static final String MISSES = "misses";
+    private static final String HIT_RATE = "hitRate";
+    private static final String EVICTIONS = "evictions";
 
     private volatile DefaultTopology current =
             new DefaultTopology(ProviderId.NONE,
@@ -101,6 +117,9 @@ public class DistributedTopologyStore
                                                             Collections.emptyList(),
                                                             Collections.emptyList()));
 
+    // path cache statistics of the topologies current has replaced
+    private CacheStats retiredPathCacheStats = new CacheStats(0, 0, 0, 0, 0, 0);
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected StorageService storageService;
 
@@ -116,6 +135,12 @@ public class DistributedTopologyStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DeviceService deviceService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private MetricsComponent metricsComponent;
+    private MetricsFeature pathCacheFeature;
+
     private static final String HOP_COUNT = "hopCount";
     private static final String LINK_METRIC = "linkMetric";
     private static final String GEO_DISTANCE = "geoDistance";
@@ -125,6 +150,18 @@ public class DistributedTopologyStore
             label = "Default link-weight function: hopCount, linkMetric, geoDistance")
     private String linkWeightFunction = DEFAULT_LINK_WEIGHT_FUNCTION;
 
+    @Property(name = "pathCacheSize", intValue = DefaultTopology.DEFAULT_PATH_CACHE_SIZE,
+            label = "Number of shortest-path trees cached per topology; 0 disables caching")
+    private int pathCacheSize = DefaultTopology.DEFAULT_PATH_CACHE_SIZE;
+
+    private static final int DEFAULT_PATH_TREE_PARALLELISM = 0;
+    @Property(name = "pathTreeParallelism", intValue = DEFAULT_PATH_TREE_PARALLELISM,
+            label = "Number of threads computing all-sources shortest-path trees; " +
+                    "0 uses the common fork-join pool")
+    private int pathTreeParallelism = DEFAULT_PATH_TREE_PARALLELISM;
+
+    private volatile ForkJoinPool pathTreePool = ForkJoinPool.commonPool();
+
     // Cluster root to broadcast points bindings to allow convergence to
     // a shared broadcast tree; node that is the master of the cluster root
     // is the primary.
@@ -145,6 +182,17 @@ public class DistributedTopologyStore
                 .withTimestampProvider((k, v) -> clockService.getTimestamp())
                 .build();
         broadcastPoints.addListener(listener);
+
+        metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+        pathCacheFeature = metricsComponent.registerFeature(PATH_CACHE_FEATURE);
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, HITS,
+                                      (Gauge<Long>) () -> pathCacheStats().hitCount());
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, MISSES,
+                                      (Gauge<Long>) () -> pathCacheStats().missCount());
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, HIT_RATE,
+                                      (Gauge<Double>) () -> pathCacheStats().hitRate());
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, EVICTIONS,
+                                      (Gauge<Long>) () -> pathCacheStats().evictionCount());
         log.info("Started");
     }
 
@@ -153,6 +201,11 @@ public class DistributedTopologyStore
         configService.unregisterProperties(getClass(), false);
         broadcastPoints.removeListener(listener);
         broadcastPoints.destroy();
+        setPathTreePool(ForkJoinPool.commonPool());
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, HITS);
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, MISSES);
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, HIT_RATE);
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, EVICTIONS);
         log.info("Stopped");
     }
 
@@ -170,7 +223,40 @@ public class DistributedTopologyStore
                             new GeoDistanceLinkWeight(deviceService) : null;
             setDefaultLinkWeight(weight);
         }
-        log.info(FORMAT, linkWeightFunction);
+
+        String s = get(properties, "pathCacheSize");
+        try {
+            int newPathCacheSize = Strings.isNullOrEmpty(s) ? pathCacheSize : Integer.parseInt(s.trim());
+            if (newPathCacheSize >= 0 && newPathCacheSize != pathCacheSize) {
+                pathCacheSize = newPathCacheSize;
+                DefaultTopology.setPathCacheSize(pathCacheSize);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Invalid pathCacheSize: {}", s);
+        }
+
+        s = get(properties, "pathTreeParallelism");
+        try {
+            int newParallelism = Strings.isNullOrEmpty(s) ? pathTreeParallelism : Integer.parseInt(s.trim());
+            if (newParallelism >= 0 && newParallelism != pathTreeParallelism) {
+                pathTreeParallelism = newParallelism;
+                setPathTreePool(pathTreeParallelism > 0 ?
+                        new ForkJoinPool(pathTreeParallelism) : ForkJoinPool.commonPool());
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Invalid pathTreeParallelism: {}", s);
+        }
+        log.info(FORMAT, linkWeightFunction, pathCacheSize, pathTreeParallelism);
+    }
+
+    // Swaps the pool used for all-sources path computations, shutting down
+    // the previous one unless it is the common pool.
+    private void setPathTreePool(ForkJoinPool pool) {
+        ForkJoinPool previous = pathTreePool;
+        pathTreePool = pool;
+        if (previous != ForkJoinPool.commonPool()) {
+            previous.shutdown();
+        }
     }
 
     @Override
@@ -178,6 +264,16 @@ public class DistributedTopologyStore
         return current;
     }
 
+    /**
+     * Returns the shortest-path tree cache statistics of all topologies
+     * this store has held, the current one included.
+     *
+     * @return cumulative path cache statistics
+     */
+    public synchronized CacheStats pathCacheStats() {
+        return retiredPathCacheStats.plus(current.pathCacheStats());
+    }
+
     @Override
     public boolean isLatest(Topology topology) {
         // Topology is current only if it is the same as our current topology
@@ -242,6 +338,11 @@ public class DistributedTopologyStore
         return defaultTopology(topology).getKShortestPaths(src, dst, weigher);
     }
 
+    @Override
+    public ShortestPathTrees getShortestPathTrees(Topology topology, LinkWeigher weigher) {
+        return defaultTopology(topology).getShortestPathTrees(weigher, pathTreePool);
+    }
+
     @Override
     public Set<DisjointPath> getDisjointPaths(Topology topology, DeviceId src, DeviceId dst) {
         return defaultTopology(topology).getDisjointPaths(src, dst);
@@ -308,9 +409,11 @@ public class DistributedTopologyStore
     public TopologyEvent updateTopology(ProviderId providerId,
                                         GraphDescription graphDescription,
                                         List<Event> reasons) {
-        // Have the default topology construct self from the description data.
+        // Have the default topology construct self from the description data,
+        // patching the current topology where the changes allow it.
         DefaultTopology newTopology =
-                new DefaultTopology(providerId, graphDescription, this::isBroadcastPoint);
+                new DefaultTopology(providerId, graphDescription,
+                                    this::isBroadcastPoint, current);
         updateBroadcastPoints(newTopology);
 
         // Promote the new topology to current and return a ready-to-send event.
@@ -320,6 +423,8 @@ public class DistributedTopologyStore
             if (current != null && newTopology.time() < current.time()) {
                 return null;
             }
+            // lookups still running against the old topology are not counted
+            retiredPathCacheStats = retiredPathCacheStats.plus(current.pathCacheStats());
             current = newTopology;
             return new TopologyEvent(TOPOLOGY_CHANGED, current, reasons);
         }
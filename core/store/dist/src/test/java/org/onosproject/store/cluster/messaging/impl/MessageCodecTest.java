@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onosproject.core.HybridLogicalTime;
+import org.onosproject.store.cluster.messaging.Endpoint;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the cluster messaging wire encoder and decoder.
+ */
+public class MessageCodecTest {
+
+    private static final int PREAMBLE = 12345;
+    private static final String SUBJECT = "ecm-test-update";
+    private static final String OTHER_SUBJECT = "flow-test-backup";
+
+    private final Endpoint sender = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+    private final Endpoint sender6 = new Endpoint(IpAddress.valueOf("1111::2222"), 9876);
+
+    private EmbeddedChannel encoder;
+    private EmbeddedChannel decoder;
+
+    @Before
+    public void setUp() {
+        encoder = new EmbeddedChannel(new MessageEncoder(PREAMBLE));
+        decoder = new EmbeddedChannel(new MessageDecoder());
+    }
+
+    @After
+    public void tearDown() {
+        encoder.finishAndReleaseAll();
+        decoder.finishAndReleaseAll();
+    }
+
+    private InternalMessage request(long id, Endpoint from, String subject, String payload) {
+        return request(id, from, subject, payload.getBytes(UTF_8));
+    }
+
+    private InternalMessage request(long id, Endpoint from, String subject, byte[] payload) {
+        return new InternalMessage(PREAMBLE, new HybridLogicalTime(id, 1), id, from,
+                                   subject, payload);
+    }
+
+    private ByteBuf encode(InternalMessage message) {
+        assertTrue(encoder.writeOutbound(message));
+        return encoder.readOutbound();
+    }
+
+    private InternalMessage decode(ByteBuf buffer) {
+        assertTrue(decoder.writeInbound(buffer));
+        return decoder.readInbound();
+    }
+
+    private void assertMessage(InternalMessage expected, InternalMessage actual) {
+        assertEquals(expected.preamble(), actual.preamble());
+        assertEquals(expected.time().logicalTime(), actual.time().logicalTime());
+        assertEquals(expected.time().logicalCounter(), actual.time().logicalCounter());
+        assertEquals(expected.id(), actual.id());
+        assertEquals(expected.sender(), actual.sender());
+        assertEquals(expected.type(), actual.type());
+        assertArrayEquals(expected.payload(), actual.payload());
+        assertEquals(expected.status(), actual.status());
+    }
+
+    /**
+     * Tests that subjects are defined once per connection and then sent by id.
+     */
+    @Test
+    public void testSubjectInterning() {
+        InternalMessage first = request(1, sender, SUBJECT, "foo");
+        InternalMessage second = request(2, sender, SUBJECT, "bar");
+        InternalMessage other = request(3, sender, OTHER_SUBJECT, "baz");
+
+        ByteBuf firstBuffer = encode(first);
+        ByteBuf secondBuffer = encode(second);
+        ByteBuf otherBuffer = encode(other);
+
+        int definitionLength = 2 + SUBJECT.getBytes(UTF_8).length;
+        assertEquals(firstBuffer.readableBytes() - definitionLength, secondBuffer.readableBytes());
+        assertEquals(firstBuffer.readableBytes() - SUBJECT.length() + OTHER_SUBJECT.length(),
+                     otherBuffer.readableBytes());
+
+        InternalMessage decodedFirst = decode(firstBuffer);
+        InternalMessage decodedSecond = decode(secondBuffer);
+        InternalMessage decodedOther = decode(otherBuffer);
+        assertMessage(first, decodedFirst);
+        assertMessage(second, decodedSecond);
+        assertMessage(other, decodedOther);
+
+        // interned subjects and unchanged senders are shared between messages
+        assertSame(decodedFirst.type(), decodedSecond.type());
+        assertSame(decodedFirst.sender(), decodedSecond.sender());
+    }
+
+    /**
+     * Tests encoding and decoding of replies and of IPv6 senders.
+     */
+    @Test
+    public void testReplies() {
+        InternalMessage request = request(1, sender6, SUBJECT, "foo");
+        InternalMessage reply = new InternalMessage(PREAMBLE, new HybridLogicalTime(2, 0), 1, sender,
+                                                    new byte[0], InternalMessage.Status.OK);
+        InternalMessage error = new InternalMessage(PREAMBLE, new HybridLogicalTime(3, 0), 1, sender,
+                                                    new byte[0], InternalMessage.Status.ERROR_NO_HANDLER);
+
+        InternalMessage decodedRequest = decode(encode(request));
+        assertMessage(request, decodedRequest);
+        assertTrue(decodedRequest.isRequest());
+
+        InternalMessage decodedReply = decode(encode(reply));
+        assertMessage(reply, decodedReply);
+        assertTrue(decodedReply.isReply());
+        assertEquals("", decodedReply.type());
+
+        assertMessage(error, decode(encode(error)));
+    }
+
+    /**
+     * Tests decoding of messages, including subject definitions, that arrive
+     * in fragments.
+     */
+    @Test
+    public void testFragmentedMessage() {
+        InternalMessage first = request(1, sender, SUBJECT, "foo");
+        InternalMessage second = request(2, sender, SUBJECT, "bar");
+
+        ByteBuf buffer = encode(first);
+        ByteBuf secondBuffer = encode(second);
+        buffer.writeBytes(secondBuffer);
+        secondBuffer.release();
+        while (buffer.isReadable()) {
+            decoder.writeInbound(buffer.readRetainedSlice(Math.min(3, buffer.readableBytes())));
+        }
+        buffer.release();
+
+        assertMessage(first, decoder.readInbound());
+        assertMessage(second, decoder.readInbound());
+        assertNull(decoder.readInbound());
+    }
+
+    /**
+     * Tests that a decoder rejects subject ids it has never seen defined.
+     */
+    @Test
+    public void testUnknownSubject() {
+        ByteBuf definition = encode(request(1, sender, SUBJECT, "foo"));
+        definition.release();
+
+        assertFalse(decoder.writeInbound(encode(request(2, sender, SUBJECT, "bar"))));
+        assertFalse(decoder.isOpen());
+    }
+
+    /**
+     * Tests that payloads are compressed according to their subject's
+     * threshold, and that outbound traffic is counted per subject.
+     */
+    @Test
+    public void testCompression() {
+        MetricsManager metricsService = new MetricsManager();
+        encoder.finishAndReleaseAll();
+        encoder = new EmbeddedChannel(new MessageEncoder(
+                PREAMBLE, subject -> SUBJECT.equals(subject) ? 64 : 0, new MessagingMetrics(metricsService)));
+
+        // spans several compressed chunks
+        byte[] compressible = new byte[100000];
+        Arrays.fill(compressible, (byte) 42);
+        byte[] incompressible = new byte[1000];
+        new Random(1).nextBytes(incompressible);
+        byte[] small = "foo".getBytes(UTF_8);
+
+        InternalMessage compressed = request(1, sender, SUBJECT, compressible);
+        ByteBuf buffer = encode(compressed);
+        long frameBytes = buffer.readableBytes();
+        assertTrue(buffer.readableBytes() < compressible.length / 10);
+        assertMessage(compressed, decode(buffer));
+
+        InternalMessage uncompressed = request(2, sender, OTHER_SUBJECT, compressible);
+        buffer = encode(uncompressed);
+        long otherFrameBytes = buffer.readableBytes();
+        assertTrue(buffer.readableBytes() > compressible.length);
+        assertMessage(uncompressed, decode(buffer));
+
+        InternalMessage random = request(3, sender, SUBJECT, incompressible);
+        buffer = encode(random);
+        frameBytes += buffer.readableBytes();
+        assertMessage(random, decode(buffer));
+
+        InternalMessage tiny = request(4, sender, SUBJECT, small);
+        buffer = encode(tiny);
+        frameBytes += buffer.readableBytes();
+        assertMessage(tiny, decode(buffer));
+
+        // bytes count whole frames as written, headers included
+        assertEquals(3, meter(metricsService, SUBJECT, "messages").getCount());
+        assertEquals(compressible.length + incompressible.length + small.length,
+                     meter(metricsService, SUBJECT, "uncompressedBytes").getCount());
+        assertEquals(frameBytes, meter(metricsService, SUBJECT, "bytes").getCount());
+        assertTrue(frameBytes < incompressible.length + small.length + compressible.length / 10);
+        assertEquals(1, meter(metricsService, OTHER_SUBJECT, "messages").getCount());
+        assertEquals(otherFrameBytes, meter(metricsService, OTHER_SUBJECT, "bytes").getCount());
+    }
+
+    private Meter meter(MetricsManager metricsService, String subject, String name) {
+        return metricsService.getMeters(MetricFilter.ALL).get("NettyMessaging." + subject + "." + name);
+    }
+}
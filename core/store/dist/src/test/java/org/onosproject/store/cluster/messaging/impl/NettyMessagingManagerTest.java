@@ -15,6 +15,7 @@
  */
 package org.onosproject.store.cluster.messaging.impl;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Uninterruptibles;
@@ -22,7 +23,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.IpAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.cfg.ConfigProperty;
 import org.onosproject.cluster.ClusterMetadata;
 import org.onosproject.cluster.ClusterMetadataEventListener;
 import org.onosproject.cluster.ClusterMetadataService;
@@ -35,6 +39,7 @@ import org.onosproject.store.cluster.messaging.Endpoint;
 
 import java.net.ConnectException;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
@@ -53,6 +58,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.onlab.junit.TestTools.findAvailablePort;
+import static org.onosproject.cfg.ConfigProperty.Type.INTEGER;
+import static org.onosproject.cfg.ConfigProperty.Type.STRING;
 
 /**
  * Unit tests for NettyMessaging.
@@ -87,13 +94,15 @@ public class NettyMessagingManagerTest {
         netty1 = new NettyMessagingManager();
         netty1.clusterMetadataService = dummyMetadataService(DUMMY_NAME, IP_STRING, ep1);
         netty1.clockService = testClockService;
-        netty1.activate();
+        netty1.metricsService = new MetricsManager();
+        netty1.activate(null);
 
         ep2 = new Endpoint(IpAddress.valueOf("127.0.0.1"), findAvailablePort(5003));
         netty2 = new NettyMessagingManager();
         netty2.clusterMetadataService = dummyMetadataService(DUMMY_NAME, IP_STRING, ep2);
         netty2.clockService = testClockService;
-        netty2.activate();
+        netty2.metricsService = new MetricsManager();
+        netty2.activate(null);
     }
 
     /**
@@ -115,6 +124,36 @@ public class NettyMessagingManagerTest {
         }
     }
 
+    /**
+     * Tests that the configuration is read when the configuration service
+     * is bound, and left untouched when any of its values is invalid.
+     */
+    @Test
+    public void testConfiguration() {
+        assertEquals(0, netty1.compressionThreshold(nextSubject()));
+
+        netty1.bindComponentConfigService(config("1024", "foo=64"));
+        assertEquals(1024, netty1.compressionThreshold(nextSubject()));
+        assertEquals(64, netty1.compressionThreshold("foo"));
+
+        netty1.unbindComponentConfigService(netty1.cfgService);
+        netty1.bindComponentConfigService(config("2048", "foo"));
+        assertEquals(1024, netty1.compressionThreshold(nextSubject()));
+        assertEquals(64, netty1.compressionThreshold("foo"));
+    }
+
+    private static ComponentConfigAdapter config(String threshold, String subjectThresholds) {
+        Set<ConfigProperty> properties = ImmutableSet.of(
+                ConfigProperty.defineProperty("compressionThreshold", INTEGER, threshold, ""),
+                ConfigProperty.defineProperty("subjectCompressionThresholds", STRING, subjectThresholds, ""));
+        return new ComponentConfigAdapter() {
+            @Override
+            public Set<ConfigProperty> getProperties(String componentName) {
+                return properties;
+            }
+        };
+    }
+
     @Test
     public void testSendAsync() {
         String subject = nextSubject();
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.cluster.messaging.impl;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for the write batching stage.
+ */
+public class WriteBatchingHandlerTest {
+
+    private final AtomicBoolean enabled = new AtomicBoolean(true);
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel(new WriteBatchingHandler(enabled::get));
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * Tests that flushes are deferred and coalesced while batching is enabled.
+     */
+    @Test
+    public void testBatchedFlush() {
+        channel.writeAndFlush("a");
+        channel.writeAndFlush("b");
+        assertNull(channel.readOutbound());
+
+        channel.runPendingTasks();
+        assertEquals("a", channel.readOutbound());
+        assertEquals("b", channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    /**
+     * Tests that flushes go through immediately while batching is disabled.
+     */
+    @Test
+    public void testDisabled() {
+        enabled.set(false);
+        channel.writeAndFlush("a");
+        assertEquals("a", channel.readOutbound());
+    }
+
+    /**
+     * Tests that pending messages are flushed when the channel is closed.
+     */
+    @Test
+    public void testFlushOnClose() {
+        channel.writeAndFlush("a");
+        channel.close();
+        assertEquals("a", channel.readOutbound());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultFlowRule;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.StoredFlowEntry;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.onosproject.net.NetTestTools.APP_ID;
+import static org.onosproject.net.NetTestTools.did;
+
+/**
+ * Unit tests for the compact flow table.
+ */
+public class CompactFlowTableTest {
+
+    private static final Serializer SERIALIZER = Serializer.using(KryoNamespace.newBuilder()
+            .register(KryoNamespaces.POF)
+            .build("CompactFlowTableTest"));
+
+    private final DeviceId deviceId = did("device1");
+    private CompactFlowTable table;
+
+    @Before
+    public void setUp() {
+        table = new CompactFlowTable(SERIALIZER);
+    }
+
+    private FlowRule rule(int port, int priority) {
+        return DefaultFlowRule.builder()
+                .forDevice(deviceId)
+                .withSelector(DefaultTrafficSelector.builder()
+                                      .matchInPort(PortNumber.portNumber(port)).build())
+                .withTreatment(DefaultTrafficTreatment.builder()
+                                       .setOutput(PortNumber.portNumber(port + 1)).build())
+                .withPriority(priority)
+                .makePermanent()
+                .fromApp(APP_ID)
+                .build();
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        FlowRule rule = rule(1, 10);
+        table.put(new DefaultFlowEntry(rule));
+
+        assertThat(table.size(), is(1));
+        StoredFlowEntry stored = table.get(rule);
+        assertThat(stored, notNullValue());
+        assertThat(stored, is(rule));
+        assertThat(stored.treatment(), is(rule.treatment()));
+        assertThat(stored.state(), is(FlowEntryState.PENDING_ADD));
+
+        // same flow id, different priority
+        assertThat(table.get(rule(1, 20)), nullValue());
+
+        assertThat(table.remove(new DefaultFlowEntry(rule)), notNullValue());
+        assertThat(table.size(), is(0));
+        assertThat(table.get(rule), nullValue());
+        assertThat(table.bodyBytes(), is(0L));
+    }
+
+    @Test
+    public void testStatisticsWriteBack() {
+        FlowRule rule = rule(1, 10);
+        table.put(new DefaultFlowEntry(rule));
+
+        StoredFlowEntry stored = table.get(rule);
+        stored.setState(FlowEntryState.ADDED);
+        stored.setBytes(1500);
+        stored.setPackets(3);
+        stored.setLife(7, TimeUnit.SECONDS);
+        // decoded entries are copies until written back
+        assertThat(table.get(rule).state(), is(FlowEntryState.PENDING_ADD));
+
+        stored = table.get(rule);
+        stored.setState(FlowEntryState.ADDED);
+        stored.setBytes(1500);
+        stored.setPackets(3);
+        stored.setLife(7, TimeUnit.SECONDS);
+        ((DefaultFlowEntry) stored).setLastSeen(42L);
+        assertThat(table.update(stored), is(true));
+
+        StoredFlowEntry reloaded = table.get(rule);
+        assertThat(reloaded.state(), is(FlowEntryState.ADDED));
+        assertThat(reloaded.bytes(), is(1500L));
+        assertThat(reloaded.packets(), is(3L));
+        assertThat(reloaded.life(), is(7L));
+        assertThat(reloaded.lastSeen(), is(42L));
+        assertThat(((DefaultFlowRule) reloaded).created(), is(((DefaultFlowRule) rule).created()));
+    }
+
+    @Test
+    public void testPutReplacesEqualEntry() {
+        FlowRule rule = rule(1, 10);
+        table.put(new DefaultFlowEntry(rule));
+        table.put(new DefaultFlowEntry(rule, FlowEntryState.ADDED, 0, TimeUnit.SECONDS, 0, 0));
+
+        assertThat(table.size(), is(1));
+        assertThat(table.get(rule).state(), is(FlowEntryState.ADDED));
+    }
+
+    @Test
+    public void testSlotReuseAndGrowth() {
+        for (int i = 0; i < 100; i++) {
+            table.put(new DefaultFlowEntry(rule(i, 10)));
+        }
+        assertThat(table.size(), is(100));
+        for (int i = 0; i < 100; i += 2) {
+            table.remove(new DefaultFlowEntry(rule(i, 10)));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            table.put(new DefaultFlowEntry(rule(i, 20)));
+        }
+        assertThat(table.size(), is(100));
+        assertThat(table.entries().size(), is(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(table.get(rule(i, i % 2 == 0 ? 20 : 10)), notNullValue());
+        }
+    }
+
+    @Test
+    public void testBuckets() {
+        FlowRule rule = rule(1, 10);
+        table.put(new DefaultFlowEntry(rule));
+        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> copy = table.copy();
+        assertThat(copy.get(rule.id()).size(), is(1));
+
+        CompactFlowTable backup = new CompactFlowTable(SERIALIZER);
+        copy.forEach(backup::putBucket);
+        assertThat(backup.get(rule), notNullValue());
+
+        backup.putBucket(rule.id(), table.bucket(FlowId.valueOf(0)));
+        assertThat(backup.size(), is(0));
+    }
+}
@@ -16,7 +16,11 @@
 package org.onosproject.store.flow.impl;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,37 +39,57 @@ import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
 import org.onosproject.net.flow.DefaultFlowEntry;
 import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
 import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.FlowRuleBatchOperation;
+import org.onosproject.net.flow.StoredFlowEntry;
 import org.onosproject.net.intent.IntentTestsMocks;
 import org.onosproject.store.cluster.messaging.ClusterCommunicationServiceAdapter;
+import org.onosproject.store.cluster.messaging.MessageSubject;
 import org.onosproject.store.persistence.PersistenceServiceAdapter;
 import org.onosproject.store.service.TestStorageService;
 
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.Ip4Address;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import org.osgi.service.component.ComponentContext;
 
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertEquals;
 import static org.onosproject.net.NetTestTools.APP_ID;
 import static org.onosproject.net.NetTestTools.did;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.FLOW_TABLE_BACKUP;
 
 /**
  * Test class for DistributedFlowRuleStore.
  */
 public class DistributedFlowRuleStoreTest {
 
+    // device mastered by another node, so that this node holds its backup copy
+    private static final DeviceId REMOTE_DEVICE = did("device2");
+
     DistributedFlowRuleStore flowStoreImpl;
     ComponentContext context = null;
     private ClusterService mockClusterService;
+    private BackupCapturingCommunicator clusterCommunicator;
+    private MasterOfAll mastershipService;
     private ControllerNode mockControllerNode;
+    private MetricsManager metricsService;
 
     private NodeId nodeId;
 
@@ -94,6 +118,8 @@ public class DistributedFlowRuleStoreTest {
                     .build();
 
     static class MasterOfAll extends MastershipServiceAdapter {
+        NodeId remoteMaster = new NodeId("2");
+
         @Override
         public MastershipRole getLocalRole(DeviceId deviceId) {
             return MastershipRole.MASTER;
@@ -101,7 +127,21 @@ public class DistributedFlowRuleStoreTest {
 
         @Override
         public NodeId getMasterFor(DeviceId deviceId) {
-            return new NodeId("1");
+            return deviceId.equals(REMOTE_DEVICE) ? remoteMaster : new NodeId("1");
+        }
+    }
+
+    private static class BackupCapturingCommunicator extends ClusterCommunicationServiceAdapter {
+        Function<List<FlowTableBackup>, Set<DeviceId>> backupHandler;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <M, R> void addSubscriber(MessageSubject subject,
+                                         Function<byte[], M> decoder, Function<M, R> handler,
+                                         Function<R, byte[]> encoder, Executor executor) {
+            if (subject.equals(FLOW_TABLE_BACKUP)) {
+                backupHandler = (Function<List<FlowTableBackup>, Set<DeviceId>>) handler;
+            }
         }
     }
 
@@ -143,12 +183,16 @@ public class DistributedFlowRuleStoreTest {
                 .andReturn(mockControllerNode).anyTimes();
         replay(mockClusterService);
 
-        flowStoreImpl.clusterCommunicator = new ClusterCommunicationServiceAdapter();
-        flowStoreImpl.mastershipService = new MasterOfAll();
+        clusterCommunicator = new BackupCapturingCommunicator();
+        flowStoreImpl.clusterCommunicator = clusterCommunicator;
+        mastershipService = new MasterOfAll();
+        flowStoreImpl.mastershipService = mastershipService;
         flowStoreImpl.deviceService = new DeviceServiceAdapter();
         flowStoreImpl.coreService = new CoreServiceAdapter();
         flowStoreImpl.configService = new ComponentConfigAdapter();
         flowStoreImpl.persistenceService = new PersistenceServiceAdapter();
+        metricsService = new MetricsManager();
+        flowStoreImpl.metricsService = metricsService;
         flowStoreImpl.activate(context);
     }
 
@@ -262,4 +306,174 @@ public class DistributedFlowRuleStoreTest {
         }
         assertThat(sum3, is(0));
     }
+
+    /**
+     * Tests that incremental backups survive serialization.
+     */
+    @Test
+    public void testIncrementalBackupSerialization() {
+        FlowTableBackup backup = new FlowTableBackup(deviceId, 3, 5, false,
+                ImmutableMap.of(FlowId.valueOf(7), Maps.newHashMap()));
+        byte[] payload = flowStoreImpl.serializer.encode(ImmutableList.of(backup));
+        List<FlowTableBackup> decoded = flowStoreImpl.serializer.decode(payload);
+
+        assertThat(decoded.size(), is(1));
+        FlowTableBackup copy = decoded.get(0);
+        assertEquals(deviceId, copy.deviceId());
+        assertThat(copy.baseVersion(), is(3L));
+        assertThat(copy.version(), is(5L));
+        assertThat(copy.isFull(), is(false));
+        assertThat(copy.buckets().get(FlowId.valueOf(7)).isEmpty(), is(true));
+        assertThat(copy.size(), is(0));
+    }
+
+    private static Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> bucketOf(FlowRule rule) {
+        StoredFlowEntry entry = new DefaultFlowEntry(rule);
+        Map<StoredFlowEntry, StoredFlowEntry> bucket = Maps.newHashMap();
+        bucket.put(entry, entry);
+        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> buckets = Maps.newHashMap();
+        buckets.put(rule.id(), bucket);
+        return buckets;
+    }
+
+    private static FlowRule remoteRule(int priority) {
+        return DefaultFlowRule.builder()
+                .forDevice(REMOTE_DEVICE)
+                .withSelector(SELECTOR)
+                .withTreatment(TREATMENT)
+                .withPriority(priority)
+                .makeTemporary(44)
+                .fromApp(APP_ID)
+                .build();
+    }
+
+    // reads the backup copy the way this node would serve it after taking over the device
+    private int remoteFlowCount() {
+        NodeId master = mastershipService.remoteMaster;
+        mastershipService.remoteMaster = nodeId;
+        try {
+            return flowStoreImpl.getFlowRuleCount(REMOTE_DEVICE);
+        } finally {
+            mastershipService.remoteMaster = master;
+        }
+    }
+
+    /**
+     * Tests that incremental backups are applied on top of the backup copy
+     * and that a backup whose base does not match the copy is rejected.
+     */
+    @Test
+    public void testIncrementalBackupReceipt() {
+        FlowRule rule1 = remoteRule(10);
+        FlowRule rule2 = remoteRule(20);
+
+        Set<DeviceId> acked = clusterCommunicator.backupHandler.apply(ImmutableList.of(
+                new FlowTableBackup(REMOTE_DEVICE, -1, 2, true, bucketOf(rule1))));
+        assertThat(acked, contains(REMOTE_DEVICE));
+        assertThat(remoteFlowCount(), is(1));
+
+        // delta on top of version 2
+        acked = clusterCommunicator.backupHandler.apply(ImmutableList.of(
+                new FlowTableBackup(REMOTE_DEVICE, 2, 3, false, bucketOf(rule2))));
+        assertThat(acked, contains(REMOTE_DEVICE));
+        assertThat(remoteFlowCount(), is(2));
+
+        // the copy is at version 3 now, so a delta based on 2 must not be applied
+        Map<FlowId, Map<StoredFlowEntry, StoredFlowEntry>> removal = Maps.newHashMap();
+        removal.put(rule1.id(), Maps.newHashMap());
+        acked = clusterCommunicator.backupHandler.apply(ImmutableList.of(
+                new FlowTableBackup(REMOTE_DEVICE, 2, 4, false, removal)));
+        assertThat(acked.isEmpty(), is(true));
+        assertThat(remoteFlowCount(), is(2));
+
+        // an empty bucket in a matching delta removes the flows under that id
+        acked = clusterCommunicator.backupHandler.apply(ImmutableList.of(
+                new FlowTableBackup(REMOTE_DEVICE, 3, 4, false, removal)));
+        assertThat(acked, contains(REMOTE_DEVICE));
+        assertThat(remoteFlowCount(), is(1));
+    }
+
+    /**
+     * Tests that state and statistics updates of a stored entry are recorded
+     * for the next incremental backup.
+     */
+    @Test
+    public void testUpdatesRecordedForBackup() {
+        flowStoreImpl.storeBatch(new FlowRuleBatchOperation(
+                ImmutableList.of(new FlowRuleBatchEntry(FlowRuleBatchEntry.FlowRuleOperation.ADD, flowRule)),
+                deviceId, 1));
+        long pendingAdd = flowStoreImpl.changeLogVersion(deviceId);
+
+        // PENDING_ADD -> ADDED
+        flowStoreImpl.addOrUpdateFlowRule(new DefaultFlowEntry(flowRule));
+        long added = flowStoreImpl.changeLogVersion(deviceId);
+        assertThat(added, greaterThan(pendingAdd));
+
+        // statistics only
+        flowStoreImpl.addOrUpdateFlowRule(new DefaultFlowEntry(flowRule, FlowEntry.FlowEntryState.ADDED,
+                                                               10, 100, 1000));
+        long stats = flowStoreImpl.changeLogVersion(deviceId);
+        assertThat(stats, greaterThan(added));
+
+        // ADDED -> PENDING_REMOVE
+        flowStoreImpl.storeBatch(new FlowRuleBatchOperation(
+                ImmutableList.of(new FlowRuleBatchEntry(FlowRuleBatchEntry.FlowRuleOperation.REMOVE, flowRule)),
+                deviceId, 2));
+        assertThat(flowStoreImpl.changeLogVersion(deviceId), greaterThan(stats));
+    }
+
+    /**
+     * Tests that the backup counters are published through the metrics service.
+     */
+    @Test
+    public void testBackupMetrics() {
+        Map<String, ?> counters = metricsService.getCounters((name, metric) -> name.startsWith("FlowRuleStore.backup."));
+        assertThat(counters, hasKey("FlowRuleStore.backup.fullBackups"));
+        assertThat(counters, hasKey("FlowRuleStore.backup.incrementalBackups"));
+        assertThat(counters, hasKey("FlowRuleStore.backup.records"));
+        assertThat(counters, hasKey("FlowRuleStore.backup.bytes"));
+    }
+
+    /**
+     * Tests that the change log reports the flow ids changed since a version.
+     */
+    @Test
+    public void testChangeLogDelta() {
+        DistributedFlowRuleStore.DeviceChangeLog changeLog = new DistributedFlowRuleStore.DeviceChangeLog();
+        changeLog.record(FlowId.valueOf(1));
+        changeLog.record(FlowId.valueOf(2));
+
+        Set<FlowId> changed = Sets.newHashSet();
+        assertThat(changeLog.changedSince(1, changed), is(2L));
+        assertThat(changed, contains(FlowId.valueOf(2)));
+
+        changeLog.record(FlowId.valueOf(1));
+        changed.clear();
+        assertThat(changeLog.changedSince(1, changed), is(3L));
+        assertThat(changed, containsInAnyOrder(FlowId.valueOf(1), FlowId.valueOf(2)));
+    }
+
+    /**
+     * Tests that pruning the change log raises its floor, below which
+     * a delta can no longer be computed.
+     */
+    @Test
+    public void testChangeLogPrune() {
+        DistributedFlowRuleStore.DeviceChangeLog changeLog = new DistributedFlowRuleStore.DeviceChangeLog();
+        changeLog.record(FlowId.valueOf(1));
+        changeLog.record(FlowId.valueOf(2));
+        changeLog.record(FlowId.valueOf(3));
+        assertThat(changeLog.floor(), is(0L));
+
+        changeLog.prune(2);
+        assertThat(changeLog.floor(), is(2L));
+        Set<FlowId> changed = Sets.newHashSet();
+        changeLog.changedSince(0, changed);
+        // changes 1 and 2 are gone, so a node at version 0 needs a full backup
+        assertThat(changed, contains(FlowId.valueOf(3)));
+
+        // the floor never moves back
+        changeLog.prune(1);
+        assertThat(changeLog.floor(), is(2L));
+    }
 }
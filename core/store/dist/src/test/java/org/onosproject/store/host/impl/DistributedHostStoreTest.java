@@ -20,18 +20,37 @@ import org.junit.Before;
 import org.junit.Test;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.Host;
 import org.onosproject.net.HostId;
 import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
 import org.onosproject.net.host.DefaultHostDescription;
 import org.onosproject.net.host.HostDescription;
 import org.onosproject.net.provider.ProviderId;
+import org.onosproject.store.primitives.ConsistentMapBackedJavaMap;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.ConsistentMap;
+import org.onosproject.store.service.ConsistentMapAdapter;
+import org.onosproject.store.service.ConsistentMapBuilder;
+import org.onosproject.store.service.MapEventListener;
 import org.onosproject.store.service.TestStorageService;
+import org.onosproject.store.service.Versioned;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -53,6 +72,14 @@ public class DistributedHostStoreTest {
     private static final ProviderId PID = new ProviderId("of", "foo");
     private static final ProviderId PID2 = new ProviderId("of", "foo2");
 
+    private static final VlanId VLAN1 = VlanId.vlanId((short) 10);
+
+    private static final DeviceId DID1 = DeviceId.deviceId("of:1");
+    private static final DeviceId DID2 = DeviceId.deviceId("of:2");
+    private static final ConnectPoint CP1 = new ConnectPoint(DID1, PortNumber.portNumber(1));
+    private static final HostLocation LOC1 = new HostLocation(CP1, 123L);
+    private static final HostLocation LOC2 = new HostLocation(DID2, PortNumber.portNumber(2), 123L);
+
     private static final HostDescription HOST_LEARNT =
             createHostDesc(HOSTID, Sets.newHashSet(IP1), false);
     private static final HostDescription HOST_CONFIGURED =
@@ -146,6 +173,211 @@ public class DistributedHostStoreTest {
         assertEquals(PID2, hostInStore.providerId());
     }
 
+    /**
+     * Tests the location, device, MAC and VLAN lookups as hosts come, move
+     * and go.
+     */
+    @Test
+    public void testHostIndexes() {
+        HostId vlanHostId = HostId.hostId(HOSTID.mac(), VLAN1);
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDescAt(HOSTID, ImmutableSet.of(LOC1)), false);
+        ecXHostStore.createOrUpdateHost(PID, vlanHostId,
+                createHostDescAt(vlanHostId, ImmutableSet.of(LOC1, LOC2)), false);
+        Host host = ecXHostStore.getHost(HOSTID);
+        Host vlanHost = ecXHostStore.getHost(vlanHostId);
+
+        assertEquals(ImmutableSet.of(host, vlanHost), ecXHostStore.getConnectedHosts(LOC1));
+        assertEquals(ImmutableSet.of(host, vlanHost), ecXHostStore.getConnectedHosts(CP1));
+        assertEquals(ImmutableSet.of(vlanHost), ecXHostStore.getConnectedHosts(LOC2));
+        assertEquals(ImmutableSet.of(host, vlanHost), ecXHostStore.getConnectedHosts(DID1));
+        assertEquals(ImmutableSet.of(vlanHost), ecXHostStore.getConnectedHosts(DID2));
+        assertEquals(ImmutableSet.of(host, vlanHost), ecXHostStore.getHosts(HOSTID.mac()));
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getHosts(VlanId.NONE));
+        assertEquals(ImmutableSet.of(vlanHost), ecXHostStore.getHosts(VLAN1));
+
+        // Move the host to the second device
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDescAt(HOSTID, ImmutableSet.of(LOC2)), false);
+        host = ecXHostStore.getHost(HOSTID);
+        assertEquals(ImmutableSet.of(vlanHost), ecXHostStore.getConnectedHosts(LOC1));
+        assertEquals(ImmutableSet.of(host, vlanHost), ecXHostStore.getConnectedHosts(LOC2));
+        assertEquals(ImmutableSet.of(vlanHost), ecXHostStore.getConnectedHosts(DID1));
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getHosts(VlanId.NONE));
+
+        // Remove the last location of the host on the second device
+        ecXHostStore.removeLocation(vlanHostId, LOC2);
+        vlanHost = ecXHostStore.getHost(vlanHostId);
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getConnectedHosts(LOC2));
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getConnectedHosts(DID2));
+        assertEquals(ImmutableSet.of(vlanHost), ecXHostStore.getConnectedHosts(DID1));
+
+        ecXHostStore.removeHost(HOSTID);
+        ecXHostStore.removeHost(vlanHostId);
+        assertTrue(ecXHostStore.getConnectedHosts(DID1).isEmpty());
+        assertTrue(ecXHostStore.getConnectedHosts(LOC2).isEmpty());
+        assertTrue(ecXHostStore.getHosts(HOSTID.mac()).isEmpty());
+        assertTrue(ecXHostStore.getHosts(VLAN1).isEmpty());
+    }
+
+    /**
+     * Tests that IP addresses replaced by an update are no longer indexed.
+     */
+    @Test
+    public void testReplaceIps() {
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDesc(HOSTID, Sets.newHashSet(IP1)), false);
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDesc(HOSTID, Sets.newHashSet(IP2)), true);
+
+        assertTrue(ecXHostStore.getHosts(IP1).isEmpty());
+        assertEquals(ImmutableSet.of(ecXHostStore.getHost(HOSTID)),
+                     ecXHostStore.getHosts(IP2));
+    }
+
+    /**
+     * Tests that the indexes reflect the writes of this instance before
+     * the map events arrive, and that late events do not roll them back.
+     */
+    @Test
+    public void testIndexesUpdatedOnWrite() {
+        ecXHostStore.deactivate();
+        DeferredEventStorageService storageService = new DeferredEventStorageService();
+        ecXHostStore = new DistributedHostStore();
+        ecXHostStore.storageService = storageService;
+        ecXHostStore.activate();
+
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDescAt(HOSTID, ImmutableSet.of(LOC1)), false);
+        Host host = ecXHostStore.getHost(HOSTID);
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getConnectedHosts(LOC1));
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getHosts(HOSTID.mac()));
+
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDescAt(HOSTID, ImmutableSet.of(LOC2)), false);
+        host = ecXHostStore.getHost(HOSTID);
+        assertTrue(ecXHostStore.getConnectedHosts(LOC1).isEmpty());
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getConnectedHosts(LOC2));
+
+        // the insert event for the first location arrives late
+        storageService.deliver(1);
+        assertTrue(ecXHostStore.getConnectedHosts(LOC1).isEmpty());
+        assertEquals(ImmutableSet.of(host), ecXHostStore.getConnectedHosts(LOC2));
+
+        ecXHostStore.removeHost(HOSTID);
+        assertTrue(ecXHostStore.getConnectedHosts(LOC2).isEmpty());
+        assertTrue(ecXHostStore.getHosts(HOSTID.mac()).isEmpty());
+
+        // the move event arrives after the removal
+        storageService.deliver(1);
+        assertTrue(ecXHostStore.getConnectedHosts(LOC2).isEmpty());
+        storageService.deliver(Integer.MAX_VALUE);
+        assertTrue(ecXHostStore.getConnectedHosts(LOC2).isEmpty());
+
+        ecXHostStore.createOrUpdateHost(PID, HOSTID,
+                createHostDescAt(HOSTID, ImmutableSet.of(LOC1)), false);
+        storageService.deliver(Integer.MAX_VALUE);
+        assertEquals(ImmutableSet.of(ecXHostStore.getHost(HOSTID)), ecXHostStore.getConnectedHosts(LOC1));
+    }
+
+    // Storage service whose consistent maps hold back events until delivered
+    private static final class DeferredEventStorageService extends TestStorageService {
+        private final List<Runnable> events = Lists.newArrayList();
+
+        void deliver(int count) {
+            for (int i = 0; i < count && !events.isEmpty(); i++) {
+                events.remove(0).run();
+            }
+        }
+
+        @Override
+        public <K, V> ConsistentMapBuilder<K, V> consistentMapBuilder() {
+            ConsistentMapBuilder<K, V> builder = super.consistentMapBuilder();
+            return new ConsistentMapBuilder<K, V>() {
+                @Override
+                public ConsistentMap<K, V> build() {
+                    return new DeferredEventMap<>(builder.withName(name()).build(), events);
+                }
+
+                @Override
+                public AsyncConsistentMap<K, V> buildAsyncMap() {
+                    return null;
+                }
+            };
+        }
+    }
+
+    private static final class DeferredEventMap<K, V> extends ConsistentMapAdapter<K, V> {
+        private final ConsistentMap<K, V> map;
+        private final List<Runnable> events;
+
+        private DeferredEventMap(ConsistentMap<K, V> map, List<Runnable> events) {
+            this.map = map;
+            this.events = events;
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public Versioned<V> get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Versioned<V> compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+            return map.compute(key, remappingFunction);
+        }
+
+        @Override
+        public Versioned<V> computeIf(K key, Predicate<? super V> condition,
+                                      BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+            return map.computeIf(key, condition, remappingFunction);
+        }
+
+        @Override
+        public Versioned<V> remove(K key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return map.keySet();
+        }
+
+        @Override
+        public Collection<Versioned<V>> values() {
+            return map.values();
+        }
+
+        @Override
+        public Set<Map.Entry<K, Versioned<V>>> entrySet() {
+            return map.entrySet();
+        }
+
+        @Override
+        public void addListener(MapEventListener<K, V> listener, Executor executor) {
+            map.addListener(event -> events.add(() -> listener.event(event)));
+        }
+
+        @Override
+        public Map<K, V> asJavaMap() {
+            return new ConsistentMapBackedJavaMap<>(this);
+        }
+    }
+
+    private static HostDescription createHostDescAt(HostId hostId, Set<HostLocation> locations) {
+        return new DefaultHostDescription(hostId.mac(), hostId.vlanId(),
+                locations, ImmutableSet.of(), false);
+    }
+
     private static HostDescription createHostDesc(HostId hostId, Set<IpAddress> ips) {
         return createHostDesc(hostId, ips, false);
     }
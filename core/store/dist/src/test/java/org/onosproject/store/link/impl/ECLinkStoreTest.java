@@ -332,6 +332,25 @@ public class ECLinkStoreTest {
         assertLink(linkId2, DIRECT, links2.iterator().next());
     }
 
+    @Test
+    public final void testLinkLookupsAfterRemoval() {
+        final ConnectPoint d1P1 = new ConnectPoint(DID1, P1);
+        final ConnectPoint d2P2 = new ConnectPoint(DID2, P2);
+        LinkKey linkId1 = LinkKey.linkKey(d1P1, d2P2);
+
+        putLink(linkId1, DIRECT);
+        linkStore.removeLink(d1P1, d2P2);
+
+        assertTrue("no egress links expected", linkStore.getDeviceEgressLinks(DID1).isEmpty());
+        assertTrue("no ingress links expected", linkStore.getDeviceIngressLinks(DID2).isEmpty());
+        assertTrue("no egress links expected", linkStore.getEgressLinks(d1P1).isEmpty());
+        assertTrue("no ingress links expected", linkStore.getIngressLinks(d2P2).isEmpty());
+
+        putLink(linkId1, DIRECT);
+        assertLink(linkId1, DIRECT, linkStore.getDeviceEgressLinks(DID1).iterator().next());
+        assertLink(linkId1, DIRECT, linkStore.getIngressLinks(d2P2).iterator().next());
+    }
+
     @Test
     public final void testCreateOrUpdateLink() {
         ConnectPoint src = new ConnectPoint(DID1, P1);
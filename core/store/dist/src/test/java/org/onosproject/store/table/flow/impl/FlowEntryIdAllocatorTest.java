@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.table.flow.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link FlowEntryIdAllocator}.
+ */
+public class FlowEntryIdAllocatorTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private final AtomicInteger watermark = new AtomicInteger();
+    private final AtomicInteger leases = new AtomicInteger();
+
+    private FlowEntryIdBlock lease() {
+        leases.incrementAndGet();
+        int end = watermark.addAndGet(BLOCK_SIZE);
+        return new FlowEntryIdBlock(end - BLOCK_SIZE, end);
+    }
+
+    @Test
+    public void testSequentialAllocation() {
+        FlowEntryIdAllocator allocator = new FlowEntryIdAllocator(this::lease);
+        for (int i = 0; i < 10; i++) {
+            assertThat(allocator.allocate(), is(i));
+        }
+        assertThat(leases.get(), is(3));
+        assertThat(allocator.remaining(), is(2));
+    }
+
+    @Test
+    public void testRecycling() {
+        FlowEntryIdAllocator allocator = new FlowEntryIdAllocator(this::lease);
+        allocator.allocate();
+        int id = allocator.allocate();
+        allocator.release(id);
+        assertThat(allocator.freeIds(), contains(id));
+        assertThat(allocator.allocate(), is(id));
+        assertThat(allocator.freeIds(), is(empty()));
+
+        allocator.release(id);
+        assertTrue(allocator.reserve(id));
+        assertThat(allocator.allocate(), is(2));
+    }
+
+    @Test
+    public void testRecyclesLowestFreeId() {
+        FlowEntryIdAllocator allocator = new FlowEntryIdAllocator(this::lease);
+        for (int i = 0; i < 8; i++) {
+            allocator.allocate();
+        }
+        allocator.release(6);
+        allocator.release(2);
+        allocator.release(2);
+        allocator.release(4);
+        assertThat(allocator.freeIds(), contains(2, 4, 6));
+        assertFalse(allocator.reserve(3));
+        assertTrue(allocator.reserve(4));
+
+        assertThat(allocator.takeFreeId(), is(2));
+        allocator.release(1);
+        assertThat(allocator.takeFreeId(), is(1));
+        assertThat(allocator.takeFreeId(), is(6));
+        assertThat(allocator.takeFreeId(), is(FlowEntryIdAllocator.NO_ID));
+    }
+
+    @Test
+    public void testDrain() {
+        FlowEntryIdAllocator allocator = new FlowEntryIdAllocator(this::lease);
+        allocator.allocate();
+        int id = allocator.allocate();
+        allocator.release(id);
+
+        assertThat(allocator.drain(), contains(2, 3, id));
+        assertThat(allocator.remaining(), is(0));
+        assertThat(allocator.freeIds(), is(empty()));
+        assertThat(allocator.drain(), is(empty()));
+
+        // allocation resumes from a newly leased block
+        assertThat(allocator.allocate(), is(BLOCK_SIZE));
+    }
+
+    @Test
+    public void testLeaseFailure() {
+        FlowEntryIdAllocator allocator = new FlowEntryIdAllocator(() -> null);
+        assertThat(allocator.allocate(), is(FlowEntryIdAllocator.NO_ID));
+    }
+
+    @Test
+    public void testConcurrentAllocationIsUnique() throws InterruptedException {
+        FlowEntryIdAllocator allocator = new FlowEntryIdAllocator(this::lease);
+        Set<Integer> ids = Sets.newConcurrentHashSet();
+        int threads = 8;
+        int perThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(allocator.allocate());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertThat(ids.size(), is(threads * perThread));
+    }
+
+    @Test
+    public void testAsyncAllocationsShareOneLease() {
+        CompletableFuture<FlowEntryIdBlock> lease = new CompletableFuture<>();
+        AtomicInteger requested = new AtomicInteger();
+        FlowEntryIdAllocator allocator = FlowEntryIdAllocator.async(() -> {
+            requested.incrementAndGet();
+            return lease;
+        });
+
+        List<CompletableFuture<Integer>> ids = Lists.newArrayList();
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            ids.add(allocator.allocateAsync());
+        }
+        assertThat(requested.get(), is(1));
+        ids.forEach(id -> assertFalse(id.isDone()));
+
+        lease.complete(new FlowEntryIdBlock(0, BLOCK_SIZE));
+        Set<Integer> allocated = Sets.newHashSet();
+        ids.forEach(id -> allocated.add(id.join()));
+        assertThat(allocated.size(), is(BLOCK_SIZE));
+        assertThat(allocator.remaining(), is(0));
+    }
+
+    @Test
+    public void testAsyncLeaseFailure() {
+        CompletableFuture<FlowEntryIdBlock> lease = new CompletableFuture<>();
+        FlowEntryIdAllocator allocator = FlowEntryIdAllocator.async(() -> lease);
+        CompletableFuture<Integer> id = allocator.allocateAsync();
+        lease.completeExceptionally(new IllegalStateException("no master"));
+        assertThat(id.join(), is(FlowEntryIdAllocator.NO_ID));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.topology.impl;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.common.DefaultTopology;
+import org.onosproject.mastership.MastershipServiceAdapter;
+import org.onosproject.net.Device;
+import org.onosproject.net.Link;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.topology.DefaultGraphDescription;
+import org.onosproject.net.topology.GraphDescription;
+import org.onosproject.store.service.TestStorageService;
+import org.onosproject.store.service.WallClockTimestamp;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.NetTestTools.PID;
+import static org.onosproject.net.NetTestTools.device;
+import static org.onosproject.net.NetTestTools.did;
+import static org.onosproject.net.NetTestTools.link;
+
+/**
+ * Test of the distributed topology store.
+ */
+public class DistributedTopologyStoreTest {
+
+    private static final List<Device> DEVICES =
+            ImmutableList.of(device("1"), device("2"), device("3"));
+    private static final List<Link> LINKS =
+            ImmutableList.of(link("1", 1, "2", 1), link("2", 1, "1", 1),
+                             link("2", 2, "3", 1), link("3", 1, "2", 2));
+
+    private DistributedTopologyStore store;
+    private MetricsManager metricsService;
+
+    @Before
+    public void setUp() {
+        store = new DistributedTopologyStore();
+        store.storageService = new TestStorageService();
+        store.clockService = WallClockTimestamp::new;
+        store.mastershipService = new MastershipServiceAdapter();
+        store.configService = new ComponentConfigAdapter();
+        store.deviceService = new DeviceServiceAdapter();
+        metricsService = new MetricsManager();
+        store.metricsService = metricsService;
+        store.activate();
+    }
+
+    @After
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    private DefaultTopology update(long time) {
+        GraphDescription description = new DefaultGraphDescription(time, time, DEVICES, LINKS);
+        store.updateTopology(PID, description, ImmutableList.of());
+        return (DefaultTopology) store.currentTopology();
+    }
+
+    private void findPaths(DefaultTopology topology, int times) {
+        for (int i = 0; i < times; i++) {
+            store.getPaths(topology, did("1"), did("3"));
+        }
+    }
+
+    private Object gauge(String name) {
+        return metricsService.getGauges((n, m) -> true)
+                .get("TopologyStore.pathCache." + name).getValue();
+    }
+
+    /**
+     * Tests that path cache statistics accumulate across topology changes
+     * and are published as gauges.
+     */
+    @Test
+    public void testPathCacheStatsSurviveTopologyChange() {
+        DefaultTopology first = update(1L);
+        findPaths(first, 5);
+        CacheStats firstStats = first.pathCacheStats();
+        assertTrue(firstStats.hitCount() > 0);
+
+        DefaultTopology second = update(2L);
+        findPaths(second, 5);
+
+        CacheStats total = store.pathCacheStats();
+        assertEquals(firstStats.hitCount() + second.pathCacheStats().hitCount(), total.hitCount());
+        assertEquals(firstStats.missCount() + second.pathCacheStats().missCount(), total.missCount());
+        assertEquals(total.hitCount(), gauge("hits"));
+        assertEquals(total.missCount(), gauge("misses"));
+    }
+}
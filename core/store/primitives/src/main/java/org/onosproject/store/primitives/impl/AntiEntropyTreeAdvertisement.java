@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.cluster.NodeId;
+
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Anti-entropy advertisement message carrying the hashes of some nodes of
+ * one level of the digest tree of an eventually consistent map.
+ */
+public class AntiEntropyTreeAdvertisement {
+
+    private final NodeId sender;
+    private final int level;
+    private final Map<Integer, Long> hashes;
+
+    /**
+     * Creates a new digest tree advertisement message.
+     *
+     * @param sender the sender's node ID
+     * @param level  level of the advertised nodes
+     * @param hashes hashes of the advertised nodes, by node index
+     */
+    public AntiEntropyTreeAdvertisement(NodeId sender, int level,
+                                        Map<Integer, Long> hashes) {
+        this.sender = checkNotNull(sender);
+        this.level = level;
+        this.hashes = ImmutableMap.copyOf(checkNotNull(hashes));
+    }
+
+    /**
+     * Returns the sender's node ID.
+     *
+     * @return the sender's node ID
+     */
+    public NodeId sender() {
+        return sender;
+    }
+
+    /**
+     * Returns the level of the advertised nodes.
+     *
+     * @return tree level
+     */
+    public int level() {
+        return level;
+    }
+
+    /**
+     * Returns the hashes of the advertised nodes.
+     *
+     * @return mapping from node index to node hash
+     */
+    public Map<Integer, Long> hashes() {
+        return hashes;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("sender", sender)
+                .add("level", level)
+                .add("totalNodes", hashes.size())
+                .toString();
+    }
+}
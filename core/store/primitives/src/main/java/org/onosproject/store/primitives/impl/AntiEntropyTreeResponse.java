@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reply to a digest tree advertisement, listing the advertised nodes whose
+ * hashes differ from those of the receiver.
+ */
+public class AntiEntropyTreeResponse {
+
+    private final AntiEntropyResponse status;
+    private final Set<Integer> mismatches;
+
+    /**
+     * Creates a new digest tree advertisement reply.
+     *
+     * @param status     status of the exchange
+     * @param mismatches indexes of the nodes whose hashes differ
+     */
+    public AntiEntropyTreeResponse(AntiEntropyResponse status, Set<Integer> mismatches) {
+        this.status = checkNotNull(status);
+        this.mismatches = ImmutableSet.copyOf(checkNotNull(mismatches));
+    }
+
+    /**
+     * Creates a reply without mismatches for an advertisement that was not
+     * processed.
+     *
+     * @param status status of the exchange
+     * @return advertisement reply
+     */
+    public static AntiEntropyTreeResponse of(AntiEntropyResponse status) {
+        return new AntiEntropyTreeResponse(status, ImmutableSet.of());
+    }
+
+    /**
+     * Returns the status of the exchange.
+     *
+     * @return exchange status
+     */
+    public AntiEntropyResponse status() {
+        return status;
+    }
+
+    /**
+     * Returns the indexes of the advertised nodes whose hashes differ.
+     *
+     * @return mismatching node indexes
+     */
+    public Set<Integer> mismatches() {
+        return mismatches;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("status", status)
+                .add("mismatches", mismatches.size())
+                .toString();
+    }
+}
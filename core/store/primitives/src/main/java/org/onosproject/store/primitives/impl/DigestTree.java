@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.onosproject.store.Timestamp;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Hash tree summarizing the digests of the entries of an eventually
+ * consistent map for anti-entropy.
+ * <p>
+ * Keys are spread over a fixed number of leaf buckets by the hash of their
+ * serialized form. The hash of a bucket is the sum of the hashes of the
+ * digests of its entries, which lets it be updated incrementally and in any
+ * order as entries change. Each inner node is the sum of its children, so
+ * two replicas holding the same entries have the same root hash, and the
+ * buckets holding diverging entries can be found by descending through the
+ * mismatching nodes only.
+ * </p>
+ * <p>
+ * The hash of each entry is kept alongside its key so that a change only
+ * needs the hash of the new value, which callers compute before entering
+ * the atomic update of the entry.
+ * </p>
+ *
+ * @param <K> key type
+ */
+final class DigestTree<K> {
+
+    /**
+     * Number of children of each inner node.
+     */
+    static final int FANOUT = 16;
+
+    /**
+     * Level of the leaf buckets; the root is at level 0.
+     */
+    static final int DEPTH = 3;
+
+    /**
+     * Number of leaf buckets.
+     */
+    static final int BUCKETS = 1 << 12;
+
+    private static final int BUCKET_BITS = Integer.numberOfTrailingZeros(BUCKETS);
+    private static final long TOMBSTONE_SALT = 0x9e3779b97f4a7c15L;
+
+    private final ToLongFunction<K> keyHasher;
+    private final ToLongFunction<Timestamp> timestampHasher;
+    private final AtomicLongArray hashes = new AtomicLongArray(BUCKETS);
+    private final List<Map<K, Long>> entries;
+
+    /**
+     * Creates an empty digest tree.
+     *
+     * @param keyHasher       function hashing keys consistently across nodes
+     * @param timestampHasher function hashing timestamps consistently across nodes
+     */
+    DigestTree(ToLongFunction<K> keyHasher, ToLongFunction<Timestamp> timestampHasher) {
+        this.keyHasher = keyHasher;
+        this.timestampHasher = timestampHasher;
+        this.entries = IntStream.range(0, BUCKETS)
+                .mapToObj(i -> new ConcurrentHashMap<K, Long>())
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Returns the hash of a key.
+     *
+     * @param key key
+     * @return key hash
+     */
+    long keyHash(K key) {
+        return keyHasher.applyAsLong(key);
+    }
+
+    /**
+     * Returns the hash of an entry.
+     *
+     * @param keyHash hash of the entry key
+     * @param value   entry value, or null if the key is absent
+     * @return entry hash
+     */
+    long entryHash(long keyHash, MapValue<?> value) {
+        if (value == null) {
+            return 0;
+        }
+        long hash = keyHash * 31 + timestampHasher.applyAsLong(value.timestamp());
+        return mix(value.isTombstone() ? hash ^ TOMBSTONE_SALT : hash);
+    }
+
+    /**
+     * Accounts for the change of the value of the given key.
+     * <p>
+     * Changes of the same key must be applied in the order in which they
+     * happen to the map, which is the case when applied from within the
+     * atomic update of the entry.
+     * </p>
+     *
+     * @param key       key
+     * @param keyHash   hash of the key
+     * @param entryHash hash of the new entry, as returned by {@link #entryHash}
+     */
+    void update(K key, long keyHash, long entryHash) {
+        int bucket = bucket(keyHash);
+        Long previous = entries.get(bucket).put(key, entryHash);
+        long delta = entryHash - (previous == null ? 0 : previous);
+        if (delta != 0) {
+            hashes.addAndGet(bucket, delta);
+        }
+    }
+
+    /**
+     * Accounts for the removal of the given key.
+     *
+     * @param key     key
+     * @param keyHash hash of the key
+     */
+    void remove(K key, long keyHash) {
+        int bucket = bucket(keyHash);
+        Long previous = entries.get(bucket).remove(key);
+        if (previous != null) {
+            hashes.addAndGet(bucket, -previous);
+        }
+    }
+
+    /**
+     * Accounts for the change of the value of the given key, hashing the
+     * key and the new value.
+     *
+     * @param key      key
+     * @param newValue new value, or null if the key was removed
+     */
+    void update(K key, MapValue<?> newValue) {
+        long keyHash = keyHash(key);
+        if (newValue == null) {
+            remove(key, keyHash);
+        } else {
+            update(key, keyHash, entryHash(keyHash, newValue));
+        }
+    }
+
+    /**
+     * Returns the hash of a node of the tree.
+     *
+     * @param level level of the node
+     * @param node  index of the node within its level
+     * @return node hash
+     */
+    long hash(int level, int node) {
+        checkArgument(isValid(level, node), "Invalid node %s at level %s", node, level);
+        int span = BUCKETS / width(level);
+        long hash = 0;
+        for (int bucket = node * span; bucket < (node + 1) * span; bucket++) {
+            hash += hashes.get(bucket);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a snapshot of the hashes of all nodes of the tree, by level.
+     *
+     * @return node hashes indexed by level and node
+     */
+    long[][] snapshot() {
+        long[][] levels = new long[DEPTH + 1][];
+        levels[DEPTH] = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            levels[DEPTH][bucket] = hashes.get(bucket);
+        }
+        for (int level = DEPTH - 1; level >= 0; level--) {
+            levels[level] = new long[width(level)];
+            for (int node = 0; node < levels[level + 1].length; node++) {
+                levels[level][node / FANOUT] += levels[level + 1][node];
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Returns the keys currently held in a leaf bucket.
+     *
+     * @param bucket bucket index
+     * @return live view of the bucket keys
+     */
+    Set<K> keys(int bucket) {
+        return entries.get(bucket).keySet();
+    }
+
+    /**
+     * Returns the children of the given nodes.
+     *
+     * @param nodes indexes of nodes of the same level
+     * @return indexes of their children in the next level
+     */
+    static Set<Integer> children(Set<Integer> nodes) {
+        ImmutableSet.Builder<Integer> children = ImmutableSet.builder();
+        nodes.forEach(node -> IntStream.range(node * FANOUT, (node + 1) * FANOUT)
+                .forEach(children::add));
+        return children.build();
+    }
+
+    /**
+     * Indicates whether the given node exists in the tree.
+     *
+     * @param level level of the node
+     * @param node  index of the node within its level
+     * @return true if the node exists
+     */
+    static boolean isValid(int level, int node) {
+        return level >= 0 && level <= DEPTH && node >= 0 && node < width(level);
+    }
+
+    private static int width(int level) {
+        return 1 << (BUCKET_BITS / DEPTH * level);
+    }
+
+    private static int bucket(long keyHash) {
+        return (int) (keyHash >>> (Long.SIZE - BUCKET_BITS));
+    }
+
+    // Finalization step of MurmurHash3 to spread the combined hash
+    private static long mix(long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53fe85a6ca3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
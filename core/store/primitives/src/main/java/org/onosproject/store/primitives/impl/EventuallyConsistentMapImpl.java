@@ -15,13 +15,18 @@
  */
 package org.onosproject.store.primitives.impl;
 
+import com.codahale.metrics.Histogram;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.tuple.Pair;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.SlidingWindowCounter;
@@ -62,6 +67,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -98,8 +104,15 @@ public class EventuallyConsistentMapImpl<K, V>
     private final MessageSubject initializeMessageSubject;
     private final MessageSubject updateMessageSubject;
     private final MessageSubject antiEntropyAdvertisementSubject;
+    private final MessageSubject antiEntropyTreeSubject;
     private final MessageSubject updateRequestSubject;
 
+    private static final HashFunction DIGEST_HASH = Hashing.murmur3_128();
+    private final DigestTree<K> digestTree;
+    private final MetricsService metricsService;
+    private final MetricsComponent metricsComponent;
+    private final Histogram antiEntropyBytes;
+
     private final Set<EventuallyConsistentMapListener<K, V>> listeners
             = Sets.newCopyOnWriteArraySet();
 
@@ -160,6 +173,7 @@ public class EventuallyConsistentMapImpl<K, V>
      * @param convergeFaster        make anti-entropy try to converge faster
      * @param persistent            persist data to disk
      * @param persistenceService    persistence service
+     * @param metricsService        metrics service; null to disable metrics
      */
     EventuallyConsistentMapImpl(String mapName,
                                 ClusterService clusterService,
@@ -175,9 +189,11 @@ public class EventuallyConsistentMapImpl<K, V>
                                 TimeUnit antiEntropyTimeUnit,
                                 boolean convergeFaster,
                                 boolean persistent,
-                                PersistenceService persistenceService) {
+                                PersistenceService persistenceService,
+                                MetricsService metricsService) {
         this.mapName = mapName;
         this.serializer = createSerializer(ns);
+        this.digestTree = new DigestTree<>(this::digestHash, this::digestHash);
         this.persistenceService = persistenceService;
         this.persistent =
                 persistent;
@@ -189,6 +205,17 @@ public class EventuallyConsistentMapImpl<K, V>
         } else {
             items = Maps.newConcurrentMap();
         }
+        items.forEach(digestTree::update);
+        this.metricsService = metricsService;
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent(METRICS_COMPONENT);
+            antiEntropyBytes = metricsService.createHistogram(metricsComponent,
+                                                              metricsComponent.registerFeature(mapName),
+                                                              ANTI_ENTROPY_BYTES);
+        } else {
+            metricsComponent = null;
+            antiEntropyBytes = null;
+        }
         senderPending = Maps.newConcurrentMap();
         destroyedMessage = mapName + ERROR_DESTROYED;
 
@@ -266,6 +293,13 @@ public class EventuallyConsistentMapImpl<K, V>
                                           serializer::encode,
                                           this.backgroundExecutor);
 
+        antiEntropyTreeSubject = new MessageSubject("ecm-" + mapName + "-anti-entropy-tree");
+        clusterCommunicator.addSubscriber(antiEntropyTreeSubject,
+                                          serializer::decode,
+                                          this::handleAntiEntropyTreeAdvertisement,
+                                          serializer::encode,
+                                          this.backgroundExecutor);
+
         updateRequestSubject = new MessageSubject("ecm-" + mapName + "-update-request");
         clusterCommunicator.addSubscriber(updateRequestSubject,
                                           serializer::decode,
@@ -298,6 +332,8 @@ public class EventuallyConsistentMapImpl<K, V>
                          .register(WallClockTimestamp.class)
                          .register(AntiEntropyAdvertisement.class)
                          .register(AntiEntropyResponse.class)
+                         .register(AntiEntropyTreeAdvertisement.class)
+                         .register(AntiEntropyTreeResponse.class)
                          .register(UpdateEntry.class)
                          .register(MapValue.class)
                          .register(MapValue.Digest.class)
@@ -305,6 +341,11 @@ public class EventuallyConsistentMapImpl<K, V>
                          .build(name() + "-ecmap"));
     }
 
+    // Hashes the serialized form, which unlike hashCode is the same on all nodes
+    private long digestHash(Object object) {
+        return DIGEST_HASH.hashBytes(serializer.encode(object)).asLong();
+    }
+
     @Override
     public String name() {
         return mapName;
@@ -401,6 +442,8 @@ public class EventuallyConsistentMapImpl<K, V>
         counter.incrementCount();
         AtomicBoolean updated = new AtomicBoolean(false);
         AtomicReference<MapValue<V>> previousValue = new AtomicReference<>();
+        long keyHash = digestTree.keyHash(key);
+        long tombstoneHash = digestTree.entryHash(keyHash, tombstone.orElse(null));
         items.compute(key, (k, existing) -> {
             boolean valueMatches = true;
             if (value.isPresent() && existing != null && existing.isAlive()) {
@@ -418,6 +461,11 @@ public class EventuallyConsistentMapImpl<K, V>
             }
             if (updated.get()) {
                 previousValue.set(existing);
+                if (tombstone.isPresent()) {
+                    digestTree.update(k, keyHash, tombstoneHash);
+                } else {
+                    digestTree.remove(k, keyHash);
+                }
                 return tombstone.orElse(null);
             } else {
                 return existing;
@@ -434,7 +482,8 @@ public class EventuallyConsistentMapImpl<K, V>
 
         AtomicBoolean updated = new AtomicBoolean(false);
         AtomicReference<MapValue<V>> previousValue = new AtomicReference<>();
-        MapValue<V> computedValue = items.compute(serializer.copy(key), (k, mv) -> {
+        K copiedKey = serializer.copy(key);
+        MapValue<V> computedValue = items.compute(copiedKey, (k, mv) -> {
             previousValue.set(mv);
             V newRawValue = recomputeFunction.apply(key, mv == null ? null : mv.get());
             if (mv != null && Objects.equals(newRawValue, mv.get())) {
@@ -452,6 +501,16 @@ public class EventuallyConsistentMapImpl<K, V>
             }
         });
         if (updated.get()) {
+            // The new value is only known once computed, so it is hashed outside
+            // of the update and accounted for unless it has been superseded since
+            long keyHash = digestTree.keyHash(copiedKey);
+            long entryHash = digestTree.entryHash(keyHash, computedValue);
+            items.computeIfPresent(copiedKey, (k, mv) -> {
+                if (computedValue.equals(mv)) {
+                    digestTree.update(k, keyHash, entryHash);
+                }
+                return mv;
+            });
             notifyPeers(new UpdateEntry<>(key, computedValue), peerUpdateFunction.apply(key, computedValue.get()));
             EventuallyConsistentMapEvent.Type updateType = computedValue.isTombstone() ? REMOVE : PUT;
             V value = computedValue.isTombstone()
@@ -514,9 +573,12 @@ public class EventuallyConsistentMapImpl<K, V>
         checkState(newValue.isAlive());
         counter.incrementCount();
         AtomicBoolean updated = new AtomicBoolean(false);
+        long keyHash = digestTree.keyHash(key);
+        long entryHash = digestTree.entryHash(keyHash, newValue);
         items.compute(key, (k, existing) -> {
             if (existing == null || newValue.isNewerThan(existing)) {
                 updated.set(true);
+                digestTree.update(k, keyHash, entryHash);
                 return newValue;
             }
             return existing;
@@ -558,6 +620,13 @@ public class EventuallyConsistentMapImpl<K, V>
         clusterCommunicator.removeSubscriber(updateMessageSubject);
         clusterCommunicator.removeSubscriber(updateRequestSubject);
         clusterCommunicator.removeSubscriber(antiEntropyAdvertisementSubject);
+        clusterCommunicator.removeSubscriber(antiEntropyTreeSubject);
+
+        if (metricsService != null) {
+            metricsService.removeMetric(metricsComponent,
+                                        metricsComponent.registerFeature(mapName),
+                                        ANTI_ENTROPY_BYTES);
+        }
         return CompletableFuture.completedFuture(null);
     }
 
@@ -607,21 +676,7 @@ public class EventuallyConsistentMapImpl<K, V>
     }
 
     private void sendAdvertisementToPeer(NodeId peer) {
-        long adCreationTime = System.currentTimeMillis();
-        AntiEntropyAdvertisement<K> ad = createAdvertisement();
-        clusterCommunicator.sendAndReceive(ad,
-                antiEntropyAdvertisementSubject,
-                serializer::encode,
-                serializer::decode,
-                peer)
-                .whenComplete((result, error) -> {
-                    if (error != null) {
-                        log.debug("Failed to send anti-entropy advertisement to {}: {}",
-                                peer, error.getMessage());
-                    } else if (result == AntiEntropyResponse.PROCESSED) {
-                        antiEntropyTimes.put(peer, adCreationTime);
-                    }
-                });
+        new AntiEntropyRound(peer).start();
     }
 
     private void sendUpdateRequestToPeer(NodeId peer, Set<K> keys) {
@@ -638,9 +693,31 @@ public class EventuallyConsistentMapImpl<K, V>
                 });
     }
 
-    private AntiEntropyAdvertisement<K> createAdvertisement() {
-        return new AntiEntropyAdvertisement<>(localNodeId,
-                ImmutableMap.copyOf(Maps.transformValues(items, MapValue::digest)));
+    private AntiEntropyAdvertisement<K> createAdvertisement(Set<Integer> buckets) {
+        Map<K, MapValue.Digest> digest = Maps.newHashMap();
+        buckets.forEach(bucket -> digestTree.keys(bucket).forEach(key -> {
+            MapValue<V> value = items.get(key);
+            if (value != null) {
+                digest.put(key, value.digest());
+            }
+        }));
+        return new AntiEntropyAdvertisement<>(localNodeId, digest, buckets);
+    }
+
+    private AntiEntropyTreeResponse handleAntiEntropyTreeAdvertisement(AntiEntropyTreeAdvertisement ad) {
+        if (destroyed || underHighLoad()) {
+            return AntiEntropyTreeResponse.of(AntiEntropyResponse.IGNORED);
+        }
+        int level = ad.level();
+        if (!ad.hashes().keySet().stream().allMatch(node -> DigestTree.isValid(level, node))) {
+            log.warn("Invalid digest tree advertisement from {} for {}", ad.sender(), mapName);
+            return AntiEntropyTreeResponse.of(AntiEntropyResponse.FAILED);
+        }
+        Set<Integer> mismatches = ad.hashes().entrySet().stream()
+                .filter(e -> digestTree.hash(level, e.getKey()) != e.getValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        return new AntiEntropyTreeResponse(AntiEntropyResponse.PROCESSED, mismatches);
     }
 
     private AntiEntropyResponse handleAntiEntropyAdvertisement(AntiEntropyAdvertisement<K> ad) {
@@ -649,8 +726,8 @@ public class EventuallyConsistentMapImpl<K, V>
         }
         try {
             if (log.isTraceEnabled()) {
-                log.trace("Received anti-entropy advertisement from {} for {} with {} entries in it",
-                        ad.sender(), mapName, ad.digest().size());
+                log.trace("Received anti-entropy advertisement from {} for {} with {} entries in {} buckets",
+                        ad.sender(), mapName, ad.digest().size(), ad.buckets().size());
             }
             antiEntropyCheckLocalItems(ad).forEach(this::notifyListeners);
         } catch (Exception e) {
@@ -661,7 +738,8 @@ public class EventuallyConsistentMapImpl<K, V>
     }
 
     /**
-     * Processes anti-entropy ad from peer by taking following actions:
+     * Processes anti-entropy ad from peer by taking following actions
+     * for the entries of the advertised buckets:
      * 1. If peer has an old entry, updates peer.
      * 2. If peer indicates an entry is removed and has a more recent
      * timestamp than the local entry, update local state.
@@ -674,28 +752,35 @@ public class EventuallyConsistentMapImpl<K, V>
         Set<K> staleOrMissing = new HashSet<>();
         Set<K> locallyUnknown = new HashSet<>(ad.digest().keySet());
 
-        items.forEach((key, localValue) -> {
-            locallyUnknown.remove(key);
-            MapValue.Digest remoteValueDigest = ad.digest().get(key);
-            if (remoteValueDigest == null || localValue.isNewerThan(remoteValueDigest.timestamp())) {
-                // local value is more recent, push to sender
-                queueUpdate(new UpdateEntry<>(key, localValue), peers);
-            } else if (remoteValueDigest != null
-                    && remoteValueDigest.isNewerThan(localValue.digest())
-                    && remoteValueDigest.isTombstone()) {
-                // remote value is more recent and a tombstone: update local value
-                MapValue<V> tombstone = MapValue.tombstone(remoteValueDigest.timestamp());
-                MapValue<V> previousValue = removeInternal(key,
-                                                           Optional.empty(),
-                                                           Optional.of(tombstone));
-                if (previousValue != null && previousValue.isAlive()) {
-                    externalEvents.add(new EventuallyConsistentMapEvent<>(mapName, REMOVE, key, previousValue.get()));
+        for (int bucket : ad.buckets()) {
+            for (K key : digestTree.keys(bucket)) {
+                MapValue<V> localValue = items.get(key);
+                if (localValue == null) {
+                    continue;
+                }
+                locallyUnknown.remove(key);
+                MapValue.Digest remoteValueDigest = ad.digest().get(key);
+                if (remoteValueDigest == null || localValue.isNewerThan(remoteValueDigest.timestamp())) {
+                    // local value is more recent, push to sender
+                    queueUpdate(new UpdateEntry<>(key, localValue), peers);
+                } else if (remoteValueDigest != null
+                        && remoteValueDigest.isNewerThan(localValue.digest())
+                        && remoteValueDigest.isTombstone()) {
+                    // remote value is more recent and a tombstone: update local value
+                    MapValue<V> tombstone = MapValue.tombstone(remoteValueDigest.timestamp());
+                    MapValue<V> previousValue = removeInternal(key,
+                                                               Optional.empty(),
+                                                               Optional.of(tombstone));
+                    if (previousValue != null && previousValue.isAlive()) {
+                        externalEvents.add(new EventuallyConsistentMapEvent<>(mapName, REMOVE, key,
+                                                                              previousValue.get()));
+                    }
+                } else if (remoteValueDigest.isNewerThan(localValue.digest())) {
+                    // Not a tombstone and remote is newer
+                    staleOrMissing.add(key);
                 }
-            } else if (remoteValueDigest.isNewerThan(localValue.digest())) {
-                // Not a tombstone and remote is newer
-                staleOrMissing.add(key);
             }
-        });
+        }
         // Keys missing in local map
         staleOrMissing.addAll(locallyUnknown);
         // Request updates that we missed out on
@@ -737,7 +822,16 @@ public class EventuallyConsistentMapImpl<K, V>
                                           .filter(e -> e.getValue().creationTime() <= currentSafeTombstonePurgeTime)
                                           .collect(Collectors.toList());
         previousTombstonePurgeTime = currentSafeTombstonePurgeTime;
-        tombStonesToDelete.forEach(entry -> items.remove(entry.getKey(), entry.getValue()));
+        tombStonesToDelete.forEach(entry -> {
+            long keyHash = digestTree.keyHash(entry.getKey());
+            items.computeIfPresent(entry.getKey(), (key, existing) -> {
+                if (existing.equals(entry.getValue())) {
+                    digestTree.remove(key, keyHash);
+                    return null;
+                }
+                return existing;
+            });
+        });
     }
 
     private void processUpdates(Collection<UpdateEntry<K, V>> updates) {
@@ -901,6 +995,95 @@ public class EventuallyConsistentMapImpl<K, V>
         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()]));
     }
 
+    private static final String METRICS_COMPONENT = "EventuallyConsistentMap";
+    private static final String ANTI_ENTROPY_BYTES = "antiEntropyBytes";
+
+    /**
+     * Anti-entropy exchange with a peer.
+     * <p>
+     * The exchange descends the digest tree from the root, advertising the
+     * children of the nodes the peer reported as mismatching, and ends with
+     * a key level advertisement of the mismatching buckets. Replicas in sync
+     * exchange only the root hash.
+     * </p>
+     */
+    private final class AntiEntropyRound {
+
+        private final NodeId peer;
+        private final long creationTime = System.currentTimeMillis();
+        private final long[][] hashes = digestTree.snapshot();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private AntiEntropyRound(NodeId peer) {
+            this.peer = peer;
+        }
+
+        private void start() {
+            compare(0, ImmutableSet.of(0));
+        }
+
+        private void compare(int level, Set<Integer> nodes) {
+            Map<Integer, Long> levelHashes = Maps.toMap(nodes, node -> hashes[level][node]);
+            clusterCommunicator.<AntiEntropyTreeAdvertisement, AntiEntropyTreeResponse>sendAndReceive(
+                    new AntiEntropyTreeAdvertisement(localNodeId, level, levelHashes),
+                    antiEntropyTreeSubject,
+                    this::encode,
+                    this::decode,
+                    peer)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            log.debug("Failed to send anti-entropy advertisement to {}: {}",
+                                      peer, error.getMessage());
+                            complete(false);
+                        } else if (response.status() != AntiEntropyResponse.PROCESSED) {
+                            complete(false);
+                        } else if (response.mismatches().isEmpty()) {
+                            complete(true);
+                        } else if (level < DigestTree.DEPTH) {
+                            compare(level + 1, DigestTree.children(response.mismatches()));
+                        } else {
+                            advertise(response.mismatches());
+                        }
+                    });
+        }
+
+        private void advertise(Set<Integer> buckets) {
+            clusterCommunicator.<AntiEntropyAdvertisement<K>, AntiEntropyResponse>sendAndReceive(
+                    createAdvertisement(buckets),
+                    antiEntropyAdvertisementSubject,
+                    this::encode,
+                    this::decode,
+                    peer)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            log.debug("Failed to send anti-entropy advertisement to {}: {}",
+                                      peer, error.getMessage());
+                        }
+                        complete(result == AntiEntropyResponse.PROCESSED);
+                    });
+        }
+
+        private void complete(boolean processed) {
+            if (processed) {
+                antiEntropyTimes.put(peer, creationTime);
+            }
+            if (antiEntropyBytes != null) {
+                antiEntropyBytes.update(bytes.get());
+            }
+        }
+
+        private byte[] encode(Object message) {
+            byte[] encoded = serializer.encode(message);
+            bytes.addAndGet(encoded.length);
+            return encoded;
+        }
+
+        private <T> T decode(byte[] encoded) {
+            bytes.addAndGet(encoded.length);
+            return serializer.decode(encoded);
+        }
+    }
+
     // TODO pull this into the class if this gets pulled out...
     private static final int DEFAULT_MAX_EVENTS = 1000;
     private static final int DEFAULT_MAX_IDLE_MS = 10;
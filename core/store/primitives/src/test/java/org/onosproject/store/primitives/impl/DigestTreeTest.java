@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.primitives.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.store.LogicalTimestamp;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for DigestTree.
+ */
+public class DigestTreeTest {
+
+    private DigestTree<String> tree1;
+    private DigestTree<String> tree2;
+
+    private static long keyHash(String key) {
+        return Hashing.murmur3_128().hashString(key, UTF_8).asLong();
+    }
+
+    private static DigestTree<String> tree() {
+        return new DigestTree<>(DigestTreeTest::keyHash,
+                                timestamp -> ((LogicalTimestamp) timestamp).value());
+    }
+
+    private static MapValue<String> value(String value, long timestamp) {
+        return new MapValue<>(value, new LogicalTimestamp(timestamp));
+    }
+
+    @Before
+    public void setUp() {
+        tree1 = tree();
+        tree2 = tree();
+    }
+
+    /**
+     * Tests that trees holding the same entries match whatever the order
+     * in which they were updated.
+     */
+    @Test
+    public void testOrderIndependence() {
+        List<String> keys = Lists.newArrayList();
+        IntStream.range(0, 1000).forEach(i -> keys.add("key" + i));
+
+        keys.forEach(key -> tree1.update(key, value(key, 1)));
+        Lists.reverse(keys).forEach(key -> {
+            MapValue<String> first = value("old", 0);
+            tree2.update(key, first);
+            tree2.update(key, value(key, 1));
+        });
+
+        long[][] snapshot = tree1.snapshot();
+        assertTrue(Arrays.deepEquals(snapshot, tree2.snapshot()));
+        assertEquals(snapshot[0][0], tree1.hash(0, 0));
+        assertEquals(keys.size(), IntStream.range(0, DigestTree.BUCKETS)
+                .map(bucket -> tree1.keys(bucket).size()).sum());
+    }
+
+    /**
+     * Tests that a diverging entry is found by descending through the
+     * mismatching nodes only.
+     */
+    @Test
+    public void testMismatch() {
+        MapValue<String> live = value("a", 1);
+        tree1.update("a", live);
+        tree2.update("a", live);
+        tree1.update("b", value("b", 2));
+        tree2.update("b", MapValue.tombstone(new LogicalTimestamp(2)));
+
+        long[][] hashes1 = tree1.snapshot();
+        long[][] hashes2 = tree2.snapshot();
+        for (int level = 0; level <= DigestTree.DEPTH; level++) {
+            int mismatches = 0;
+            for (int node = 0; node < hashes1[level].length; node++) {
+                if (hashes1[level][node] != hashes2[level][node]) {
+                    mismatches++;
+                    if (level == DigestTree.DEPTH) {
+                        assertTrue(tree1.keys(node).contains("b"));
+                    }
+                }
+            }
+            assertEquals("incorrect mismatches at level " + level, 1, mismatches);
+        }
+    }
+
+    /**
+     * Tests that removing all entries empties the tree.
+     */
+    @Test
+    public void testRemove() {
+        MapValue<String> value = value("a", 1);
+        MapValue<String> tombstone = MapValue.tombstone(new LogicalTimestamp(2));
+        tree1.update("a", value);
+        tree1.update("a", tombstone);
+        assertFalse(tree1.hash(0, 0) == 0);
+        tree1.update("a", null);
+
+        assertArrayEquals(new long[DigestTree.BUCKETS], tree1.snapshot()[DigestTree.DEPTH]);
+        IntStream.range(0, DigestTree.BUCKETS)
+                .forEach(bucket -> assertTrue(tree1.keys(bucket).isEmpty()));
+    }
+
+    /**
+     * Tests the navigation between the levels of the tree.
+     */
+    @Test
+    public void testChildren() {
+        assertEquals(DigestTree.FANOUT, DigestTree.children(ImmutableSet.of(0)).size());
+        assertEquals(ImmutableSet.of(32, 33, 34, 35, 36, 37, 38, 39,
+                                     40, 41, 42, 43, 44, 45, 46, 47),
+                     DigestTree.children(ImmutableSet.of(2)));
+        assertTrue(DigestTree.isValid(0, 0));
+        assertFalse(DigestTree.isValid(0, 1));
+        assertTrue(DigestTree.isValid(DigestTree.DEPTH, DigestTree.BUCKETS - 1));
+        assertFalse(DigestTree.isValid(DigestTree.DEPTH + 1, 0));
+    }
+}
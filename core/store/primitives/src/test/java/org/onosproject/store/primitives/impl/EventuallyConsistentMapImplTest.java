@@ -29,6 +29,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.onlab.junit.TestTools.assertAfter;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,16 +40,22 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.IpAddress;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
@@ -66,8 +73,11 @@ import org.onosproject.store.serializers.KryoNamespaces;
 import org.onosproject.store.service.EventuallyConsistentMap;
 import org.onosproject.store.service.EventuallyConsistentMapEvent;
 import org.onosproject.store.service.EventuallyConsistentMapListener;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricFilter;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -92,6 +102,8 @@ public class EventuallyConsistentMapImplTest {
             = new MessageSubject("ecm-" + MAP_NAME + "-update");
     private static final MessageSubject ANTI_ENTROPY_MESSAGE_SUBJECT
             = new MessageSubject("ecm-" + MAP_NAME + "-anti-entropy");
+    private static final MessageSubject ANTI_ENTROPY_TREE_MESSAGE_SUBJECT
+            = new MessageSubject("ecm-" + MAP_NAME + "-anti-entropy-tree");
     private static final MessageSubject UPDATE_REQUEST_SUBJECT
             = new MessageSubject("ecm-" + MAP_NAME + "-update-request");
 
@@ -106,6 +118,7 @@ public class EventuallyConsistentMapImplTest {
     private Consumer<Collection<UpdateEntry<String, String>>> updateHandler;
     private Consumer<Collection<UpdateRequest<String>>> requestHandler;
     private Function<AntiEntropyAdvertisement<String>, AntiEntropyResponse> antiEntropyHandler;
+    private Function<AntiEntropyTreeAdvertisement, AntiEntropyTreeResponse> antiEntropyTreeHandler;
 
     @Before
     public void setUp() throws Exception {
@@ -141,6 +154,12 @@ public class EventuallyConsistentMapImplTest {
                                                           anyObject(Function.class),
                                                           anyObject(Executor.class));
         expectLastCall().andDelegateTo(new TestClusterCommunicationService()).times(1);
+        clusterCommunicator.<Object, Object>addSubscriber(anyObject(MessageSubject.class),
+                                                          anyObject(Function.class),
+                                                          anyObject(Function.class),
+                                                          anyObject(Function.class),
+                                                          anyObject(Executor.class));
+        expectLastCall().andDelegateTo(new TestClusterCommunicationService()).times(1);
         clusterCommunicator.<Object>addSubscriber(anyObject(MessageSubject.class),
                 anyObject(Function.class), anyObject(Consumer.class), anyObject(Executor.class));
         expectLastCall().andDelegateTo(new TestClusterCommunicationService()).times(1);
@@ -656,6 +675,7 @@ public class EventuallyConsistentMapImplTest {
         clusterCommunicator.removeSubscriber(UPDATE_MESSAGE_SUBJECT);
         clusterCommunicator.removeSubscriber(UPDATE_REQUEST_SUBJECT);
         clusterCommunicator.removeSubscriber(ANTI_ENTROPY_MESSAGE_SUBJECT);
+        clusterCommunicator.removeSubscriber(ANTI_ENTROPY_TREE_MESSAGE_SUBJECT);
 
         replay(clusterCommunicator);
 
@@ -678,6 +698,139 @@ public class EventuallyConsistentMapImplTest {
         }
     }
 
+    @Test
+    public void testAntiEntropyTree() throws Exception {
+        expectPeerMessage(clusterCommunicator);
+        NodeId peer = new NodeId("peer");
+
+        // The root of an empty map matches that of an empty peer
+        AntiEntropyTreeResponse response = antiEntropyTreeHandler.apply(
+                new AntiEntropyTreeAdvertisement(peer, 0, ImmutableMap.of(0, 0L)));
+        assertEquals(AntiEntropyResponse.PROCESSED, response.status());
+        assertTrue(response.mismatches().isEmpty());
+
+        ecMap.put(KEY1, VALUE1);
+        response = antiEntropyTreeHandler.apply(
+                new AntiEntropyTreeAdvertisement(peer, 0, ImmutableMap.of(0, 0L)));
+        assertEquals(AntiEntropyResponse.PROCESSED, response.status());
+        assertEquals(ImmutableSet.of(0), response.mismatches());
+
+        // Exactly one leaf bucket differs from an empty peer
+        Map<Integer, Long> leaves = new HashMap<>();
+        for (int bucket = 0; bucket < DigestTree.BUCKETS; bucket++) {
+            leaves.put(bucket, 0L);
+        }
+        response = antiEntropyTreeHandler.apply(
+                new AntiEntropyTreeAdvertisement(peer, DigestTree.DEPTH, leaves));
+        assertEquals(1, response.mismatches().size());
+
+        // Advertising a node that does not exist fails
+        response = antiEntropyTreeHandler.apply(
+                new AntiEntropyTreeAdvertisement(peer, 0, ImmutableMap.of(1, 0L)));
+        assertEquals(AntiEntropyResponse.FAILED, response.status());
+    }
+
+    /**
+     * Tests the anti-entropy exchange initiated by the map: replicas that
+     * differ descend the digest tree down to the diverging buckets, replicas
+     * in sync exchange the root only, and tombstones are purged once all
+     * peers have been synchronized with.
+     */
+    @Test
+    public void testAntiEntropyRound() throws Exception {
+        NodeId localId = new NodeId("a");
+        NodeId peerId = new NodeId("b");
+        Map<NodeId, Map<MessageSubject, Function<byte[], CompletableFuture<byte[]>>>> cluster =
+                new ConcurrentHashMap<>();
+        LoopbackCommunicationService localCommunicator = new LoopbackCommunicationService(localId, cluster);
+        LoopbackCommunicationService peerCommunicator = new LoopbackCommunicationService(peerId, cluster);
+        ManualScheduler localScheduler = new ManualScheduler();
+        ManualScheduler peerScheduler = new ManualScheduler();
+        MetricsManager metrics = new MetricsManager();
+
+        EventuallyConsistentMap<String, String> local =
+                replica(localId, peerId, localCommunicator, localScheduler, metrics);
+        EventuallyConsistentMap<String, String> peer =
+                replica(peerId, localId, peerCommunicator, peerScheduler, null);
+
+        local.put(KEY1, VALUE1);
+        local.remove(KEY2);
+
+        // The diverging replicas descend the tree down to the buckets
+        localCommunicator.sent.clear();
+        localScheduler.advertise.run();
+        assertEquals(ImmutableList.of(0, 1, 2, DigestTree.DEPTH), levels(localCommunicator));
+        List<AntiEntropyAdvertisement> advertisements = localCommunicator.sent(AntiEntropyAdvertisement.class);
+        assertEquals(1, advertisements.size());
+        assertEquals(ImmutableSet.of(KEY1, KEY2), advertisements.get(0).digest().keySet());
+        Histogram bytes = metrics.getHistograms(MetricFilter.ALL).values().iterator().next();
+        assertEquals(1, bytes.getCount());
+        assertTrue(bytes.getSnapshot().getMax() > 0);
+
+        // Once the peer caught up, tombstone included, only the root is exchanged
+        assertAfter(5000, () -> assertEquals(VALUE1, peer.get(KEY1)));
+        assertAfter(5000, () -> {
+            localCommunicator.sent.clear();
+            localScheduler.advertise.run();
+            assertEquals(ImmutableList.of(0), levels(localCommunicator));
+            assertTrue(localCommunicator.sent(AntiEntropyAdvertisement.class).isEmpty());
+        });
+
+        peerCommunicator.sent.clear();
+        peerScheduler.advertise.run();
+        assertEquals(ImmutableList.of(0), levels(peerCommunicator));
+        long rootWithTombstone = peerCommunicator.sent(AntiEntropyTreeAdvertisement.class)
+                .get(0).hashes().get(0);
+
+        // Both replicas were synchronized with, so both purge the tombstone
+        localScheduler.purge.run();
+        peerScheduler.purge.run();
+        localCommunicator.sent.clear();
+        localScheduler.advertise.run();
+        assertEquals(ImmutableList.of(0), levels(localCommunicator));
+        long root = localCommunicator.sent(AntiEntropyTreeAdvertisement.class).get(0).hashes().get(0);
+        assertFalse(root == rootWithTombstone);
+        assertFalse(root == 0);
+
+        peer.destroy();
+        local.destroy();
+        assertTrue(metrics.getHistograms(MetricFilter.ALL).isEmpty());
+    }
+
+    private EventuallyConsistentMap<String, String> replica(NodeId localId, NodeId peerId,
+                                                            ClusterCommunicationService communicator,
+                                                            ManualScheduler scheduler,
+                                                            MetricsManager metrics) {
+        ClusterService cluster = createMock(ClusterService.class);
+        expect(cluster.getLocalNode())
+                .andReturn(new DefaultControllerNode(localId, IpAddress.valueOf(1))).anyTimes();
+        expect(cluster.getNodes()).andReturn(ImmutableSet.of(
+                new DefaultControllerNode(localId, IpAddress.valueOf(1)),
+                new DefaultControllerNode(peerId, IpAddress.valueOf(2)))).anyTimes();
+        expect(cluster.getState(anyObject(NodeId.class)))
+                .andReturn(ControllerNode.State.ACTIVE).anyTimes();
+        replay(cluster);
+
+        return new EventuallyConsistentMapBuilderImpl<String, String>(
+                        cluster, communicator, persistenceService, metrics)
+                .withName(MAP_NAME)
+                .withSerializer(KryoNamespace.newBuilder()
+                                        .register(KryoNamespaces.API)
+                                        .register(TestTimestamp.class))
+                .withTimestampProvider((k, v) -> clockService.getTimestamp(k, v))
+                .withEventExecutor(MoreExecutors.newDirectExecutorService())
+                .withCommunicationExecutor(MoreExecutors.newDirectExecutorService())
+                .withBackgroundExecutor(scheduler)
+                .withPeerUpdateFunction((k, v) -> ImmutableList.of())
+                .build();
+    }
+
+    private static List<Integer> levels(LoopbackCommunicationService communicator) {
+        return communicator.sent(AntiEntropyTreeAdvertisement.class).stream()
+                .map(AntiEntropyTreeAdvertisement::level)
+                .collect(Collectors.toList());
+    }
+
     private UpdateEntry<String, String> generatePutMessage(String key, String value, Timestamp timestamp) {
         return new UpdateEntry<>(key, new MapValue<>(value, timestamp));
     }
@@ -814,12 +967,122 @@ public class EventuallyConsistentMapImplTest {
                 Function<byte[], M> decoder, Function<M, R> handler, Function<R, byte[]> encoder, Executor executor) {
             if (subject.equals(ANTI_ENTROPY_MESSAGE_SUBJECT)) {
                 antiEntropyHandler = (Function<AntiEntropyAdvertisement<String>, AntiEntropyResponse>) handler;
+            } else if (subject.equals(ANTI_ENTROPY_TREE_MESSAGE_SUBJECT)) {
+                antiEntropyTreeHandler = (Function<AntiEntropyTreeAdvertisement, AntiEntropyTreeResponse>) handler;
             } else if (!subject.equals(INITIALIZE_MESSAGE_SUBJECT)) {
                 throw new RuntimeException("Unexpected message subject " + subject.toString());
             }
         }
     }
 
+    /**
+     * ClusterCommunicationService implementation delivering the messages
+     * sent to a node directly to the handlers that node subscribed.
+     */
+    private static final class LoopbackCommunicationService
+            extends ClusterCommunicationServiceAdapter {
+
+        private final NodeId localNodeId;
+        private final Map<NodeId, Map<MessageSubject, Function<byte[], CompletableFuture<byte[]>>>> cluster;
+        private final List<Object> sent = new CopyOnWriteArrayList<>();
+
+        private LoopbackCommunicationService(
+                NodeId localNodeId,
+                Map<NodeId, Map<MessageSubject, Function<byte[], CompletableFuture<byte[]>>>> cluster) {
+            this.localNodeId = localNodeId;
+            this.cluster = cluster;
+        }
+
+        private <T> List<T> sent(Class<T> type) {
+            return sent.stream().filter(type::isInstance).map(type::cast).collect(Collectors.toList());
+        }
+
+        private Map<MessageSubject, Function<byte[], CompletableFuture<byte[]>>> subscribers() {
+            return cluster.computeIfAbsent(localNodeId, id -> new ConcurrentHashMap<>());
+        }
+
+        @Override
+        public <M, R> void addSubscriber(MessageSubject subject,
+                Function<byte[], M> decoder, Function<M, R> handler, Function<R, byte[]> encoder, Executor executor) {
+            subscribers().put(subject, bytes ->
+                    CompletableFuture.completedFuture(encoder.apply(handler.apply(decoder.apply(bytes)))));
+        }
+
+        @Override
+        public <M, R> void addSubscriber(MessageSubject subject,
+                Function<byte[], M> decoder, Function<M, CompletableFuture<R>> handler,
+                Function<R, byte[]> encoder) {
+            subscribers().put(subject, bytes -> handler.apply(decoder.apply(bytes)).thenApply(encoder));
+        }
+
+        @Override
+        public <M> void addSubscriber(MessageSubject subject,
+                Function<byte[], M> decoder, Consumer<M> handler, Executor executor) {
+            subscribers().put(subject, bytes -> {
+                handler.accept(decoder.apply(bytes));
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+            subscribers().remove(subject);
+        }
+
+        @Override
+        public <M> CompletableFuture<Void> unicast(M message, MessageSubject subject,
+                Function<M, byte[]> encoder, NodeId toNodeId) {
+            return deliver(message, subject, encoder, toNodeId).thenApply(bytes -> null);
+        }
+
+        @Override
+        public <M, R> CompletableFuture<R> sendAndReceive(M message, MessageSubject subject,
+                Function<M, byte[]> encoder, Function<byte[], R> decoder, NodeId toNodeId) {
+            return deliver(message, subject, encoder, toNodeId).thenApply(decoder);
+        }
+
+        private <M> CompletableFuture<byte[]> deliver(M message, MessageSubject subject,
+                                                      Function<M, byte[]> encoder, NodeId toNodeId) {
+            sent.add(message);
+            Function<byte[], CompletableFuture<byte[]>> subscriber =
+                    cluster.getOrDefault(toNodeId, ImmutableMap.of()).get(subject);
+            if (subscriber == null) {
+                CompletableFuture<byte[]> future = new CompletableFuture<>();
+                future.completeExceptionally(new IllegalStateException("No handler for " + subject));
+                return future;
+            }
+            return subscriber.apply(encoder.apply(message));
+        }
+    }
+
+    /**
+     * Background executor holding on to the periodic anti-entropy and
+     * tombstone purge tasks of a map so that tests can run them on demand.
+     */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+
+        private Runnable advertise;
+        private Runnable purge;
+
+        private ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+                                                      long period, TimeUnit unit) {
+            advertise = command;
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay,
+                                                         long delay, TimeUnit unit) {
+            purge = command;
+            return null;
+        }
+    }
+
     /**
      * ClockService implementation that gives out timestamps based on a
      * sequential counter. This clock service enables more control over the
@@ -26,6 +26,8 @@ import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+import static org.onlab.util.Tools.byteBuffertoArray;
+
 /**
  * Serializer for a default outbound packet.
  */
@@ -52,7 +54,7 @@ public class DefaultOutboundPacketSerializer extends Serializer<DefaultOutboundP
     public void write(Kryo kryo, Output output, DefaultOutboundPacket object) {
         kryo.writeClassAndObject(output, object.sendThrough());
         kryo.writeClassAndObject(output, object.treatment());
-        kryo.writeClassAndObject(output, object.data().array());
+        kryo.writeClassAndObject(output, byteBuffertoArray(object.data()));
     }
 
 }
@@ -55,6 +55,8 @@ import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.FlowId;
 import org.onosproject.net.flow.FlowRule;
 import org.onosproject.net.flow.FlowRuleBatchEntry;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.PofCriterion;
 import org.onosproject.net.intent.IntentId;
 import org.onosproject.net.resource.ResourceAllocation;
 import org.onosproject.net.resource.ResourceConsumerId;
@@ -379,6 +381,21 @@ public class KryoSerializerTest {
         testSerializedEquals(FlowId.valueOf(0x12345678L));
     }
 
+    @Test
+    public void testPofCriterion() {
+        StoreSerializer pofSerializer = StoreSerializer.using(KryoNamespaces.POF);
+        PofCriterion criterion = (PofCriterion) Criteria.matchOffsetLength(
+                (short) 1, (short) 96, (short) 16, "0800", "ffff");
+        ByteBuffer wire = criterion.encodedMatch();
+
+        byte[] bytes = serialize(criterion, pofSerializer);
+        // the wire form is derived on use and not carried in the serialized form
+        assertTrue(bytes.length < PofCriterion.MATCH_WIRE_LENGTH);
+        PofCriterion copy = deserialize(bytes, pofSerializer);
+        assertEquals(criterion, copy);
+        assertEquals(wire, copy.encodedMatch());
+    }
+
     @Test
     public void testRoleInfo() {
         testSerializedEquals(new RoleInfo(new NodeId("master"),
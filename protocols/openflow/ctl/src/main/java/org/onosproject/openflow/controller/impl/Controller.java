@@ -36,6 +36,7 @@ import org.onosproject.net.driver.DefaultDriverData;
 import org.onosproject.net.driver.DefaultDriverHandler;
 import org.onosproject.net.driver.Driver;
 import org.onosproject.net.driver.DriverService;
+import org.onosproject.net.packet.PacketInAdmission;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.driver.OpenFlowAgent;
 import org.onosproject.openflow.controller.driver.OpenFlowSwitchDriver;
@@ -103,6 +104,9 @@ public class Controller {
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
 
+    private final PacketInAdmission<Long> packetInAdmission =
+            new PacketInAdmission<>(0, 0, DEFAULT_PACKET_IN_SAMPLE_EVERY);
+
     protected String ksLocation;
     protected String tsLocation;
     protected char[] ksPwd;
@@ -110,6 +114,7 @@ public class Controller {
     protected SSLContext sslContext;
 
     // Perf. related configuration
+    protected static final int DEFAULT_PACKET_IN_SAMPLE_EVERY = 100;
     protected static final int SEND_BUFFER_SIZE = 4 * 1024 * 1024;
 
     private DriverService driverService;
@@ -222,6 +227,35 @@ public class Controller {
             this.workerThreads = Integer.parseInt(threads);
         }
         log.debug("Number of worker threads set to {}", this.workerThreads);
+
+        int controlRate = getInteger(properties, "packetInControlRate", 0);
+        int dataRate = getInteger(properties, "packetInDataRate", 0);
+        int sampleEvery = getInteger(properties, "packetInSampleEvery", DEFAULT_PACKET_IN_SAMPLE_EVERY);
+        packetInAdmission.configure(controlRate, dataRate, sampleEvery);
+        log.debug("Packet-in limits set to control {}/s, data {}/s, sampling 1 in {} drops",
+                  controlRate, dataRate, sampleEvery);
+    }
+
+    private static int getInteger(Dictionary<?, ?> properties, String name, int defaultValue) {
+        String value = get(properties, name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed value '{}' of {}; using {}", value, name, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the per-switch packet-in admission stage.
+     *
+     * @return packet-in admission, keyed by datapath id
+     */
+    public PacketInAdmission<Long> packetInAdmission() {
+        return packetInAdmission;
     }
 
     /**
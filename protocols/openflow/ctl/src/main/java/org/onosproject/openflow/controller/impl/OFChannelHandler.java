@@ -28,15 +28,16 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import org.onlab.packet.IpAddress;
+import org.onosproject.net.packet.PacketInAdmission;
+import org.onosproject.net.packet.PacketInAdmission.Priority;
+import org.onosproject.net.packet.PacketInDispatchQueue;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.OpenFlowSession;
 import org.onosproject.openflow.controller.driver.OpenFlowSwitchDriver;
@@ -159,10 +160,10 @@ class OFChannelHandler extends ChannelInboundHandlerAdapter
     private static final int MSG_READ_BUFFER = 5000;
 
     /**
-     * OFMessage dispatch queue.
+     * OFMessage dispatch queue; control packet-ins overtake other messages.
      */
-    private final BlockingQueue<OFMessage> dispatchQueue =
-            new LinkedBlockingQueue<>(MSG_READ_BUFFER);
+    private final PacketInDispatchQueue<OFMessage> dispatchQueue =
+            new PacketInDispatchQueue<>(MSG_READ_BUFFER);
 
     /**
      * Single thread executor for OFMessage dispatching.
@@ -811,7 +812,10 @@ class OFChannelHandler extends ChannelInboundHandlerAdapter
 //                                .setXid(m.getXid())
 //                                .setBufferId(m.getBufferId()).build();
 //                h.sw.sendMsg(out);
-                h.dispatchMessage(m);
+                Priority priority = PacketInAdmission.classify(m.getData());
+                if (h.controller.packetInAdmission().admit(h.thisdpid, priority)) {
+                    h.dispatchMessage(m, priority);
+                }
             }
 
             @Override
@@ -1281,6 +1285,7 @@ class OFChannelHandler extends ChannelInboundHandlerAdapter
                  if (sw != null) {
                      sw.removeConnectedSwitch();
                  }
+                 controller.packetInAdmission().remove(thisdpid);
              } else {
                  // A duplicate was disconnected on this ChannelHandler,
                  // this is the same switch reconnecting, but the original state was
@@ -1411,9 +1416,13 @@ class OFChannelHandler extends ChannelInboundHandlerAdapter
     }
 
     private void dispatchMessage(OFMessage m) {
+        dispatchMessage(m, Priority.DATA);
+    }
+
+    private void dispatchMessage(OFMessage m, Priority priority) {
 
         if (dispatchBacklog.isEmpty()) {
-            if (!dispatchQueue.offer(m)) {
+            if (!dispatchQueue.offer(m, priority)) {
                 // queue full
                 channel.config().setAutoRead(false);
                 // put it on the head of backlog
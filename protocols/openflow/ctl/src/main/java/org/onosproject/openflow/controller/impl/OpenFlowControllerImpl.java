@@ -26,6 +26,7 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.device.DeviceEvent;
@@ -99,6 +100,8 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     private static final String DEFAULT_OFPORT = "6633,6653";
     private static final int DEFAULT_WORKER_THREADS = 0;
 
+    private static final String METRICS_COMPONENT = "OpenFlowController";
+
     private static final Logger log =
             LoggerFactory.getLogger(OpenFlowControllerImpl.class);
 
@@ -111,6 +114,9 @@ public class OpenFlowControllerImpl implements OpenFlowController {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService cfgService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DeviceService deviceService;
 
@@ -123,6 +129,18 @@ public class OpenFlowControllerImpl implements OpenFlowController {
             label = "Number of controller worker threads")
     private int workerThreads = DEFAULT_WORKER_THREADS;
 
+    @Property(name = "packetInControlRate", intValue = 0,
+            label = "Per-switch LLDP/BDDP/ARP packet-ins admitted per second; 0 means no limit")
+    private int packetInControlRate = 0;
+
+    @Property(name = "packetInDataRate", intValue = 0,
+            label = "Per-switch packet-ins of other traffic admitted per second; 0 means no limit")
+    private int packetInDataRate = 0;
+
+    @Property(name = "packetInSampleEvery", intValue = 100,
+            label = "Let one in this many rate-limited packet-ins through; 0 drops all of them")
+    private int packetInSampleEvery = 100;
+
     protected ExecutorService executorMsgs =
         Executors.newFixedThreadPool(32, groupedThreads("onos/of", "event-stats-%d", log));
 
@@ -187,6 +205,8 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         cfgService.registerProperties(getClass());
         deviceService.addListener(listener);
         ctrl.setConfigParams(context.getProperties());
+        ctrl.packetInAdmission().registerMetrics(metricsService, METRICS_COMPONENT,
+                                                 dpid -> new Dpid(dpid).toString());
         ctrl.start(agent, driverService);
     }
 
@@ -205,6 +225,7 @@ public class OpenFlowControllerImpl implements OpenFlowController {
         deviceService.removeListener(listener);
         cleanup();
         cfgService.unregisterProperties(getClass(), false);
+        ctrl.packetInAdmission().unregisterMetrics();
     }
 
     @Modified
@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -153,6 +154,13 @@ public final class DefaultPofPacketContext implements PofPacketContext {
 
     }
 
+    @Override
+    public ByteBuffer unparsedBuffer() {
+        checkPermission(PACKET_READ);
+
+        return ByteBuffer.wrap(pktin.getPacketData()).asReadOnlyBuffer();
+    }
+
     private OFActionOutput buildOutput(Integer port) {
         OFActionOutput act = (OFActionOutput) sw.factory().getAction(OFActionType.OUTPUT);
         act.setPortId(port);
@@ -18,6 +18,9 @@ package org.onosproject.pof.controller;
 
 import org.onosproject.floodlightpof.protocol.OFMessage;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Abstraction of a POF controller. Serves as a one stop
  * shop for obtaining POF devices and (un)register listeners
@@ -135,4 +138,20 @@ public interface PofController {
      * @param dpid the switch to set the role for.
      */
     void setRole(Dpid dpid, RoleState role);
+
+    /**
+     * Returns the load of each message dispatch loop, in loop order.
+     *
+     * @return dispatch loop load snapshots
+     */
+    List<PofEventLoopStats> eventLoopStats();
+
+    /**
+     * Returns the number of coalesced writes per batch size bucket, over all
+     * switches. Keys are the smallest batch size of each bucket; buckets are
+     * powers of two.
+     *
+     * @return write batch size histogram
+     */
+    Map<Integer, Long> writeBatchHistogram();
 }
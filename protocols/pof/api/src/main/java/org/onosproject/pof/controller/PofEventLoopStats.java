@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Load snapshot of one POF message dispatch loop.
+ */
+public final class PofEventLoopStats {
+
+    private final String name;
+    private final int channels;
+    private final long dispatched;
+    private final int backlog;
+    private final long busyNanos;
+
+    /**
+     * Creates a load snapshot.
+     *
+     * @param name       loop name
+     * @param channels   number of switch channels pinned to the loop
+     * @param dispatched messages dispatched by the loop since start
+     * @param backlog    messages queued for the loop
+     * @param busyNanos  time spent dispatching since start
+     */
+    public PofEventLoopStats(String name, int channels, long dispatched,
+                             int backlog, long busyNanos) {
+        this.name = name;
+        this.channels = channels;
+        this.dispatched = dispatched;
+        this.backlog = backlog;
+        this.busyNanos = busyNanos;
+    }
+
+    /**
+     * Returns the loop name.
+     *
+     * @return loop name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the number of switch channels pinned to the loop.
+     *
+     * @return pinned channels
+     */
+    public int channels() {
+        return channels;
+    }
+
+    /**
+     * Returns the number of messages dispatched since start.
+     *
+     * @return dispatched messages
+     */
+    public long dispatched() {
+        return dispatched;
+    }
+
+    /**
+     * Returns the number of messages waiting to be dispatched.
+     *
+     * @return queued messages
+     */
+    public int backlog() {
+        return backlog;
+    }
+
+    /**
+     * Returns the time spent dispatching messages since start.
+     *
+     * @return busy time in nanoseconds
+     */
+    public long busyNanos() {
+        return busyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("name", name)
+                .add("channels", channels)
+                .add("dispatched", dispatched)
+                .add("backlog", backlog)
+                .add("busyNanos", busyNanos)
+                .toString();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller;
+
+import org.onosproject.floodlightpof.protocol.OFMatch20;
+import org.onosproject.floodlightpof.protocol.table.OFFlowTable;
+import org.onosproject.net.table.FlowTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Utilities for turning stored flow tables into their POF wire form.
+ */
+public final class PofFlowTables {
+
+    private static final Logger log = LoggerFactory.getLogger(PofFlowTables.class);
+
+    // non-instantiable
+    private PofFlowTables() {
+    }
+
+    /**
+     * Builds the table description to send in a table-mod for the given
+     * flow table. The flow table itself is left untouched; the result is a
+     * copy addressed by the switch-local table id, with the key length and
+     * match field count filled in. The command is left for the caller.
+     *
+     * @param flowTable    stored flow table
+     * @param smallTableId switch-local id of the table
+     * @return table description for a table-mod
+     */
+    public static OFFlowTable buildOFFlowTable(FlowTable flowTable, byte smallTableId) {
+        OFFlowTable ofFlowTable;
+        try {
+            ofFlowTable = flowTable.flowTable().clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        ofFlowTable.setTableId(smallTableId);
+
+        List<OFMatch20> matchList = ofFlowTable.getMatchFieldList();
+        byte fieldNum = matchList == null ? 0 : (byte) matchList.size();
+        short keyLength = 0;
+        if (matchList != null) {
+            for (OFMatch20 field : matchList) {
+                keyLength += field.getLength();
+            }
+        }
+        if (fieldNum == 0 || keyLength == 0) {
+            log.error("Built a table-mod for a table without match fields: {}", ofFlowTable);
+        }
+        ofFlowTable.setKeyLength(keyLength);
+        ofFlowTable.setMatchFieldNum(fieldNum);
+        return ofFlowTable;
+    }
+}
@@ -18,6 +18,7 @@ package org.onosproject.pof.controller;
 import org.onlab.packet.Ethernet;
 import org.onosproject.floodlightpof.protocol.action.OFAction;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Optional;
 
@@ -79,6 +80,16 @@ public interface PofPacketContext {
      */
     byte[] unparsed();
 
+    /**
+     * Provide the unparsed data without copying it. The returned buffer
+     * shares the packet-in payload and is read-only.
+     *
+     * @return the unparsed form of the payload.
+     */
+    default ByteBuffer unparsedBuffer() {
+        return ByteBuffer.wrap(unparsed()).asReadOnlyBuffer();
+    }
+
     /**
      * Provide the dpid of the switch where the packet in arrived.
      *
@@ -66,6 +66,8 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     private Channel channel;
+    private OutboundMessageQueue outboundQueue;
+    private WriteCoalescer writeCoalescer;
     protected String channelId;
 
     private boolean connected;
@@ -187,8 +189,16 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
     }
 
     private void sendMsgsOnChannel(List<OFMessage> msgs) {
+        sendMsgsOnChannel(msgs, false);
+    }
+
+    private void sendMsgsOnChannel(List<OFMessage> msgs, boolean immediate) {
         if (channel.isConnected()) {
-            channel.write(msgs);
+            if (immediate) {
+                outboundQueue.writeNow(msgs);
+            } else {
+                outboundQueue.enqueue(msgs);
+            }
             countOutgoingMsg(msgs);
         } else {
             log.warn("Dropping messages for switch {} because channel is not connected: {}",
@@ -199,7 +209,7 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
     @Override
     public final void sendRoleRequest(OFMessage msg) {
         if (msg instanceof OFRoleRequest) {
-            sendMsgsOnChannel(Collections.singletonList(msg));
+            sendMsgsOnChannel(Collections.singletonList(msg), true);
             return;
         }
         throw new IllegalArgumentException("Someone is trying to send " +
@@ -210,7 +220,7 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
     public final void
     sendHandshakeMessage(OFMessage message) {
         if (!this.isDriverHandshakeComplete()) {
-            sendMsgsOnChannel(Collections.singletonList(message));
+            sendMsgsOnChannel(Collections.singletonList(message), true);
         }
     }
 
@@ -227,6 +237,7 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
     @Override
     public final void setChannel(Channel channel) {
         this.channel = channel;
+        this.outboundQueue = new OutboundMessageQueue(channel, writeCoalescer);
         final SocketAddress address = channel.getRemoteAddress();
         if (address instanceof InetSocketAddress) {
             final InetSocketAddress inetAddress = (InetSocketAddress) address;
@@ -244,6 +255,15 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
         return channelId;
     }
 
+    /**
+     * Returns the outbound queue coalescing writes to this switch.
+     *
+     * @return outbound message queue
+     */
+    public OutboundMessageQueue outboundQueue() {
+        return outboundQueue;
+    }
+
     //************************
     // Switch features related
     //************************
@@ -513,6 +533,11 @@ public abstract class AbstractPofSwitch extends AbstractHandlerBehaviour
         }
     }
 
+    @Override
+    public final void setWriteCoalescer(WriteCoalescer coalescer) {
+        this.writeCoalescer = coalescer;
+    }
+
     /*wenjian
     @Override
     public void setSwitchDescription(OFDescStatsReply d) {
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.driver;
+
+import org.jboss.netty.channel.Channel;
+import org.onosproject.floodlightpof.protocol.OFMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-switch outbound message queue which coalesces bursts of messages into
+ * a single channel write.
+ * <p>
+ * Messages are held until either {@code maxBatchSize} messages are pending
+ * or {@code maxDelayMicros} have elapsed since the first pending message,
+ * whichever comes first. The encoder turns each list into one buffer, so a
+ * batch costs a single socket write. Settings and the flush timer come from
+ * the controller's {@link WriteCoalescer}; without one, or with a batch size
+ * of 1, messages are written through.
+ * </p>
+ */
+public final class OutboundMessageQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundMessageQueue.class);
+
+    private final Channel channel;
+    private final WriteCoalescer coalescer;
+    private final AtomicLongArray batchSizes = WriteCoalescer.newHistogram();
+
+    // guarded by this; all writes to the channel go through this queue
+    private final Queue<OFMessage> pending = new ArrayDeque<>();
+    private boolean flushScheduled;
+
+    /**
+     * Creates an outbound queue for the given channel.
+     *
+     * @param channel   switch channel
+     * @param coalescer controller write coalescing, or null to write through
+     */
+    OutboundMessageQueue(Channel channel, WriteCoalescer coalescer) {
+        this.channel = channel;
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Queues the messages for a coalesced write.
+     *
+     * @param msgs messages to send
+     */
+    synchronized void enqueue(List<OFMessage> msgs) {
+        int batchSize = coalescer == null ? 1 : coalescer.batchSize();
+        if (batchSize <= 1) {
+            writeNow(msgs);
+            return;
+        }
+        pending.addAll(msgs);
+        if (pending.size() >= batchSize) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = coalescer.schedule(this::scheduledFlush);
+            if (!flushScheduled) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes the messages right away, after anything already pending so that
+     * ordering on the channel is preserved.
+     *
+     * @param msgs messages to send
+     */
+    synchronized void writeNow(List<OFMessage> msgs) {
+        if (pending.isEmpty()) {
+            write(msgs);
+            return;
+        }
+        List<OFMessage> batch = drain(Integer.MAX_VALUE);
+        batch.addAll(msgs);
+        write(batch);
+    }
+
+    /**
+     * Writes all pending messages, in batches of at most the configured size.
+     */
+    synchronized void flush() {
+        int batchSize = coalescer == null ? Integer.MAX_VALUE : Math.max(1, coalescer.batchSize());
+        while (!pending.isEmpty()) {
+            write(drain(batchSize));
+        }
+    }
+
+    /**
+     * Returns the number of writes per batch size bucket for this switch.
+     * Keys are the smallest batch size of each bucket; buckets are powers
+     * of two.
+     *
+     * @return batch size histogram
+     */
+    public Map<Integer, Long> batchSizeHistogram() {
+        return WriteCoalescer.histogram(batchSizes);
+    }
+
+    /**
+     * Returns the number of messages waiting to be written.
+     *
+     * @return pending message count
+     */
+    public synchronized int pendingMessages() {
+        return pending.size();
+    }
+
+    private synchronized void scheduledFlush() {
+        flushScheduled = false;
+        flush();
+    }
+
+    private List<OFMessage> drain(int max) {
+        List<OFMessage> batch = new ArrayList<>(Math.min(max, pending.size()));
+        OFMessage msg;
+        while (batch.size() < max && (msg = pending.poll()) != null) {
+            batch.add(msg);
+        }
+        return batch;
+    }
+
+    private void write(List<OFMessage> batch) {
+        if (!channel.isConnected()) {
+            log.warn("Dropping {} messages because channel is not connected", batch.size());
+            return;
+        }
+        channel.write(batch);
+        int bucket = WriteCoalescer.bucket(batch.size());
+        batchSizes.incrementAndGet(bucket);
+        if (coalescer != null) {
+            coalescer.record(bucket);
+        }
+    }
+}
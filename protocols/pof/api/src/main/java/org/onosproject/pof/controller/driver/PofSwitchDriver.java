@@ -48,6 +48,13 @@ public interface PofSwitchDriver extends PofSwitch, HandlerBehaviour {
      */
     void setRoleHandler(RoleHandler roleHandler);
 
+    /**
+     * Sets the write coalescing shared by the switches of the controller.
+     * This method must be called before the channel is set.
+     * @param coalescer the controller write coalescing
+     */
+    void setWriteCoalescer(WriteCoalescer coalescer);
+
     /**
      * Reasserts this controllers role to the switch.
      * Useful in cases where the switch no longer agrees
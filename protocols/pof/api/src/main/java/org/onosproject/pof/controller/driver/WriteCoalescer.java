@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.driver;
+
+import com.google.common.collect.ImmutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Write coalescing settings and delayed flush timer shared by the outbound
+ * message queues of all switches of one controller.
+ * <p>
+ * The flush timer only runs between {@link #start()} and {@link #stop()};
+ * while it is stopped, or when the batch size is 1, messages are written
+ * through without delay.
+ * </p>
+ */
+public final class WriteCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1;
+    public static final int DEFAULT_MAX_DELAY_MICROS = 200;
+
+    // batch size histogram buckets: 1, 2-3, 4-7, ..., 512-1023, 1024+
+    private static final int BUCKETS = 11;
+
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile int maxDelayMicros = DEFAULT_MAX_DELAY_MICROS;
+    private volatile ScheduledExecutorService flusher;
+
+    private final AtomicLongArray batchSizes = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Configures write coalescing.
+     *
+     * @param batchSize   maximum number of messages per write; 1 disables coalescing
+     * @param delayMicros maximum time a message may wait for a batch to fill
+     */
+    public void configure(int batchSize, int delayMicros) {
+        maxBatchSize = Math.max(1, batchSize);
+        maxDelayMicros = Math.max(0, delayMicros);
+        log.info("POF write coalescing set to maxBatchSize = {}, maxDelayMicros = {}",
+                 maxBatchSize, maxDelayMicros);
+    }
+
+    /**
+     * Starts the delayed flush timer.
+     */
+    public synchronized void start() {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(
+                    groupedThreads("onos/pof", "write-coalescer", log));
+        }
+    }
+
+    /**
+     * Stops the delayed flush timer. Flushes that are already scheduled
+     * still run.
+     */
+    public synchronized void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+    }
+
+    /**
+     * Returns the number of writes per batch size bucket, over all switches.
+     * Keys are the smallest batch size of each bucket; buckets are powers
+     * of two.
+     *
+     * @return batch size histogram
+     */
+    public Map<Integer, Long> batchSizeHistogram() {
+        return histogram(batchSizes);
+    }
+
+    /**
+     * Returns the maximum number of messages per write, or 1 if messages
+     * are to be written through.
+     *
+     * @return effective batch size
+     */
+    int batchSize() {
+        return flusher == null || maxDelayMicros == 0 ? 1 : maxBatchSize;
+    }
+
+    /**
+     * Schedules a flush after the configured delay.
+     *
+     * @param flush flush to run
+     * @return true if the flush was scheduled; false if the timer is stopped
+     */
+    boolean schedule(Runnable flush) {
+        ScheduledExecutorService executor = flusher;
+        if (executor == null) {
+            return false;
+        }
+        try {
+            executor.schedule(flush, maxDelayMicros, TimeUnit.MICROSECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records one write in the given histogram bucket.
+     *
+     * @param bucket batch size bucket
+     */
+    void record(int bucket) {
+        batchSizes.incrementAndGet(bucket);
+    }
+
+    /**
+     * Returns the histogram bucket of a write of the given number of messages.
+     *
+     * @param size messages in the write
+     * @return batch size bucket
+     */
+    static int bucket(int size) {
+        return Math.min(BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(size));
+    }
+
+    /**
+     * Returns an empty per-queue batch size histogram.
+     *
+     * @return histogram counters
+     */
+    static AtomicLongArray newHistogram() {
+        return new AtomicLongArray(BUCKETS);
+    }
+
+    static Map<Integer, Long> histogram(AtomicLongArray counters) {
+        ImmutableMap.Builder<Integer, Long> histogram = ImmutableMap.builder();
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram.put(1 << i, counters.get(i));
+        }
+        return histogram.build();
+    }
+}
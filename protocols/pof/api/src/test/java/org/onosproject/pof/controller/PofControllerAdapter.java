@@ -17,6 +17,10 @@ package org.onosproject.pof.controller;
 
 import org.onosproject.floodlightpof.protocol.OFMessage;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Test adapter for the OpenFlow controller interface.
  */
@@ -90,4 +94,14 @@ public class PofControllerAdapter implements PofController {
     @Override
     public void removeEventListener(PofEventListener listener) {
     }
+
+    @Override
+    public List<PofEventLoopStats> eventLoopStats() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Integer, Long> writeBatchHistogram() {
+        return Collections.emptyMap();
+    }
 }
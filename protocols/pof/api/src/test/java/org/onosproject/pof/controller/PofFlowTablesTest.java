@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.onosproject.core.DefaultApplicationId;
+import org.onosproject.floodlightpof.protocol.OFMatch20;
+import org.onosproject.floodlightpof.protocol.table.OFFlowTable;
+import org.onosproject.floodlightpof.protocol.table.OFTableType;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.table.DefaultFlowTable;
+import org.onosproject.net.table.FlowTable;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link PofFlowTables}.
+ */
+public class PofFlowTablesTest {
+
+    private static OFMatch20 field(short id, short offset, short length) {
+        OFMatch20 field = new OFMatch20();
+        field.setFieldId(id);
+        field.setOffset(offset);
+        field.setLength(length);
+        return field;
+    }
+
+    @Test
+    public void testBuildsCopy() {
+        OFFlowTable stored = new OFFlowTable();
+        stored.setTableId((byte) 42);
+        stored.setTableType(OFTableType.OF_MM_TABLE);
+        stored.setTableSize(128);
+        stored.setMatchFieldList(ImmutableList.of(field((short) 1, (short) 0, (short) 48),
+                                                  field((short) 2, (short) 96, (short) 16)));
+        FlowTable table = DefaultFlowTable.builder()
+                .withFlowTable(stored)
+                .forTable(42)
+                .forDevice(DeviceId.deviceId("pof:0000000000000001"))
+                .fromApp(new DefaultApplicationId(1, "test"))
+                .build();
+
+        OFFlowTable built = PofFlowTables.buildOFFlowTable(table, (byte) 3);
+
+        assertEquals(3, built.getTableId());
+        assertEquals(64, built.getKeyLength());
+        assertEquals(2, built.getMatchFieldNum());
+        assertEquals(128, built.getTableSize());
+
+        assertEquals(42, stored.getTableId());
+        assertEquals(0, stored.getKeyLength());
+        assertEquals(0, stored.getMatchFieldNum());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.driver;
+
+import com.google.common.collect.ImmutableList;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.jboss.netty.channel.Channel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.floodlightpof.protocol.OFEchoRequest;
+import org.onosproject.floodlightpof.protocol.OFMessage;
+
+import java.util.List;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for coalescing of outbound switch messages.
+ */
+public class OutboundMessageQueueTest {
+
+    private Capture<Object> writes;
+    private WriteCoalescer coalescer;
+    private OutboundMessageQueue queue;
+
+    @Before
+    public void setUp() {
+        writes = newCapture(CaptureType.ALL);
+        Channel channel = createMock(Channel.class);
+        expect(channel.isConnected()).andReturn(true).anyTimes();
+        expect(channel.write(capture(writes))).andReturn(null).anyTimes();
+        replay(channel);
+        coalescer = new WriteCoalescer();
+        coalescer.start();
+        queue = new OutboundMessageQueue(channel, coalescer);
+    }
+
+    @After
+    public void tearDown() {
+        coalescer.stop();
+    }
+
+    private static List<OFMessage> messages(int count) {
+        ImmutableList.Builder<OFMessage> msgs = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            msgs.add(new OFEchoRequest());
+        }
+        return msgs.build();
+    }
+
+    /**
+     * Tests that each enqueue is written through when coalescing is disabled.
+     */
+    @Test
+    public void testWriteThrough() {
+        queue.enqueue(messages(1));
+        queue.enqueue(messages(1));
+        assertEquals(2, writes.getValues().size());
+        assertEquals(0, queue.pendingMessages());
+        assertEquals(2L, (long) queue.batchSizeHistogram().get(1));
+    }
+
+    /**
+     * Tests that messages are held until the batch fills.
+     */
+    @Test
+    public void testBatchFills() {
+        coalescer.configure(4, 1_000_000);
+        queue.enqueue(messages(1));
+        queue.enqueue(messages(2));
+        assertEquals(0, writes.getValues().size());
+        assertEquals(3, queue.pendingMessages());
+
+        queue.enqueue(messages(1));
+        assertEquals(1, writes.getValues().size());
+        assertEquals(4, ((List<?>) writes.getValue()).size());
+        assertEquals(1L, (long) queue.batchSizeHistogram().get(4));
+        assertEquals(1L, (long) coalescer.batchSizeHistogram().get(4));
+    }
+
+    /**
+     * Tests that messages are written through once the coalescer is stopped,
+     * after anything still pending.
+     */
+    @Test
+    public void testWriteThroughWhenStopped() {
+        coalescer.configure(8, 1_000_000);
+        queue.enqueue(messages(3));
+        coalescer.stop();
+
+        queue.enqueue(messages(1));
+        assertEquals(1, writes.getValues().size());
+        assertEquals(4, ((List<?>) writes.getValue()).size());
+        assertEquals(0, queue.pendingMessages());
+    }
+
+    /**
+     * Tests that an immediate write carries anything already pending.
+     */
+    @Test
+    public void testWriteNowDrainsPending() {
+        coalescer.configure(8, 1_000_000);
+        queue.enqueue(messages(3));
+        queue.writeNow(messages(1));
+        assertEquals(1, writes.getValues().size());
+        assertEquals(4, ((List<?>) writes.getValue()).size());
+        assertEquals(0, queue.pendingMessages());
+    }
+
+    /**
+     * Tests that a partial batch is written once the delay expires.
+     */
+    @Test
+    public void testDelayedFlush() throws InterruptedException {
+        coalescer.configure(64, 1_000);
+        queue.enqueue(messages(5));
+        for (int i = 0; i < 200 && writes.getValues().isEmpty(); i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, writes.getValues().size());
+        assertEquals(5, ((List<?>) writes.getValue()).size());
+    }
+}
@@ -31,9 +31,12 @@ import org.onosproject.net.driver.DefaultDriverData;
 import org.onosproject.net.driver.DefaultDriverHandler;
 import org.onosproject.net.driver.Driver;
 import org.onosproject.net.driver.DriverService;
+import org.onosproject.net.packet.PacketInAdmission;
 import org.onosproject.pof.controller.Dpid;
+import org.onosproject.pof.controller.PofEventLoopStats;
 import org.onosproject.pof.controller.driver.PofAgent;
 import org.onosproject.pof.controller.driver.PofSwitchDriver;
+import org.onosproject.pof.controller.driver.WriteCoalescer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,6 +95,7 @@ public class Controller {
     // Configuration options
     protected List<Integer> openFlowPorts = ImmutableList.of(6643);
     protected int workerThreads = 16;
+    protected int dispatchThreads = 16;
 
     // Start time of the controller
     protected long systemStartTime;
@@ -99,6 +103,10 @@ public class Controller {
     private PofAgent agent;
 
     private NioServerSocketChannelFactory execFactory;
+    private DispatchLanes dispatchLanes;
+    private final WriteCoalescer writeCoalescer = new WriteCoalescer();
+    private final PacketInAdmission<Long> packetInAdmission =
+            new PacketInAdmission<>(0, 0, DEFAULT_PACKET_IN_SAMPLE_EVERY);
 
     protected String ksLocation;
     protected String tsLocation;
@@ -107,6 +115,7 @@ public class Controller {
     protected SSLContext sslContext;
 
     // Perf. related configuration
+    protected static final int DEFAULT_PACKET_IN_SAMPLE_EVERY = 100;
     protected static final int SEND_BUFFER_SIZE = 4 * 1024 * 1024;
     private DriverService driverService;
     private boolean enableOfTls = TLS_DISABLED;
@@ -129,6 +138,34 @@ public class Controller {
         return FACTORY;
     }
 
+    /**
+     * Returns the lanes which dispatch switch messages off the I/O threads.
+     *
+     * @return dispatch lanes
+     */
+    DispatchLanes dispatchLanes() {
+        return dispatchLanes;
+    }
+
+    /**
+     * Returns the write coalescing shared by all switch connections.
+     *
+     * @return write coalescer
+     */
+    public WriteCoalescer writeCoalescer() {
+        return writeCoalescer;
+    }
+
+    /**
+     * Returns the load of each message dispatch lane.
+     *
+     * @return dispatch lane load
+     */
+    public List<PofEventLoopStats> eventLoopStats() {
+        DispatchLanes lanes = dispatchLanes;
+        return lanes == null ? ImmutableList.of() : lanes.stats();
+    }
+
     // **************
     // Initialization
     // **************
@@ -191,6 +228,50 @@ public class Controller {
             this.workerThreads = Integer.parseInt(threads);
         }
         log.debug("Number of worker threads set to {}", this.workerThreads);
+
+        int controlRate = getInteger(properties, "packetInControlRate", 0);
+        int dataRate = getInteger(properties, "packetInDataRate", 0);
+        int sampleEvery = getInteger(properties, "packetInSampleEvery", DEFAULT_PACKET_IN_SAMPLE_EVERY);
+        packetInAdmission.configure(controlRate, dataRate, sampleEvery);
+        log.debug("Packet-in limits set to control {}/s, data {}/s, sampling 1 in {} drops",
+                  controlRate, dataRate, sampleEvery);
+
+        String dispatchers = get(properties, "dispatchThreads");
+        if (!Strings.isNullOrEmpty(dispatchers)) {
+            this.dispatchThreads = Math.max(1, Integer.parseInt(dispatchers.trim()));
+        }
+        log.debug("Number of dispatch threads set to {}", this.dispatchThreads);
+
+        int batchSize = getInteger(properties, "writeBatchSize", WriteCoalescer.DEFAULT_MAX_BATCH_SIZE);
+        int batchDelay = getInteger(properties, "writeBatchDelayMicros", WriteCoalescer.DEFAULT_MAX_DELAY_MICROS);
+        writeCoalescer.configure(batchSize, batchDelay);
+
+        String fastPath = get(properties, "packetInFastPath");
+        if (!Strings.isNullOrEmpty(fastPath)) {
+            OFMessageDecoder.setPacketInFastPath(Boolean.parseBoolean(fastPath.trim()));
+        }
+    }
+
+    private static int getInteger(Dictionary<?, ?> properties, String name, int defaultValue) {
+        String value = get(properties, name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed value '{}' of {}; using {}", value, name, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the per-switch packet-in admission stage.
+     *
+     * @return packet-in admission, keyed by datapath id
+     */
+    public PacketInAdmission<Long> packetInAdmission() {
+        return packetInAdmission;
     }
 
     /**
@@ -316,6 +397,7 @@ public class Controller {
             pofSwitchDriver.init(did, desc);
             pofSwitchDriver.setAgent(agent);
             pofSwitchDriver.setRoleHandler(new RoleManager(pofSwitchDriver));
+            pofSwitchDriver.setWriteCoalescer(writeCoalescer);
             log.info("POF handshaker found for device {}: {}", dpid, pofSwitchDriver);
             return pofSwitchDriver;
         }
@@ -328,6 +410,8 @@ public class Controller {
         log.info("Starting POF IO");
         this.agent = ag;
         this.driverService = driverSerVice;
+        this.dispatchLanes = new DispatchLanes(dispatchThreads);
+        this.writeCoalescer.start();
         this.init();
         this.run();
     }
@@ -337,6 +421,8 @@ public class Controller {
         log.info("Stopping POF IO");
         cg.close();
         execFactory.shutdown();
+        dispatchLanes.shutdown();
+        writeCoalescer.stop();
     }
 
 }
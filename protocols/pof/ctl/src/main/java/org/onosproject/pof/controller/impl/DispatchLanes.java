@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.onosproject.pof.controller.PofEventLoopStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.onlab.util.Tools.groupedThreads;
+
+/**
+ * Fixed set of single-threaded loops which dispatch switch messages off the
+ * Netty I/O threads.
+ * <p>
+ * Each switch channel is pinned to one lane for its lifetime, so messages
+ * of a switch are handled in order, while a chatty switch can only delay the
+ * switches sharing its lane. A lane queues at most one drain task per
+ * pinned channel; the messages themselves are held in the channel's own
+ * bounded queue, which throttles reads from the switch when full.
+ * </p>
+ */
+final class DispatchLanes {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatchLanes.class);
+
+    private final List<Lane> lanes;
+
+    /**
+     * Creates the given number of dispatch lanes.
+     *
+     * @param count number of lanes
+     */
+    DispatchLanes(int count) {
+        checkArgument(count > 0, "At least one dispatch lane is required");
+        ImmutableList.Builder<Lane> builder = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            builder.add(new Lane("dispatch-" + i));
+        }
+        lanes = builder.build();
+    }
+
+    /**
+     * Pins a new channel to the lane with the fewest channels.
+     *
+     * @return lane for the channel
+     */
+    synchronized Lane pin() {
+        Lane lane = lanes.stream()
+                .min(Comparator.comparingInt(l -> l.channels.get()))
+                .get();
+        lane.channels.incrementAndGet();
+        return lane;
+    }
+
+    /**
+     * Releases a channel pinned with {@link #pin()}.
+     *
+     * @param lane     lane of the channel
+     * @param backlog  messages of the channel which will not be dispatched
+     */
+    synchronized void unpin(Lane lane, int backlog) {
+        lane.channels.decrementAndGet();
+        lane.backlog.addAndGet(-backlog);
+    }
+
+    /**
+     * Returns a load snapshot of every lane.
+     *
+     * @return lane load, in lane order
+     */
+    List<PofEventLoopStats> stats() {
+        ImmutableList.Builder<PofEventLoopStats> stats = ImmutableList.builder();
+        lanes.forEach(lane -> stats.add(lane.stats()));
+        return stats.build();
+    }
+
+    /**
+     * Stops all lanes; queued messages are discarded.
+     */
+    void shutdown() {
+        lanes.forEach(lane -> lane.executor.shutdownNow());
+    }
+
+    /**
+     * Single dispatch loop.
+     */
+    static final class Lane {
+        private final String name;
+        private final ExecutorService executor;
+        private final AtomicInteger channels = new AtomicInteger();
+        private final AtomicInteger backlog = new AtomicInteger();
+        private final AtomicLong dispatched = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        private Lane(String name) {
+            this.name = name;
+            this.executor = Executors.newSingleThreadExecutor(groupedThreads("onos/pof", name, log));
+        }
+
+        /**
+         * Schedules a drain task on this lane.
+         *
+         * @param task drain task
+         */
+        void execute(Runnable task) {
+            executor.execute(task);
+        }
+
+        /**
+         * Records that a message was queued for this lane.
+         */
+        void queued() {
+            backlog.incrementAndGet();
+        }
+
+        /**
+         * Records a dispatched batch of messages.
+         *
+         * @param count     messages dispatched
+         * @param nanos     time taken to dispatch them
+         */
+        void dispatched(int count, long nanos) {
+            backlog.addAndGet(-count);
+            dispatched.addAndGet(count);
+            busyNanos.addAndGet(nanos);
+        }
+
+        private PofEventLoopStats stats() {
+            return new PofEventLoopStats(name, channels.get(), dispatched.get(),
+                                         backlog.get(), busyNanos.get());
+        }
+    }
+}
@@ -49,6 +49,9 @@ import org.onosproject.floodlightpof.protocol.OFType;
 import org.onosproject.floodlightpof.protocol.factory.BasicFactory;
 import org.onosproject.floodlightpof.protocol.statistics.OFDescriptionStatistics;
 import org.onosproject.floodlightpof.protocol.table.OFFlowTableResource;
+import org.onosproject.net.packet.PacketInAdmission;
+import org.onosproject.net.packet.PacketInAdmission.Priority;
+import org.onosproject.net.packet.PacketInDispatchQueue;
 import org.onosproject.pof.controller.driver.PofSwitchDriver;
 import org.onosproject.pof.controller.driver.SwitchStateException;
 import org.slf4j.Logger;
@@ -63,16 +66,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static org.onlab.util.Tools.groupedThreads;
 
 /**
  * Channel handler deals with the switch connection and dispatches
@@ -117,24 +114,24 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
     private static final int MSG_READ_BUFFER = 5000;
 
     /**
-     * OFMessage dispatch queue.
+     * OFMessage dispatch queue; control packet-ins overtake other messages.
      */
-    private final BlockingQueue<OFMessage> dispatchQueue =
-            new LinkedBlockingQueue<>(MSG_READ_BUFFER);
+    private final PacketInDispatchQueue<OFMessage> dispatchQueue =
+            new PacketInDispatchQueue<>(MSG_READ_BUFFER);
+
+    private static final int DISPATCH_BATCH = 256;
 
     /**
-     * Single thread executor for OFMessage dispatching.
+     * Dispatch lane this channel is pinned to.
      *
-     * Gets initialized on channelActive, shutdown on channelInactive.
+     * Gets assigned on channelConnected, released on channelDisconnected.
      */
-    private ExecutorService dispatcher;
+    private volatile DispatchLanes.Lane lane;
 
     /**
-     * Handle for dispatcher thread.
-     * <p>
-     * Should only be touched from the Channel I/O thread
+     * Whether a drain of the dispatch queue is scheduled on the lane.
      */
-    private Future<?> dispatcherHandle = CompletableFuture.completedFuture(null);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
 
     /**
      * Dispatch backlog.
@@ -588,7 +585,10 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
 //                                .setXid(m.getXid())
 //                                .setBufferId(m.getBufferId()).build();
 //                h.sw.sendMsg(out);
-                h.dispatchMessage(m);
+                Priority priority = PacketInAdmission.classify(m.getPacketData());
+                if (h.controller.packetInAdmission().admit(h.thisdpid, priority)) {
+                    h.dispatchMessage(m, priority);
+                }
             }
 
             @Override
@@ -1049,7 +1049,7 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
             channelId = channel.toString();
         }
 
-        dispatcher = Executors.newSingleThreadExecutor(groupedThreads("onos/of/dispatcher", channelId, log));
+        lane = controller.dispatchLanes().pin();
 
         setState(ChannelState.WAIT_HELLO);
     }
@@ -1060,8 +1060,12 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
         log.info("Switch disconnected callback for sw:{}. Cleaning up ...",
                 getSwitchInfoString());
 
-        if (dispatcher != null) {
-            dispatcher.shutdownNow();
+        DispatchLanes.Lane pinned = lane;
+        if (pinned != null) {
+            lane = null;
+            int dropped = dispatchQueue.size();
+            dispatchQueue.clear();
+            controller.dispatchLanes().unpin(pinned, dropped);
         }
 
         if (thisdpid != 0) {
@@ -1076,6 +1080,7 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
                 if (sw != null) {
                     sw.removeConnectedSwitch();
                 }
+                controller.packetInAdmission().remove(thisdpid);
             } else {
                 // A duplicate was disconnected on this ChannelHandler,
                 // this is the same switch reconnecting, but the original state was
@@ -1177,9 +1182,21 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
     }
 
     private void dispatchMessage(OFMessage m) {
+        dispatchMessage(m, Priority.DATA);
+    }
+
+    private void dispatchMessage(OFMessage m, Priority priority) {
+
+        DispatchLanes.Lane pinned = lane;
+        if (pinned == null) {
+            // channel already disconnected
+            return;
+        }
 
         if (dispatchBacklog.isEmpty()) {
-            if (!dispatchQueue.offer(m)) {
+            if (dispatchQueue.offer(m, priority)) {
+                pinned.queued();
+            } else {
                 // queue full
                 channel.setReadable(false);
                 // put it on the head of backlog
@@ -1200,43 +1217,43 @@ class OFChannelHandler extends IdleStateAwareChannelHandler {
                 dispatchBacklog.addFirst(msg);
                 return;
             }
+            pinned.queued();
         }
 
 
-        if (dispatcherHandle.isDone()) {
-            // dispatcher terminated for some reason, restart
-
-            dispatcherHandle = dispatcher.submit(() -> {
-                try {
-                    List<OFMessage> msgs = new ArrayList<>();
-                    for (;;) {
-                        // wait for new message
-                        OFMessage msg = dispatchQueue.take();
-                        sw.handleMessage(msg);
+        scheduleDrain(pinned);
+    }
 
-                        while (dispatchQueue.drainTo(msgs, MSG_READ_BUFFER) > 0) {
-                            if (!channel.isReadable()) {
-                                channel.setReadable(true);
-                            }
-                            msgs.forEach(sw::handleMessage);
-                            msgs.clear();
-                        }
+    private void scheduleDrain(DispatchLanes.Lane pinned) {
+        if (drainScheduled.compareAndSet(false, true)) {
+            pinned.execute(() -> drainDispatchQueue(pinned));
+        }
+    }
 
-                        if (!channel.isReadable()) {
-                            channel.setReadable(true);
-                        }
+    /**
+     * Hands a batch of queued messages to the switch on its lane, then
+     * yields the lane to other switches if more messages are waiting.
+     */
+    private void drainDispatchQueue(DispatchLanes.Lane pinned) {
+        List<OFMessage> msgs = new ArrayList<>(DISPATCH_BATCH);
+        dispatchQueue.drainTo(msgs, DISPATCH_BATCH);
+        if (!channel.isReadable()) {
+            channel.setReadable(true);
+        }
 
-                        if (Thread.currentThread().isInterrupted()) {
-                            return;
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    // interrupted. gracefully shutting down
-                    return;
-                }
+        long start = System.nanoTime();
+        for (OFMessage msg : msgs) {
+            try {
+                sw.handleMessage(msg);
+            } catch (RuntimeException e) {
+                log.warn("Failed to dispatch {} from {}", msg.getType(), getSwitchInfoString(), e);
+            }
+        }
+        pinned.dispatched(msgs.size(), System.nanoTime() - start);
+        drainScheduled.set(false);
 
-            });
+        if (!dispatchQueue.isEmpty() && lane == pinned) {
+            scheduleDrain(pinned);
         }
     }
 
@@ -22,6 +22,8 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.frame.FrameDecoder;
 import org.onosproject.floodlightpof.protocol.OFMessage;
+import org.onosproject.floodlightpof.protocol.OFPacketIn;
+import org.onosproject.floodlightpof.protocol.OFType;
 import org.onosproject.floodlightpof.protocol.factory.BasicFactory;
 import org.onosproject.floodlightpof.protocol.factory.OFMessageFactory;
 import org.slf4j.Logger;
@@ -38,9 +40,26 @@ import java.util.List;
  */
 public class OFMessageDecoder extends FrameDecoder {
 
+    private static final int HEADER_LENGTH = OFMessage.MINIMUM_LENGTH;
+    private static final byte PACKET_IN = OFType.PACKET_IN.getTypeValue();
+
+    private static volatile boolean packetInFastPath = true;
+
     OFMessageFactory factory = new BasicFactory();
     protected static Logger log = LoggerFactory.getLogger(OFMessageDecoder.class);
 
+    /**
+     * Enables or disables direct decoding of packet-in frames. When enabled,
+     * packet-ins skip the generic factory (header probe, reflective
+     * instantiation and result list) and are read straight into a single
+     * {@link OFPacketIn}, whose payload is the only copy made of the packet.
+     *
+     * @param enabled true to decode packet-ins directly
+     */
+    public static void setPacketInFastPath(boolean enabled) {
+        packetInFastPath = enabled;
+    }
+
     @Override
     protected Object decode(ChannelHandlerContext ctx, Channel channel,
             ChannelBuffer buffer) throws Exception {
@@ -61,6 +80,13 @@ public class OFMessageDecoder extends FrameDecoder {
         //OFMessageReader<OFMessage> reader = OFFactories.getGenericReader();
         //OFMessage message = reader.readFrom(buffer);
 
+        if (packetInFastPath && buffer.readableBytes() >= HEADER_LENGTH) {
+            int start = buffer.readerIndex();
+            if (buffer.getByte(start + 1) == PACKET_IN) {
+                return decodePacketIn(buffer, start);
+            }
+        }
+
         List<OFMessage> message = factory.parseOFMessage(buffer);
             if(message != null) {
                 //TODO
@@ -68,4 +94,20 @@ public class OFMessageDecoder extends FrameDecoder {
         return message;
     }
 
+    /**
+     * Decodes the packet-in frame at the given index, or returns null if
+     * the frame has not been fully received yet.
+     */
+    private OFMessage decodePacketIn(ChannelBuffer buffer, int start) {
+        int length = buffer.getUnsignedShort(start + 2);
+        if (buffer.readableBytes() < length) {
+            return null;
+        }
+        OFPacketIn packetIn = new OFPacketIn();
+        packetIn.readFrom(buffer);
+        // skip any padding the switch appended after the packet data
+        buffer.readerIndex(Math.max(buffer.readerIndex(), start + length));
+        return packetIn;
+    }
+
 }
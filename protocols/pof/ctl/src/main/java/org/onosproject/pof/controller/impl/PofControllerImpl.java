@@ -25,6 +25,7 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.CoreService;
 import org.onosproject.floodlightpof.protocol.OFMessage;
@@ -38,15 +39,19 @@ import org.onosproject.pof.controller.Dpid;
 import org.onosproject.pof.controller.PacketListener;
 import org.onosproject.pof.controller.PofController;
 import org.onosproject.pof.controller.PofEventListener;
+import org.onosproject.pof.controller.PofEventLoopStats;
 import org.onosproject.pof.controller.PofPacketContext;
 import org.onosproject.pof.controller.PofSwitch;
 import org.onosproject.pof.controller.PofSwitchListener;
 import org.onosproject.pof.controller.RoleState;
 import org.onosproject.pof.controller.driver.PofAgent;
+import org.onosproject.pof.controller.driver.WriteCoalescer;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -65,6 +70,9 @@ public class PofControllerImpl implements PofController {
     private static final String APP_ID = "org.onosproject.pof-base";
     private static final String DEFAULT_OFPORT = "6643";
     private static final int DEFAULT_WORKER_THREADS = 16;
+    private static final int DEFAULT_DISPATCH_THREADS = 16;
+
+    private static final String METRICS_COMPONENT = "PofController";
 
     private static final Logger log =
             LoggerFactory.getLogger(PofControllerImpl.class);
@@ -82,6 +90,9 @@ public class PofControllerImpl implements PofController {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService cfgService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     @Property(name = "pofPorts", value = DEFAULT_OFPORT,
             label = "Port numbers (comma separated) used by OpenFlow protocol; default is 6643")
     private String pofPorts = DEFAULT_OFPORT;
@@ -90,6 +101,34 @@ public class PofControllerImpl implements PofController {
             label = "Number of controller worker threads; default is 16")
     private int workerThreads = DEFAULT_WORKER_THREADS;
 
+    @Property(name = "dispatchThreads", intValue = DEFAULT_DISPATCH_THREADS,
+            label = "Number of threads dispatching switch messages; each switch is pinned to one; default is 16")
+    private int dispatchThreads = DEFAULT_DISPATCH_THREADS;
+
+    @Property(name = "packetInControlRate", intValue = 0,
+            label = "Per-switch LLDP/BDDP/ARP packet-ins admitted per second; 0 means no limit")
+    private int packetInControlRate = 0;
+
+    @Property(name = "packetInDataRate", intValue = 0,
+            label = "Per-switch packet-ins of other traffic admitted per second; 0 means no limit")
+    private int packetInDataRate = 0;
+
+    @Property(name = "packetInSampleEvery", intValue = 100,
+            label = "Let one in this many rate-limited packet-ins through; 0 drops all of them")
+    private int packetInSampleEvery = 100;
+
+    @Property(name = "writeBatchSize", intValue = WriteCoalescer.DEFAULT_MAX_BATCH_SIZE,
+            label = "Maximum number of messages coalesced into one switch write; 1 disables coalescing")
+    private int writeBatchSize = WriteCoalescer.DEFAULT_MAX_BATCH_SIZE;
+
+    @Property(name = "writeBatchDelayMicros", intValue = WriteCoalescer.DEFAULT_MAX_DELAY_MICROS,
+            label = "Maximum time in microseconds a message waits for its write batch to fill; default is 200")
+    private int writeBatchDelayMicros = WriteCoalescer.DEFAULT_MAX_DELAY_MICROS;
+
+    @Property(name = "packetInFastPath", boolValue = true,
+            label = "Decode packet-in messages directly, without the generic message factory")
+    private boolean packetInFastPath = true;
+
     protected ExecutorService executorMsgs =
         Executors.newFixedThreadPool(32, groupedThreads("onos/pof", "event-stats-%d", log));
 
@@ -138,6 +177,8 @@ public class PofControllerImpl implements PofController {
         coreService.registerApplication(APP_ID, this::preDeactivate);
         cfgService.registerProperties(getClass());
         ctrl.setConfigParams(context.getProperties());
+        ctrl.packetInAdmission().registerMetrics(metricsService, METRICS_COMPONENT,
+                                                 dpid -> new Dpid(dpid).toString());
         ctrl.start(agent, driverService);
     }
 
@@ -151,6 +192,7 @@ public class PofControllerImpl implements PofController {
     public void deactivate() {
         preDeactivate();
         cfgService.unregisterProperties(getClass(), false);
+        ctrl.packetInAdmission().unregisterMetrics();
         connectedSwitches.clear();
         activeMasterSwitches.clear();
         activeEqualSwitches.clear();
@@ -273,6 +315,9 @@ public class PofControllerImpl implements PofController {
             case ERROR:
                 executorMsgs.execute(new OFMessageHandler(dpid, msg));
                 break;
+            case BARRIER_REPLY:
+                executorBarrier.execute(new OFMessageHandler(dpid, msg));
+                break;
 
             default:
                 log.warn("Handling message type {} not yet implemented {}",
@@ -513,6 +558,16 @@ public class PofControllerImpl implements PofController {
         sw.setRole(role);
     }
 
+    @Override
+    public List<PofEventLoopStats> eventLoopStats() {
+        return ctrl.eventLoopStats();
+    }
+
+    @Override
+    public Map<Integer, Long> writeBatchHistogram() {
+        return ctrl.writeCoalescer().batchSizeHistogram();
+    }
+
     /**
      * Implementation of an OpenFlow Agent which is responsible for
      * keeping track of connected switches and the state in which
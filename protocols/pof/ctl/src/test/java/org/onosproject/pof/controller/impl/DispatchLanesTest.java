@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.impl;
+
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.pof.controller.PofEventLoopStats;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for pinning switch channels to dispatch lanes.
+ */
+public class DispatchLanesTest {
+
+    private DispatchLanes lanes;
+
+    @After
+    public void tearDown() {
+        lanes.shutdown();
+    }
+
+    /**
+     * Tests that channels are spread over the least loaded lanes.
+     */
+    @Test
+    public void testPinning() {
+        lanes = new DispatchLanes(2);
+        DispatchLanes.Lane first = lanes.pin();
+        DispatchLanes.Lane second = lanes.pin();
+        assertNotSame(first, second);
+
+        lanes.unpin(first, 0);
+        assertSame(first, lanes.pin());
+
+        List<PofEventLoopStats> stats = lanes.stats();
+        assertEquals(2, stats.size());
+        assertEquals(1, stats.get(0).channels());
+        assertEquals(1, stats.get(1).channels());
+    }
+
+    /**
+     * Tests that dispatched messages are reflected in the lane load.
+     */
+    @Test
+    public void testStats() throws InterruptedException {
+        lanes = new DispatchLanes(1);
+        DispatchLanes.Lane lane = lanes.pin();
+        lane.queued();
+        lane.queued();
+        lane.queued();
+
+        CountDownLatch done = new CountDownLatch(1);
+        lane.execute(() -> {
+            lane.dispatched(2, 1000);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        PofEventLoopStats stats = lanes.stats().get(0);
+        assertEquals(2, stats.dispatched());
+        assertEquals(1, stats.backlog());
+        assertEquals(1000, stats.busyNanos());
+
+        lanes.unpin(lane, 1);
+        assertEquals(0, lanes.stats().get(0).backlog());
+        assertEquals(0, lanes.stats().get(0).channels());
+    }
+}
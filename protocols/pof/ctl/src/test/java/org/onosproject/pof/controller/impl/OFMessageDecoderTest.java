@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.impl;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.floodlightpof.protocol.OFMessage;
+import org.onosproject.floodlightpof.protocol.OFPacketIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the POF message decoder.
+ */
+public class OFMessageDecoderTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OFMessageDecoderTest.class);
+
+    private static final int FLOOD = 20000;
+
+    private OFMessageDecoder decoder;
+    private Channel channel;
+
+    @Before
+    public void setUp() {
+        decoder = new OFMessageDecoder();
+        channel = createMock(Channel.class);
+        expect(channel.isConnected()).andReturn(true).anyTimes();
+        replay(channel);
+    }
+
+    @After
+    public void tearDown() {
+        OFMessageDecoder.setPacketInFastPath(true);
+    }
+
+    private static byte[] frame(int payloadLength) {
+        byte[] data = new byte[payloadLength];
+        Arrays.fill(data, (byte) 0x5a);
+        OFPacketIn packetIn = new OFPacketIn();
+        packetIn.setXid(42);
+        packetIn.setBufferId(-1);
+        packetIn.setReason(OFPacketIn.OFPacketInReason.OFPR_ACTION);
+        packetIn.setTableId((byte) 3);
+        packetIn.setCookie(7L);
+        packetIn.setDeviceId(1);
+        packetIn.setPortId((short) 2);
+        packetIn.setPacketData(data);
+        packetIn.setTotalLength((short) payloadLength);
+        packetIn.setLength((short) (OFPacketIn.minimumLength + payloadLength));
+
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        packetIn.writeTo(buffer);
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.readBytes(bytes);
+        return bytes;
+    }
+
+    private OFPacketIn decode(ChannelBuffer buffer) throws Exception {
+        Object decoded = decoder.decode(null, channel, buffer);
+        if (decoded instanceof List) {
+            return (OFPacketIn) ((List<?>) decoded).get(0);
+        }
+        return (OFPacketIn) decoded;
+    }
+
+    /**
+     * Tests that the direct packet-in path decodes the same message as the
+     * generic factory.
+     */
+    @Test
+    public void testPacketInMatchesFactory() throws Exception {
+        byte[] bytes = frame(64);
+
+        OFPacketIn fast = decode(ChannelBuffers.wrappedBuffer(bytes));
+        OFMessageDecoder.setPacketInFastPath(false);
+        OFPacketIn legacy = decode(ChannelBuffers.wrappedBuffer(bytes));
+
+        assertEquals(legacy.getXid(), fast.getXid());
+        assertEquals(legacy.getReason(), fast.getReason());
+        assertEquals(legacy.getTableId(), fast.getTableId());
+        assertEquals(legacy.getCookie(), fast.getCookie());
+        assertEquals(legacy.getPortId(), fast.getPortId());
+        assertArrayEquals(legacy.getPacketData(), fast.getPacketData());
+    }
+
+    /**
+     * Tests that an incomplete packet-in frame is left in the buffer.
+     */
+    @Test
+    public void testPartialFrame() throws Exception {
+        byte[] bytes = frame(64);
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(bytes, 0, bytes.length - 1);
+
+        assertNull(decoder.decode(null, channel, buffer));
+        assertEquals(bytes.length - 1, buffer.readableBytes());
+    }
+
+    /**
+     * Measures bytes allocated per decoded packet-in under a synthetic
+     * flood, for the direct path and for the generic factory.
+     */
+    @Test
+    public void testPacketInAllocation() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        ChannelBuffer flood = ChannelBuffers.wrappedBuffer(frame(128));
+
+        long fast = allocatedPerPacket(threads, flood);
+        OFMessageDecoder.setPacketInFastPath(false);
+        long legacy = allocatedPerPacket(threads, flood);
+
+        log.info("Packet-in decode allocation: direct {} B/packet, factory {} B/packet", fast, legacy);
+        assertTrue(fast <= legacy);
+    }
+
+    private long allocatedPerPacket(com.sun.management.ThreadMXBean threads,
+                                    ChannelBuffer flood) throws Exception {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < FLOOD; i++) {
+            flood.readerIndex(0);
+            decode(flood);
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < FLOOD; i++) {
+            flood.readerIndex(0);
+            decode(flood);
+        }
+        return (threads.getThreadAllocatedBytes(id) - before) / FLOOD;
+    }
+}
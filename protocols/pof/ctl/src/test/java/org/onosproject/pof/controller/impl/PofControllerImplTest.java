@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.pof.controller.impl;
+
+import org.junit.Test;
+import org.onosproject.floodlightpof.protocol.OFBarrierReply;
+import org.onosproject.floodlightpof.protocol.OFMessage;
+import org.onosproject.pof.controller.Dpid;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for dispatching switch messages in the POF controller.
+ */
+public class PofControllerImplTest {
+
+    private static final Dpid DPID = new Dpid(1L);
+
+    /**
+     * Tests that barrier replies received from a switch reach the event
+     * listeners.
+     */
+    @Test
+    public void testBarrierReply() throws InterruptedException {
+        PofControllerImpl controller = new PofControllerImpl();
+        BlockingQueue<OFMessage> received = new LinkedBlockingQueue<>();
+        controller.addEventListener((dpid, msg) -> {
+            if (DPID.equals(dpid)) {
+                received.add(msg);
+            }
+        });
+
+        OFBarrierReply reply = new OFBarrierReply();
+        reply.setXid(42);
+        controller.agent.processMessage(DPID, reply);
+
+        assertSame(reply, received.poll(5, TimeUnit.SECONDS));
+    }
+}
@@ -318,16 +318,7 @@ public class FlowModBuilderVer20 extends FlowModBuilder {
      * @return OFMatchX
      */
     private OFMatchX toMatchX(PofCriterion pc) {
-
-        OFMatch20 match20 = new OFMatch20();
-        match20.setFieldName(pc.fieldName());
-        match20.setFieldId(pc.fieldId());
-        match20.setOffset(pc.offset());
-        match20.setLength(pc.length());
-
-        OFMatchX matchX = new OFMatchX(match20, pc.value(), pc.mask());
-
-        return matchX;
+        return PofWireForms.matchX(pc);
     }
 
 
@@ -403,7 +394,7 @@ public class FlowModBuilderVer20 extends FlowModBuilder {
                     break;
                 case POFINSTRUCTION:
                     PofInstruction pi = (PofInstruction) i;
-                    ofIns.add(pi.instruction());
+                    ofIns.add(PofWireForms.instruction(pi));
                     break;
 
                 default:
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.pof.flow.impl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
+import org.onosproject.floodlightpof.protocol.OFBarrierRequest;
+import org.onosproject.floodlightpof.protocol.OFMessage;
+import org.onosproject.pof.controller.PofSwitch;
+import org.slf4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Streams the stored flow tables and flow entries of a device to its switch
+ * after it reconnects.
+ * <p>
+ * Messages are sent in windows of {@code windowSize}, each handed to the
+ * switch as a single list and terminated by a barrier request. At most
+ * {@code maxOutstandingWindows} windows may be unacknowledged at any time;
+ * a barrier which is not answered within the barrier timeout is logged and
+ * treated as acknowledged so that switches without barrier support still
+ * converge.
+ * </p>
+ */
+final class PofResyncTask implements Runnable {
+
+    // barrier xids are kept well away from the switch's own transaction ids
+    private static final AtomicInteger NEXT_XID = new AtomicInteger(0x7e000000);
+
+    private final Logger log = getLogger(getClass());
+
+    private final PofSwitch sw;
+    private final Iterator<OFMessage> messages;
+    private final int total;
+    private final int windowSize;
+    private final int maxOutstandingWindows;
+    private final long barrierTimeoutMillis;
+
+    private final Map<Integer, CompletableFuture<Void>> pendingBarriers = Maps.newConcurrentMap();
+
+    private volatile boolean cancelled;
+    private volatile int sent;
+    private volatile int windows;
+    private volatile int barrierTimeouts;
+    private volatile long elapsedMillis = -1;
+
+    /**
+     * Creates a resync task.
+     *
+     * @param sw                    switch to resync
+     * @param messages              table mods followed by flow mods to send
+     * @param total                 number of messages which will be sent
+     * @param windowSize            messages per barrier window
+     * @param maxOutstandingWindows unacknowledged windows allowed in flight
+     * @param barrierTimeoutMillis  how long to wait for a barrier reply
+     */
+    PofResyncTask(PofSwitch sw, Iterator<OFMessage> messages, int total,
+                  int windowSize, int maxOutstandingWindows, long barrierTimeoutMillis) {
+        this.sw = sw;
+        this.messages = messages;
+        this.total = total;
+        this.windowSize = Math.max(1, windowSize);
+        this.maxOutstandingWindows = Math.max(1, maxOutstandingWindows);
+        this.barrierTimeoutMillis = barrierTimeoutMillis;
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        log.info("Resync of {} started: {} messages", sw.getStringId(), total);
+
+        Deque<CompletableFuture<Void>> outstanding = new ArrayDeque<>();
+        while (!cancelled && messages.hasNext()) {
+            if (!sw.isConnected()) {
+                log.warn("Resync of {} aborted: switch disconnected after {}/{} messages",
+                         sw.getStringId(), sent, total);
+                return;
+            }
+            if (outstanding.size() >= maxOutstandingWindows) {
+                awaitBarrier(outstanding.poll());
+            }
+
+            List<OFMessage> window = new ArrayList<>(windowSize + 1);
+            while (window.size() < windowSize && messages.hasNext()) {
+                window.add(messages.next());
+            }
+            int count = window.size();
+
+            OFBarrierRequest barrier = new OFBarrierRequest();
+            barrier.setXid(NEXT_XID.getAndIncrement());
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            pendingBarriers.put(barrier.getXid(), ack);
+            outstanding.add(ack);
+            window.add(barrier);
+
+            sw.sendMsg(window);
+            sent += count;
+            windows++;
+            log.debug("Resync of {}: {}/{} messages sent", sw.getStringId(), sent, total);
+        }
+        while (!cancelled && !outstanding.isEmpty()) {
+            awaitBarrier(outstanding.poll());
+        }
+
+        elapsedMillis = System.currentTimeMillis() - start;
+        log.info("Resync of {} {} in {} ms: {} messages in {} windows, {} barrier timeouts",
+                 sw.getStringId(), cancelled ? "cancelled" : "completed",
+                 elapsedMillis, sent, windows, barrierTimeouts);
+    }
+
+    /**
+     * Acknowledges the window terminated by the barrier with the given xid.
+     *
+     * @param xid barrier reply transaction id
+     * @return true if the barrier belonged to this task
+     */
+    boolean barrierReplied(int xid) {
+        CompletableFuture<Void> ack = pendingBarriers.remove(xid);
+        if (ack == null) {
+            return false;
+        }
+        ack.complete(null);
+        return true;
+    }
+
+    /**
+     * Stops the task before the next window is sent.
+     */
+    void cancel() {
+        cancelled = true;
+        pendingBarriers.values().forEach(ack -> ack.complete(null));
+        pendingBarriers.clear();
+    }
+
+    /**
+     * Returns the number of messages sent so far.
+     *
+     * @return messages sent
+     */
+    int sent() {
+        return sent;
+    }
+
+    /**
+     * Returns the total number of messages to send.
+     *
+     * @return total messages
+     */
+    int total() {
+        return total;
+    }
+
+    /**
+     * Returns the time the resync took, or -1 if it has not finished.
+     *
+     * @return elapsed time in milliseconds
+     */
+    long elapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the number of barriers which were not answered in time.
+     *
+     * @return barrier timeouts
+     */
+    int barrierTimeouts() {
+        return barrierTimeouts;
+    }
+
+    private void awaitBarrier(CompletableFuture<Void> ack) {
+        try {
+            ack.get(barrierTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            barrierTimeouts++;
+            log.debug("Barrier reply from {} timed out; continuing resync", sw.getStringId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (ExecutionException e) {
+            log.warn("Unexpected barrier failure for {}", sw.getStringId(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("switch", sw.getStringId())
+                .add("sent", sent)
+                .add("total", total)
+                .add("elapsedMillis", elapsedMillis)
+                .toString();
+    }
+}
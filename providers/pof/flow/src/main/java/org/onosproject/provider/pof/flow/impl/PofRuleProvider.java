@@ -19,6 +19,9 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -33,7 +36,10 @@ import org.onosproject.floodlightpof.protocol.OFError;
 import org.onosproject.floodlightpof.protocol.OFFlowMod;
 import org.onosproject.floodlightpof.protocol.OFMessage;
 import org.onosproject.floodlightpof.protocol.OFPortStatus;
+import org.onosproject.floodlightpof.protocol.OFType;
+import org.onosproject.floodlightpof.protocol.table.OFFlowTable;
 import org.onosproject.floodlightpof.protocol.table.OFFlowTableResource;
+import org.onosproject.floodlightpof.protocol.table.OFTableMod;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.driver.DriverService;
 import org.onosproject.net.flow.CompletedBatchOperation;
@@ -46,10 +52,12 @@ import org.onosproject.net.flow.FlowRuleProviderRegistry;
 import org.onosproject.net.flow.FlowRuleProviderService;
 import org.onosproject.net.provider.AbstractProvider;
 import org.onosproject.net.provider.ProviderId;
+import org.onosproject.net.table.FlowTable;
 import org.onosproject.net.table.FlowTableStore;
 import org.onosproject.pof.controller.Dpid;
 import org.onosproject.pof.controller.PofController;
 import org.onosproject.pof.controller.PofEventListener;
+import org.onosproject.pof.controller.PofFlowTables;
 import org.onosproject.pof.controller.PofSwitch;
 import org.onosproject.pof.controller.PofSwitchListener;
 import org.onosproject.pof.controller.RoleState;
@@ -59,14 +67,20 @@ import org.slf4j.Logger;
 
 import java.util.Collections;
 import java.util.Dictionary;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.onlab.util.Tools.get;
+import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
 
@@ -105,12 +119,31 @@ public class PofRuleProvider extends AbstractProvider
             label = "Adaptive Flow Sampling is on or off")
     private boolean adaptiveFlowSampling = DEFAULT_ADAPTIVE_FLOW_SAMPLING;
 
+    private static final boolean DEFAULT_RESYNC_ON_CONNECT = false;
+    @Property(name = "resyncOnConnect", boolValue = DEFAULT_RESYNC_ON_CONNECT,
+            label = "Push all stored flow tables and entries to a switch when this node becomes its master")
+    private boolean resyncOnConnect = DEFAULT_RESYNC_ON_CONNECT;
+
+    private static final int DEFAULT_RESYNC_WINDOW_SIZE = 256;
+    @Property(name = "resyncWindowSize", intValue = DEFAULT_RESYNC_WINDOW_SIZE,
+            label = "Number of messages sent between barriers during a resync")
+    private int resyncWindowSize = DEFAULT_RESYNC_WINDOW_SIZE;
+
+    private static final int DEFAULT_RESYNC_OUTSTANDING_WINDOWS = 4;
+    @Property(name = "resyncOutstandingWindows", intValue = DEFAULT_RESYNC_OUTSTANDING_WINDOWS,
+            label = "Number of unacknowledged barrier windows allowed during a resync")
+    private int resyncOutstandingWindows = DEFAULT_RESYNC_OUTSTANDING_WINDOWS;
+
+    private static final long RESYNC_BARRIER_TIMEOUT_MILLIS = 5000;
+
     private FlowRuleProviderService providerService;
 
     private final InternalFlowProvider listener = new InternalFlowProvider();
 
     private Cache<Long, InternalCacheEntry> pendingBatches;
 
+    private final Map<Dpid, PofResyncTask> resyncTasks = Maps.newConcurrentMap();
+    private ExecutorService resyncExecutor;
 
     /**
      * Creates an OpenFlow host provider.
@@ -130,6 +163,7 @@ public class PofRuleProvider extends AbstractProvider
         modified(context);
 
         pendingBatches = createBatchCache();
+        resyncExecutor = Executors.newFixedThreadPool(4, groupedThreads("onos/pof", "flow-resync-%d", log));
 
         //createCollectors();
 
@@ -142,6 +176,9 @@ public class PofRuleProvider extends AbstractProvider
         //stopCollectors();
         providerRegistry.unregister(this);
         providerService = null;
+        resyncTasks.values().forEach(PofResyncTask::cancel);
+        resyncTasks.clear();
+        resyncExecutor.shutdownNow();
 
         log.info("Stopped");
     }
@@ -178,6 +215,20 @@ public class PofRuleProvider extends AbstractProvider
         }
 
         log.info("Settings: adaptiveFlowSampling={}", adaptiveFlowSampling);
+
+        s = get(properties, "resyncOnConnect");
+        resyncOnConnect = isNullOrEmpty(s) ? resyncOnConnect : Boolean.parseBoolean(s.trim());
+        try {
+            s = get(properties, "resyncWindowSize");
+            resyncWindowSize = isNullOrEmpty(s) ? resyncWindowSize : Integer.parseInt(s.trim());
+            s = get(properties, "resyncOutstandingWindows");
+            resyncOutstandingWindows = isNullOrEmpty(s) ? resyncOutstandingWindows : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            log.warn("Invalid resync window configuration", e);
+        }
+
+        log.info("Settings: resyncOnConnect={}, resyncWindowSize={}, resyncOutstandingWindows={}",
+                 resyncOnConnect, resyncWindowSize, resyncOutstandingWindows);
     }
 
     private Cache<Long, InternalCacheEntry> createBatchCache() {
@@ -386,6 +437,64 @@ public class PofRuleProvider extends AbstractProvider
 
     }
 
+    /**
+     * Starts a bulk resync of the stored tables and entries of the switch,
+     * unless one is already running for it.
+     *
+     * @param dpid switch to resync
+     */
+    private void startResync(Dpid dpid) {
+        PofSwitch sw = controller.getSwitch(dpid);
+        if (sw == null || sw.getRole() != RoleState.MASTER || resyncTasks.containsKey(dpid)) {
+            return;
+        }
+        DeviceId deviceId = DeviceId.deviceId(Dpid.uri(dpid));
+
+        // fetch the stored tables without holding up the caller's dispatch thread
+        flowTableStore.getFlowTablesAsync(deviceId)
+                .thenAcceptAsync(stored -> resync(sw, dpid, deviceId, stored), resyncExecutor);
+    }
+
+    // runs on the resync executor once the stored tables are available
+    private void resync(PofSwitch sw, Dpid dpid, DeviceId deviceId, Iterable<FlowTable> stored) {
+        // Snapshot the stored state; messages are encoded lazily per window.
+        List<FlowTable> tables = Lists.newArrayList(stored);
+        List<FlowRule> entries = Lists.newArrayList();
+        for (FlowTable table : tables) {
+            Map<Integer, FlowRule> tableEntries = flowTableStore.getFlowEntries(deviceId, table.id());
+            if (tableEntries != null) {
+                entries.addAll(tableEntries.values());
+            }
+        }
+
+        Iterator<OFMessage> messages = Iterators.concat(
+                Iterators.transform(tables.iterator(), table -> resyncTableMod(sw, table)),
+                Iterators.transform(entries.iterator(), entry -> FlowModBuilder.builder(
+                        entry, sw.factory(), flowTableStore,
+                        Optional.empty(), Optional.of(driverService)).buildFlowAdd()));
+
+        PofResyncTask task = new PofResyncTask(sw, messages, tables.size() + entries.size(),
+                                               resyncWindowSize, resyncOutstandingWindows,
+                                               RESYNC_BARRIER_TIMEOUT_MILLIS);
+        if (resyncTasks.putIfAbsent(dpid, task) == null) {
+            try {
+                task.run();
+            } finally {
+                resyncTasks.remove(dpid, task);
+            }
+        }
+    }
+
+    private OFMessage resyncTableMod(PofSwitch sw, FlowTable table) {
+        byte smallTableId = flowTableStore.parseToSmallTableId(table.deviceId(), (int) table.id().value());
+        OFFlowTable ofFlowTable = PofFlowTables.buildOFFlowTable(table, smallTableId);
+        ofFlowTable.setCommand(OFTableMod.OFTableModCmd.OFPTC_ADD);
+
+        OFTableMod tableMod = (OFTableMod) sw.factory().getOFMessage(OFType.TABLE_MOD);
+        tableMod.setFlowTable(ofFlowTable);
+        return tableMod;
+    }
+
     private boolean hasPayload(FlowRuleExtPayLoad flowRuleExtPayLoad) {
         return flowRuleExtPayLoad != null &&
                 flowRuleExtPayLoad.payLoad() != null &&
@@ -397,9 +506,9 @@ public class PofRuleProvider extends AbstractProvider
 
         @Override
         public void switchAdded(Dpid dpid) {
-
-            PofSwitch sw = controller.getSwitch(dpid);
-
+            if (resyncOnConnect) {
+                startResync(dpid);
+            }
             //createCollector(controller.getSwitch(dpid));
         }
 
@@ -410,6 +519,10 @@ public class PofRuleProvider extends AbstractProvider
 
         @Override
         public void switchRemoved(Dpid dpid) {
+            PofResyncTask resync = resyncTasks.remove(dpid);
+            if (resync != null) {
+                resync.cancel();
+            }
 //            if (adaptiveFlowSampling) {
 //                NewAdaptiveFlowStatsCollector collector = afsCollectors.remove(dpid);
 //                if (collector != null) {
@@ -525,6 +638,12 @@ public class PofRuleProvider extends AbstractProvider
                         log.error("FLOW_MOD_FAILED");
                     }
                     break;
+                case BARRIER_REPLY:
+                    PofResyncTask resync = resyncTasks.get(dpid);
+                    if (resync == null || !resync.barrierReplied(msg.getXid())) {
+                        log.debug("Received unknown Barrier Reply: {}", msg.getXid());
+                    }
+                    break;
                 default:
                     log.debug("Unhandled message type: {}", msg.getType());
             }
@@ -533,7 +652,9 @@ public class PofRuleProvider extends AbstractProvider
         @Override
         public void receivedRoleReply(Dpid dpid, RoleState requested,
                                       RoleState response) {
-            // Do nothing here for now.
+            if (resyncOnConnect && response == RoleState.MASTER) {
+                startResync(dpid);
+            }
         }
 
         /*wenjian
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.pof.flow.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.onosproject.floodlightpof.protocol.OFMatchX;
+import org.onosproject.floodlightpof.protocol.instruction.OFInstruction;
+import org.onosproject.net.flow.criteria.PofCriterion;
+import org.onosproject.net.flow.instructions.PofInstruction;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Pre-encoded wire forms of POF match fields and instructions.
+ * <p>
+ * Match fields are written straight from the bytes encoded by
+ * {@link PofCriterion}; instructions are encoded once per
+ * {@link PofInstruction} and the bytes are reused for every flow-mod that
+ * carries the same instruction.
+ * </p>
+ */
+final class PofWireForms {
+
+    private static final long MAX_CACHED_INSTRUCTIONS = 100_000;
+
+    // weak keys compare by identity, entries go away with their flow rules
+    private static final Cache<PofInstruction, OFInstruction> INSTRUCTIONS =
+            CacheBuilder.newBuilder()
+                    .weakKeys()
+                    .maximumSize(MAX_CACHED_INSTRUCTIONS)
+                    .build();
+
+    // non-instantiable
+    private PofWireForms() {
+    }
+
+    /**
+     * Returns a match field that writes the pre-encoded bytes of the
+     * given criterion.
+     *
+     * @param criterion POF criterion describing a single match field
+     * @return match field for use in a flow-mod
+     */
+    static OFMatchX matchX(PofCriterion criterion) {
+        return new EncodedMatchX(criterion);
+    }
+
+    /**
+     * Returns an instruction that writes the cached wire form of the given
+     * POF instruction.
+     *
+     * @param instruction POF instruction
+     * @return instruction for use in a flow-mod
+     */
+    static OFInstruction instruction(PofInstruction instruction) {
+        try {
+            return INSTRUCTIONS.get(instruction, () -> new EncodedInstruction(instruction.instruction()));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            return instruction.instruction();
+        }
+    }
+
+    /**
+     * Match field backed by the bytes encoded by a {@link PofCriterion}.
+     */
+    private static final class EncodedMatchX extends OFMatchX {
+        private final PofCriterion criterion;
+
+        private EncodedMatchX(PofCriterion criterion) {
+            this.criterion = criterion;
+            this.fieldName = criterion.fieldName();
+            this.fieldId = criterion.fieldId();
+            this.offset = criterion.offset();
+            this.length = criterion.length();
+            this.value = criterion.value();
+            this.mask = criterion.mask();
+        }
+
+        @Override
+        public void writeTo(ChannelBuffer data) {
+            data.writeBytes(criterion.encodedMatch());
+        }
+    }
+
+    /**
+     * Instruction whose wire form has been encoded once up front.
+     */
+    private static final class EncodedInstruction extends OFInstruction {
+        private final OFInstruction delegate;
+        private final byte[] encoded;
+
+        private EncodedInstruction(OFInstruction delegate) {
+            this.delegate = delegate;
+            this.type = delegate.getType();
+            this.length = delegate.getLength();
+            ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(delegate.getLengthU());
+            delegate.writeTo(buffer);
+            this.encoded = new byte[buffer.readableBytes()];
+            buffer.readBytes(encoded);
+        }
+
+        @Override
+        public void writeTo(ChannelBuffer data) {
+            data.writeBytes(encoded);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
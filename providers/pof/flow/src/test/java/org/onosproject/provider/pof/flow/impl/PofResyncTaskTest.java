@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.pof.flow.impl;
+
+import com.google.common.collect.Lists;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Before;
+import org.junit.Test;
+import org.onosproject.floodlightpof.protocol.OFEchoRequest;
+import org.onosproject.floodlightpof.protocol.OFMessage;
+import org.onosproject.floodlightpof.protocol.OFType;
+import org.onosproject.pof.controller.PofSwitch;
+
+import java.util.List;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the barrier windowed switch resync.
+ */
+public class PofResyncTaskTest {
+
+    private Capture<List<OFMessage>> windows;
+    private PofSwitch sw;
+
+    @Before
+    public void setUp() {
+        windows = newCapture(CaptureType.ALL);
+        sw = createNiceMock(PofSwitch.class);
+        expect(sw.isConnected()).andReturn(true).anyTimes();
+        expect(sw.getStringId()).andReturn("pof:0000000000000001").anyTimes();
+        sw.sendMsg(capture(windows));
+        expectLastCall().anyTimes();
+        replay(sw);
+    }
+
+    private static List<OFMessage> messages(int count) {
+        List<OFMessage> msgs = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            msgs.add(new OFEchoRequest());
+        }
+        return msgs;
+    }
+
+    /**
+     * Tests that messages are split into windows each ending with a barrier.
+     */
+    @Test
+    public void testWindows() {
+        PofResyncTask task = new PofResyncTask(sw, messages(10).iterator(), 10, 4, 8, 10);
+        task.run();
+
+        List<List<OFMessage>> sent = windows.getValues();
+        assertEquals(3, sent.size());
+        assertEquals(5, sent.get(0).size());
+        assertEquals(5, sent.get(1).size());
+        assertEquals(3, sent.get(2).size());
+        for (List<OFMessage> window : sent) {
+            assertEquals(OFType.BARRIER_REQUEST, window.get(window.size() - 1).getType());
+        }
+        assertEquals(10, task.sent());
+        assertEquals(3, task.barrierTimeouts());
+        assertTrue(task.elapsedMillis() >= 0);
+    }
+
+    /**
+     * Tests that answered barriers release the window and are not timed out.
+     */
+    @Test
+    public void testBarrierReplies() throws InterruptedException {
+        PofResyncTask task = new PofResyncTask(sw, messages(8).iterator(), 8, 2, 1, 10_000);
+        Thread runner = new Thread(task);
+        runner.start();
+
+        int acked = 0;
+        while (runner.isAlive() || acked < windows.getValues().size()) {
+            List<List<OFMessage>> sent = windows.getValues();
+            if (acked < sent.size()) {
+                List<OFMessage> window = sent.get(acked);
+                assertTrue(task.barrierReplied(window.get(window.size() - 1).getXid()));
+                acked++;
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        runner.join();
+
+        assertEquals(4, acked);
+        assertEquals(0, task.barrierTimeouts());
+        assertFalse(task.barrierReplied(-1));
+    }
+}
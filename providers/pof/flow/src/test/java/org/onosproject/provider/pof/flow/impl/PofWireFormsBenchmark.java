@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.pof.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.onosproject.floodlightpof.protocol.OFMatch20;
+import org.onosproject.floodlightpof.protocol.OFMatchX;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.PofCriterion;
+import org.onosproject.net.flow.instructions.DefaultPofActions;
+import org.onosproject.net.flow.instructions.DefaultPofInstructions;
+import org.onosproject.net.flow.instructions.PofInstruction;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of writing POF match fields and instructions into a flow-mod
+ * buffer, comparing the per-message floodlightpof encoding against the
+ * pre-encoded wire forms.
+ */
+@Ignore("Benchmark; run manually")
+public class PofWireFormsBenchmark {
+
+    private static final int FIELDS = 8;
+    private static final int WARMUP = 100_000;
+    private static final int RUNS = 1_000_000;
+
+    private final PofCriterion[] criteria = new PofCriterion[FIELDS];
+    private final PofInstruction instruction = DefaultPofInstructions.applyActions(
+            ImmutableList.of(DefaultPofActions.drop(1).action()));
+
+    public PofWireFormsBenchmark() {
+        for (int i = 0; i < FIELDS; i++) {
+            criteria[i] = (PofCriterion) Criteria.matchOffsetLength(
+                    (short) i, (short) (i * 16), (short) 16, String.format("%04x", i), "ffff");
+        }
+    }
+
+    @Test
+    public void legacy() {
+        measure("legacy", this::writeLegacy);
+    }
+
+    @Test
+    public void preEncoded() {
+        measure("pre-encoded", this::writePreEncoded);
+    }
+
+    // mirrors the encoding done by FlowModBuilderVer20 before the wire forms
+    private void writeLegacy(ChannelBuffer buffer) {
+        for (PofCriterion pc : criteria) {
+            OFMatch20 match20 = new OFMatch20();
+            match20.setFieldName(pc.fieldName());
+            match20.setFieldId(pc.fieldId());
+            match20.setOffset(pc.offset());
+            match20.setLength(pc.length());
+            new OFMatchX(match20, pc.value(), pc.mask()).writeTo(buffer);
+        }
+        instruction.instruction().writeTo(buffer);
+    }
+
+    private void writePreEncoded(ChannelBuffer buffer) {
+        for (PofCriterion pc : criteria) {
+            PofWireForms.matchX(pc).writeTo(buffer);
+        }
+        PofWireForms.instruction(instruction).writeTo(buffer);
+    }
+
+    private void measure(String name, Writer writer) {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+        for (int i = 0; i < WARMUP; i++) {
+            buffer.clear();
+            writer.write(buffer);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            buffer.clear();
+            writer.write(buffer);
+        }
+        long nanos = (System.nanoTime() - start) / RUNS;
+        assertTrue("bytes expected", buffer.readableBytes() > 0);
+        System.out.println(String.format("%-12s %6d ns/flow-mod (%d fields)", name, nanos, FIELDS));
+    }
+
+    private interface Writer {
+        void write(ChannelBuffer buffer);
+    }
+}
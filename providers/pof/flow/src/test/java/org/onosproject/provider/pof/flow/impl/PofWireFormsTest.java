@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.pof.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+import org.onosproject.floodlightpof.protocol.OFMatch20;
+import org.onosproject.floodlightpof.protocol.OFMatchX;
+import org.onosproject.floodlightpof.protocol.instruction.OFInstruction;
+import org.onosproject.net.flow.criteria.Criteria;
+import org.onosproject.net.flow.criteria.PofCriterion;
+import org.onosproject.net.flow.instructions.DefaultPofActions;
+import org.onosproject.net.flow.instructions.DefaultPofInstructions;
+import org.onosproject.net.flow.instructions.PofInstruction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link PofWireForms}.
+ */
+public class PofWireFormsTest {
+
+    private static byte[] bytes(ChannelBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.readBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testMatchMatchesLegacyEncoding() {
+        PofCriterion criterion = (PofCriterion) Criteria.matchOffsetLength(
+                (short) 1, (short) 96, (short) 16, "0800", "ffff");
+
+        OFMatch20 match20 = new OFMatch20();
+        match20.setFieldId(criterion.fieldId());
+        match20.setOffset(criterion.offset());
+        match20.setLength(criterion.length());
+        OFMatchX legacy = new OFMatchX(match20, criterion.value(), criterion.mask());
+
+        ChannelBuffer expected = ChannelBuffers.dynamicBuffer();
+        legacy.writeTo(expected);
+        ChannelBuffer actual = ChannelBuffers.dynamicBuffer();
+        PofWireForms.matchX(criterion).writeTo(actual);
+
+        assertArrayEquals(bytes(expected), bytes(actual));
+    }
+
+    @Test
+    public void testInstructionMatchesLegacyEncoding() {
+        PofInstruction instruction = DefaultPofInstructions.applyActions(
+                ImmutableList.of(DefaultPofActions.drop(1).action()));
+
+        ChannelBuffer expected = ChannelBuffers.dynamicBuffer();
+        instruction.instruction().writeTo(expected);
+        ChannelBuffer actual = ChannelBuffers.dynamicBuffer();
+        OFInstruction encoded = PofWireForms.instruction(instruction);
+        encoded.writeTo(actual);
+
+        assertArrayEquals(bytes(expected), bytes(actual));
+        assertSame(encoded, PofWireForms.instruction(instruction));
+    }
+}
@@ -33,6 +33,8 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
+import static org.onlab.util.Tools.byteBuffertoArray;
+
 /**
  * Packet context used with the POF providers.
  */
@@ -65,9 +67,9 @@ public class PofCorePacketContext extends DefaultPacketContext {
                 sendPacket(null);
             } else {
                 try {
+                    byte[] data = byteBuffertoArray(outPacket().data());
                     Ethernet eth = Ethernet.deserializer()
-                            .deserialize(outPacket().data().array(), 0,
-                                         outPacket().data().array().length);
+                            .deserialize(data, 0, data.length);
                     sendPacket(eth);
                 } catch (DeserializationException e) {
                     log.warn("Unable to deserialize packet");
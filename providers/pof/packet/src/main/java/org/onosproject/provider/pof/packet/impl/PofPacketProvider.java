@@ -50,6 +50,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.onlab.util.Tools.byteBuffertoArray;
 import static org.slf4j.LoggerFactory.getLogger;
 
 
@@ -135,7 +136,7 @@ public class PofPacketProvider extends AbstractProvider implements PacketProvide
                     break;
             }
         }
-        sw.sendMsg(packetOut(sw, packet.data().array(), actionList));
+        sw.sendMsg(packetOut(sw, byteBuffertoArray(packet.data()), actionList));
     }
 
     private OFPacketOut packetOut(PofSwitch sw, byte[] eth, List<OFAction> actionList) {
@@ -161,15 +162,16 @@ public class PofPacketProvider extends AbstractProvider implements PacketProvide
         @Override
         public void handlePacket(PofPacketContext pktCtx) {
             DeviceId id = DeviceId.deviceId(Dpid.uri(pktCtx.dpid().value()));
+            // inbound and outbound views share the packet-in payload
+            ByteBuffer data = pktCtx.unparsedBuffer();
             DefaultInboundPacket inPkt = new DefaultInboundPacket(
                     new ConnectPoint(id, PortNumber.portNumber(pktCtx.inPort())),
-                    pktCtx.parsed(), ByteBuffer.wrap(pktCtx.unparsed()),
+                    pktCtx.parsed(), data,
                     pktCtx.cookie());
 
             DefaultOutboundPacket outPkt = null;
             if (!pktCtx.isBuffered()) {
-                outPkt = new DefaultOutboundPacket(id, null,
-                        ByteBuffer.wrap(pktCtx.unparsed()));
+                outPkt = new DefaultOutboundPacket(id, null, data.duplicate());
             }
 
             PofCorePacketContext corePktCtx =
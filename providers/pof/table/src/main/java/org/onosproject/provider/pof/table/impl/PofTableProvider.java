@@ -18,7 +18,6 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
-import org.onosproject.floodlightpof.protocol.OFMatch20;
 import org.onosproject.floodlightpof.protocol.OFMessage;
 import org.onosproject.floodlightpof.protocol.OFPortStatus;
 import org.onosproject.floodlightpof.protocol.OFType;
@@ -41,6 +40,7 @@ import org.onosproject.net.table.FlowTableStore;
 import org.onosproject.pof.controller.Dpid;
 import org.onosproject.pof.controller.PofController;
 import org.onosproject.pof.controller.PofEventListener;
+import org.onosproject.pof.controller.PofFlowTables;
 import org.onosproject.pof.controller.PofSwitch;
 import org.onosproject.pof.controller.PofSwitchListener;
 import org.onosproject.pof.controller.RoleState;
@@ -234,29 +234,9 @@ public class PofTableProvider extends AbstractProvider
 //    }
     //added by hdy
     private OFFlowTable buildOFFlowTable(FlowTable flowTable) {
-
-        OFFlowTable ofFlowTable = flowTable.flowTable();
-
         //parse global ID to small ID
-        byte globalTableId = (byte) flowTable.id().value();
-        DeviceId deviceId = flowTable.deviceId();
-        byte smallTableId = tableStore.parseToSmallTableId(deviceId, globalTableId);
-        ofFlowTable.setTableId(smallTableId);
-
-        //calculate keyLength and fild numbers
-        List<OFMatch20> matchList = ofFlowTable.getMatchFieldList();
-        byte fieldNum = (byte) matchList.size();
-        short keyLength = 0;
-        for (OFMatch20 field : matchList) {
-            keyLength += field.getLength();
-        }
-
-        if (fieldNum == 0 || keyLength == 0) {
-            log.error("++++ build an error OFFlowTable! " + ofFlowTable.toString());
-        }
-        ofFlowTable.setKeyLength(keyLength);
-        ofFlowTable.setMatchFieldNum(fieldNum);
-        return ofFlowTable;
+        byte smallTableId = tableStore.parseToSmallTableId(flowTable.deviceId(), (int) flowTable.id().value());
+        return PofFlowTables.buildOFFlowTable(flowTable, smallTableId);
     }
 
     @Override
@@ -326,7 +306,6 @@ public class PofTableProvider extends AbstractProvider
 
         Dpid dpid = Dpid.dpid(batch.deviceId().uri());
         PofSwitch sw = controller.getSwitch(dpid);
-        OFTableMod tablemod = (OFTableMod) sw.factory().getOFMessage(OFType.TABLE_MOD);
 
         for (FlowTableBatchEntry fbe : batch.getOperations()) {
             // flow is the third party privacy flow
@@ -349,6 +328,8 @@ public class PofTableProvider extends AbstractProvider
                             fbe.operator(), fbe);
                     continue;
             }
+            // one message per table, the switch may encode them after this loop
+            OFTableMod tablemod = (OFTableMod) sw.factory().getOFMessage(OFType.TABLE_MOD);
             tablemod.setFlowTable(flowTable);
             tablemod.setType(OFType.TABLE_MOD);
             sw.sendMsg(tablemod);
@@ -225,14 +225,31 @@ public abstract class AbstractGraphPathSearch<V extends Vertex, E extends Edge<V
      *                 {@link GraphPathSearch#ALL_PATHS} if no limit
      */
     private void buildAllPaths(DefaultResult result, V src, V dst, int maxPaths) {
+        buildAllPaths(result.parents, result.costs, result.paths, src, dst, maxPaths);
+    }
+
+    /**
+     * Builds a set of all paths between the source and destination using the
+     * parent edges and vertex costs produced by a prior search from the source.
+     *
+     * @param parents  parent edges of each reached vertex
+     * @param costs    cost to reach each vertex from the source
+     * @param paths    set to which the built paths are added
+     * @param src      source vertex
+     * @param dst      destination vertex
+     * @param maxPaths limit on the number of paths built;
+     *                 {@link GraphPathSearch#ALL_PATHS} if no limit
+     */
+    protected void buildAllPaths(Map<V, Set<E>> parents, Map<V, Weight> costs,
+                                 Set<Path<V, E>> paths, V src, V dst, int maxPaths) {
         DefaultMutablePath<V, E> basePath = new DefaultMutablePath<>();
-        basePath.setCost(result.cost(dst));
+        basePath.setCost(costs.get(dst));
 
         Set<DefaultMutablePath<V, E>> pendingPaths = new HashSet<>();
         pendingPaths.add(basePath);
 
         while (!pendingPaths.isEmpty() &&
-                (maxPaths == ALL_PATHS || result.paths.size() < maxPaths)) {
+                (maxPaths == ALL_PATHS || paths.size() < maxPaths)) {
             Set<DefaultMutablePath<V, E>> frontier = new HashSet<>();
 
             for (DefaultMutablePath<V, E> path : pendingPaths) {
@@ -243,15 +260,15 @@ public abstract class AbstractGraphPathSearch<V extends Vertex, E extends Edge<V
                 // If the first vertex is our expected source, we have reached
                 // the beginning, so add the this path to the result paths.
                 if (firstVertex.equals(src)) {
-                    path.setCost(result.cost(dst));
-                    result.paths.add(new DefaultPath<>(path.edges(), path.cost()));
+                    path.setCost(costs.get(dst));
+                    paths.add(new DefaultPath<>(path.edges(), path.cost()));
 
                 } else {
                     // If we have not reached the beginning, i.e. the source,
                     // fetch the set of edges leading to the first vertex of
                     // this pending path; if there are none, abandon processing
                     // this path for good.
-                    Set<E> firstVertexParents = result.parents.get(firstVertex);
+                    Set<E> firstVertexParents = parents.get(firstVertex);
                     if (firstVertexParents == null || firstVertexParents.isEmpty()) {
                         break;
                     }
@@ -15,6 +15,8 @@
  */
 package org.onlab.graph;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 
@@ -39,6 +41,9 @@ public class AdjacencyListsGraph<V extends Vertex, E extends Edge<V>>
     private final ImmutableSetMultimap<V, E> sources;
     private final ImmutableSetMultimap<V, E> destinations;
 
+    private final Supplier<CompiledGraph<V, E>> compiled =
+            Suppliers.memoize(() -> CompiledGraph.compileNew(this));
+
     /**
      * Creates a graph comprising of the specified vertexes and edges.
      *
@@ -93,6 +98,15 @@ public class AdjacencyListsGraph<V extends Vertex, E extends Edge<V>>
         return destinations.get(dst);
     }
 
+    /**
+     * Returns the compiled form of this graph, computed on first use.
+     *
+     * @return compiled graph
+     */
+    CompiledGraph<V, E> compiled() {
+        return compiled.get();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) {
@@ -15,9 +15,6 @@
  */
 package org.onlab.graph;
 
-import java.util.HashSet;
-import java.util.Set;
-
 /**
  * Implementation of the BFS algorithm.
  */
@@ -30,44 +27,57 @@ public class BreadthFirstSearch<V extends Vertex, E extends Edge<V>>
 
         // Prepare the graph result.
         DefaultResult result = new DefaultResult(src, dst, maxPaths);
+        result.updateVertex(src, null, weigher.getInitialWeight(), true);
+
+        // Track the search state by vertex index over the compiled graph.
+        CompiledGraph<V, E> compiled = CompiledGraph.compile(graph);
+        int n = compiled.vertexCount();
+        int dstIndex = dst != null ? compiled.index(dst) : -1;
+        Weight[] costs = new Weight[n];
+        int[] frontier = new int[n];
+        int[] next = new int[n];
 
         // Setup the starting frontier with the source as the sole vertex.
-        Set<V> frontier = new HashSet<>();
-        result.updateVertex(src, null, weigher.getInitialWeight(), true);
-        frontier.add(src);
+        int srcIndex = compiled.index(src);
+        costs[srcIndex] = weigher.getInitialWeight();
+        frontier[0] = srcIndex;
+        int frontierSize = 1;
 
         boolean reachedEnd = false;
-        while (!reachedEnd && !frontier.isEmpty()) {
+        while (!reachedEnd && frontierSize > 0) {
             // Prepare the next frontier.
-            Set<V> next = new HashSet<>();
+            int nextSize = 0;
 
             // Visit all vertexes in the current frontier.
-            for (V vertex : frontier) {
-                Weight cost = result.cost(vertex);
+            for (int i = 0; i < frontierSize && !reachedEnd; i++) {
+                int vertex = frontier[i];
+                Weight cost = costs[vertex];
 
                 // Visit all egress edges of the current frontier vertex.
-                for (E edge : graph.getEdgesFrom(vertex)) {
-                    V nextVertex = edge.dst();
-                    if (!result.hasCost(nextVertex)) {
+                for (int e = compiled.edgeStart(vertex), end = compiled.edgeEnd(vertex);
+                     e < end; e++) {
+                    int nextVertex = compiled.target(e);
+                    if (costs[nextVertex] == null) {
                         // If this vertex has not been visited yet, update it.
-                        Weight newCost = cost.merge(weigher.weight(edge));
-                        result.updateVertex(nextVertex, edge, newCost, true);
+                        E edge = compiled.edge(e);
+                        costs[nextVertex] = cost.merge(weigher.weight(edge));
+                        result.updateVertex(compiled.vertex(nextVertex), edge,
+                                            costs[nextVertex], true);
                         // If we have reached our intended destination, bail.
-                        if (nextVertex.equals(dst)) {
+                        if (nextVertex == dstIndex) {
                             reachedEnd = true;
                             break;
                         }
-                        next.add(nextVertex);
-                    }
-
-                    if (reachedEnd) {
-                        break;
+                        next[nextSize++] = nextVertex;
                     }
                 }
             }
 
             // Promote the next frontier.
+            int[] aux = frontier;
             frontier = next;
+            next = aux;
+            frontierSize = nextSize;
         }
 
         // Finally, but the paths on the search result and return.
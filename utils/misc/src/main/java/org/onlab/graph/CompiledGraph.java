@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Immutable, compiled form of a graph in which vertexes are identified by
+ * dense int indexes and the egress edges of all vertexes are laid out
+ * contiguously in compressed sparse row (CSR) form. This allows graph
+ * searches to track their state in primitive arrays rather than in maps
+ * keyed by vertexes.
+ * <p>
+ * The egress edges of vertex {@code v} occupy the edge indexes
+ * {@code [edgeStart(v), edgeEnd(v))}, in the iteration order of
+ * {@link Graph#getEdgesFrom}.
+ * </p>
+ *
+ * @param <V> vertex type
+ * @param <E> edge type
+ */
+public final class CompiledGraph<V extends Vertex, E extends Edge<V>> {
+
+    private final Object[] vertexes;
+    private final Map<V, Integer> indexes;
+    private final int[] offsets;
+    private final Object[] edges;
+    private final int[] targets;
+
+    private CompiledGraph(Graph<V, E> graph) {
+        // Index the vertexes in their iteration order.
+        indexes = new HashMap<>();
+        for (V vertex : graph.getVertexes()) {
+            indexes.putIfAbsent(vertex, indexes.size());
+        }
+
+        // Lay out the egress edges of each vertex one after another; edge
+        // end-points missing from the vertex set are indexed as well.
+        int vertexCount = indexes.size();
+        Object[] orderedVertexes = new Object[vertexCount];
+        offsets = new int[vertexCount + 1];
+        Object[] edgeArray = new Object[graph.getEdges().size()];
+        int[] targetArray = new int[edgeArray.length];
+
+        int e = 0;
+        for (Map.Entry<V, Integer> entry : indexes.entrySet()) {
+            orderedVertexes[entry.getValue()] = entry.getKey();
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v] = e;
+            for (E edge : graph.getEdgesFrom(vertex(orderedVertexes, v))) {
+                if (e == edgeArray.length) {
+                    edgeArray = Arrays.copyOf(edgeArray, e * 2 + 1);
+                    targetArray = Arrays.copyOf(targetArray, e * 2 + 1);
+                }
+                edgeArray[e] = edge;
+                targetArray[e] = indexes.computeIfAbsent(edge.dst(), k -> indexes.size());
+                e++;
+            }
+        }
+        offsets[vertexCount] = e;
+        edges = edgeArray;
+        targets = targetArray;
+
+        // Account for any vertexes that were discovered through edges only.
+        if (indexes.size() > vertexCount) {
+            Object[] allVertexes = new Object[indexes.size()];
+            for (Map.Entry<V, Integer> entry : indexes.entrySet()) {
+                allVertexes[entry.getValue()] = entry.getKey();
+            }
+            vertexes = allVertexes;
+        } else {
+            vertexes = orderedVertexes;
+        }
+    }
+
+    /**
+     * Compiles the specified graph. Immutable adjacency-list graphs retain
+     * their compiled form, so repeated compilation of such graphs is free.
+     *
+     * @param graph graph to compile
+     * @param <V>   vertex type
+     * @param <E>   edge type
+     * @return compiled graph
+     */
+    public static <V extends Vertex, E extends Edge<V>> CompiledGraph<V, E>
+            compile(Graph<V, E> graph) {
+        checkNotNull(graph, "Graph cannot be null");
+        if (graph instanceof AdjacencyListsGraph) {
+            return ((AdjacencyListsGraph<V, E>) graph).compiled();
+        }
+        return new CompiledGraph<>(graph);
+    }
+
+    // Compiles the graph without consulting any retained compiled form.
+    static <V extends Vertex, E extends Edge<V>> CompiledGraph<V, E>
+            compileNew(Graph<V, E> graph) {
+        return new CompiledGraph<>(graph);
+    }
+
+    /**
+     * Returns the number of vertexes.
+     *
+     * @return vertex count
+     */
+    public int vertexCount() {
+        return vertexes.length;
+    }
+
+    /**
+     * Returns the number of edges.
+     *
+     * @return edge count
+     */
+    public int edgeCount() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Returns the index of the specified vertex.
+     *
+     * @param vertex vertex
+     * @return vertex index; -1 if the vertex is not in the graph
+     */
+    public int index(V vertex) {
+        Integer index = indexes.get(vertex);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Returns the vertex with the specified index.
+     *
+     * @param index vertex index
+     * @return vertex
+     */
+    public V vertex(int index) {
+        return vertex(vertexes, index);
+    }
+
+    /**
+     * Returns the index of the first egress edge of the specified vertex.
+     *
+     * @param vertex vertex index
+     * @return first edge index
+     */
+    public int edgeStart(int vertex) {
+        return vertex < offsets.length - 1 ? offsets[vertex] : edgeCount();
+    }
+
+    /**
+     * Returns the index following the last egress edge of the specified
+     * vertex.
+     *
+     * @param vertex vertex index
+     * @return end edge index, exclusive
+     */
+    public int edgeEnd(int vertex) {
+        return vertex < offsets.length - 1 ? offsets[vertex + 1] : edgeCount();
+    }
+
+    /**
+     * Returns the edge with the specified index.
+     *
+     * @param index edge index
+     * @return edge
+     */
+    @SuppressWarnings("unchecked")
+    public E edge(int index) {
+        return (E) edges[index];
+    }
+
+    /**
+     * Returns the index of the destination vertex of the specified edge.
+     *
+     * @param index edge index
+     * @return destination vertex index
+     */
+    public int target(int index) {
+        return targets[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V vertex(Object[] vertexes, int index) {
+        return (V) vertexes[index];
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("vertexCount", vertexCount())
+                .add("edgeCount", edgeCount())
+                .toString();
+    }
+}
@@ -15,9 +15,14 @@
  */
 package org.onlab.graph;
 
-import java.util.ArrayList;
+import com.google.common.math.DoubleMath;
+
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * Dijkstra shortest-path graph search algorithm capable of finding not just
@@ -29,77 +34,246 @@ public class DijkstraGraphSearch<V extends Vertex, E extends Edge<V>>
     @Override
     protected Result<V, E> internalSearch(Graph<V, E> graph, V src, V dst,
                                EdgeWeigher<V, E> weigher, int maxPaths) {
+        DefaultResult result = computeCosts(graph, src, dst, weigher, maxPaths);
+
+        // Now construct a set of paths from the results.
+        result.buildPaths();
+        return result;
+    }
 
+    /**
+     * Searches the graph for the shortest paths from the source to all other
+     * vertexes, recording only the costs and all equal-cost parent edges of
+     * each vertex. Unlike a search without destination, the paths themselves
+     * are not enumerated; use {@link #treePaths} to build them on demand.
+     *
+     * @param graph   graph to be searched
+     * @param src     source vertex
+     * @param weigher optional edge weigher; if null, {@link DefaultEdgeWeigher}
+     *                will be used
+     * @return search result with costs and parents, but no paths
+     */
+    public Result<V, E> searchTree(Graph<V, E> graph, V src,
+                                   EdgeWeigher<V, E> weigher) {
+        checkArguments(graph, src, null);
+        return computeCosts(graph, src, null,
+                            weigher != null ? weigher : new DefaultEdgeWeigher<>(),
+                            ALL_PATHS);
+    }
+
+    /**
+     * Builds the shortest paths to the specified destination from the costs
+     * and parents of a result previously produced by {@link #searchTree}.
+     *
+     * @param tree     result of a prior tree search
+     * @param dst      destination vertex
+     * @param maxPaths limit on the number of paths built;
+     *                 {@link GraphPathSearch#ALL_PATHS} if no limit
+     * @return set of shortest paths; empty if the destination is unreachable
+     */
+    public Set<Path<V, E>> treePaths(Result<V, E> tree, V dst, int maxPaths) {
+        checkArgument(maxPaths == ALL_PATHS || maxPaths > 0,
+                      "Maximum number of paths must be positive");
+        Set<Path<V, E>> paths = new HashSet<>();
+        if (!dst.equals(tree.src()) && tree.costs().containsKey(dst)) {
+            buildAllPaths(tree.parents(), tree.costs(), paths,
+                          tree.src(), dst, maxPaths);
+        }
+
+        // The tree retains all equal-cost parents, so more paths than
+        // requested may have been completed along the last frontier; keep
+        // the cheapest ones, preferring fewer hops.
+        if (maxPaths != ALL_PATHS && paths.size() > maxPaths) {
+            return paths.stream()
+                    .sorted(Comparator.comparing((Path<V, E> p) -> p.cost())
+                                    .thenComparingInt(p -> p.edges().size()))
+                    .limit(maxPaths)
+                    .collect(Collectors.toSet());
+        }
+        return paths;
+    }
+
+    // Computes the costs and parent edges of the vertexes reachable from the
+    // source, stopping early once the destination, if given, is reached.
+    private DefaultResult computeCosts(Graph<V, E> graph, V src, V dst,
+                                       EdgeWeigher<V, E> weigher, int maxPaths) {
         // Use the default result to remember cumulative costs and parent
         // edges to each each respective vertex.
         DefaultResult result = new DefaultResult(src, dst, maxPaths);
 
         // Cost to reach the source vertex is 0 of course.
-        result.updateVertex(src, null, weigher.getInitialWeight(), false);
+        Weight initial = weigher.getInitialWeight();
+        result.updateVertex(src, null, initial, false);
 
         if (graph.getEdges().isEmpty()) {
-            result.buildPaths();
             return result;
         }
 
+        // Search over the compiled graph; scalar weights are tracked as
+        // primitive doubles unless the weigher turns out to yield others.
+        CompiledGraph<V, E> compiled = CompiledGraph.compile(graph);
+        int srcIndex = compiled.index(src);
+        int dstIndex = dst != null ? compiled.index(dst) : -1;
+        if (initial.getClass() != ScalarWeight.class ||
+                !scalarSearch(compiled, srcIndex, dstIndex, weigher, result)) {
+            weightSearch(compiled, srcIndex, dstIndex, weigher, result);
+        }
+        return result;
+    }
+
+    // Searches the compiled graph keeping the costs as primitive doubles,
+    // with the same sameness semantics as scalar weights. Returns false,
+    // leaving the result untouched, if the weigher yields a weight which is
+    // not a scalar weight.
+    private boolean scalarSearch(CompiledGraph<V, E> graph, int src, int dst,
+                                 EdgeWeigher<V, E> weigher, DefaultResult result) {
+        int n = graph.vertexCount();
+        double threshold = ScalarWeight.samenessThreshold();
+        double[] costs = new double[n];
+        boolean[] reached = new boolean[n];
+        Set<E>[] parents = newParents(n);
+
         // Use the min priority queue to progressively find each nearest
         // vertex until we reach the desired destination, if one was given,
         // or until we reach all possible destinations.
-        Heap<V> minQueue = createMinQueue(graph.getVertexes(),
-                                          new PathCostComparator(result));
+        IndexedHeap minQueue = new IndexedHeap(n, (a, b) -> Double.compare(costs[a], costs[b]));
+        costs[src] = ((ScalarWeight) weigher.getInitialWeight()).value();
+        reached[src] = true;
+        minQueue.insert(src);
+
         while (!minQueue.isEmpty()) {
-            // Get the nearest vertex
-            V nearest = minQueue.extractExtreme();
-            if (nearest.equals(dst)) {
+            int nearest = minQueue.extractMin();
+            if (nearest == dst) {
                 break;
             }
 
-            // Find its cost and use it to determine if the vertex is reachable.
-            if (result.hasCost(nearest)) {
-                Weight cost = result.cost(nearest);
+            // Relax all egress edges of the nearest vertex.
+            double cost = costs[nearest];
+            for (int e = graph.edgeStart(nearest), end = graph.edgeEnd(nearest); e < end; e++) {
+                E edge = graph.edge(e);
+                Weight hopWeight = weigher.weight(edge);
+                if (hopWeight.getClass() != ScalarWeight.class) {
+                    return false;
+                }
+                double hopCost = ((ScalarWeight) hopWeight).value();
+                if (hopCost < 0 || DoubleMath.fuzzyEquals(hopCost, Double.POSITIVE_INFINITY, threshold)) {
+                    continue;
+                }
 
-                // If the vertex is reachable, relax all its egress edges.
-                for (E e : graph.getEdgesFrom(nearest)) {
-                    result.relaxEdge(e, cost, weigher, true);
+                int v = graph.target(e);
+                double newCost = cost + hopCost;
+                int compareResult = !reached[v] ? -1 :
+                        DoubleMath.fuzzyEquals(newCost, costs[v], threshold) ? 0 :
+                                Double.compare(newCost, costs[v]);
+                if (compareResult < 0) {
+                    costs[v] = newCost;
+                    reprioritize(minQueue, v, reached);
+                }
+                if (compareResult <= 0) {
+                    addParent(parents, v, edge, compareResult < 0, result.maxPaths);
                 }
             }
-
-            // Re-prioritize the min queue.
-            minQueue.heapify();
         }
 
-        // Now construct a set of paths from the results.
-        result.buildPaths();
-        return result;
+        for (int v = 0; v < n; v++) {
+            if (reached[v] && v != src) {
+                result.costs.put(graph.vertex(v), new ScalarWeight(costs[v]));
+            }
+        }
+        fillParents(graph, parents, result);
+        return true;
     }
 
-    // Compares path weights using their accrued costs; used for sorting the
-    // min priority queue.
-    private final class PathCostComparator implements Comparator<V> {
-        private final DefaultResult result;
+    // Searches the compiled graph keeping the costs as weight objects.
+    private void weightSearch(CompiledGraph<V, E> graph, int src, int dst,
+                              EdgeWeigher<V, E> weigher, DefaultResult result) {
+        int n = graph.vertexCount();
+        Weight[] costs = new Weight[n];
+        boolean[] reached = new boolean[n];
+        Set<E>[] parents = newParents(n);
 
-        private PathCostComparator(DefaultResult result) {
-            this.result = result;
+        IndexedHeap minQueue = new IndexedHeap(n, (a, b) -> costs[a].compareTo(costs[b]));
+        costs[src] = weigher.getInitialWeight();
+        reached[src] = true;
+        minQueue.insert(src);
+
+        while (!minQueue.isEmpty()) {
+            int nearest = minQueue.extractMin();
+            if (nearest == dst) {
+                break;
+            }
+
+            // Relax all egress edges of the nearest vertex.
+            Weight cost = costs[nearest];
+            for (int e = graph.edgeStart(nearest), end = graph.edgeEnd(nearest); e < end; e++) {
+                E edge = graph.edge(e);
+                Weight hopCost = weigher.weight(edge);
+                if (!hopCost.isViable() || hopCost.isNegative()) {
+                    continue;
+                }
+
+                int v = graph.target(e);
+                Weight newCost = cost.merge(hopCost);
+                int compareResult = !reached[v] ? -1 : newCost.compareTo(costs[v]);
+                if (compareResult < 0) {
+                    costs[v] = newCost;
+                    reprioritize(minQueue, v, reached);
+                }
+                if (compareResult <= 0) {
+                    addParent(parents, v, edge, compareResult < 0, result.maxPaths);
+                }
+            }
         }
 
-        @Override
-        public int compare(V v1, V v2) {
-            //not accessed vertices should be pushed to the back of the queue
-            if (!result.hasCost(v1) && !result.hasCost(v2)) {
-                return 0;
-            } else if (!result.hasCost(v1)) {
-                return -1;
-            } else if (!result.hasCost(v2)) {
-                return 1;
+        for (int v = 0; v < n; v++) {
+            if (reached[v] && v != src) {
+                result.costs.put(graph.vertex(v), costs[v]);
             }
+        }
+        fillParents(graph, parents, result);
+    }
+
+    // Queues a vertex reached for the first time or re-positions a queued
+    // vertex whose cost has decreased.
+    private static void reprioritize(IndexedHeap minQueue, int v, boolean[] reached) {
+        if (!reached[v]) {
+            reached[v] = true;
+            minQueue.insert(v);
+        } else if (minQueue.contains(v)) {
+            minQueue.decreased(v);
+        }
+    }
 
-            return result.cost(v2).compareTo(result.cost(v1));
+    @SuppressWarnings("unchecked")
+    private Set<E>[] newParents(int n) {
+        return (Set<E>[]) new Set[n];
+    }
+
+    // Records the edge as a parent of the vertex; if replace is true, any
+    // previously recorded parents are cleared as they are no longer the
+    // cheapest.
+    private void addParent(Set<E>[] parents, int v, E edge,
+                           boolean replace, int maxPaths) {
+        Set<E> edges = parents[v];
+        if (edges == null) {
+            edges = new HashSet<>();
+            parents[v] = edges;
+        }
+        if (replace) {
+            edges.clear();
+        }
+        if (maxPaths == ALL_PATHS || edges.size() < maxPaths) {
+            edges.add(edge);
         }
     }
 
-    // Creates a min priority queue from the specified vertexes and comparator.
-    private Heap<V> createMinQueue(Set<V> vertexes, Comparator<V> comparator) {
-        return new Heap<>(new ArrayList<>(vertexes), comparator);
+    private void fillParents(CompiledGraph<V, E> graph, Set<E>[] parents,
+                             DefaultResult result) {
+        for (int v = 0; v < parents.length; v++) {
+            if (parents[v] != null) {
+                result.parents.put(graph.vertex(v), parents[v]);
+            }
+        }
     }
 
 }
@@ -109,7 +109,7 @@ public class Heap<T> {
 
             data.set(0, data.get(data.size() - 1));
             data.remove(data.size() - 1);
-            heapify();
+            heapify(0);
             return extreme;
         }
         return null;
@@ -143,8 +143,8 @@ public class Heap<T> {
     private void bubbleUp() {
         int child = data.size() - 1;
         while (child > 0) {
-            int parent = child / 2;
-            if (comparator.compare(data.get(child), data.get(parent)) < 0) {
+            int parent = (child - 1) / 2;
+            if (comparator.compare(data.get(child), data.get(parent)) <= 0) {
                 break;
             }
             swap(child, parent);
@@ -155,7 +155,7 @@ public class Heap<T> {
     // Restores the heap property of the specified heap layer.
     private void heapify(int i) {
         int left = 2 * i + 1;
-        int right = 2 * i;
+        int right = 2 * i + 2;
         int extreme = i;
 
         if (left < data.size() &&
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import java.util.Arrays;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Array-backed d-ary min-heap of int items drawn from {@code [0, capacity)},
+ * such as vertex indexes of a {@link CompiledGraph}. The heap tracks the
+ * position of each item, which permits constant-time membership tests and
+ * logarithmic re-positioning of an item whose key has decreased.
+ * <p>
+ * The order of the items is imposed by the provided {@link Order}, which
+ * typically compares entries of a primitive cost array indexed by item.
+ * </p>
+ * <p>
+ * This class is not thread-safe and care must be taken to prevent concurrent
+ * modifications.
+ * </p>
+ */
+public final class IndexedHeap {
+
+    /**
+     * Default heap arity.
+     */
+    public static final int DEFAULT_ARITY = 4;
+
+    /**
+     * Ordering of the heap items.
+     */
+    @FunctionalInterface
+    public interface Order {
+        /**
+         * Compares two heap items.
+         *
+         * @param a first item
+         * @param b second item
+         * @return negative, zero or positive if the first item is less than,
+         * equal to or greater than the second one, respectively
+         */
+        int compare(int a, int b);
+    }
+
+    private final int arity;
+    private final Order order;
+    private final int[] items;
+    private final int[] positions;
+    private int size = 0;
+
+    /**
+     * Creates a new heap of the default arity.
+     *
+     * @param capacity number of distinct items
+     * @param order    ordering of the items
+     */
+    public IndexedHeap(int capacity, Order order) {
+        this(capacity, DEFAULT_ARITY, order);
+    }
+
+    /**
+     * Creates a new heap.
+     *
+     * @param capacity number of distinct items
+     * @param arity    number of children of each heap node; 2 for a binary heap
+     * @param order    ordering of the items
+     */
+    public IndexedHeap(int capacity, int arity, Order order) {
+        checkArgument(capacity >= 0, "Capacity cannot be negative");
+        checkArgument(arity >= 2, "Arity must be at least 2");
+        this.arity = arity;
+        this.order = order;
+        this.items = new int[capacity];
+        this.positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Returns the current size of the heap.
+     *
+     * @return number of items in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no items in the heap.
+     *
+     * @return true if heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Indicates whether the specified item is in the heap.
+     *
+     * @param item item to test
+     * @return true if the item is in the heap
+     */
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    /**
+     * Inserts the specified item into the heap.
+     *
+     * @param item item to be inserted; must not be in the heap already
+     */
+    public void insert(int item) {
+        checkArgument(!contains(item), "Item %s is already in the heap", item);
+        items[size] = item;
+        positions[item] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Restores the heap property after the key of the specified item has
+     * decreased.
+     *
+     * @param item item whose key decreased; must be in the heap
+     */
+    public void decreased(int item) {
+        siftUp(positions[item]);
+    }
+
+    /**
+     * Returns the least item in the heap.
+     *
+     * @return least item; -1 if the heap is empty
+     */
+    public int min() {
+        return size > 0 ? items[0] : -1;
+    }
+
+    /**
+     * Extracts and returns the least item from the heap.
+     *
+     * @return least item; -1 if the heap is empty
+     */
+    public int extractMin() {
+        if (size == 0) {
+            return -1;
+        }
+        int min = items[0];
+        positions[min] = -1;
+        if (--size > 0) {
+            items[0] = items[size];
+            positions[items[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    // Moves the item at the given position towards the root as needed.
+    private void siftUp(int position) {
+        int item = items[position];
+        while (position > 0) {
+            int parent = (position - 1) / arity;
+            if (order.compare(item, items[parent]) >= 0) {
+                break;
+            }
+            place(items[parent], position);
+            position = parent;
+        }
+        place(item, position);
+    }
+
+    // Moves the item at the given position towards the leaves as needed.
+    private void siftDown(int position) {
+        int item = items[position];
+        while (true) {
+            int first = position * arity + 1;
+            if (first >= size) {
+                break;
+            }
+            int least = first;
+            for (int c = first + 1, last = Math.min(first + arity, size); c < last; c++) {
+                if (order.compare(items[c], items[least]) < 0) {
+                    least = c;
+                }
+            }
+            if (order.compare(items[least], item) >= 0) {
+                break;
+            }
+            place(items[least], position);
+            position = least;
+        }
+        place(item, position);
+    }
+
+    private void place(int item, int position) {
+        items[position] = item;
+        positions[item] = position;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("arity", arity)
+                .add("size", size)
+                .toString();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.google.common.collect.ImmutableSet.of;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the compiled graph representation.
+ */
+public class CompiledGraphTest extends GraphTest {
+
+    @Test
+    public void basics() {
+        graph = new AdjacencyListsGraph<>(vertexes(), edges());
+        CompiledGraph<TestVertex, TestEdge> cg = CompiledGraph.compile(graph);
+        assertEquals("incorrect vertex count", 8, cg.vertexCount());
+        assertEquals("incorrect edge count", 12, cg.edgeCount());
+
+        for (TestVertex v : vertexes()) {
+            int i = cg.index(v);
+            assertEquals("incorrect vertex", v, cg.vertex(i));
+
+            Set<TestEdge> egress = new HashSet<>();
+            for (int e = cg.edgeStart(i); e < cg.edgeEnd(i); e++) {
+                TestEdge edge = cg.edge(e);
+                assertEquals("incorrect source", v, edge.src());
+                assertEquals("incorrect target", edge.dst(),
+                             cg.vertex(cg.target(e)));
+                egress.add(edge);
+            }
+            assertEquals("incorrect egress edges", graph.getEdgesFrom(v), egress);
+        }
+        assertEquals("vertex should be absent", -1, cg.index(Z));
+    }
+
+    @Test
+    public void retained() {
+        graph = new AdjacencyListsGraph<>(vertexes(), edges());
+        assertSame("compiled form should be retained",
+                   CompiledGraph.compile(graph), CompiledGraph.compile(graph));
+    }
+
+    @Test
+    public void mutable() {
+        MutableAdjacencyListsGraph<TestVertex, TestEdge> mg =
+                new MutableAdjacencyListsGraph<>(of(A, B), of(new TestEdge(A, B)));
+        CompiledGraph<TestVertex, TestEdge> cg = CompiledGraph.compile(mg);
+        assertEquals("incorrect edge count", 1, cg.edgeCount());
+
+        mg.addVertex(C);
+        mg.addEdge(new TestEdge(B, C));
+        cg = CompiledGraph.compile(mg);
+        assertEquals("incorrect vertex count", 3, cg.vertexCount());
+        assertEquals("incorrect edge count", 2, cg.edgeCount());
+    }
+
+    @Test
+    public void isolated() {
+        graph = new AdjacencyListsGraph<>(of(A, B, C), of(new TestEdge(A, B)));
+        CompiledGraph<TestVertex, TestEdge> cg = CompiledGraph.compile(graph);
+        int c = cg.index(C);
+        assertEquals("no egress edges expected", cg.edgeStart(c), cg.edgeEnd(c));
+    }
+
+}
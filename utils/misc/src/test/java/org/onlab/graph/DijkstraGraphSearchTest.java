@@ -76,6 +76,28 @@ public class DijkstraGraphSearchTest extends BreadthFirstSearchTest {
         assertEquals("incorrect path cost", new TestDoubleWeight(1.0), paths.iterator().next().cost());
     }
 
+    @Test
+    public void treePaths() {
+        graph = new AdjacencyListsGraph<>(of(A, B, C, D, E),
+                of(new TestEdge(A, B, W1),
+                        new TestEdge(A, C, W1),
+                        new TestEdge(B, D, W1),
+                        new TestEdge(C, D, W1),
+                        new TestEdge(D, A, W1)));
+        DijkstraGraphSearch<TestVertex, TestEdge> gs = new DijkstraGraphSearch<>();
+        GraphPathSearch.Result<TestVertex, TestEdge> tree = gs.searchTree(graph, A, weigher);
+        assertEquals("paths should not be built", 0, tree.paths().size());
+
+        for (TestVertex v : of(B, C, D)) {
+            assertEquals("incorrect paths", gs.search(graph, A, v, weigher,
+                                                      GraphPathSearch.ALL_PATHS).paths(),
+                         gs.treePaths(tree, v, GraphPathSearch.ALL_PATHS));
+        }
+        assertEquals("incorrect paths count", 1, gs.treePaths(tree, D, 1).size());
+        assertEquals("no paths expected", 0, gs.treePaths(tree, E, 1).size());
+        assertEquals("no paths expected", 0, gs.treePaths(tree, A, 1).size());
+    }
+
     @Test
     public void exceptions() {
         graph = new AdjacencyListsGraph<>(of(A, B, C, D),
@@ -88,6 +88,21 @@ public class HeapTest {
         assertTrue("should be empty", h.isEmpty());
     }
 
+    @Test
+    public void insertedInOrder() {
+        Heap<Integer> h = new Heap<>(new ArrayList<>(), MIN);
+        data.forEach(h::insert);
+        h.insert(3);
+        assertEquals("incorrect extreme", (Integer) 0, h.extreme());
+
+        int previous = h.extractExtreme();
+        while (!h.isEmpty()) {
+            int next = h.extractExtreme();
+            assertTrue("out of order: " + previous + " before " + next, previous <= next);
+            previous = next;
+        }
+    }
+
     @Test
     public void iterator() {
         Heap<Integer> h = new Heap<>(data, MIN);
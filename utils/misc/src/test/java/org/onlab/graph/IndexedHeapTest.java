@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-present Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Indexed heap data structure tests.
+ */
+public class IndexedHeapTest {
+
+    private final double[] keys = {6, 4, 5, 9, 8, 3, 2, 1, 7, 0};
+
+    private IndexedHeap heap(int arity) {
+        IndexedHeap h = new IndexedHeap(keys.length, arity,
+                                        (a, b) -> Double.compare(keys[a], keys[b]));
+        for (int i = 0; i < keys.length; i++) {
+            h.insert(i);
+        }
+        return h;
+    }
+
+    @Test
+    public void empty() {
+        IndexedHeap h = new IndexedHeap(4, Integer::compare);
+        assertTrue("should be empty", h.isEmpty());
+        assertEquals("incorrect size", 0, h.size());
+        assertEquals("no item expected", -1, h.min());
+        assertEquals("no item expected", -1, h.extractMin());
+    }
+
+    @Test
+    public void minQueue() {
+        for (int arity = 2; arity <= 5; arity++) {
+            IndexedHeap h = heap(arity);
+            assertEquals("incorrect size", 10, h.size());
+            assertEquals("incorrect min", 9, h.min());
+            for (int k = 0; k < keys.length; k++) {
+                int item = h.extractMin();
+                assertEquals("incorrect key", k, keys[item], 0);
+                assertFalse("item should be gone", h.contains(item));
+            }
+            assertTrue("should be empty", h.isEmpty());
+        }
+    }
+
+    @Test
+    public void decreaseKey() {
+        IndexedHeap h = heap(IndexedHeap.DEFAULT_ARITY);
+        keys[3] = -1;
+        h.decreased(3);
+        assertEquals("incorrect min", 3, h.extractMin());
+        assertEquals("incorrect min", 9, h.extractMin());
+
+        keys[0] = -2;
+        h.decreased(0);
+        assertEquals("incorrect min", 0, h.extractMin());
+        assertEquals("incorrect size", 7, h.size());
+    }
+
+    @Test
+    public void reinsert() {
+        IndexedHeap h = heap(2);
+        int min = h.extractMin();
+        assertFalse("item should be gone", h.contains(min));
+        h.insert(min);
+        assertTrue("item should be back", h.contains(min));
+        assertEquals("incorrect min", min, h.min());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicate() {
+        heap(2).insert(0);
+    }
+
+}